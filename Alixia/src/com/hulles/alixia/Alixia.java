@@ -28,7 +28,6 @@ import java.util.Map.Entry;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -49,13 +48,17 @@ import com.hulles.alixia.api.shared.SharedUtils;
 import com.hulles.alixia.api.shared.SharedUtils.PortCheck;
 import com.hulles.alixia.api.tools.AlixiaUtils;
 import com.hulles.alixia.api.tools.AlixiaVersion;
+import com.hulles.alixia.api.tools.StageTimer;
 import com.hulles.alixia.crypto.PurdahKeys;
 import com.hulles.alixia.crypto.PurdahKeys.PurdahKey;
 import com.hulles.alixia.house.AlixiaHouse;
 import com.hulles.alixia.house.ClientDialogRequest;
+import com.hulles.alixia.house.Session;
 import com.hulles.alixia.house.UrHouse;
 import com.hulles.alixia.room.AlixiaRoom;
 import com.hulles.alixia.room.UrRoom;
+import com.hulles.alixia.tools.AlixiaExecutors;
+import com.hulles.alixia.tools.AlixiaExecutors.ExecutorModel;
 
 /**
  * This class and this project are totally not named after Alicia Vikander.
@@ -80,9 +83,19 @@ final public class Alixia implements Closeable {
 	
 	/**
 	 * Start up the executor service for the "street" bus (Controller starts up
-	 * the "hall" bus) and start the service manager apparatus.
+	 * the "hall" bus) and start the service manager apparatus, using the
+	 * original cached thread pool executor model.
 	 */
-	public Alixia(List<UrHouse> houses, List<UrRoom> rooms, Boolean showOrphans) {	
+	public Alixia(List<UrHouse> houses, List<UrRoom> rooms, Boolean showOrphans) {
+		this(houses, rooms, showOrphans, ExecutorModel.CACHED);
+	}
+	
+	/**
+	 * Start up the executor service for the "street" bus (Controller starts up
+	 * the "hall" bus) and start the service manager apparatus. The executor model
+	 * applies to the buses and to all the rooms and houses the service manager starts.
+	 */
+	public Alixia(List<UrHouse> houses, List<UrRoom> rooms, Boolean showOrphans, ExecutorModel executorModel) {	
         AsyncEventBus streetBus;
         AsyncEventBus hallBus;
         String version;
@@ -91,6 +104,7 @@ final public class Alixia implements Closeable {
  		SharedUtils.checkNotNull(houses);
  		SharedUtils.checkNotNull(rooms);
  		SharedUtils.checkNotNull(showOrphans);
+ 		SharedUtils.checkNotNull(executorModel);
  		LOGGER.info("Alixia starting up");
 		bundle = ResourceBundle.getBundle(BUNDLE_NAME);
         version = AlixiaVersion.getVersionString(bundle);
@@ -103,7 +117,8 @@ final public class Alixia implements Closeable {
 		SharedUtils.exitIfAlreadyRunning(PortCheck.ALIXIA);
 		this.showOrphans = showOrphans;
 		alixianID = AlixiaConstants.getAlixiaAlixianID();
-		busPool = Executors.newCachedThreadPool();
+		AlixiaExecutors.setExecutorModel(executorModel);
+		busPool = AlixiaExecutors.newExecutor("Bus");
 		streetBus = new AsyncEventBus("Street", busPool);
 		hallBus = new AsyncEventBus("Hall", busPool);
 		addDelayedShutdownHook(busPool);
@@ -221,10 +236,15 @@ final public class Alixia implements Closeable {
 	public void close() {
 		
 		LOGGER.info("Alixia close");
+		AlixiaExecutors.logExecutorMetrics();
+		StageTimer.logStageTimings();
+		UrRoom.logResponseCounts();
 		// shut down the houses
 		serviceManager.stopAsync();
 		serviceManager.awaitStopped();
 		LOGGER.debug("Alixia close: after awaitStopped");
+		Session.closeSessions();
+		LOGGER.debug("Alixia close: after closeSessions");
 		JebusHub.destroyJebusPools();
 		LOGGER.debug("Alixia close: after destroyJebusPools");
 		shuttingDownOnClose = true;
@@ -24,7 +24,9 @@ package com.hulles.alixia.house;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -47,30 +49,46 @@ import redis.clients.jedis.Jedis;
 /**
  * A Session is an instance of an Alixian at a station, communicating with Alixia proper. Sessions
  * are volatile, and expire after 15 minutes of no activity. Session data is stored in Redis.
+ * <p>
+ * We keep a local copy of the session fields so getting one doesn't cost a trip to Redis. Changes
+ * are made to the local copy and written behind to Redis by the SessionCache, so they reach Redis
+ * within SessionCache.FLUSH_INTERVAL. The local copy is reloaded from Redis when it's more than
+ * MAX_STALENESS old, so a change made by some other process shows up here within that time.
  * 
  * @author hulles
  *
  */
 public class Session {
 	final static Logger LOGGER = LoggerFactory.getLogger(Session.class);
-	private final static int SESSIONTTL = 60 * 15; // 15 minutes in seconds
+	final static int SESSIONTTL = 60 * 15; // 15 minutes in seconds
+	private final static long MAX_STALENESS = 2000; // milliseconds
 	private final AlixianID alixianID;
 	private final JebusPool jebusPool;
 	private final String hashKey;
-	private final String timelineKey;
+	private final Map<String, String> fields;
+	private final Map<String, String> dirtyFields;
+	private final Map<String, String> inFlightFields;
+	private long loadedMillis;
+	private Long touchedMillis;
+	private volatile long lastTouched;
 	
-	private Session(AlixianID alixianID) {
+	Session(AlixianID alixianID) {
 		
 		SharedUtils.checkNotNull(alixianID);
 		LOGGER.debug("AlixiaSession: constructor");
 		this.alixianID = alixianID;
 		jebusPool = JebusHub.getJebusCentral();
 		hashKey = JebusBible.getAlixiaSessionHashKey(jebusPool, alixianID);
-		timelineKey = JebusBible.getStringKey(JebusKey.SESSION_TIMELINE, jebusPool);
+		fields = new HashMap<>();
+		dirtyFields = new HashMap<>();
+		inFlightFields = new HashMap<>();
+		loadedMillis = 0;
+		touchedMillis = null;
+		lastTouched = System.currentTimeMillis();
 	}
 	
 	/**
-	 * Get a new instance of a session for the named Alixian.
+	 * Get the session for the named Alixian, creating it if need be, and update its timestamp.
 	 * 
 	 * @param alixianID The ID of the Alixian
 	 * @return The session
@@ -80,38 +98,46 @@ public class Session {
 		
 		SharedUtils.checkNotNull(alixianID);
  		LOGGER.debug("AlixiaSession: getSession");
-		session = new Session(alixianID);
+		session = SessionCache.getSession(alixianID);
 		session.update();
 		LOGGER.debug("AlixiaSession: getSession after update");
 		return session;
 	}
 
+	/**
+	 * Write any pending session changes to Redis now rather than waiting for the flusher.
+	 * 
+	 */
+	public static void flushSessions() {
+		
+		SessionCache.flush();
+	}
+	
+	/**
+	 * Stop the session flusher and write out any pending changes. Call this on the way out,
+	 * before the Jebus pools are destroyed.
+	 * 
+	 */
+	public static void closeSessions() {
+		
+		SessionCache.close();
+	}
+	
 	/**
 	 * Whether it's a new session or we're updating an existing session
 	 * with a new timestamp, the process is the same.
 	 * 
 	 */
 	public void update() {
-		String tsField;
-		Instant timestamp;
-		String timestampStr;
-		Double timeScore;
+		long now;
 		
-		timestamp = Instant.now();
-		timestampStr = timestamp.toString();
-		// we use millis for sorting purposes
-		timeScore = Double.valueOf(System.currentTimeMillis());
-		tsField = JebusBible.getStringKey(JebusKey.SESSION_TIMESTAMP, jebusPool);
-		try (Jedis jebus = jebusPool.getResource()) {
-			// set hash timestamp field
-			jebus.hset(hashKey, tsField, timestampStr);
-			jebus.expire(hashKey, SESSIONTTL);
-			// set timeline key
-			jebus.zadd(timelineKey, timeScore, alixianID.toString());
-			// clean up timeline
-			timeScore = timeScore - (SESSIONTTL * 1000);
-			jebus.zremrangeByScore(timelineKey, 0, timeScore);
+		now = System.currentTimeMillis();
+		synchronized (this) {
+			putField(JebusKey.SESSION_TIMESTAMP, Instant.ofEpochMilli(now).toString());
+			touchedMillis = now;
+			lastTouched = now;
 		}
+		SessionCache.markDirty(this);
 	}
 
     /**
@@ -121,13 +147,9 @@ public class Session {
      */
     public SessionType getSessionType() {
 		String typeStr;
-		String field;
 		SessionType type;
         
-		field = JebusBible.getStringKey(JebusKey.SESSION_SESSIONTYPE, jebusPool);
-		try (Jedis jebus = jebusPool.getResource()) {
-			typeStr = jebus.hget(hashKey, field);
-		}
+		typeStr = getField(JebusKey.SESSION_SESSIONTYPE);
         type = SessionType.valueOf(typeStr);
 		return type;
     }
@@ -138,13 +160,9 @@ public class Session {
      * @param type The session type
      */
     public void setSessionType(SessionType type) {
-		String field;
        
         SharedUtils.checkNotNull(type);
-		field = JebusBible.getStringKey(JebusKey.SESSION_SESSIONTYPE, jebusPool);
-		try (Jedis jebus = jebusPool.getResource()) {
-			jebus.hset(hashKey, field, type.name());
-		}
+		setField(JebusKey.SESSION_SESSIONTYPE, type.name());
     }
 
     /**
@@ -155,13 +173,9 @@ public class Session {
      */
     public Boolean isQuiet() {
 		String typeStr;
-		String field;
 		Boolean quiet;
         
-		field = JebusBible.getStringKey(JebusKey.SESSION_ISQUIET, jebusPool);
-		try (Jedis jebus = jebusPool.getResource()) {
-			typeStr = jebus.hget(hashKey, field);
-		}
+		typeStr = getField(JebusKey.SESSION_ISQUIET);
         quiet = Boolean.parseBoolean(typeStr);
 		return quiet;
     }
@@ -172,13 +186,9 @@ public class Session {
      * @param quiet True if it's "quiet time"
      */
     public void setIsQuiet(Boolean quiet) {
-		String field;
 
         SharedUtils.checkNotNull(quiet);
-		field = JebusBible.getStringKey(JebusKey.SESSION_ISQUIET, jebusPool);
-		try (Jedis jebus = jebusPool.getResource()) {
-			jebus.hset(hashKey, field, quiet.toString());
-		}
+		setField(JebusKey.SESSION_ISQUIET, quiet.toString());
     }
 	
 	/**
@@ -188,13 +198,9 @@ public class Session {
 	 */
 	public LocalDateTime getTimestamp() {
 		Instant instant;
-		String field;
 		String timestampStr;
 		
-		field = JebusBible.getStringKey(JebusKey.SESSION_TIMESTAMP, jebusPool);
-		try (Jedis jebus = jebusPool.getResource()) {
-			timestampStr = jebus.hget(hashKey, field);
-		}
+		timestampStr = getField(JebusKey.SESSION_TIMESTAMP);
 		if (timestampStr == null) {
 			return null;
 		}
@@ -209,14 +215,10 @@ public class Session {
 	 */
 	public SerialUUID<SerialPerson> getPersonUUID() {
 		String personStr;
-		String field;
 		
-		field = JebusBible.getStringKey(JebusKey.SESSION_PERSONUUID, jebusPool);
-		try (Jedis jebus = jebusPool.getResource()) {
-			personStr = jebus.hget(hashKey, field);
-			if (personStr != null) {
-				return new SerialUUID<>(personStr);
-			}
+		personStr = getField(JebusKey.SESSION_PERSONUUID);
+		if (personStr != null) {
+			return new SerialUUID<>(personStr);
 		}
 		return null;
 	}
@@ -227,16 +229,12 @@ public class Session {
 	 * @param personUUID
 	 */
 	public void setPersonUUID(SerialUUID<SerialPerson> personUUID) {
-		String field;
 		
 		SharedUtils.nullsOkay(personUUID);
-		field = JebusBible.getStringKey(JebusKey.SESSION_PERSONUUID, jebusPool);
-		try (Jedis jebus = jebusPool.getResource()) {
-			if (personUUID == null) {
-				jebus.hdel(hashKey, field);
-			} else {
-				jebus.hset(hashKey, field, personUUID.getUUIDString());
-			}
+		if (personUUID == null) {
+			setField(JebusKey.SESSION_PERSONUUID, null);
+		} else {
+			setField(JebusKey.SESSION_PERSONUUID, personUUID.getUUIDString());
 		}
 	}
 	
@@ -247,12 +245,8 @@ public class Session {
 	 */
 	public SerialUUID<SerialStation> getStationUUID() {
 		String uuid;
-		String field;
 		
-		field = JebusBible.getStringKey(JebusKey.SESSION_STATIONID, jebusPool);
-		try (Jedis jebus = jebusPool.getResource()) {
-			uuid = jebus.hget(hashKey, field);
-		}
+		uuid = getField(JebusKey.SESSION_STATIONID);
 		return new SerialUUID<>(uuid);
 	}
 
@@ -262,13 +256,9 @@ public class Session {
 	 * @param uuid
 	 */
 	public void setStationUUID(SerialUUID<SerialStation> uuid) {
-		String field;
 		
 		SharedUtils.checkNotNull(uuid);
-		field = JebusBible.getStringKey(JebusKey.SESSION_STATIONID, jebusPool);
-		try (Jedis jebus = jebusPool.getResource()) {
-			jebus.hset(hashKey, field, uuid.getUUIDString());
-		}
+		setField(JebusKey.SESSION_STATIONID, uuid.getUUIDString());
 	}
 
 	/**
@@ -278,12 +268,8 @@ public class Session {
 	 */
 	public Language getLanguage() {
 		String language;
-		String field;
 		
-		field = JebusBible.getStringKey(JebusKey.SESSION_LANGUAGE, jebusPool);
-		try (Jedis jebus = jebusPool.getResource()) {
-			language = jebus.hget(hashKey, field);
-		}
+		language = getField(JebusKey.SESSION_LANGUAGE);
 		return Language.valueOf(language);
 	}
 
@@ -292,13 +278,9 @@ public class Session {
 	 * @param language
 	 */
 	public void setLanguage(Language language) {
-		String field;
 		
 		SharedUtils.checkNotNull(language);
-		field = JebusBible.getStringKey(JebusKey.SESSION_LANGUAGE, jebusPool);
-		try (Jedis jebus = jebusPool.getResource()) {
-			jebus.hset(hashKey, field, language.name());
-		}
+		setField(JebusKey.SESSION_LANGUAGE, language.name());
 	}
 	
 	public AlixianID getAlixianID() {
@@ -306,6 +288,152 @@ public class Session {
 		return alixianID;
 	}
 	
+	/**
+	 * Get a field from the local copy, reloading it from Redis first if it's stale.
+	 * 
+	 * @param key The field key
+	 * @return The field value, or null if it isn't set
+	 */
+	private synchronized String getField(JebusKey key) {
+		String field;
+		
+		field = JebusBible.getStringKey(key, jebusPool);
+		if (System.currentTimeMillis() - loadedMillis > MAX_STALENESS) {
+			reload();
+		}
+		return fields.get(field);
+	}
+	
+	/**
+	 * Set a field in the local copy and schedule it to be written to Redis.
+	 * 
+	 * @param key The field key
+	 * @param value The field value, or null to remove the field
+	 */
+	private void setField(JebusKey key, String value) {
+		
+		synchronized (this) {
+			putField(key, value);
+		}
+		SessionCache.markDirty(this);
+	}
+	
+	/**
+	 * Change a field in the local copy and mark it dirty. The caller holds the lock.
+	 * 
+	 * @param key The field key
+	 * @param value The field value, or null to remove the field
+	 */
+	private void putField(JebusKey key, String value) {
+		String field;
+		
+		field = JebusBible.getStringKey(key, jebusPool);
+		if (value == null) {
+			fields.remove(field);
+		} else {
+			fields.put(field, value);
+		}
+		dirtyFields.put(field, value);
+	}
+	
+	/**
+	 * Reload the local copy from Redis with one HGETALL, keeping any changes that haven't
+	 * been written yet, including the ones the flusher is writing right now. The caller 
+	 * holds the lock.
+	 * 
+	 */
+	private void reload() {
+		Map<String, String> stored;
+		
+		try (Jedis jebus = jebusPool.getResource()) {
+			stored = jebus.hgetAll(hashKey);
+		}
+		fields.clear();
+		fields.putAll(stored);
+		overlayFields(inFlightFields);
+		overlayFields(dirtyFields);
+		loadedMillis = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Lay unwritten changes over the local copy. The caller holds the lock.
+	 * 
+	 * @param changes The changed fields; a null value means the field was removed
+	 */
+	private void overlayFields(Map<String, String> changes) {
+		
+		for (Map.Entry<String, String> change : changes.entrySet()) {
+			if (change.getValue() == null) {
+				fields.remove(change.getKey());
+			} else {
+				fields.put(change.getKey(), change.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * Hand over the changes that haven't been written yet. They stay on as in-flight
+	 * changes, so a reload doesn't lose them, until the flusher calls commitChanges
+	 * or restoreChanges.
+	 * 
+	 * @return The changes, or null if there aren't any
+	 */
+	synchronized SessionChanges drainChanges() {
+		SessionChanges changes;
+		
+		if (dirtyFields.isEmpty() && touchedMillis == null) {
+			return null;
+		}
+		changes = new SessionChanges(this, new HashMap<>(dirtyFields), touchedMillis);
+		inFlightFields.putAll(dirtyFields);
+		dirtyFields.clear();
+		touchedMillis = null;
+		return changes;
+	}
+	
+	/**
+	 * The changes are in Redis now, so a reload will pick them up and we can stop
+	 * holding on to them.
+	 * 
+	 * @param changes The changes
+	 */
+	synchronized void commitChanges(SessionChanges changes) {
+		
+		SharedUtils.checkNotNull(changes);
+		for (String field : changes.getFields().keySet()) {
+			inFlightFields.remove(field);
+		}
+	}
+	
+	/**
+	 * Take back changes that couldn't be written, except where they've been changed again since.
+	 * 
+	 * @param changes The changes
+	 */
+	synchronized void restoreChanges(SessionChanges changes) {
+		
+		SharedUtils.checkNotNull(changes);
+		for (Map.Entry<String, String> field : changes.getFields().entrySet()) {
+			inFlightFields.remove(field.getKey());
+			if (!dirtyFields.containsKey(field.getKey())) {
+				dirtyFields.put(field.getKey(), field.getValue());
+			}
+		}
+		if (touchedMillis == null) {
+			touchedMillis = changes.getTouchedMillis();
+		}
+	}
+	
+	String getHashKey() {
+		
+		return hashKey;
+	}
+	
+	long getLastTouched() {
+		
+		return lastTouched;
+	}
+	
 	/**
 	 * Get a list of currently-active sessions for the person.
 	 *
@@ -334,7 +462,7 @@ public class Session {
 	/**
 	 * Get a list of the currently-active sessions. Note that the session data might be
 	 * gone when you try to access it after the list has been created, if it expired in
-	 * the meantime.
+	 * the meantime. We flush our own changes first so our new sessions are on the timeline.
 	 * 
 	 * @return The list of sessions
 	 */
@@ -346,17 +474,63 @@ public class Session {
 		Session session;
 		AlixianID alixianID;
 		
+		SessionCache.flush();
 		jebusPool = JebusHub.getJebusCentral();
 		timelineKey = JebusBible.getStringKey(JebusKey.SESSION_TIMELINE, jebusPool);
 		try (Jedis jebus = jebusPool.getResource()) {
 			alixianIDStrs = jebus.zrange(timelineKey, 0, -1);
-	        sessions = new ArrayList<>(alixianIDStrs.size());
-	        for (String str : alixianIDStrs) {
-	            alixianID = new AlixianID(str);
-	            session = new Session(alixianID);
-	            sessions.add(session);
-	        }
-	        return sessions;
+		}
+        sessions = new ArrayList<>(alixianIDStrs.size());
+        for (String str : alixianIDStrs) {
+            alixianID = new AlixianID(str);
+            session = SessionCache.getSession(alixianID);
+            sessions.add(session);
+        }
+        return sessions;
+	}
+	
+	/**
+	 * The changes to one session that are on their way to Redis.
+	 * 
+	 */
+	static final class SessionChanges {
+		private final Session session;
+		private final Map<String, String> fields;
+		private final Long touchedMillis;
+		
+		SessionChanges(Session session, Map<String, String> fields, Long touchedMillis) {
+			
+			SharedUtils.checkNotNull(session);
+			SharedUtils.checkNotNull(fields);
+			SharedUtils.nullsOkay(touchedMillis);
+			this.session = session;
+			this.fields = fields;
+			this.touchedMillis = touchedMillis;
+		}
+		
+		Session getSession() {
+			
+			return session;
+		}
+		
+		/**
+		 * The changed fields; a null value means the field was removed.
+		 * 
+		 * @return The fields
+		 */
+		Map<String, String> getFields() {
+			
+			return fields;
+		}
+		
+		/**
+		 * When the session was last touched, if that's changed.
+		 * 
+		 * @return The time in millis, or null
+		 */
+		Long getTouchedMillis() {
+			
+			return touchedMillis;
 		}
 	}
 }
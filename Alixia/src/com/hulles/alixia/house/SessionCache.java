@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.house;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.hulles.alixia.api.jebus.JebusBible;
+import com.hulles.alixia.api.jebus.JebusBible.JebusKey;
+import com.hulles.alixia.api.jebus.JebusHub;
+import com.hulles.alixia.api.jebus.JebusPool;
+import com.hulles.alixia.api.remote.AlixianID;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.api.tools.StageTimer;
+import com.hulles.alixia.house.Session.SessionChanges;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+/**
+ * SessionCache keeps the Sessions for this process and writes their changes to Jebus behind 
+ * them. Every FLUSH_INTERVAL milliseconds the flusher sends the changed fields of all the dirty 
+ * sessions, their expirations, their timeline entries and the timeline cleanup to Jebus as one 
+ * pipeline. So a change is in Jebus no later than FLUSH_INTERVAL after it's made (unless Jebus
+ * is down, in which case we keep the changes and try again next time).
+ * <p>
+ * Sessions nobody has touched in a session lifetime are dropped from the cache; Jebus will have
+ * expired them by then anyway.
+ * 
+ * @author hulles
+ *
+ */
+final class SessionCache {
+	private final static Logger LOGGER = LoggerFactory.getLogger(SessionCache.class);
+	final static long FLUSH_INTERVAL = 250; // milliseconds
+	private final static ConcurrentMap<AlixianID, Session> SESSIONS = new ConcurrentHashMap<>();
+	private final static Set<Session> DIRTY = ConcurrentHashMap.newKeySet();
+	private final static StageTimer REDIS_TIMER = StageTimer.forStage(StageTimer.REDIS);
+	private static ScheduledExecutorService flusher = null;
+	private static boolean closed = false;
+	
+	private SessionCache() {
+		// need to keep this private
+	}
+	
+	/**
+	 * Get the cached session for an Alixian, creating it if need be.
+	 * 
+	 * @param alixianID The ID of the Alixian
+	 * @return The session
+	 */
+	static Session getSession(AlixianID alixianID) {
+		Session session;
+		Session existing;
+		
+		SharedUtils.checkNotNull(alixianID);
+		session = SESSIONS.get(alixianID);
+		if (session == null) {
+			session = new Session(alixianID);
+			existing = SESSIONS.putIfAbsent(alixianID, session);
+			if (existing != null) {
+				session = existing;
+			}
+		}
+		return session;
+	}
+	
+	/**
+	 * Note that a session has changes that need to go to Jebus.
+	 * 
+	 * @param session The session
+	 */
+	static void markDirty(Session session) {
+		
+		SharedUtils.checkNotNull(session);
+		DIRTY.add(session);
+		if (isClosed()) {
+			flush();
+		} else {
+			ensureFlusher();
+		}
+	}
+	
+	/**
+	 * Start the flusher the first time somebody needs it.
+	 * 
+	 */
+	private static synchronized void ensureFlusher() {
+		ThreadFactory factory;
+		
+		if (flusher != null || closed) {
+			return;
+		}
+		factory = new ThreadFactoryBuilder()
+				.setNameFormat("Session-flusher-%d")
+				.setDaemon(true)
+				.build();
+		flusher = Executors.newSingleThreadScheduledExecutor(factory);
+		flusher.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					flush();
+					evictIdleSessions();
+				} catch (RuntimeException ex) {
+					LOGGER.error("SessionCache: unable to flush sessions", ex);
+				}
+			}
+		}, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(new ShutdownHook()));
+	}
+	
+	/**
+	 * Send all the pending session changes to Jebus in one pipeline. If the pipeline fails
+	 * the changes go back on their sessions, unless they've been overwritten in the meantime.
+	 * Until one or the other happens the sessions keep the changes in flight, so a reload
+	 * in the meantime doesn't lose them.
+	 * 
+	 */
+	static synchronized void flush() {
+		List<SessionChanges> allChanges;
+		Iterator<Session> iter;
+		SessionChanges changes;
+		JebusPool jebusPool;
+		Pipeline pipeline;
+		String timelineKey;
+		long now;
+		long startNanos;
+		
+		if (DIRTY.isEmpty()) {
+			return;
+		}
+		allChanges = new ArrayList<>(DIRTY.size());
+		iter = DIRTY.iterator();
+		while (iter.hasNext()) {
+			changes = iter.next().drainChanges();
+			iter.remove();
+			if (changes != null) {
+				allChanges.add(changes);
+			}
+		}
+		if (allChanges.isEmpty()) {
+			return;
+		}
+		now = System.currentTimeMillis();
+		jebusPool = JebusHub.getJebusCentral();
+		timelineKey = JebusBible.getStringKey(JebusKey.SESSION_TIMELINE, jebusPool);
+		startNanos = REDIS_TIMER.start();
+		try (Jedis jebus = jebusPool.getResource()) {
+			pipeline = jebus.pipelined();
+			for (SessionChanges sessionChanges : allChanges) {
+				queueChanges(pipeline, sessionChanges, timelineKey);
+			}
+			// clean up timeline
+			pipeline.zremrangeByScore(timelineKey, 0, now - (Session.SESSIONTTL * 1000L));
+			pipeline.sync();
+		} catch (RuntimeException ex) {
+			for (SessionChanges sessionChanges : allChanges) {
+				sessionChanges.getSession().restoreChanges(sessionChanges);
+				DIRTY.add(sessionChanges.getSession());
+			}
+			throw ex;
+		} finally {
+			REDIS_TIMER.stop(startNanos);
+		}
+		for (SessionChanges sessionChanges : allChanges) {
+			sessionChanges.getSession().commitChanges(sessionChanges);
+		}
+		LOGGER.debug("SessionCache: flushed {} sessions", allChanges.size());
+	}
+	
+	/**
+	 * Add one session's changes to the pipeline.
+	 * 
+	 * @param pipeline The pipeline
+	 * @param changes The session's changes
+	 * @param timelineKey The session timeline key
+	 */
+	private static void queueChanges(Pipeline pipeline, SessionChanges changes, String timelineKey) {
+		Session session;
+		String hashKey;
+		
+		session = changes.getSession();
+		hashKey = session.getHashKey();
+		for (Map.Entry<String, String> field : changes.getFields().entrySet()) {
+			if (field.getValue() == null) {
+				pipeline.hdel(hashKey, field.getKey());
+			} else {
+				pipeline.hset(hashKey, field.getKey(), field.getValue());
+			}
+		}
+		pipeline.expire(hashKey, Session.SESSIONTTL);
+		if (changes.getTouchedMillis() != null) {
+			// we use millis for sorting purposes
+			pipeline.zadd(timelineKey, changes.getTouchedMillis().doubleValue(), session.getAlixianID().toString());
+		}
+	}
+	
+	/**
+	 * Drop the sessions that have outlived their TTL without being touched.
+	 * 
+	 */
+	private static void evictIdleSessions() {
+		long cutoff;
+		
+		cutoff = System.currentTimeMillis() - (Session.SESSIONTTL * 1000L);
+		for (Session session : SESSIONS.values()) {
+			if (session.getLastTouched() < cutoff && !DIRTY.contains(session)) {
+				SESSIONS.remove(session.getAlixianID(), session);
+			}
+		}
+	}
+	
+	/**
+	 * Stop the flusher and write out whatever is left. After this, session changes
+	 * are written through to Jebus as they're made.
+	 * 
+	 */
+	static void close() {
+		ScheduledExecutorService oldFlusher;
+		
+		synchronized (SessionCache.class) {
+			closed = true;
+			oldFlusher = flusher;
+			flusher = null;
+		}
+		if (oldFlusher != null) {
+			oldFlusher.shutdown();
+			try {
+				oldFlusher.awaitTermination(5, TimeUnit.SECONDS);
+			} catch (InterruptedException ex) {
+				oldFlusher.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+		}
+		flush();
+	}
+	
+	/**
+	 * Is the cache closed, i.e. should changes be written through rather than behind?
+	 * 
+	 * @return True if the cache is closed
+	 */
+	static synchronized boolean isClosed() {
+		
+		return closed;
+	}
+	
+	/**
+	 * This mini-class flushes the sessions if we're going down without being closed.
+	 * 
+	 */
+	private static class ShutdownHook implements Runnable {
+		
+	    @Override
+		public void run() {
+	    	
+	    	if (isClosed()) {
+	    		return;
+	    	}
+	    	LOGGER.info("SessionCache: exceptional shutdown, flushing sessions");
+	    	try {
+	    		close();
+	    	} catch (RuntimeException ex) {
+	    		LOGGER.error("SessionCache: unable to flush sessions at shutdown", ex);
+	    	}
+	    }
+	}
+}
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.room;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.room.document.RoomRequest;
+import com.hulles.alixia.room.document.RoomResponse;
+
+/**
+ * A ResponseCollector gathers the responses to one room request without any locking. Each 
+ * arriving response claims the next slot with a compare-and-set on the response count, and 
+ * whoever seals the collector first -- the last response or the deadline -- completes the 
+ * collector's future with the list of responses. Anything that shows up after that is late.
+ * If we're shutting down we just abandon the collector, which cancels the future instead.
+ * 
+ * @author hulles
+ *
+ */
+final class ResponseCollector {
+	private final static int SEALED = Integer.MIN_VALUE; // the high bit of the state
+	private final RoomRequest request;
+	private final int expectedCount;
+	private final AtomicReferenceArray<RoomResponse> responses;
+	private final AtomicInteger state;
+	private final CompletableFuture<List<RoomResponse>> completion;
+	private volatile ScheduledFuture<?> deadline;
+	private volatile boolean expired;
+	
+	ResponseCollector(RoomRequest request, int expectedCount) {
+		
+		SharedUtils.checkNotNull(request);
+		this.request = request;
+		this.expectedCount = expectedCount;
+		responses = new AtomicReferenceArray<>(Math.max(expectedCount, 0));
+		state = new AtomicInteger(0);
+		completion = new CompletableFuture<>();
+		expired = false;
+	}
+	
+	/**
+	 * Get the request whose responses we're collecting.
+	 * 
+	 * @return The request
+	 */
+	RoomRequest getRequest() {
+		
+		return request;
+	}
+	
+	/**
+	 * Get the number of responses we expect.
+	 * 
+	 * @return The expected count
+	 */
+	int getExpectedCount() {
+		
+		return expectedCount;
+	}
+	
+	/**
+	 * Get the number of responses that have claimed a slot so far.
+	 * 
+	 * @return The response count
+	 */
+	int getResponseCount() {
+		
+		return state.get() & ~SEALED;
+	}
+	
+	/**
+	 * Return true if the collector has been sealed, either because all the responses are
+	 * in or because the deadline passed.
+	 * 
+	 * @return True if sealed
+	 */
+	boolean isSealed() {
+		
+		return (state.get() & SEALED) != 0;
+	}
+	
+	/**
+	 * Get the future that completes with the collected responses when the collector is sealed,
+	 * or is cancelled if the collector is abandoned.
+	 * 
+	 * @return The future
+	 */
+	CompletableFuture<List<RoomResponse>> getCompletion() {
+		
+		return completion;
+	}
+	
+	/**
+	 * Return true if the collector was sealed by the deadline rather than by the last response.
+	 * This is good once the future has completed.
+	 * 
+	 * @return True if the request expired
+	 */
+	boolean isExpired() {
+		
+		return expired;
+	}
+	
+	/**
+	 * Set the deadline for the request, so we can cancel it if the responses are all in on time.
+	 * 
+	 * @param deadline The scheduled deadline
+	 */
+	void setDeadline(ScheduledFuture<?> deadline) {
+		
+		SharedUtils.checkNotNull(deadline);
+		this.deadline = deadline;
+		if (isSealed()) {
+			// we beat the deadline before it was even set
+			deadline.cancel(false);
+		}
+	}
+	
+	/**
+	 * Add a response to the collector.
+	 * 
+	 * @param response The response
+	 * @return The number of responses including this one, or -1 if the response is late 
+	 * (the collector is sealed or already has all the responses it expects)
+	 */
+	int addResponse(RoomResponse response) {
+		int current;
+		
+		SharedUtils.checkNotNull(response);
+		do {
+			current = state.get();
+			if ((current & SEALED) != 0 || current >= expectedCount) {
+				return -1;
+			}
+		} while (!state.compareAndSet(current, current + 1));
+		responses.set(current, response);
+		return current + 1;
+	}
+	
+	/**
+	 * Seal the collector so that no more responses are accepted, and complete the future with
+	 * the responses collected so far. Only the first caller gets to do this. Whatever is 
+	 * waiting on the future runs on the caller's thread.
+	 * 
+	 * @param expiring True if we're being called by the deadline, false if all the responses 
+	 * are in (in which case we cancel the deadline)
+	 * @return True if we sealed it, false if somebody else already had
+	 */
+	boolean seal(boolean expiring) {
+		List<RoomResponse> collected;
+		
+		collected = close(!expiring);
+		if (collected == null) {
+			return false;
+		}
+		expired = expiring;
+		completion.complete(collected);
+		return true;
+	}
+	
+	/**
+	 * Seal the collector without completing the request, e.g. when the room is shutting down.
+	 * 
+	 */
+	void abandon() {
+		
+		if (close(true) != null) {
+			completion.cancel(false);
+		}
+	}
+	
+	/**
+	 * Flip the sealed bit and gather the responses.
+	 * 
+	 * @param cancelDeadline True if the deadline should be cancelled
+	 * @return The responses, or null if somebody else already sealed the collector
+	 */
+	private List<RoomResponse> close(boolean cancelDeadline) {
+		List<RoomResponse> collected;
+		ScheduledFuture<?> timer;
+		RoomResponse response;
+		int current;
+		
+		do {
+			current = state.get();
+			if ((current & SEALED) != 0) {
+				return null;
+			}
+		} while (!state.compareAndSet(current, current | SEALED));
+		timer = deadline;
+		if (cancelDeadline && timer != null) {
+			timer.cancel(false);
+		}
+		collected = new ArrayList<>(current);
+		for (int i = 0; i < current; i++) {
+			// a response that claimed its slot just before we sealed might not be stored yet
+			while ((response = responses.get(i)) == null) {
+				Thread.onSpinWait();
+			}
+			collected.add(response);
+		}
+		return collected;
+	}
+}
@@ -24,23 +24,31 @@ package com.hulles.alixia.room;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ListMultimap;
-import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.SetMultimap;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.AtomicLongMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.hulles.alixia.api.AlixiaConstants;
 import com.hulles.alixia.api.shared.AlixiaException;
 import com.hulles.alixia.api.shared.SerialSememe;
@@ -55,6 +63,7 @@ import com.hulles.alixia.room.document.WhatSememesAction;
 import com.hulles.alixia.ticket.ActionPackage;
 import com.hulles.alixia.ticket.SememePackage;
 import com.hulles.alixia.ticket.Ticket;
+import com.hulles.alixia.tools.AlixiaExecutors;
 
 /**
  * UrRoom is the base room (superclass) for all the Mind rooms. It contains the logic to send
@@ -65,21 +74,21 @@ import com.hulles.alixia.ticket.Ticket;
  */
 public abstract class UrRoom extends AbstractIdleService {
 	private final static Logger LOGGER = LoggerFactory.getLogger(UrRoom.class);
+	private final static long DEFAULT_RESPONSE_TIMEOUT = 30 * 1000; // 30 seconds
+	private final static ScheduledExecutorService DEADLINE_TIMER = createDeadlineTimer();
+	private final static AtomicLongMap<Room> timeoutCounts = AtomicLongMap.create();
+	private final static AtomicLongMap<Room> lateCounts = AtomicLongMap.create();
 	private EventBus hall;
-    private static SetMultimap<SerialSememe, Room> sememeRooms;
+    private static volatile SetMultimap<SerialSememe, Room> sememeRooms;
     private static ImmutableSet<Room> implementedRooms;
 	private ImmutableSet<SerialSememe> roomSememes;
-	private final ListMultimap<Long, RoomResponse> responseCabinet;
-	private final ConcurrentMap<Long, RoomRequest> requestCabinet;
-	private final ExecutorService threadPool;
+	private final ConcurrentMap<Long, ResponseCollector> responseCabinet;
+	private ExecutorService threadPool;
 	boolean shuttingDownOnClose = false;
 	
 	public UrRoom() {
 								
-		responseCabinet = MultimapBuilder.hashKeys().arrayListValues().build();
-		requestCabinet = new ConcurrentHashMap<>();
-		threadPool = Executors.newCachedThreadPool();
-		addDelayedShutdownHook(threadPool);
+		responseCabinet = new ConcurrentHashMap<>();
 	}
 	public UrRoom(EventBus hallBus) {
         this();
@@ -153,6 +162,58 @@ public abstract class UrRoom extends AbstractIdleService {
         return sememeRooms.get(sememe);
     }
 	
+	/**
+	 * Figure out which rooms should receive a request, based on the sememes each room advertised
+	 * in response to the WHAT_SEMEMES query. If we don't know yet (i.e. the WHAT_SEMEMES query itself 
+	 * or anything sent before it's answered), or if no room has advertised any of the request's sememes, 
+	 * we fall back to the old broadcast to all the implemented rooms, which is indicated by a null return.
+	 * 
+	 * @param request The outgoing request
+	 * @return The set of target rooms, or null for a broadcast
+	 */
+	static Set<Room> routeRequest(RoomRequest request) {
+		SetMultimap<SerialSememe, Room> routes;
+		Set<Room> targets;
+		SerialSememe sememe;
+		
+		SharedUtils.checkNotNull(request);
+		routes = sememeRooms;
+		if (routes == null) {
+			return null;
+		}
+		targets = EnumSet.noneOf(Room.class);
+		for (SememePackage pkg : request.getSememePackages()) {
+			sememe = pkg.getSememe();
+			if (sememe.is("what_sememes")) {
+				// everybody has to answer this one
+				return null;
+			}
+			targets.addAll(routes.get(sememe));
+		}
+		if (targets.isEmpty()) {
+			return null;
+		}
+		return targets;
+	}
+	
+	/**
+	 * Get the number of responses we expect for a request: one from each target room
+	 * if it was routed, one from every implemented room if it was broadcast.
+	 * 
+	 * @param request The original request
+	 * @return The expected count of responses
+	 */
+	private static Integer getExpectedResponseCount(RoomRequest request) {
+		Set<Room> targets;
+		
+		SharedUtils.checkNotNull(request);
+		targets = request.getTargetRooms();
+		if (targets == null) {
+			return getImplementedRoomCount();
+		}
+		return targets.size();
+	}
+	
 	/**
 	 * Post a room request on the bus if it's ready. If not, it generates an error message and returns.
 	 * 
@@ -160,6 +221,7 @@ public abstract class UrRoom extends AbstractIdleService {
 	 */
 	public void sendRoomRequest(RoomRequest request) {
 		RoomDocumentType docType;
+		final ResponseCollector collector;
         
 		SharedUtils.checkNotNull(request);
 		docType = request.getDocumentType();
@@ -173,10 +235,222 @@ public abstract class UrRoom extends AbstractIdleService {
 			LOGGER.error("Someone is trying to forge a document! Document is really from {}, forged room is {}", getThisRoom(), request.getFromRoom());
 			return;
 		}
-		requestCabinet.put(request.getDocumentID(), request);
+		request.setTargetRooms(routeRequest(request));
+		collector = new ResponseCollector(request, getExpectedResponseCount(request));
+		collector.getCompletion().thenAccept(new Consumer<List<RoomResponse>>() {
+			@Override
+			public void accept(List<RoomResponse> responses) {
+				requestCompleted(collector, responses);
+			}
+		});
+		responseCabinet.put(request.getDocumentID(), collector);
+		scheduleDeadline(collector);
 		hall.post(request);
 	}
 	
+	/**
+	 * Start the clock on a request we've sent. If all the responses aren't in by the deadline, 
+	 * we go ahead with whatever we've got.
+	 * 
+	 * @param collector The response collector for the outgoing request
+	 */
+	private void scheduleDeadline(ResponseCollector collector) {
+		ScheduledFuture<?> deadline;
+		RoomRequest request;
+		final Long requestID;
+		Long timeout;
+		
+		SharedUtils.checkNotNull(collector);
+		request = collector.getRequest();
+		requestID = request.getDocumentID();
+		timeout = request.getResponseTimeout();
+		if (timeout == null) {
+			timeout = getResponseTimeout();
+		}
+		deadline = DEADLINE_TIMER.schedule(new Runnable() {
+			@Override
+			public void run() {
+				requestExpired(requestID);
+			}
+		}, timeout, TimeUnit.MILLISECONDS);
+		collector.setDeadline(deadline);
+	}
+	
+	/**
+	 * The deadline for a request has passed, so we complete it with the partial set of responses 
+	 * on our own thread pool rather than tie up the deadline timer.
+	 * 
+	 * @param requestID The document ID of the expired request
+	 */
+	void requestExpired(final Long requestID) {
+		
+		SharedUtils.checkNotNull(requestID);
+		if (!responseCabinet.containsKey(requestID)) {
+			return;
+		}
+		try {
+			threadPool.submit(new Runnable() {
+				@Override
+				public void run() {
+					completeRequest(requestID, true);
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			LOGGER.debug("UrRoom for {}: request {} expired during shutdown", getThisRoom().getDisplayName(), requestID);
+		}
+	}
+	
+	/**
+	 * Complete a request, either because all the responses are in or because the deadline passed.
+	 * Whoever seals the request's collector first completes its future, which gets the 
+	 * responses processed (see requestCompleted); anybody else just goes away, and any 
+	 * responses that show up afterwards are discarded as late.
+	 * 
+	 * @param requestID The document ID of the request
+	 * @param expired True if the deadline passed before all the responses were in
+	 */
+	private void completeRequest(Long requestID, boolean expired) {
+		ResponseCollector collector;
+		
+		SharedUtils.checkNotNull(requestID);
+		collector = responseCabinet.get(requestID);
+		if (collector == null) {
+			return;
+		}
+		if (!collector.seal(expired)) {
+			LOGGER.debug("UrRoom for {}: request {} was already completed", getThisRoom().getDisplayName(), requestID);
+		}
+	}
+	
+	/**
+	 * The collector's future has completed, so clear the request out of the cabinet and 
+	 * process its responses. This runs on whichever thread sealed the collector. The future
+	 * would swallow anything processRoomResponses throws, so we log it here.
+	 * 
+	 * @param collector The request's collector
+	 * @param responses The responses we got
+	 */
+	private void requestCompleted(ResponseCollector collector, List<RoomResponse> responses) {
+		RoomRequest request;
+		Long requestID;
+		
+		request = collector.getRequest();
+		requestID = request.getDocumentID();
+		responseCabinet.remove(requestID, collector);
+		if (collector.isExpired()) {
+			recordTimeouts(request, responses);
+		}
+		LOGGER.debug("Done with {}; there are {} requests remaining in the cabinet", requestID, responseCabinet.size());
+		try {
+			processRoomResponses(request, responses);
+		} catch (RuntimeException ex) {
+			LOGGER.error("UrRoom for {}: unable to process responses to request {}", 
+					getThisRoom().getDisplayName(), requestID, ex);
+		}
+	}
+	
+	/**
+	 * Tally up the rooms that didn't respond to an expired request.
+	 * 
+	 * @param request The expired request
+	 * @param responses The responses we did get
+	 */
+	private void recordTimeouts(RoomRequest request, List<RoomResponse> responses) {
+		Set<Room> missingRooms;
+		Set<Room> targets;
+		
+		SharedUtils.checkNotNull(request);
+		SharedUtils.checkNotNull(responses);
+		missingRooms = EnumSet.noneOf(Room.class);
+		targets = request.getTargetRooms();
+		if (targets == null) {
+			missingRooms.addAll(getImplementedRooms());
+		} else {
+			missingRooms.addAll(targets);
+		}
+		for (RoomResponse response : responses) {
+			missingRooms.remove(response.getFromRoom());
+		}
+		for (Room room : missingRooms) {
+			timeoutCounts.incrementAndGet(room);
+		}
+		LOGGER.warn("UrRoom for {}: request {} timed out with {} response(s), still waiting on {}", 
+				getThisRoom().getDisplayName(), request.getDocumentID(), responses.size(), missingRooms);
+	}
+	
+	/**
+	 * Get the default number of milliseconds this room waits for the responses to one of its 
+	 * requests. A request can override this with its own timeout.
+	 * 
+	 * @return The timeout in milliseconds
+	 */
+	protected long getResponseTimeout() {
+		
+		return DEFAULT_RESPONSE_TIMEOUT;
+	}
+	
+	/**
+	 * Get a snapshot of the number of times each room has failed to respond to a request
+	 * before its deadline.
+	 * 
+	 * @return The timeout counts by room
+	 */
+	public static Map<Room, Long> getTimeoutCounts() {
+		
+		return ImmutableMap.copyOf(timeoutCounts.asMap());
+	}
+	
+	/**
+	 * Get a snapshot of the number of late or orphaned responses each room has sent, i.e.
+	 * responses to requests that had already completed or expired.
+	 * 
+	 * @return The late response counts by room
+	 */
+	public static Map<Room, Long> getLateResponseCounts() {
+		
+		return ImmutableMap.copyOf(lateCounts.asMap());
+	}
+	
+	/**
+	 * Log the timeout and late response counts for every room that has either.
+	 * 
+	 */
+	public static void logResponseCounts() {
+		Map<Room, Long> timeouts;
+		Map<Room, Long> lates;
+		Set<Room> rooms;
+		Long timeoutCount;
+		Long lateCount;
+		
+		timeouts = getTimeoutCounts();
+		lates = getLateResponseCounts();
+		rooms = EnumSet.noneOf(Room.class);
+		rooms.addAll(timeouts.keySet());
+		rooms.addAll(lates.keySet());
+		for (Room room : rooms) {
+			timeoutCount = timeouts.get(room);
+			lateCount = lates.get(room);
+			LOGGER.info("Room {}: {} timeouts, {} late responses", room.getDisplayName(),
+					timeoutCount == null ? 0 : timeoutCount, lateCount == null ? 0 : lateCount);
+		}
+	}
+	
+	/**
+	 * Create the timer shared by all the rooms to enforce request deadlines. It's a daemon
+	 * so it doesn't have to be shut down.
+	 * 
+	 * @return The timer
+	 */
+	private static ScheduledExecutorService createDeadlineTimer() {
+		ThreadFactory factory;
+		
+		factory = new ThreadFactoryBuilder()
+				.setNameFormat("UrRoom-deadline-%d")
+				.setDaemon(true)
+				.build();
+		return Executors.newSingleThreadScheduledExecutor(factory);
+	}
+	
 	/**
 	 * Post a room response on the bus if it's ready. If not, it generates an error message and returns.
 	 * 
@@ -209,14 +483,15 @@ public abstract class UrRoom extends AbstractIdleService {
 	}
 
 	/**
-	 * Set the MultiMap set of sememes and the rooms that implement them as discovered by the Controller
+	 * Set the MultiMap set of sememes and the rooms that implement them as discovered by the Controller.
+	 * We keep an immutable copy since it's read by every room on every request.
 	 * 
 	 * @param rooms The set of rooms
 	 */
 	public static void setRoomSememes(SetMultimap<SerialSememe, Room> roomSememes) {
 		
 		SharedUtils.checkNotNull(roomSememes);
-		sememeRooms = roomSememes;
+		sememeRooms = ImmutableSetMultimap.copyOf(roomSememes);
 	}
     
 	/**
@@ -252,12 +527,12 @@ public abstract class UrRoom extends AbstractIdleService {
 		RoomResponse roomResponse;
 		List<SememePackage> sememePackages;
 		SememePackage sememePackage;
-		List<RoomResponse> collectedResponses;
 		Long responseTo;
 		Room toRoom;
+		Room fromRoom;
+		ResponseCollector collector;
 		String thisRoomName;
-        String fromName;
-        int cabinetSize;
+        int responseCount;
         
 		SharedUtils.checkNotNull(document);
         thisRoomName = this.getThisRoom().getDisplayName();
@@ -270,27 +545,25 @@ public abstract class UrRoom extends AbstractIdleService {
 				return;
 			}
 			responseTo = roomResponse.getResponseToRequestID();
-			synchronized (responseCabinet) {
-				responseCabinet.put(responseTo, roomResponse);
-				collectedResponses = responseCabinet.get(responseTo);
-                fromName = roomResponse.getFromRoom().getDisplayName();
-				LOGGER.debug("put response from {} into cabinet.", fromName);
+			fromRoom = roomResponse.getFromRoom();
+			collector = responseCabinet.get(responseTo);
+			if (collector == null) {
+				responseCount = -1;
+			} else {
+				responseCount = collector.addResponse(roomResponse);
 			}
-			if (collectedResponses.size() == getImplementedRoomCount()) {
-				// we have them all, unless some rascal sent more than one back....
-				// also note that if something blows up the (other) responses will stay
-				// in the cabinet forever -- FIXME
-				roomRequest = requestCabinet.get(responseTo);
-				if (roomRequest == null) {
-					LOGGER.error("UrRoom: couldn't find request for response");
-				}
-				processRoomResponses(roomRequest, collectedResponses);
-				synchronized (responseCabinet) {
-					responseCabinet.removeAll(responseTo);
-				}
-				requestCabinet.remove(responseTo);
-                cabinetSize = responseCabinet.keySet().size();
-				LOGGER.debug("We have them all for {}; there are {} documents remaining in the cabinet", responseTo, cabinetSize);
+			if (responseCount < 0) {
+				// the request has already completed or expired, or we never sent it, or
+				//    some rascal sent more than one response back....
+				lateCounts.incrementAndGet(fromRoom);
+				LOGGER.warn("UrRoom for {}: discarding late or orphaned response from {} to request {}", 
+						thisRoomName, fromRoom.getDisplayName(), responseTo);
+				return;
+			}
+			LOGGER.debug("put response from {} into cabinet.", fromRoom.getDisplayName());
+			if (responseCount == collector.getExpectedCount()) {
+				// we have them all
+				completeRequest(responseTo, false);
 			}
 		} else if (document instanceof RoomAnnouncement) {
 			LOGGER.debug("UrRoom for {}: document is RoomAnnouncement", thisRoomName);
@@ -299,6 +572,10 @@ public abstract class UrRoom extends AbstractIdleService {
 		} else if (document instanceof RoomRequest) {
 			LOGGER.debug("UrRoom for {}: document is RoomRequest", thisRoomName);
 			roomRequest = (RoomRequest) document;
+			if (!roomRequest.isTargetedTo(getThisRoom())) {
+				// it's been routed to other rooms, so we don't answer it
+				return;
+			}
 			// we trap WHAT_SEMEMES before it gets to processRoomRequest
 			sememePackages = roomRequest.getSememePackages(); 
 			sememePackage = SememePackage.consume("what_sememes", sememePackages);
@@ -469,6 +746,10 @@ public abstract class UrRoom extends AbstractIdleService {
         if (getImplementedRoomCount() == null) {
             throw new AlixiaException("Starting room "  + getThisRoom().getDisplayName() + " with null room count");
         }
+        // the executor model isn't chosen until after the rooms are constructed, so we 
+        //    wait until now to create the thread pool
+		threadPool = AlixiaExecutors.newExecutor(getThisRoom().getDisplayName());
+		addDelayedShutdownHook(threadPool);
 		sememes = loadSememes();
 		LOGGER.debug("SEMEMES: {}", sememes.toString());
 		roomSememes = ImmutableSet.copyOf(sememes);
@@ -481,6 +762,10 @@ public abstract class UrRoom extends AbstractIdleService {
 		
 		roomShutdown();
 		hall.unregister(this);
+		for (ResponseCollector collector : responseCabinet.values()) {
+			collector.abandon();
+		}
+		responseCabinet.clear();
 		shuttingDownOnClose = true;
 		shutdownAndAwaitTermination(threadPool);
 	}
@@ -24,16 +24,12 @@ package com.hulles.alixia.room.document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.hulles.alixia.api.jebus.JebusBible;
 import com.hulles.alixia.api.jebus.JebusBible.JebusKey;
-import com.hulles.alixia.api.jebus.JebusHub;
-import com.hulles.alixia.api.jebus.JebusPool;
+import com.hulles.alixia.api.jebus.JebusCounter;
 import com.hulles.alixia.api.shared.SharedUtils;
 import com.hulles.alixia.room.Room;
 import com.hulles.alixia.ticket.Ticket;
 
-import redis.clients.jedis.Jedis;
-
 /**
  * Okay folks, listen up: here are the new Rules:
  * 
@@ -125,13 +121,7 @@ public abstract class RoomDocument {
 	}
 	
 	private static long getNewDocumentID() {
-		JebusPool jebusPool;
-		String key;
-        
-		jebusPool = JebusHub.getJebusCentral();
-		try (Jedis jebus = jebusPool.getResource()) {
-			key = JebusBible.getStringKey(JebusKey.ALIXIADOCUMENTCOUNTERKEY, jebusPool);
-			return jebus.incr(key);
-		}		
+		
+		return JebusCounter.getCounter(JebusKey.ALIXIADOCUMENTCOUNTERKEY).next();
 	}
 }
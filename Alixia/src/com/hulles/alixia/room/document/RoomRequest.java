@@ -22,12 +22,17 @@
 package com.hulles.alixia.room.document;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.hulles.alixia.api.shared.AlixiaException;
 import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.room.Room;
 import com.hulles.alixia.ticket.SememePackage;
 import com.hulles.alixia.ticket.Ticket;
 
@@ -43,6 +48,8 @@ public class RoomRequest extends RoomDocument {
 	private String message;
 	private RoomObject roomObject;
 	private final List<SememePackage> sememePackages;
+	private Set<Room> targetRooms;
+	private Long responseTimeout;
 	
 	public RoomRequest(RoomDocumentType type, Ticket ticket) {
 		super(type, ticket);
@@ -109,6 +116,75 @@ public class RoomRequest extends RoomDocument {
 		this.sememePackages.add(sememePackage);
 	}
 	
+	/**
+	 * Return the rooms to which this request has been routed, or null if the 
+	 * request is a broadcast to all the implemented rooms.
+	 * 
+	 * @return An unmodifiable set of the target rooms, or null
+	 */
+	public Set<Room> getTargetRooms() {
+		
+		return targetRooms;
+	}
+	
+	/**
+	 * Set the rooms to which this request is routed. A null set means the request is
+	 * broadcast to every implemented room, which is how it's always been done.
+	 * 
+	 * @param rooms The target rooms, or null for a broadcast
+	 */
+	public void setTargetRooms(Set<Room> rooms) {
+		Set<Room> copy;
+		
+		SharedUtils.nullsOkay(rooms);
+		if (rooms == null) {
+			this.targetRooms = null;
+		} else {
+			copy = EnumSet.noneOf(Room.class);
+			copy.addAll(rooms);
+			this.targetRooms = Collections.unmodifiableSet(copy);
+		}
+	}
+	
+	/**
+	 * Return true if the given room should process this request, i.e. the request
+	 * is a broadcast or the room is one of its targets.
+	 * 
+	 * @param room The room in question
+	 * @return True if the room should process the request
+	 */
+	public boolean isTargetedTo(Room room) {
+		
+		SharedUtils.checkNotNull(room);
+		return targetRooms == null || targetRooms.contains(room);
+	}
+	
+	/**
+	 * Get the number of milliseconds the requesting room will wait for responses before it 
+	 * goes ahead with whatever it has, or null to use the room default.
+	 * 
+	 * @return The timeout in milliseconds, or null
+	 */
+	public Long getResponseTimeout() {
+		
+		return responseTimeout;
+	}
+	
+	/**
+	 * Set the number of milliseconds the requesting room will wait for responses before it 
+	 * goes ahead with whatever it has. A null timeout means use the room default.
+	 * 
+	 * @param millis The timeout in milliseconds, or null
+	 */
+	public void setResponseTimeout(Long millis) {
+		
+		SharedUtils.nullsOkay(millis);
+		if (millis != null && millis <= 0) {
+			throw new AlixiaException("Response timeout must be positive");
+		}
+		this.responseTimeout = millis;
+	}
+	
 	private String dumpSememes() {
 		StringBuilder sb;
 		boolean first = true;
@@ -147,6 +223,10 @@ public class RoomRequest extends RoomDocument {
 		sb.append(" from ");
 		sb.append(getFromRoom());
 		sb.append(dumpSememes());
+		if (targetRooms != null) {
+			sb.append(" Targets: ");
+			sb.append(targetRooms);
+		}
 		return sb.toString();
 	}
 }
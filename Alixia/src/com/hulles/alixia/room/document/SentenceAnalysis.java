@@ -22,6 +22,7 @@
 package com.hulles.alixia.room.document;
 
 import com.hulles.alixia.api.shared.AlixiaException;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.hulles.alixia.api.shared.SharedUtils;
@@ -264,6 +265,45 @@ final public class SentenceAnalysis {
 		this.docCategory = category;
 	}
 
+	/**
+	 * Make a copy of this analysis with copies of all its lists, so that whoever gets 
+	 * the copy can't change the original and vice versa.
+	 * 
+	 * @return The copy
+	 */
+	public SentenceAnalysis copy() {
+		SentenceAnalysis copy;
+		
+		copy = new SentenceAnalysis(sentence);
+		copy.tokens = copyList(tokens);
+		copy.nerPersons = copyList(nerPersons);
+		copy.nerLocations = copyList(nerLocations);
+		copy.nerOrganizations = copyList(nerOrganizations);
+		copy.nerDates = copyList(nerDates);
+		copy.nerTimes = copyList(nerTimes);
+		copy.nerMoney = copyList(nerMoney);
+		copy.nerPercentages = copyList(nerPercentages);
+		copy.myriaCitizens = copyList(myriaCitizens);
+		copy.myriaLocations = copyList(myriaLocations);
+		copy.myriaOrganizations = copyList(myriaOrganizations);
+		copy.posTags = copyList(posTags);
+		copy.posTagDefs = copyList(posTagDefs);
+		copy.lemmata = copyList(lemmata);
+		copy.dictionaryLemmata = copyList(dictionaryLemmata);
+		copy.chunkTags = copyList(chunkTags);
+		copy.chunkSegments = copyList(chunkSegments);
+		copy.docCategory = docCategory;
+		return copy;
+	}
+	
+	private static List<String> copyList(List<String> list) {
+		
+		if (list == null) {
+			return null;
+		}
+		return new ArrayList<>(list);
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb;
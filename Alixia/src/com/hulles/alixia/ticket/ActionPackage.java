@@ -28,17 +28,13 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.hulles.alixia.api.jebus.JebusBible;
 import com.hulles.alixia.api.jebus.JebusBible.JebusKey;
-import com.hulles.alixia.api.jebus.JebusHub;
-import com.hulles.alixia.api.jebus.JebusPool;
+import com.hulles.alixia.api.jebus.JebusCounter;
 import com.hulles.alixia.api.shared.AlixiaException;
 import com.hulles.alixia.api.shared.SerialSememe;
 import com.hulles.alixia.api.shared.SharedUtils;
 import com.hulles.alixia.room.document.RoomActionObject;
 
-import redis.clients.jedis.Jedis;
-
 /**
  * An ActionPackage is a bundle consisting of a sememe (in a SememePackage) and a corresponding
  * RoomActionObject that is the result of the sememe.
@@ -308,14 +304,8 @@ public final class ActionPackage {
 	}
 	
 	private static long getNewActionPackageID() {
-		JebusPool jebusPool;
-        String key;
 		
-		jebusPool = JebusHub.getJebusCentral();
-		try (Jedis jebus = jebusPool.getResource()) {
-			key = JebusBible.getStringKey(JebusKey.ACTIONCOUNTERKEY, jebusPool);
-			return jebus.incr(key);
-		}		
+		return JebusCounter.getCounter(JebusKey.ACTIONCOUNTERKEY).next();
 	}
 
 	@Override
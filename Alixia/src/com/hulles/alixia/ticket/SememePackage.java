@@ -21,10 +21,8 @@
  *******************************************************************************/
 package com.hulles.alixia.ticket;
 
-import com.hulles.alixia.api.jebus.JebusBible;
 import com.hulles.alixia.api.jebus.JebusBible.JebusKey;
-import com.hulles.alixia.api.jebus.JebusHub;
-import com.hulles.alixia.api.jebus.JebusPool;
+import com.hulles.alixia.api.jebus.JebusCounter;
 import com.hulles.alixia.api.shared.AlixiaException;
 import java.util.Collections;
 import java.util.Iterator;
@@ -34,8 +32,6 @@ import com.hulles.alixia.api.shared.SerialSememe;
 import com.hulles.alixia.api.shared.SharedUtils;
 import com.hulles.alixia.cayenne.Sememe;
 
-import redis.clients.jedis.Jedis;
-
 /**
  * A SememePackage is a bundle of sememe-related fields: sememe, optional sememe object type, etc. For
  * example: Sememe = "play_video", SememeObjectType = "VIDEOTITLE", SememeObject = "Un Chien Andalou".
@@ -195,14 +191,8 @@ public class SememePackage {
 	}
 	
 	private static long getNewSememePackageID() {
-		JebusPool jebusPool;
-        String key;
-        
-		jebusPool = JebusHub.getJebusCentral();
-		try (Jedis jebus = jebusPool.getResource()) {
-			key = JebusBible.getStringKey(JebusKey.ALIXIASEMEMECOUNTERKEY, jebusPool);
-			return jebus.incr(key);
-		}		
+		
+		return JebusCounter.getCounter(JebusKey.ALIXIASEMEMECOUNTERKEY).next();
 	}
 
 	@Override
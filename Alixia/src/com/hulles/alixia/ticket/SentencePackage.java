@@ -21,17 +21,13 @@
  *******************************************************************************/
 package com.hulles.alixia.ticket;
 
-import com.hulles.alixia.api.jebus.JebusBible;
 import com.hulles.alixia.api.jebus.JebusBible.JebusKey;
-import com.hulles.alixia.api.jebus.JebusHub;
-import com.hulles.alixia.api.jebus.JebusPool;
+import com.hulles.alixia.api.jebus.JebusCounter;
 import java.util.List;
 
 import com.hulles.alixia.api.shared.SharedUtils;
 import com.hulles.alixia.room.document.SentenceAnalysis;
 
-import redis.clients.jedis.Jedis;
-
 /**
  * A SentencePackage is a bundle of different NLP analyses of a given sentence in a query.
  * 
@@ -156,14 +152,8 @@ public class SentencePackage {
 	}
 	
 	private static long getNewSentencePackageID() {
-		JebusPool jebusPool;
-        String key;
-		
-		jebusPool = JebusHub.getJebusCentral();
-		try (Jedis jebus = jebusPool.getResource()) {
-			key = JebusBible.getStringKey(JebusKey.ALIXIASENTENCECOUNTERKEY, jebusPool);
-			return jebus.incr(key);
-		}		
+		
+		return JebusCounter.getCounter(JebusKey.ALIXIASENTENCECOUNTERKEY).next();
 	}
 	
 	public static class SentenceChunk {
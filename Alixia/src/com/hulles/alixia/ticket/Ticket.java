@@ -22,18 +22,14 @@
 package com.hulles.alixia.ticket;
 
 import com.google.common.eventbus.EventBus;
-import com.hulles.alixia.api.jebus.JebusBible;
 import com.hulles.alixia.api.jebus.JebusBible.JebusKey;
-import com.hulles.alixia.api.jebus.JebusHub;
-import com.hulles.alixia.api.jebus.JebusPool;
+import com.hulles.alixia.api.jebus.JebusCounter;
 import com.hulles.alixia.api.remote.AlixianID;
 import com.hulles.alixia.api.shared.SerialPerson;
 import com.hulles.alixia.api.shared.SerialUUID;
 import com.hulles.alixia.api.shared.SharedUtils;
 import com.hulles.alixia.room.Room;
 
-import redis.clients.jedis.Jedis;
-
 /**
  * Ticket is just a wrapper around the String class, but it's important in spite of this because we
  * use it for strong type checking on the datum.
@@ -176,14 +172,8 @@ public final class Ticket {
 	}
 	
 	private static long getNewTicketID() {
-		JebusPool jebusPool;
-        String key;
-        
-		jebusPool = JebusHub.getJebusCentral();
-		try (Jedis jebus = jebusPool.getResource()) {
-			key = JebusBible.getStringKey(JebusKey.ALIXIATICKETCOUNTERKEY, jebusPool);
-			return jebus.incr(key);
-		}		
+		
+		return JebusCounter.getCounter(JebusKey.ALIXIATICKETCOUNTERKEY).next();
 	}
 	
 }
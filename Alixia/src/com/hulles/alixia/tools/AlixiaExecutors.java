@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.tools;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.hulles.alixia.api.shared.AlixiaException;
+import com.hulles.alixia.api.shared.SharedUtils;
+
+/**
+ * AlixiaExecutors hands out the executors the rooms, the houses and the buses run on. Which 
+ * kind of executor they get depends on the ExecutorModel chosen at startup, which has to be 
+ * set before the ServiceManager starts the rooms and houses.
+ * <p>
+ * Every executor is a MeteredExecutor registered here by name, so we can report the 
+ * thread count and queue depth for each of them.
+ * 
+ * @author hulles
+ *
+ */
+public final class AlixiaExecutors {
+	private final static Logger LOGGER = LoggerFactory.getLogger(AlixiaExecutors.class);
+	private final static int DEFAULT_BOUNDED_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+	private final static int DEFAULT_BOUNDED_QUEUE = 256;
+	private final static long BOUNDED_KEEPALIVE_SECONDS = 60;
+	private final static ConcurrentMap<String, MeteredExecutor> executors = new ConcurrentHashMap<>();
+	private static volatile ExecutorModel executorModel = ExecutorModel.CACHED;
+	private static volatile int boundedThreads = DEFAULT_BOUNDED_THREADS;
+	private static volatile int boundedQueueDepth = DEFAULT_BOUNDED_QUEUE;
+	
+	private AlixiaExecutors() {
+		// need to keep this private
+	}
+	
+	/**
+	 * Set the executor model for executors created from now on. This should happen once, 
+	 * at startup, before any rooms or houses are started.
+	 * 
+	 * @param model The executor model
+	 */
+	public static void setExecutorModel(ExecutorModel model) {
+		
+		SharedUtils.checkNotNull(model);
+		if (model == ExecutorModel.VIRTUAL && !virtualThreadsAvailable()) {
+			LOGGER.warn("AlixiaExecutors: virtual threads are not available in Java {}, using {} instead", 
+					Runtime.version().feature(), ExecutorModel.CACHED);
+			model = ExecutorModel.CACHED;
+		}
+		LOGGER.info("AlixiaExecutors: executor model is {}", model);
+		executorModel = model;
+	}
+	
+	/**
+	 * Get the current executor model.
+	 * 
+	 * @return The executor model
+	 */
+	public static ExecutorModel getExecutorModel() {
+		
+		return executorModel;
+	}
+	
+	/**
+	 * Set the limits for the BOUNDED executor model. Tasks beyond the thread count wait in 
+	 * the queue; tasks beyond the queue depth run on the thread that submitted them, which 
+	 * slows the submitter down instead of letting the backlog grow without limit.
+	 * 
+	 * @param threads The maximum number of threads per executor
+	 * @param queueDepth The maximum number of waiting tasks per executor
+	 */
+	public static void setBoundedLimits(Integer threads, Integer queueDepth) {
+		
+		SharedUtils.checkNotNull(threads);
+		SharedUtils.checkNotNull(queueDepth);
+		if (threads < 1 || queueDepth < 1) {
+			throw new AlixiaException("AlixiaExecutors: bounded limits must be positive");
+		}
+		boundedThreads = threads;
+		boundedQueueDepth = queueDepth;
+	}
+	
+	/**
+	 * Get the maximum number of threads per executor for the BOUNDED executor model.
+	 * 
+	 * @return The thread limit
+	 */
+	public static int getBoundedThreads() {
+		
+		return boundedThreads;
+	}
+	
+	/**
+	 * Get the maximum number of waiting tasks per executor for the BOUNDED executor model.
+	 * 
+	 * @return The queue depth
+	 */
+	public static int getBoundedQueueDepth() {
+		
+		return boundedQueueDepth;
+	}
+	
+	/**
+	 * Create a new executor according to the current executor model and register it by name. If
+	 * an executor with the same name already exists it's replaced in the registry, so the name 
+	 * should be unique (e.g. the room or house display name).
+	 * 
+	 * @param name The name of the executor
+	 * @return The new executor
+	 */
+	public static MeteredExecutor newExecutor(String name) {
+		ExecutorService delegate;
+		MeteredExecutor executor;
+		ThreadFactory factory;
+		
+		SharedUtils.checkNotNull(name);
+		switch (executorModel) {
+			case VIRTUAL:
+				delegate = newVirtualThreadExecutor();
+				break;
+			case BOUNDED:
+				factory = new ThreadFactoryBuilder().setNameFormat(name + "-%d").build();
+				delegate = new ThreadPoolExecutor(boundedThreads, boundedThreads, 
+						BOUNDED_KEEPALIVE_SECONDS, TimeUnit.SECONDS, 
+						new ArrayBlockingQueue<>(boundedQueueDepth), factory, 
+						new MeteredExecutor.CallerRunsPolicy());
+				((ThreadPoolExecutor) delegate).allowCoreThreadTimeOut(true);
+				break;
+			case CACHED:
+				factory = new ThreadFactoryBuilder().setNameFormat(name + "-%d").build();
+				delegate = Executors.newCachedThreadPool(factory);
+				break;
+			default:
+				throw new AlixiaException("AlixiaExecutors: unknown executor model " + executorModel);
+		}
+		executor = new MeteredExecutor(name, delegate);
+		executors.put(name, executor);
+		return executor;
+	}
+	
+	/**
+	 * Get all the executors we've handed out, e.g. to report their metrics.
+	 * 
+	 * @return The executors
+	 */
+	public static Collection<MeteredExecutor> getExecutors() {
+		
+		return ImmutableList.copyOf(executors.values());
+	}
+	
+	/**
+	 * Log the metrics for all the executors we've handed out.
+	 * 
+	 */
+	public static void logExecutorMetrics() {
+		
+		for (MeteredExecutor executor : executors.values()) {
+			LOGGER.info("Executor {}", executor);
+		}
+	}
+	
+	/**
+	 * Return true if this JVM supports virtual threads (Java 21 and later).
+	 * 
+	 * @return True if virtual threads are available
+	 */
+	public static boolean virtualThreadsAvailable() {
+		
+		return getVirtualThreadMethod() != null;
+	}
+	
+	/**
+	 * We have to find Executors.newVirtualThreadPerTaskExecutor reflectively so we still 
+	 * build and run on JVMs that don't have it.
+	 * 
+	 * @return The method, or null if it doesn't exist
+	 */
+	private static Method getVirtualThreadMethod() {
+		
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException ex) {
+			return null;
+		}
+	}
+	
+	private static ExecutorService newVirtualThreadExecutor() {
+		Method method;
+		
+		method = getVirtualThreadMethod();
+		if (method == null) {
+			throw new AlixiaException("AlixiaExecutors: virtual threads are not available");
+		}
+		try {
+			return (ExecutorService) method.invoke(null);
+		} catch (IllegalAccessException | InvocationTargetException ex) {
+			throw new AlixiaException("AlixiaExecutors: unable to create virtual thread executor", ex);
+		}
+	}
+	
+	/**
+	 * The kinds of executor we can hand out.
+	 * <p>
+	 * CACHED is the original model, a cached thread pool that creates as many threads as 
+	 * it needs; BOUNDED is a fixed-size pool with a bounded queue that pushes back on the 
+	 * submitter when it's full; VIRTUAL runs each task on its own virtual thread, which is 
+	 * cheap when most of the tasks spend their time blocked on Jebus, JDBC or HTTP calls.
+	 * 
+	 * @author hulles
+	 *
+	 */
+	public enum ExecutorModel {
+		CACHED,
+		BOUNDED,
+		VIRTUAL;
+		
+		/**
+		 * Find the executor model with the given name, ignoring case.
+		 * 
+		 * @param name The name of the model
+		 * @return The model
+		 */
+		public static ExecutorModel fromName(String name) {
+			
+			SharedUtils.checkNotNull(name);
+			for (ExecutorModel model : values()) {
+				if (model.name().equalsIgnoreCase(name)) {
+					return model;
+				}
+			}
+			throw new AlixiaException("AlixiaExecutors: unknown executor model " + name);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+import com.google.common.cache.CacheStats;
+import com.hulles.alixia.api.shared.SharedUtils;
+
+/**
+ * CacheReports is where the rooms register the caches they'd like us to be able to see 
+ * while the server is running, e.g. in the Foxtrot status. A room registers a supplier
+ * of the cache's statistics under a name, and unregisters it when it shuts down.
+ * 
+ * @author hulles
+ *
+ */
+public final class CacheReports {
+	private final static Map<String, Supplier<CacheStats>> CACHES = new ConcurrentSkipListMap<>();
+	
+	private CacheReports() {
+		// need to keep this private
+	}
+	
+	/**
+	 * Register a cache by name. A cache registered with the same name is replaced.
+	 * 
+	 * @param name The name of the cache
+	 * @param stats Where to get the cache's current statistics
+	 */
+	public static void register(String name, Supplier<CacheStats> stats) {
+		
+		SharedUtils.checkNotNull(name);
+		SharedUtils.checkNotNull(stats);
+		CACHES.put(name, stats);
+	}
+	
+	/**
+	 * Forget about a cache.
+	 * 
+	 * @param name The name of the cache
+	 */
+	public static void unregister(String name) {
+		
+		SharedUtils.checkNotNull(name);
+		CACHES.remove(name);
+	}
+	
+	/**
+	 * Get a line with the hit ratio and counts for each registered cache, sorted by name.
+	 * 
+	 * @return The lines, an empty list if nothing is registered
+	 */
+	public static List<String> getCacheReport() {
+		List<String> report;
+		CacheStats stats;
+		
+		if (CACHES.isEmpty()) {
+			return Collections.emptyList();
+		}
+		report = new ArrayList<>(CACHES.size());
+		for (Map.Entry<String, Supplier<CacheStats>> entry : CACHES.entrySet()) {
+			stats = entry.getValue().get();
+			report.add(String.format("%s: hit ratio %.3f, %d hits, %d misses, %d evictions", entry.getKey(),
+					stats.hitRate(), stats.hitCount(), stats.missCount(), stats.evictionCount()));
+		}
+		return report;
+	}
+}
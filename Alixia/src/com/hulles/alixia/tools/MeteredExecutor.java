@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.tools;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hulles.alixia.api.shared.SharedUtils;
+
+/**
+ * MeteredExecutor wraps whatever ExecutorService AlixiaExecutors hands out and keeps count
+ * of the tasks that are waiting, the tasks that are running and the tasks that are done, 
+ * so we can see what a room or house is up to no matter which executor model it's using.
+ * 
+ * @author hulles
+ *
+ */
+public final class MeteredExecutor extends AbstractExecutorService {
+	private final String name;
+	private final ExecutorService delegate;
+	private final AtomicInteger queuedCount;
+	private final AtomicInteger activeCount;
+	private final AtomicInteger peakActiveCount;
+	private final AtomicLong completedCount;
+	
+	MeteredExecutor(String name, ExecutorService delegate) {
+		
+		SharedUtils.checkNotNull(name);
+		SharedUtils.checkNotNull(delegate);
+		this.name = name;
+		this.delegate = delegate;
+		queuedCount = new AtomicInteger();
+		activeCount = new AtomicInteger();
+		peakActiveCount = new AtomicInteger();
+		completedCount = new AtomicLong();
+	}
+	
+	/**
+	 * Get the name of the executor, which is normally the name of the room or house that owns it.
+	 * 
+	 * @return The name
+	 */
+	public String getName() {
+		
+		return name;
+	}
+	
+	/**
+	 * Get the number of tasks that have been submitted but haven't started yet.
+	 * 
+	 * @return The queue depth
+	 */
+	public int getQueueDepth() {
+		
+		return queuedCount.get();
+	}
+	
+	/**
+	 * Get the number of tasks that are running right now.
+	 * 
+	 * @return The active task count
+	 */
+	public int getActiveCount() {
+		
+		return activeCount.get();
+	}
+	
+	/**
+	 * Get the highest number of tasks that have been running at once.
+	 * 
+	 * @return The peak active task count
+	 */
+	public int getPeakActiveCount() {
+		
+		return peakActiveCount.get();
+	}
+	
+	/**
+	 * Get the number of tasks that have finished, successfully or otherwise.
+	 * 
+	 * @return The completed task count
+	 */
+	public long getCompletedCount() {
+		
+		return completedCount.get();
+	}
+	
+	/**
+	 * Get the number of threads the executor is holding. For virtual threads there's one per
+	 * running task, so it's the same as the active count.
+	 * 
+	 * @return The thread count
+	 */
+	public int getThreadCount() {
+		
+		if (delegate instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) delegate).getPoolSize();
+		}
+		return activeCount.get();
+	}
+	
+	@Override
+	public void execute(Runnable command) {
+		
+		SharedUtils.checkNotNull(command);
+		queuedCount.incrementAndGet();
+		try {
+			delegate.execute(new MeteredTask(command));
+		} catch (RuntimeException ex) {
+			// rejected, presumably
+			queuedCount.decrementAndGet();
+			throw ex;
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		
+		delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		
+		return delegate.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		
+		return delegate.awaitTermination(timeout, unit);
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb;
+		
+		sb = new StringBuilder(name);
+		sb.append(": threads ");
+		sb.append(getThreadCount());
+		sb.append(", active ");
+		sb.append(getActiveCount());
+		sb.append(" (peak ");
+		sb.append(getPeakActiveCount());
+		sb.append("), queued ");
+		sb.append(getQueueDepth());
+		sb.append(", completed ");
+		sb.append(getCompletedCount());
+		return sb.toString();
+	}
+	
+	/**
+	 * Like ThreadPoolExecutor.CallerRunsPolicy, except that when the executor has been shut 
+	 * down and the task is dropped, we take it back off the queued count.
+	 * 
+	 */
+	static class CallerRunsPolicy implements RejectedExecutionHandler {
+		
+		@Override
+		public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+			
+			if (!executor.isShutdown()) {
+				task.run();
+			} else if (task instanceof MeteredTask) {
+				((MeteredTask) task).discard();
+			}
+		}
+	}
+	
+	/**
+	 * The wrapper that moves a task from the queued count to the active count and 
+	 * then to the completed count.
+	 * 
+	 */
+	private class MeteredTask implements Runnable {
+		private final Runnable task;
+		
+		MeteredTask(Runnable task) {
+			this.task = task;
+		}
+		
+		@Override
+		public void run() {
+			int active;
+			
+			queuedCount.decrementAndGet();
+			active = activeCount.incrementAndGet();
+			peakActiveCount.accumulateAndGet(active, Math::max);
+			try {
+				task.run();
+			} finally {
+				activeCount.decrementAndGet();
+				completedCount.incrementAndGet();
+			}
+		}
+		
+		/**
+		 * The task is never going to run, so it's not waiting any more.
+		 * 
+		 */
+		void discard() {
+			
+			queuedCount.decrementAndGet();
+		}
+	}
+}
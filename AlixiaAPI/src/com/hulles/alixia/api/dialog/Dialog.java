@@ -23,14 +23,11 @@ package com.hulles.alixia.api.dialog;
 
 import java.io.Serializable;
 
-import com.hulles.alixia.api.jebus.JebusBible;
 import com.hulles.alixia.api.jebus.JebusBible.JebusKey;
-import com.hulles.alixia.api.jebus.JebusHub;
-import com.hulles.alixia.api.jebus.JebusPool;
+import com.hulles.alixia.api.jebus.JebusCounter;
 import com.hulles.alixia.api.object.AlixiaClientObject;
 import com.hulles.alixia.api.remote.AlixianID;
-
-import redis.clients.jedis.Jedis;
+import com.hulles.alixia.api.shared.SharedUtils;
 
 /**
  * A generalization of dialog-related documents.
@@ -47,6 +44,17 @@ public abstract class Dialog implements Serializable {
 		this.documentID = getNewDocumentID();
 	}
 	
+	/**
+	 * Recreate a dialog that already has a document ID, i.e. one that's been decoded.
+	 * 
+	 * @param documentID The document ID of the original dialog
+	 */
+	Dialog(Long documentID) {
+		
+		SharedUtils.checkNotNull(documentID);
+		this.documentID = documentID;
+	}
+	
 	public abstract AlixiaClientObject getClientObject();
 	
 	public abstract AlixianID getFromAlixianID();
@@ -64,14 +72,8 @@ public abstract class Dialog implements Serializable {
 	 * @return The ID
 	 */
 	private static long getNewDocumentID() {
-		JebusPool jebusPool;
-		String key;
-        
-		jebusPool = JebusHub.getJebusCentral();
-		try (Jedis jebus = jebusPool.getResource()) {
-			 key = JebusBible.getStringKey(JebusKey.ALIXIADOCUMENTCOUNTERKEY, jebusPool);
-			return jebus.incr(key);
-		}		
+		
+		return JebusCounter.getCounter(JebusKey.ALIXIADOCUMENTCOUNTERKEY).next();
 	}
 
 }
@@ -0,0 +1,848 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.api.dialog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.hulles.alixia.api.object.AlixiaClientObject;
+import com.hulles.alixia.api.object.AlixiaClientObject.ClientObjectType;
+import com.hulles.alixia.api.object.AudioObject;
+import com.hulles.alixia.api.object.ChangeLanguageObject;
+import com.hulles.alixia.api.object.LoginObject;
+import com.hulles.alixia.api.object.LoginResponseObject;
+import com.hulles.alixia.api.object.MediaObject;
+import com.hulles.alixia.api.remote.AlixianID;
+import com.hulles.alixia.api.shared.AlixiaException;
+import com.hulles.alixia.api.shared.SerialEntity;
+import com.hulles.alixia.api.shared.SerialPerson;
+import com.hulles.alixia.api.shared.SerialSememe;
+import com.hulles.alixia.api.shared.SerialStation;
+import com.hulles.alixia.api.shared.SerialUUID;
+import com.hulles.alixia.api.shared.SessionType;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.media.Language;
+import com.hulles.alixia.media.MediaFormat;
+import com.hulles.alixia.media.audio.SerialAudioFormat;
+
+/**
+ * DialogCodec is the compact binary alternative to Java serialization for DialogHeaders and 
+ * Dialogs. The layout is:
+ * <pre>
+ *   magic (0xA1 0x1C), version, dialog type, body length, header, body (the dialog fields)
+ * </pre>
+ * Everything up to the body is the frame, which peek can read without touching the body, so
+ * a recipient can decide whether a dialog is for it before decoding anything else.
+ * Each dialog and client object is written field by field in a fixed order that is the schema 
+ * for the version. Every field can be null. Strings are a length (-1 for null) and UTF-8; enums 
+ * are written by name so reordering an enum doesn't break anything. A client object we don't 
+ * have a schema for is written with Java serialization inside the binary dialog, so nothing is 
+ * lost, it's just not compact.
+ * <p>
+ * We only read our own VERSION. If the schema changes once there are stations in the 
+ * field speaking this one, bump VERSION and keep reading the old one.
+ * 
+ * @author hulles
+ *
+ */
+final class DialogCodec {
+	final static byte MAGIC_0 = (byte) 0xA1;
+	final static byte MAGIC_1 = (byte) 0x1C;
+	final static byte VERSION = 2;
+	private final static int LENGTH_OFFSET = 4;
+	private final static byte REQUEST = 1;
+	private final static byte RESPONSE = 2;
+	private final static byte NO_OBJECT = 0;
+	private final static byte MEDIA_OBJECT = 1;
+	private final static byte AUDIO_OBJECT = 2;
+	private final static byte CHANGE_LANGUAGE_OBJECT = 3;
+	private final static byte LOGIN_OBJECT = 4;
+	private final static byte LOGIN_RESPONSE_OBJECT = 5;
+	private final static byte SERIALIZED_OBJECT = 127;
+	private final static byte NULL_BOOLEAN = -1;
+	private final static int NULL_LENGTH = -1;
+	private final static int DEFAULT_SIZE = 512;
+	
+	private DialogCodec() {
+		// need to keep this private
+	}
+	
+	/**
+	 * Is this byte array in our format, as opposed to a Java serialization stream?
+	 * 
+	 * @param bytes The serialized dialog
+	 * @return True if it starts with our magic number
+	 */
+	static boolean isCodecBytes(byte[] bytes) {
+		
+		SharedUtils.checkNotNull(bytes);
+		return bytes.length > 2 && bytes[0] == MAGIC_0 && bytes[1] == MAGIC_1;
+	}
+	
+	/**
+	 * Encode a header and its dialog.
+	 * 
+	 * @param header The DialogHeader
+	 * @param dialog The Dialog
+	 * @return The encoded bytes
+	 */
+	static byte[] encode(DialogHeader header, Dialog dialog) {
+		ByteArrayOutputStream byteOutputStream;
+		byte[] bytes;
+		int bodyOffset;
+		int bodyLength;
+		
+		SharedUtils.checkNotNull(header);
+		SharedUtils.checkNotNull(dialog);
+		byteOutputStream = new ByteArrayOutputStream(estimateSize(dialog));
+		try (DataOutputStream out = new DataOutputStream(byteOutputStream)) {
+			out.writeByte(MAGIC_0);
+			out.writeByte(MAGIC_1);
+			out.writeByte(VERSION);
+			if (dialog instanceof DialogRequest) {
+				out.writeByte(REQUEST);
+			} else if (dialog instanceof DialogResponse) {
+				out.writeByte(RESPONSE);
+			} else {
+				throw new AlixiaException("DialogCodec: unknown dialog type " + dialog.getClass().getName());
+			}
+			// we don't know the body length yet, we fill it in below
+			out.writeInt(0);
+			writeAlixianID(out, header.getToAlixianID());
+			bodyOffset = out.size();
+			if (dialog instanceof DialogRequest) {
+				writeRequest(out, (DialogRequest) dialog);
+			} else {
+				writeResponse(out, (DialogResponse) dialog);
+			}
+		} catch (IOException e) {
+			throw new AlixiaException("DialogCodec: IO exception encoding dialog", e);
+		}
+		bytes = byteOutputStream.toByteArray();
+		bodyLength = bytes.length - bodyOffset;
+		bytes[LENGTH_OFFSET] = (byte) (bodyLength >>> 24);
+		bytes[LENGTH_OFFSET + 1] = (byte) (bodyLength >>> 16);
+		bytes[LENGTH_OFFSET + 2] = (byte) (bodyLength >>> 8);
+		bytes[LENGTH_OFFSET + 3] = (byte) bodyLength;
+		return bytes;
+	}
+	
+	/**
+	 * Read the frame of an encoded dialog: everything but the body.
+	 * 
+	 * @param bytes The encoded bytes
+	 * @return The frame
+	 */
+	static DialogFrame peek(byte[] bytes) {
+		DataInputStream in;
+		byte version;
+		byte type;
+		int bodyLength;
+		AlixianID toAlixianID;
+		DialogHeader header;
+		
+		SharedUtils.checkNotNull(bytes);
+		if (!isCodecBytes(bytes)) {
+			throw new AlixiaException("DialogCodec: not an encoded dialog");
+		}
+		in = new DataInputStream(new ByteArrayInputStream(bytes, 2, bytes.length - 2));
+		try {
+			version = in.readByte();
+			if (version != VERSION) {
+				throw new AlixiaException("DialogCodec: unsupported version " + version);
+			}
+			type = in.readByte();
+			bodyLength = in.readInt();
+			toAlixianID = readAlixianID(in);
+			if (toAlixianID == null) {
+				throw new AlixiaException("DialogCodec: header has no AlixianID");
+			}
+			if (bodyLength < 0 || bodyLength != in.available()) {
+				throw new AlixiaException("DialogCodec: corrupt body length " + bodyLength);
+			}
+		} catch (IOException e) {
+			throw new AlixiaException("DialogCodec: IO exception reading frame", e);
+		}
+		header = new DialogHeader();
+		header.setToAlixianID(toAlixianID);
+		return new DialogFrame(DialogFormat.BINARY, header, getDialogType(type), 
+				bytes.length - bodyLength, bodyLength);
+	}
+	
+	/**
+	 * Read the dialog body of a frame we peeked.
+	 * 
+	 * @param bytes The encoded bytes
+	 * @param frame The frame from peek()
+	 * @return The dialog
+	 * @throws IOException
+	 */
+	static Dialog readDialog(byte[] bytes, DialogFrame frame) throws IOException {
+		
+		SharedUtils.checkNotNull(bytes);
+		SharedUtils.checkNotNull(frame);
+		try (DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(bytes, frame.getBodyOffset(), frame.getBodyLength()))) {
+			switch (frame.getDialogType()) {
+				case REQUEST:
+					return readRequest(in);
+				case RESPONSE:
+					return readResponse(in);
+				default:
+					throw new AlixiaException("DialogCodec: unknown dialog type " + frame.getDialogType());
+			}
+		}
+	}
+	
+	private static DialogFrame.DialogType getDialogType(byte type) {
+		
+		switch (type) {
+			case REQUEST:
+				return DialogFrame.DialogType.REQUEST;
+			case RESPONSE:
+				return DialogFrame.DialogType.RESPONSE;
+			default:
+				throw new AlixiaException("DialogCodec: unknown dialog type " + type);
+		}
+	}
+	
+	private static void writeRequest(DataOutputStream out, DialogRequest request) throws IOException {
+		Set<SerialSememe> sememes;
+		
+		out.writeLong(request.getDocumentID());
+		sememes = request.getRequestActions();
+		if (sememes == null) {
+			out.writeInt(NULL_LENGTH);
+		} else {
+			out.writeInt(sememes.size());
+			for (SerialSememe sememe : sememes) {
+				writeSememe(out, sememe);
+			}
+		}
+		writeString(out, request.getRequestMessage());
+		writeBytes(out, request.getRequestAudio());
+		writeClientObject(out, request.getClientObject());
+		writeAlixianID(out, request.getFromAlixianID());
+		writeUUID(out, request.getPersonUUID());
+		writeUUID(out, request.getStationUUID());
+		writeEnum(out, request.getSessionType());
+		writeAlixianID(out, request.getToAlixianID());
+		writeEnum(out, request.getLanguage());
+		writeBoolean(out, request.isQuiet());
+	}
+	
+	private static DialogRequest readRequest(DataInputStream in) throws IOException {
+		DialogRequest request;
+		Set<SerialSememe> sememes;
+		SerialUUID<SerialPerson> personUUID;
+		SerialUUID<SerialStation> stationUUID;
+		SessionType sessionType;
+		AlixianID alixianID;
+		Language language;
+		Boolean isQuiet;
+		int count;
+		
+		request = new DialogRequest(in.readLong());
+		count = readLength(in);
+		if (count != NULL_LENGTH) {
+			sememes = new HashSet<>();
+			for (int i = 0; i < count; i++) {
+				sememes.add(readSememe(in));
+			}
+			request.setRequestActions(sememes);
+		}
+		request.setRequestMessage(readString(in));
+		request.setRequestAudio(readBytes(in));
+		request.setClientObject(readClientObject(in));
+		alixianID = readAlixianID(in);
+		if (alixianID != null) {
+			request.setFromAlixianID(alixianID);
+		}
+		personUUID = readUUID(in);
+		request.setPersonUUID(personUUID);
+		stationUUID = readUUID(in);
+		if (stationUUID != null) {
+			request.setStationUUID(stationUUID);
+		}
+		sessionType = readEnum(in, SessionType.class);
+		if (sessionType != null) {
+			request.setSessionType(sessionType);
+		}
+		alixianID = readAlixianID(in);
+		if (alixianID != null) {
+			request.setToAlixianID(alixianID);
+		}
+		language = readEnum(in, Language.class);
+		if (language != null) {
+			request.setLanguage(language);
+		}
+		isQuiet = readBoolean(in);
+		if (isQuiet != null) {
+			request.setIsQuiet(isQuiet);
+		}
+		return request;
+	}
+	
+	private static void writeResponse(DataOutputStream out, DialogResponse response) throws IOException {
+		
+		out.writeLong(response.getDocumentID());
+		writeLong(out, response.getResponseToRequestID());
+		writeString(out, response.getMessage());
+		writeSememe(out, response.getResponseAction());
+		writeString(out, response.getExplanation());
+		writeClientObject(out, response.getClientObject());
+		writeAlixianID(out, response.getFromAlixianID());
+		writeAlixianID(out, response.getToAlixianID());
+		writeEnum(out, response.getLanguage());
+	}
+	
+	private static DialogResponse readResponse(DataInputStream in) throws IOException {
+		DialogResponse response;
+		AlixianID alixianID;
+		Language language;
+		Long documentID;
+		
+		documentID = in.readLong();
+		response = new DialogResponse(documentID, readLong(in));
+		response.setMessage(readString(in));
+		response.setResponseAction(readSememe(in));
+		response.setExplanation(readString(in));
+		response.setClientObject(readClientObject(in));
+		alixianID = readAlixianID(in);
+		if (alixianID != null) {
+			response.setFromAlixianID(alixianID);
+		}
+		alixianID = readAlixianID(in);
+		if (alixianID != null) {
+			response.setToAlixianID(alixianID);
+		}
+		language = readEnum(in, Language.class);
+		if (language != null) {
+			response.setLanguage(language);
+		}
+		return response;
+	}
+	
+	private static void writeClientObject(DataOutputStream out, AlixiaClientObject object) throws IOException {
+		ChangeLanguageObject changeLanguage;
+		LoginObject login;
+		LoginResponseObject loginResponse;
+		
+		if (object == null) {
+			out.writeByte(NO_OBJECT);
+		} else if (object.getClass() == MediaObject.class) {
+			out.writeByte(MEDIA_OBJECT);
+			writeMedia(out, (MediaObject) object);
+		} else if (object.getClass() == AudioObject.class) {
+			out.writeByte(AUDIO_OBJECT);
+			writeMedia(out, (MediaObject) object);
+			writeAudioFormat(out, ((AudioObject) object).getAudioFormat());
+		} else if (object.getClass() == ChangeLanguageObject.class) {
+			out.writeByte(CHANGE_LANGUAGE_OBJECT);
+			changeLanguage = (ChangeLanguageObject) object;
+			writeEnum(out, changeLanguage.getNewLanguage());
+		} else if (object.getClass() == LoginObject.class) {
+			out.writeByte(LOGIN_OBJECT);
+			login = (LoginObject) object;
+			writeString(out, login.getUserName());
+			writeString(out, login.getPassword());
+		} else if (object.getClass() == LoginResponseObject.class) {
+			out.writeByte(LOGIN_RESPONSE_OBJECT);
+			loginResponse = (LoginResponseObject) object;
+			writeUUID(out, loginResponse.getPersonUUID());
+			writeString(out, loginResponse.getUserName());
+		} else {
+			out.writeByte(SERIALIZED_OBJECT);
+			writeSerialized(out, object);
+		}
+	}
+	
+	private static AlixiaClientObject readClientObject(DataInputStream in) throws IOException {
+		byte type;
+		MediaObject media;
+		AudioObject audio;
+		SerialAudioFormat audioFormat;
+		ChangeLanguageObject changeLanguage;
+		Language language;
+		LoginObject login;
+		LoginResponseObject loginResponse;
+		SerialUUID<SerialPerson> personUUID;
+		String str;
+		
+		type = in.readByte();
+		switch (type) {
+			case NO_OBJECT:
+				return null;
+			case MEDIA_OBJECT:
+				media = new MediaObject();
+				readMedia(in, media);
+				return media;
+			case AUDIO_OBJECT:
+				audio = new AudioObject();
+				readMedia(in, audio);
+				audioFormat = readAudioFormat(in);
+				if (audioFormat != null) {
+					audio.setAudioFormat(audioFormat);
+				}
+				return audio;
+			case CHANGE_LANGUAGE_OBJECT:
+				changeLanguage = new ChangeLanguageObject();
+				language = readEnum(in, Language.class);
+				if (language != null) {
+					changeLanguage.setNewLanguage(language);
+				}
+				return changeLanguage;
+			case LOGIN_OBJECT:
+				login = new LoginObject();
+				str = readString(in);
+				if (str != null) {
+					login.setUserName(str);
+				}
+				str = readString(in);
+				if (str != null) {
+					login.setPassword(str);
+				}
+				return login;
+			case LOGIN_RESPONSE_OBJECT:
+				loginResponse = new LoginResponseObject();
+				personUUID = readUUID(in);
+				loginResponse.setPersonUUID(personUUID);
+				loginResponse.setUserName(readString(in));
+				return loginResponse;
+			case SERIALIZED_OBJECT:
+				return (AlixiaClientObject) readSerialized(in);
+			default:
+				throw new AlixiaException("DialogCodec: unknown client object type " + type);
+		}
+	}
+	
+	private static void writeMedia(DataOutputStream out, MediaObject media) throws IOException {
+		byte[][] mediaBytes;
+		
+		mediaBytes = media.getMediaBytes();
+		if (mediaBytes == null) {
+			out.writeInt(NULL_LENGTH);
+		} else {
+			out.writeInt(mediaBytes.length);
+			for (byte[] bytes : mediaBytes) {
+				writeBytes(out, bytes);
+			}
+		}
+		writeEnum(out, media.getMediaFormat());
+		writeEnum(out, media.getClientObjectType());
+		writeString(out, media.getMediaTitle());
+		writeInteger(out, media.getLengthSeconds());
+		writeString(out, media.getMediaArtist());
+	}
+	
+	private static void readMedia(DataInputStream in, MediaObject media) throws IOException {
+		byte[][] mediaBytes;
+		MediaFormat format;
+		ClientObjectType type;
+		int count;
+		
+		count = readLength(in);
+		if (count != NULL_LENGTH) {
+			mediaBytes = new byte[count][];
+			for (int i = 0; i < count; i++) {
+				mediaBytes[i] = readBytes(in);
+			}
+			media.setMediaBytes(mediaBytes);
+		}
+		format = readEnum(in, MediaFormat.class);
+		if (format != null) {
+			media.setMediaFormat(format);
+		}
+		type = readEnum(in, ClientObjectType.class);
+		if (type != null) {
+			media.setClientObjectType(type);
+		}
+		media.setMediaTitle(readString(in));
+		media.setLengthSeconds(readInteger(in));
+		media.setMediaArtist(readString(in));
+	}
+	
+	private static void writeAudioFormat(DataOutputStream out, SerialAudioFormat format) throws IOException {
+		
+		if (format == null) {
+			out.writeBoolean(false);
+			return;
+		}
+		out.writeBoolean(true);
+		writeString(out, format.getEncodingString());
+		writeFloat(out, format.getSampleRate());
+		writeInteger(out, format.getSampleSize());
+		writeInteger(out, format.getChannels());
+		writeInteger(out, format.getFrameSize());
+		writeFloat(out, format.getFrameRate());
+		writeBoolean(out, format.getBigEndian());
+	}
+	
+	private static SerialAudioFormat readAudioFormat(DataInputStream in) throws IOException {
+		SerialAudioFormat format;
+		String encoding;
+		Float floatValue;
+		Integer intValue;
+		Boolean bigEndian;
+		
+		if (!in.readBoolean()) {
+			return null;
+		}
+		format = new SerialAudioFormat();
+		encoding = readString(in);
+		if (encoding != null) {
+			format.setEncodingString(encoding);
+		}
+		floatValue = readFloat(in);
+		if (floatValue != null) {
+			format.setSampleRate(floatValue);
+		}
+		intValue = readInteger(in);
+		if (intValue != null) {
+			format.setSampleSize(intValue);
+		}
+		intValue = readInteger(in);
+		if (intValue != null) {
+			format.setChannels(intValue);
+		}
+		intValue = readInteger(in);
+		if (intValue != null) {
+			format.setFrameSize(intValue);
+		}
+		floatValue = readFloat(in);
+		if (floatValue != null) {
+			format.setFrameRate(floatValue);
+		}
+		bigEndian = readBoolean(in);
+		if (bigEndian != null) {
+			format.setBigEndian(bigEndian);
+		}
+		return format;
+	}
+	
+	private static void writeSememe(DataOutputStream out, SerialSememe sememe) throws IOException {
+		
+		if (sememe == null) {
+			out.writeBoolean(false);
+			return;
+		}
+		out.writeBoolean(true);
+		writeString(out, sememe.getName());
+		writeString(out, sememe.getCanonicalForm());
+		writeBoolean(out, sememe.getExternalUse());
+		writeBoolean(out, sememe.getAdminOnly());
+		writeBoolean(out, sememe.getLoggedIn());
+	}
+	
+	private static SerialSememe readSememe(DataInputStream in) throws IOException {
+		SerialSememe sememe;
+		String str;
+		Boolean bool;
+		
+		if (!in.readBoolean()) {
+			return null;
+		}
+		sememe = new SerialSememe();
+		str = readString(in);
+		if (str != null) {
+			sememe.setName(str);
+		}
+		str = readString(in);
+		if (str != null) {
+			sememe.setCanonicalForm(str);
+		}
+		bool = readBoolean(in);
+		if (bool != null) {
+			sememe.setExternalUse(bool);
+		}
+		bool = readBoolean(in);
+		if (bool != null) {
+			sememe.setAdminOnly(bool);
+		}
+		bool = readBoolean(in);
+		if (bool != null) {
+			sememe.setLoggedIn(bool);
+		}
+		return sememe;
+	}
+	
+	/**
+	 * Write a SerialUUID. Note that a SerialUUID can exist without a UUID string (the no-arg
+	 * constructor), which is not the same as no SerialUUID at all.
+	 * 
+	 */
+	private static void writeUUID(DataOutputStream out, SerialUUID<?> uuid) throws IOException {
+		
+		if (uuid == null) {
+			out.writeBoolean(false);
+			return;
+		}
+		out.writeBoolean(true);
+		writeString(out, uuid.getUUIDString());
+	}
+	
+	private static <T extends SerialEntity> SerialUUID<T> readUUID(DataInputStream in) throws IOException {
+		String uuidStr;
+		
+		if (!in.readBoolean()) {
+			return null;
+		}
+		uuidStr = readString(in);
+		if (uuidStr == null) {
+			return new SerialUUID<>();
+		}
+		return new SerialUUID<>(uuidStr);
+	}
+	
+	private static void writeAlixianID(DataOutputStream out, AlixianID alixianID) throws IOException {
+		
+		if (alixianID == null) {
+			writeString(out, null);
+		} else {
+			writeString(out, alixianID.toString());
+		}
+	}
+	
+	private static AlixianID readAlixianID(DataInputStream in) throws IOException {
+		String id;
+		
+		id = readString(in);
+		if (id == null) {
+			return null;
+		}
+		return new AlixianID(id);
+	}
+	
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		
+		if (str == null) {
+			out.writeInt(NULL_LENGTH);
+			return;
+		}
+		writeBytes(out, str.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes;
+		
+		bytes = readBytes(in);
+		if (bytes == null) {
+			return null;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		
+		if (bytes == null) {
+			out.writeInt(NULL_LENGTH);
+			return;
+		}
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes;
+		int length;
+		
+		length = readLength(in);
+		if (length == NULL_LENGTH) {
+			return null;
+		}
+		bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+	
+	/**
+	 * Read a length or count and make sure the rest of the bytes could hold that many, so a
+	 * corrupt message can't make us allocate a huge array.
+	 * 
+	 */
+	private static int readLength(DataInputStream in) throws IOException {
+		int length;
+		
+		length = in.readInt();
+		if (length == NULL_LENGTH) {
+			return length;
+		}
+		if (length < 0 || length > in.available()) {
+			throw new AlixiaException("DialogCodec: corrupt length " + length);
+		}
+		return length;
+	}
+	
+	private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException {
+		
+		if (value == null) {
+			writeString(out, null);
+		} else {
+			writeString(out, value.name());
+		}
+	}
+	
+	private static <E extends Enum<E>> E readEnum(DataInputStream in, Class<E> enumClass) throws IOException {
+		String name;
+		
+		name = readString(in);
+		if (name == null) {
+			return null;
+		}
+		try {
+			return Enum.valueOf(enumClass, name);
+		} catch (IllegalArgumentException e) {
+			throw new AlixiaException("DialogCodec: unknown " + enumClass.getSimpleName() + " " + name, e);
+		}
+	}
+	
+	private static void writeBoolean(DataOutputStream out, Boolean value) throws IOException {
+		
+		if (value == null) {
+			out.writeByte(NULL_BOOLEAN);
+		} else {
+			out.writeByte(value ? 1 : 0);
+		}
+	}
+	
+	private static Boolean readBoolean(DataInputStream in) throws IOException {
+		byte value;
+		
+		value = in.readByte();
+		if (value == NULL_BOOLEAN) {
+			return null;
+		}
+		return value != 0;
+	}
+	
+	private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+		
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeInt(value);
+		}
+	}
+	
+	private static Integer readInteger(DataInputStream in) throws IOException {
+		
+		if (!in.readBoolean()) {
+			return null;
+		}
+		return in.readInt();
+	}
+	
+	private static void writeLong(DataOutputStream out, Long value) throws IOException {
+		
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeLong(value);
+		}
+	}
+	
+	private static Long readLong(DataInputStream in) throws IOException {
+		
+		if (!in.readBoolean()) {
+			return null;
+		}
+		return in.readLong();
+	}
+	
+	private static void writeFloat(DataOutputStream out, Float value) throws IOException {
+		
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeInt(Float.floatToRawIntBits(value));
+		}
+	}
+	
+	private static Float readFloat(DataInputStream in) throws IOException {
+		
+		if (!in.readBoolean()) {
+			return null;
+		}
+		return Float.intBitsToFloat(in.readInt());
+	}
+	
+	private static void writeSerialized(DataOutputStream out, Object object) throws IOException {
+		ByteArrayOutputStream byteOutputStream;
+		
+		byteOutputStream = new ByteArrayOutputStream();
+		try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteOutputStream)) {
+			objectOutputStream.writeObject(object);
+		}
+		writeBytes(out, byteOutputStream.toByteArray());
+	}
+	
+	private static Object readSerialized(DataInputStream in) throws IOException {
+		byte[] bytes;
+		
+		bytes = readBytes(in);
+		if (bytes == null) {
+			return null;
+		}
+		try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return objectInputStream.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new AlixiaException("DialogCodec: class not found for client object", e);
+		}
+	}
+	
+	/**
+	 * Guess how big the encoded dialog will be, mostly so a dialog with media doesn't 
+	 * get copied over and over as the buffer grows.
+	 * 
+	 */
+	private static int estimateSize(Dialog dialog) {
+		AlixiaClientObject object;
+		byte[][] mediaBytes;
+		byte[] audio;
+		long size;
+		
+		size = DEFAULT_SIZE;
+		object = dialog.getClientObject();
+		if (object instanceof MediaObject) {
+			mediaBytes = ((MediaObject) object).getMediaBytes();
+			if (mediaBytes != null) {
+				for (byte[] bytes : mediaBytes) {
+					if (bytes != null) {
+						size += bytes.length + 4;
+					}
+				}
+			}
+		}
+		if (dialog instanceof DialogRequest) {
+			audio = ((DialogRequest) dialog).getRequestAudio();
+			if (audio != null) {
+				size += audio.length;
+			}
+		}
+		return (int) Math.min(size, Integer.MAX_VALUE - 8);
+	}
+}
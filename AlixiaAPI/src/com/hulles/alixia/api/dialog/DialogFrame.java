@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.api.dialog;
+
+import com.hulles.alixia.api.AlixiaConstants;
+import com.hulles.alixia.api.remote.AlixianID;
+import com.hulles.alixia.api.shared.SharedUtils;
+
+/**
+ * A DialogFrame is what we can learn about a serialized dialog without decoding its body: 
+ * the DialogHeader fields, the dialog type and the body length. In the binary format these
+ * sit at the front of the byte array, so peeking costs next to nothing and we only decode
+ * the body if the dialog is really for us. For Java serialization we have to read the header
+ * object and we don't know the type or length until we read the body.
+ * 
+ * @author hulles
+ *
+ */
+public final class DialogFrame {
+	private final DialogFormat format;
+	private final DialogHeader header;
+	private final DialogType dialogType;
+	private final int bodyOffset;
+	private final int bodyLength;
+	
+	DialogFrame(DialogFormat format, DialogHeader header, DialogType dialogType, 
+			int bodyOffset, int bodyLength) {
+		
+		SharedUtils.checkNotNull(format);
+		SharedUtils.checkNotNull(header);
+		SharedUtils.checkNotNull(dialogType);
+		this.format = format;
+		this.header = header;
+		this.dialogType = dialogType;
+		this.bodyOffset = bodyOffset;
+		this.bodyLength = bodyLength;
+	}
+	
+	/**
+	 * Get the format the dialog was written in.
+	 * 
+	 * @return The format
+	 */
+	public DialogFormat getFormat() {
+		
+		return format;
+	}
+	
+	/**
+	 * Get the header of the dialog.
+	 * 
+	 * @return The header
+	 */
+	public DialogHeader getHeader() {
+		
+		return header;
+	}
+	
+	/**
+	 * Get the ID of the Alixian the dialog is addressed to.
+	 * 
+	 * @return The Alixian's ID
+	 */
+	public AlixianID getToAlixianID() {
+		
+		return header.getToAlixianID();
+	}
+	
+	/**
+	 * Get the type of the dialog, which is UNKNOWN for Java serialization.
+	 * 
+	 * @return The dialog type
+	 */
+	public DialogType getDialogType() {
+		
+		return dialogType;
+	}
+	
+	/**
+	 * Get the length of the encoded body, or -1 if we don't know it.
+	 * 
+	 * @return The body length
+	 */
+	public int getBodyLength() {
+		
+		return bodyLength;
+	}
+	
+	/**
+	 * Where the body starts in the byte array, or -1 if we don't know.
+	 * 
+	 * @return The offset of the body
+	 */
+	int getBodyOffset() {
+		
+		return bodyOffset;
+	}
+	
+	/**
+	 * Is the dialog meant for this Alixian, i.e. addressed to it or broadcast?
+	 * 
+	 * @param alixianID The ID of the Alixian
+	 * @return True if the Alixian should decode the body
+	 */
+	public boolean isFor(AlixianID alixianID) {
+		AlixianID toAlixianID;
+		
+		SharedUtils.checkNotNull(alixianID);
+		toAlixianID = header.getToAlixianID();
+		return toAlixianID.equals(alixianID) || toAlixianID.equals(AlixiaConstants.getBroadcastAlixianID());
+	}
+	
+	@Override
+	public String toString() {
+		
+		return "DialogFrame [format=" + format + ", toAlixianID=" + header.getToAlixianID() + 
+				", dialogType=" + dialogType + ", bodyLength=" + bodyLength + "]";
+	}
+
+	public enum DialogType {
+		REQUEST,
+		RESPONSE,
+		UNKNOWN
+	}
+}
@@ -57,6 +57,10 @@ public class DialogRequest extends Dialog {
 		super();
 		
 	}
+	DialogRequest(Long documentID) {
+		super(documentID);
+		
+	}
 
     /**
      * Get the session type (e.g. SERIALIZED)
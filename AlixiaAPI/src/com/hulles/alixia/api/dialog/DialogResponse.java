@@ -49,6 +49,12 @@ public class DialogResponse extends Dialog {
 		SharedUtils.checkNotNull(requestID);
 		responseToRequestID = requestID;
 	}
+	DialogResponse(Long documentID, Long requestID) {
+		super(documentID);
+		
+		SharedUtils.nullsOkay(requestID);
+		responseToRequestID = requestID;
+	}
 	
 	public Long getResponseToRequestID() {
 		
@@ -35,7 +35,6 @@ import java.io.StreamCorruptedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.hulles.alixia.api.AlixiaConstants;
 import com.hulles.alixia.api.jebus.JebusHub;
 import com.hulles.alixia.api.remote.AlixianID;
 import com.hulles.alixia.api.shared.AlixiaException;
@@ -44,6 +43,14 @@ import com.hulles.alixia.api.shared.SharedUtils;
 /**
  * This is how we send requests and responses back and forth between Alixia Central and
  * remote stations.
+ * <p>
+ * We can write either Java serialization or the compact binary DialogCodec (see DialogFormat). 
+ * We can always read both, since the binary format starts with its own magic number instead of 
+ * the Java stream magic number. So the format is negotiable: a sender can use the format the 
+ * other end last used with it, and fall back to JAVA when it doesn't know. That's why JAVA
+ * is the default: an older Central can't read BINARY.
+ * <p>
+ * Recipients can peek at a DialogFrame to see who a dialog is for before paying to decode it.
  * 
  * @author hulles
  *
@@ -51,11 +58,78 @@ import com.hulles.alixia.api.shared.SharedUtils;
 public class DialogSerialization {
 	final static Logger LOGGER = LoggerFactory.getLogger(DialogSerialization.class);
 	private static final int MAXHEADROOM = JebusHub.getMaxHardOutputBufferLimit();
+	private static volatile DialogFormat defaultFormat = DialogFormat.JAVA;
 	
 	/**
-	 * Deserialize a byte array for an Alixian. We deserialize at least the header,
-	 * and if it's either a broadcast message or sent to the Alixian, we also 
-	 * deserialize the body.
+	 * Get the format serialize uses when it isn't told which one to use.
+	 * 
+	 * @return The default format
+	 */
+	public static DialogFormat getDefaultFormat() {
+		
+		return defaultFormat;
+	}
+	
+	/**
+	 * Set the format serialize uses when it isn't told which one to use, e.g. JAVA 
+	 * when talking to an older Alixia Central.
+	 * 
+	 * @param format The default format
+	 */
+	public static void setDefaultFormat(DialogFormat format) {
+		
+		SharedUtils.checkNotNull(format);
+		defaultFormat = format;
+	}
+	
+	/**
+	 * Get the format of a serialized dialog.
+	 * 
+	 * @param bytes The serialized dialog
+	 * @return The format it was written in
+	 */
+	public static DialogFormat getFormat(byte[] bytes) {
+		
+		SharedUtils.checkNotNull(bytes);
+		if (DialogCodec.isCodecBytes(bytes)) {
+			return DialogFormat.BINARY;
+		}
+		return DialogFormat.JAVA;
+	}
+	
+	/**
+	 * Read the frame of a serialized dialog: its header and, for the binary format, its type
+	 * and body length, without decoding the body.
+	 * 
+	 * @param bytes The byte array containing the serialized objects
+	 * @return The frame
+	 */
+	public static DialogFrame peek(byte[] bytes) {
+		ByteArrayInputStream byteInputStream;
+		DialogHeader header;
+		
+		SharedUtils.checkNotNull(bytes);
+		if (DialogCodec.isCodecBytes(bytes)) {
+			return DialogCodec.peek(bytes);
+		}
+		byteInputStream = new ByteArrayInputStream(bytes);
+		try (ObjectInputStream objectInputStream = new ObjectInputStream(byteInputStream)) {
+			header = (DialogHeader) objectInputStream.readObject();
+		} catch (InvalidClassException e) {
+			throw new AlixiaException("DialogSerialization:peek: invalid class", e);
+		} catch (ClassNotFoundException e) {
+			throw new AlixiaException("DialogSerialization:peek: class not found", e);
+		} catch (StreamCorruptedException e) {
+			throw new AlixiaException("DialogSerialization:peek: stream corrupted", e);
+		} catch (IOException e) {
+			throw new AlixiaException("DialogSerialization:peek: IO exception", e);
+		}
+		return new DialogFrame(DialogFormat.JAVA, header, DialogFrame.DialogType.UNKNOWN, -1, -1);
+	}
+	
+	/**
+	 * Deserialize a byte array for an Alixian. We peek at the frame, and only if it's either
+	 * a broadcast message or sent to the Alixian do we deserialize the body.
 	 * 
 	 * @param alixianID The ID of the Alixian
 	 * @param bytes The byte array containing the serialized objects
@@ -63,47 +137,47 @@ public class DialogSerialization {
 	 * the data
 	 */
 	public static Dialog deSerialize(AlixianID alixianID, byte[] bytes) {
-		ByteArrayInputStream byteInputStream;
-		Object object;
-		DialogHeader header;
-		Dialog dialog = null;
-		Dialog notOurDialog;
-		AlixianID dialogAlixianID;
-		AlixianID bcastID = AlixiaConstants.getBroadcastAlixianID();
-		String debugString;
-		boolean debugging;
+		DialogFrame frame;
 		
 		SharedUtils.checkNotNull(alixianID);
 		SharedUtils.checkNotNull(bytes);
-		debugging = LOGGER.isDebugEnabled();
+		frame = peek(bytes);
+		if (!frame.isFor(alixianID)) {
+			LOGGER.debug("NOT OUR ALIXIANID: {}", frame);
+			return null;
+		}
+		return deSerialize(frame, bytes);
+	}
+
+	/**
+	 * Deserialize the body of a dialog whose frame we already peeked at.
+	 * 
+	 * @param frame The frame from peek()
+	 * @param bytes The byte array containing the serialized objects
+	 * @return The Dialog
+	 */
+	public static Dialog deSerialize(DialogFrame frame, byte[] bytes) {
+		ByteArrayInputStream byteInputStream;
+		Dialog dialog;
+		
+		SharedUtils.checkNotNull(frame);
+		SharedUtils.checkNotNull(bytes);
 		LOGGER.debug("DESERIALIZING");
+		if (frame.getFormat() == DialogFormat.BINARY) {
+			try {
+				dialog = DialogCodec.readDialog(bytes, frame);
+			} catch (IOException e) {
+				throw new AlixiaException("DialogSerialization:deSerialize: IO exception decoding", e);
+			}
+			LOGGER.debug("{}", dialog);
+			LOGGER.debug("FINISHED DESERIALIZING");
+			return dialog;
+		}
 		byteInputStream = new ByteArrayInputStream(bytes);
 		try (ObjectInputStream objectInputStream = new ObjectInputStream(byteInputStream)) {
-			object = objectInputStream.readObject();
-			header = (DialogHeader) object;
-			dialogAlixianID = header.getToAlixianID();
-			if (dialogAlixianID.equals(bcastID) || dialogAlixianID.equals(alixianID)) {
-				object = objectInputStream.readObject();
-				dialog = (Dialog) object;
-				if (debugging) {
-					if (dialog instanceof DialogRequest) {
-						debugString = ((DialogRequest)dialog).toString();
-					} else {
-						debugString = ((DialogResponse)dialog).toString();
-					}
-					LOGGER.debug(debugString);
-				}
-			} else if (debugging) {
-				object = objectInputStream.readObject();
-				notOurDialog = (Dialog) object;
-				debugString = "NOT OUR ALIXIANID\n";
-				if (notOurDialog instanceof DialogRequest) {
-					debugString += ((DialogRequest)notOurDialog).toString();
-				} else {
-					debugString += ((DialogResponse)notOurDialog).toString();
-				}
-				LOGGER.debug(debugString);
-			}
+			// skip the header, we have it already
+			objectInputStream.readObject();
+			dialog = (Dialog) objectInputStream.readObject();
 		} catch (InvalidClassException e) {
 			throw new AlixiaException("DialogSerialization:deSerialize: invalid class", e);
 		} catch (ClassNotFoundException e) {
@@ -115,44 +189,66 @@ public class DialogSerialization {
 		} catch (IOException e) {
 			throw new AlixiaException("DialogSerialization:deSerialize: IO exception", e);
 		}
+		LOGGER.debug("{}", dialog);
 		LOGGER.debug("FINISHED DESERIALIZING");
 		return dialog;
 	}
-
+	
 	/**
-	 * Given a DialogHeader and a Dialog, serialize them and return the resulting byte array.
+	 * Given a DialogHeader and a Dialog, serialize them in the default format and return the 
+	 * resulting byte array.
 	 * 
 	 * @param header The DialogHeader
 	 * @param dialog The Dialog
 	 * @return The serialized objects as a byte array
 	 */
 	public static byte[] serialize(DialogHeader header, Dialog dialog) {
+		
+		return serialize(header, dialog, defaultFormat);
+	}
+	
+	/**
+	 * Given a DialogHeader and a Dialog, serialize them in the given format and return the 
+	 * resulting byte array.
+	 * 
+	 * @param header The DialogHeader
+	 * @param dialog The Dialog
+	 * @param format The format to write
+	 * @return The serialized objects as a byte array
+	 */
+	public static byte[] serialize(DialogHeader header, Dialog dialog, DialogFormat format) {
 		ByteArrayOutputStream byteOutputStream;
-		String debugString;
 		DialogRequest request;
 		DialogResponse response;
+		byte[] encoded;
 		
 		LOGGER.debug("IN SERIALIZE");
 		SharedUtils.checkNotNull(header);
 		SharedUtils.checkNotNull(dialog);
+		SharedUtils.checkNotNull(format);
 		if (dialog instanceof DialogRequest) {
 			request = (DialogRequest) dialog;
 			if (!request.isValid()) {
 				LOGGER.error(request.toString());
 				throw new AlixiaException("DialogSerialization:serialize: invalid dialog request");
 			}
-			LOGGER.debug("DEBUG DIALOGREQUEST");
-			debugString = request.toString();
 		} else {
 			response = (DialogResponse) dialog;
 			if (!response.isValid()) {
 			    LOGGER.error(response.toString());
 				throw new AlixiaException("DialogSerialization:serialize: invalid dialog response");
 			}
-			LOGGER.debug("DEBUG DIALOGRESPONSE");
-			debugString = response.toString();
 		}
-		LOGGER.debug(debugString);
+		// the dialog only renders itself if somebody's actually debugging
+		LOGGER.debug("{}", dialog);
+		if (format == DialogFormat.BINARY) {
+			encoded = DialogCodec.encode(header, dialog);
+			LOGGER.debug("ENCODED OBJECTS");
+			if (encoded.length > MAXHEADROOM) {
+				throw new AlixiaException("DialogSerialization: serialized size exceeds Redis max");
+			}
+			return encoded;
+		}
 		LOGGER.debug("READY TO WRITE OBJECTS");
 		byteOutputStream = new ByteArrayOutputStream();
 		try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteOutputStream)) {
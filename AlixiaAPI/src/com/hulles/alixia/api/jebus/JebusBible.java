@@ -138,6 +138,26 @@ public final class JebusBible {
 		return sessionKey + ":" + id.toString();
 	}
 		
+	/**
+	 * Construct the pub/sub channel on which a single Alixian receives its dialogs, 
+	 * given its Alixian ID.
+	 * 
+	 * @param pool The JebusPool for which we want the key
+	 * @param id The AlixianID of the recipient
+	 * @return The Jebus channel as a byte array
+	 */
+	public static byte[] getAlixianChannelKey(JebusPool pool, AlixianID id) {
+		String channelKey;
+        
+		SharedUtils.checkNotNull(id);
+        channelKey = getStringKey(JebusKey.ALIXIANCHANNEL, pool);
+		try {
+			return (channelKey + ":" + id.toString()).getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new AlixiaException("JebusBible: UnsupportedEncodingException", e);
+		}
+	}
+		
 	/**
 	 * Construct the key for the weather cache, given the city ID.
 	 * 
@@ -218,6 +238,7 @@ public final class JebusBible {
         ALIXIAMEDIACACHEKEY("alixia:mediacache", JebusPoolType.LOCAL),
         ALIXIAMEDIACACHECOUNTERKEY("alixia:mediacache:nextKey", JebusPoolType.LOCAL),
         ALIXIAMEDIAFILEUPDATEKEY("alixia:mediaupdate", JebusPoolType.LOCAL),
+        ALIXIANCHANNEL("alixia:channel:from:alixian", JebusPoolType.CENTRAL),
         ALIXIANCOUNTERKEY("alixia:alixian:next_alixian", JebusPoolType.CENTRAL),
         ALIXIANLPKEY("alixia:nlplist", JebusPoolType.CENTRAL),
         ALIXIAPRONGKEY("alixia:prong", JebusPoolType.LOCAL),
@@ -231,6 +252,7 @@ public final class JebusBible {
         ALIXIATICKETCOUNTERKEY("alixia:ticket:nextTicketKey", JebusPoolType.CENTRAL),
         ALIXIATIMERCOUNTERKEY("alixia:timer:nextTimerKey", JebusPoolType.LOCAL),
         ALIXIAWEATHERKEY("alixia:weather", JebusPoolType.CENTRAL),
+        BROADCASTCHANNEL("alixia:channel:from:broadcast", JebusPoolType.CENTRAL),
         CHANNELINCR("alixia:channel:next_console", JebusPoolType.CENTRAL),
         FROMCHANNEL("alixia:channel:from", JebusPoolType.CENTRAL),
         FROMTEXTCHANNEL("alixia:channel:text:from", JebusPoolType.CENTRAL),
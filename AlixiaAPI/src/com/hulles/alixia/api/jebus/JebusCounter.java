@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.api.jebus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hulles.alixia.api.jebus.JebusBible.JebusKey;
+import com.hulles.alixia.api.jebus.JebusPool.JebusPoolType;
+import com.hulles.alixia.api.shared.AlixiaException;
+import com.hulles.alixia.api.shared.SharedUtils;
+
+import redis.clients.jedis.Jedis;
+
+/**
+ * JebusCounter hands out IDs from one of the Jebus counter keys without going to Jebus for each 
+ * one. It leases a block of IDs with a single INCRBY and then counts through the block locally; 
+ * when the block runs out it leases another one.
+ * <p>
+ * Since Jebus never hands the same block out twice, the IDs are unique across restarts and 
+ * across everybody sharing the key, same as with INCR. What we give up is that they are no 
+ * longer in strict time order between processes, and any unused part of a block is lost when 
+ * the process stops. Nobody should be depending on either of those anyway.
+ * 
+ * @author hulles
+ *
+ */
+public final class JebusCounter {
+	private final static int DEFAULT_BLOCK_SIZE = 100;
+	private final static Map<JebusKey, JebusCounter> COUNTERS = new ConcurrentHashMap<>();
+	private final JebusKey key;
+	private final int blockSize;
+	private volatile Block block;
+	
+	private JebusCounter(JebusKey key, int blockSize) {
+		
+		SharedUtils.checkNotNull(key);
+		if (blockSize < 1) {
+			throw new AlixiaException("JebusCounter: block size must be positive");
+		}
+		this.key = key;
+		this.blockSize = blockSize;
+		this.block = null;
+	}
+	
+	/**
+	 * Get the counter for a Jebus counter key, creating it if need be.
+	 * 
+	 * @param key The counter key
+	 * @return The counter
+	 */
+	public static JebusCounter getCounter(JebusKey key) {
+		JebusCounter counter;
+		JebusCounter existing;
+		
+		SharedUtils.checkNotNull(key);
+		counter = COUNTERS.get(key);
+		if (counter == null) {
+			counter = new JebusCounter(key, DEFAULT_BLOCK_SIZE);
+			existing = COUNTERS.putIfAbsent(key, counter);
+			if (existing != null) {
+				counter = existing;
+			}
+		}
+		return counter;
+	}
+	
+	/**
+	 * Get the next ID for the key. This only goes to Jebus when the current block is used up.
+	 * 
+	 * @return The ID
+	 */
+	public long next() {
+		Block current;
+		long id;
+		
+		current = block;
+		while (true) {
+			if (current != null) {
+				id = current.next.getAndIncrement();
+				if (id <= current.last) {
+					return id;
+				}
+			}
+			current = lease(current);
+		}
+	}
+	
+	/**
+	 * Lease a new block from Jebus, unless somebody else already replaced the exhausted one
+	 * while we were waiting for the lock.
+	 * 
+	 * @param exhausted The block that ran out
+	 * @return The current block
+	 */
+	private synchronized Block lease(Block exhausted) {
+		JebusPool jebusPool;
+		String keyValue;
+		long last;
+		
+		if (block != exhausted) {
+			return block;
+		}
+		if (key.getPoolType() == JebusPoolType.CENTRAL) {
+			jebusPool = JebusHub.getJebusCentral();
+		} else {
+			jebusPool = JebusHub.getJebusLocal();
+		}
+		try (Jedis jebus = jebusPool.getResource()) {
+			keyValue = JebusBible.getStringKey(key, jebusPool);
+			last = jebus.incrBy(keyValue, blockSize);
+		}
+		block = new Block(last - blockSize + 1, last);
+		return block;
+	}
+	
+	/**
+	 * A leased range of IDs, from first to last inclusive.
+	 * 
+	 */
+	private static class Block {
+		final AtomicLong next;
+		final long last;
+		
+		Block(long first, long last) {
+			
+			this.next = new AtomicLong(first);
+			this.last = last;
+		}
+	}
+}
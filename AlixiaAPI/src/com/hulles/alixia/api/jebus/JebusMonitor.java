@@ -128,6 +128,7 @@ final class JebusMonitor implements Closeable {
 					// the following line blocks while waiting for responses...
 					jebus.subscribe(listener,
 							JebusBible.getBytesKey(JebusKey.FROMCHANNEL, jebusPool),
+							JebusBible.getBytesKey(JebusKey.BROADCASTCHANNEL, jebusPool),
 							JebusBible.getBytesKey(JebusKey.TOCHANNEL, jebusPool));
 				}
 			}
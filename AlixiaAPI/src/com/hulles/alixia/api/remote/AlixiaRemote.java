@@ -43,6 +43,8 @@ import org.slf4j.LoggerFactory;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import com.hulles.alixia.api.AlixiaConstants;
 import com.hulles.alixia.api.dialog.Dialog;
+import com.hulles.alixia.api.dialog.DialogFormat;
+import com.hulles.alixia.api.dialog.DialogFrame;
 import com.hulles.alixia.api.dialog.DialogHeader;
 import com.hulles.alixia.api.dialog.DialogRequest;
 import com.hulles.alixia.api.dialog.DialogResponse;
@@ -110,6 +112,7 @@ public final class AlixiaRemote extends AbstractExecutionThreadService {
 	private Language language = null;
 	private String userName;
 	private volatile boolean serverUp;
+	private volatile DialogFormat centralFormat = DialogFormat.JAVA;
 	
 	public AlixiaRemote(AlixiaRemoteDisplay display) {
 		this(null, null, display);
@@ -356,8 +359,11 @@ public final class AlixiaRemote extends AbstractExecutionThreadService {
 		
 		try (Jedis jebus = jebusCentral.getResource()) {
 			listener = new JebusListener();
+			// we only listen for dialogs addressed to us and for broadcasts; the
+			//    station server falls back to FROMCHANNEL for legacy stations
 			// the following line blocks while waiting for responses...
-			jebus.subscribe(listener, JebusBible.getBytesKey(JebusBible.JebusKey.FROMCHANNEL, jebusCentral));
+			jebus.subscribe(listener, JebusBible.getAlixianChannelKey(jebusCentral, alixianID),
+					JebusBible.getBytesKey(JebusBible.JebusKey.BROADCASTCHANNEL, jebusCentral));
 		}
 	}
 	
@@ -497,7 +503,7 @@ public final class AlixiaRemote extends AbstractExecutionThreadService {
 		header = new DialogHeader();
 		header.setToAlixianID(AlixiaConstants.getAlixiaAlixianID());
 		LOGGER.debug("AlixiaRemote: serializing request");
-		dialogBytes = DialogSerialization.serialize(header, request);
+		dialogBytes = DialogSerialization.serialize(header, request, centralFormat);
 		if (dialogBytes == null) {
 			throw new AlixiaException("Couldn't create dialog to send");
 		}
@@ -511,7 +517,8 @@ public final class AlixiaRemote extends AbstractExecutionThreadService {
 	void receiveBytes(byte[] responseBytes) {
 		String text;
 		String expl;
-		Dialog dialog = null;
+		DialogFrame frame;
+		Dialog dialog;
 		DialogResponse dialogResponse;
 		DialogRequest dialogRequest;
 		SerialSememe sememe;
@@ -522,15 +529,19 @@ public final class AlixiaRemote extends AbstractExecutionThreadService {
 		SharedUtils.checkNotNull(responseBytes);
 		LOGGER.debug("AlixiaRemote: in receiveBytes");
 		try { // TODO make me better :)
-			dialog = DialogSerialization.deSerialize(alixianID, responseBytes);
+			frame = DialogSerialization.peek(responseBytes);
+			// only a Central that reads BINARY publishes on our channels, so once we
+			//    hear from it we can stop sending it JAVA
+			centralFormat = DialogFormat.BINARY;
+			if (!frame.isFor(alixianID)) {
+				// dialog not sent to us, so don't bother decoding the rest of it
+				LOGGER.debug("AlixiaRemote: got input, but not sent to us");
+				return;
+			}
+			dialog = DialogSerialization.deSerialize(frame, responseBytes);
 		} catch (Exception e1) {
             throw new AlixiaException("Can't deserialize response", e1);
 		}
-		if (dialog == null) {
-			// dialog not sent to us...
-			LOGGER.debug("AlixiaRemote: got input, but not sent to us");
-			return;
-		}
 		if (dialog instanceof DialogResponse) {
 			dialogResponse = (DialogResponse) dialog;
 			
@@ -21,8 +21,8 @@
  *******************************************************************************/
 package com.hulles.alixia.api.tools;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,9 +35,12 @@ import com.hulles.alixia.api.shared.SharedUtils;
  * a java.util.Timer, it just stores a start time in the map, then when stopTimer is called 
  * it does the arithmetic to calculate elapsed time.
  * 
+ * @deprecated Use StageTimer, which keeps percentiles per stage instead of logging single 
+ * timings, and doesn't get confused when two threads use the same timer name.
  * @author hulles
  *
  */
+@Deprecated
 public final class AlixiaTimer {
 	final static Logger LOGGER = LoggerFactory.getLogger(AlixiaTimer.class);
 	private final static Map<String, Long> TIMERMAP;
@@ -47,7 +50,7 @@ public final class AlixiaTimer {
 	}
 	
 	static {
-		TIMERMAP = new HashMap<>();
+		TIMERMAP = new ConcurrentHashMap<>();
 	}
 	
 	/**
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.api.tools;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StageHistogram is a small lock-free histogram of elapsed times in nanoseconds, after the
+ * fashion of HdrHistogram. Each power of two is split into SUB_BUCKETS linear buckets, so 
+ * any value we report is within about 6% of the value recorded, from a few nanoseconds 
+ * up to centuries, in a fixed thousand or so counters. We don't need the real thing's 
+ * precision to see where the time goes, and this way we don't need the library.
+ * 
+ * @author hulles
+ *
+ */
+public final class StageHistogram {
+	private final static int SUB_BUCKET_BITS = 4;
+	private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private final static int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+	private final AtomicLongArray buckets;
+	private final LongAdder count;
+	private final LongAdder totalNanos;
+	private final AtomicLong maxNanos;
+	
+	public StageHistogram() {
+		
+		buckets = new AtomicLongArray(BUCKET_COUNT);
+		count = new LongAdder();
+		totalNanos = new LongAdder();
+		maxNanos = new AtomicLong();
+	}
+	
+	/**
+	 * Record an elapsed time.
+	 * 
+	 * @param nanos The elapsed time, in nanoseconds
+	 */
+	public void record(long nanos) {
+		long value;
+		
+		value = Math.max(0L, nanos);
+		buckets.incrementAndGet(bucketIndex(value));
+		count.increment();
+		totalNanos.add(value);
+		if (value > maxNanos.get()) {
+			maxNanos.accumulateAndGet(value, Math::max);
+		}
+	}
+	
+	/**
+	 * Values below SUB_BUCKETS get a bucket of their own; above that, the top 
+	 * SUB_BUCKET_BITS + 1 bits of the value pick the bucket.
+	 * 
+	 * @param value The value
+	 * @return The bucket index
+	 */
+	private static int bucketIndex(long value) {
+		int shift;
+		int subBucket;
+		
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		subBucket = (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	/**
+	 * Get the highest value that lands in a bucket.
+	 * 
+	 * @param index The bucket index
+	 * @return The highest value
+	 */
+	private static long bucketHighValue(int index) {
+		int shift;
+		int subBucket;
+		
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		shift = index / SUB_BUCKETS - 1;
+		subBucket = index % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+	
+	/**
+	 * Get the number of times recorded.
+	 * 
+	 * @return The count
+	 */
+	public long getCount() {
+		
+		return count.sum();
+	}
+	
+	/**
+	 * Get the longest time recorded.
+	 * 
+	 * @return The maximum, in nanoseconds
+	 */
+	public long getMaxNanos() {
+		
+		return maxNanos.get();
+	}
+	
+	/**
+	 * Get the mean of the times recorded.
+	 * 
+	 * @return The mean, in nanoseconds
+	 */
+	public double getMeanNanos() {
+		long n;
+		
+		n = count.sum();
+		if (n == 0) {
+			return 0.0;
+		}
+		return (double) totalNanos.sum() / n;
+	}
+	
+	/**
+	 * Get the time at or below which the given percentage of the recorded times fall, 
+	 * e.g. 99.0 for the 99th percentile. Since we're reading counters other threads are 
+	 * still updating, it's a close approximation rather than a snapshot.
+	 * 
+	 * @param percentile The percentile, from 0 to 100
+	 * @return The time, in nanoseconds
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total;
+		long target;
+		long seen;
+		
+		if (percentile < 0.0 || percentile > 100.0) {
+			throw new IllegalArgumentException("StageHistogram: bad percentile " + percentile);
+		}
+		total = 0;
+		for (int ix = 0; ix < BUCKET_COUNT; ix++) {
+			total += buckets.get(ix);
+		}
+		if (total == 0) {
+			return 0L;
+		}
+		target = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+		seen = 0;
+		for (int ix = 0; ix < BUCKET_COUNT; ix++) {
+			seen += buckets.get(ix);
+			if (seen >= target) {
+				return Math.min(bucketHighValue(ix), getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+	
+	/**
+	 * Forget everything recorded so far.
+	 * 
+	 */
+	public void reset() {
+		
+		for (int ix = 0; ix < BUCKET_COUNT; ix++) {
+			buckets.set(ix, 0L);
+		}
+		count.reset();
+		totalNanos.reset();
+		maxNanos.set(0L);
+	}
+}
@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.api.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hulles.alixia.api.shared.SharedUtils;
+
+/**
+ * StageTimer keeps a histogram of how long a named stage of the work takes (NER, POS tagging,
+ * a Jebus round trip, etc.), so we can see where an utterance spends its time without 
+ * attaching a profiler. It replaces AlixiaTimer, which only logged one timing at a time.
+ * <p>
+ * Get a timer once with forStage and keep it in a static field, then bracket the work:
+ * <pre>
+ *     startNanos = NER_TIMER.start();
+ *     ...
+ *     NER_TIMER.stop(startNanos);
+ * </pre>
+ * Timing is off until someone calls setEnabled(true); while it's off start doesn't even 
+ * read the clock and stop does nothing, so it costs next to nothing to leave the calls in.
+ * 
+ * @author hulles
+ *
+ */
+public final class StageTimer {
+	private final static Logger LOGGER = LoggerFactory.getLogger(StageTimer.class);
+	public final static String NER = "NER";
+	public final static String POS = "POS";
+	public final static String LEMMATIZE = "lemmatize";
+	public final static String CHUNK = "chunk";
+	public final static String DOCCAT = "doccat";
+	public final static String REDIS = "Redis";
+	public final static String DB = "DB";
+	private final static ConcurrentMap<String, StageTimer> STAGES = new ConcurrentHashMap<>();
+	private static volatile boolean enabled = false;
+	private final String stageName;
+	private final StageHistogram histogram;
+	
+	private StageTimer(String stageName) {
+		
+		this.stageName = stageName;
+		this.histogram = new StageHistogram();
+	}
+	
+	/**
+	 * Get the timer for a stage, creating it if need be. Everyone who asks for the same name
+	 * gets the same timer.
+	 * 
+	 * @param stageName The name of the stage
+	 * @return The timer
+	 */
+	public static StageTimer forStage(String stageName) {
+		StageTimer timer;
+		StageTimer oldTimer;
+		
+		SharedUtils.checkNotNull(stageName);
+		timer = STAGES.get(stageName);
+		if (timer == null) {
+			timer = new StageTimer(stageName);
+			oldTimer = STAGES.putIfAbsent(stageName, timer);
+			if (oldTimer != null) {
+				timer = oldTimer;
+			}
+		}
+		return timer;
+	}
+	
+	/**
+	 * Turn stage timing on or off for everybody.
+	 * 
+	 * @param enable True to turn it on
+	 */
+	public static void setEnabled(boolean enable) {
+		
+		LOGGER.info("StageTimer: stage timing is {}", enable ? "on" : "off");
+		enabled = enable;
+	}
+	
+	public static boolean isEnabled() {
+		
+		return enabled;
+	}
+	
+	/**
+	 * Start timing the stage.
+	 * 
+	 * @return The start time to hand to stop, or 0 if timing is off
+	 */
+	public long start() {
+		
+		if (!enabled) {
+			return 0L;
+		}
+		return System.nanoTime();
+	}
+	
+	/**
+	 * Stop timing the stage and record the elapsed time.
+	 * 
+	 * @param startNanos The value returned by start
+	 */
+	public void stop(long startNanos) {
+		
+		if (startNanos == 0L) {
+			return;
+		}
+		histogram.record(System.nanoTime() - startNanos);
+	}
+	
+	/**
+	 * Record a time that somebody measured themselves, if timing is on.
+	 * 
+	 * @param elapsedNanos The elapsed time, in nanoseconds
+	 */
+	public void record(long elapsedNanos) {
+		
+		if (!enabled) {
+			return;
+		}
+		histogram.record(elapsedNanos);
+	}
+	
+	public String getStageName() {
+		
+		return stageName;
+	}
+	
+	public StageHistogram getHistogram() {
+		
+		return histogram;
+	}
+	
+	/**
+	 * Get all the stage timers, sorted by name.
+	 * 
+	 * @return The timers
+	 */
+	public static List<StageTimer> getStageTimers() {
+		List<StageTimer> timers;
+		
+		timers = new ArrayList<>(STAGES.values());
+		Collections.sort(timers, new Comparator<StageTimer>() {
+			@Override
+			public int compare(StageTimer timer1, StageTimer timer2) {
+				return timer1.stageName.compareTo(timer2.stageName);
+			}
+		});
+		return timers;
+	}
+	
+	/**
+	 * Get a line of percentiles for each stage that has recorded anything.
+	 * 
+	 * @return The lines, an empty list if nothing has been timed
+	 */
+	public static List<String> getStageReport() {
+		List<String> report;
+		
+		report = new ArrayList<>();
+		for (StageTimer timer : getStageTimers()) {
+			if (timer.histogram.getCount() > 0) {
+				report.add(timer.toString());
+			}
+		}
+		return report;
+	}
+	
+	/**
+	 * Log the percentiles for all the stages that have recorded anything.
+	 * 
+	 */
+	public static void logStageTimings() {
+		
+		for (String line : getStageReport()) {
+			LOGGER.info("Stage {}", line);
+		}
+	}
+	
+	/**
+	 * Forget everything all the stages have recorded.
+	 * 
+	 */
+	public static void resetAll() {
+		
+		for (StageTimer timer : STAGES.values()) {
+			timer.histogram.reset();
+		}
+	}
+	
+	private static String formatNanos(double nanos) {
+		
+		return String.format("%.3f ms", nanos / 1.0e6);
+	}
+	
+	@Override
+	public String toString() {
+		
+		return stageName + ": count " + histogram.getCount() + 
+				", mean " + formatNanos(histogram.getMeanNanos()) +
+				", p50 " + formatNanos(histogram.getValueAtPercentile(50.0)) +
+				", p90 " + formatNanos(histogram.getValueAtPercentile(90.0)) +
+				", p99 " + formatNanos(histogram.getValueAtPercentile(99.0)) +
+				", max " + formatNanos(histogram.getMaxNanos());
+	}
+}
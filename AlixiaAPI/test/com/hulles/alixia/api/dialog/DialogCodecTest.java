@@ -0,0 +1,274 @@
+/**
+ *
+ */
+package com.hulles.alixia.api.dialog;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.hulles.alixia.api.object.AlixiaClientObject.ClientObjectType;
+import com.hulles.alixia.api.object.AudioObject;
+import com.hulles.alixia.api.object.ChangeLanguageObject;
+import com.hulles.alixia.api.object.LoginObject;
+import com.hulles.alixia.api.object.LoginResponseObject;
+import com.hulles.alixia.api.object.MediaObject;
+import com.hulles.alixia.api.remote.AlixianID;
+import com.hulles.alixia.api.shared.SerialPerson;
+import com.hulles.alixia.api.shared.SerialSememe;
+import com.hulles.alixia.api.shared.SerialStation;
+import com.hulles.alixia.api.shared.SerialUUID;
+import com.hulles.alixia.api.shared.SessionType;
+import com.hulles.alixia.media.Language;
+import com.hulles.alixia.media.MediaFormat;
+import com.hulles.alixia.media.audio.SerialAudioFormat;
+
+/**
+ * Round-trips each shape of DialogRequest and DialogResponse through DialogCodec and checks
+ * that the decoded dialog Java-serializes to the same bytes as the original, i.e. that we
+ * didn't drop or change a field on the way.
+ *
+ * @author hulles
+ *
+ */
+@DisplayName("Testing AlixiaAPI.DialogCodec")
+class DialogCodecTest {
+	private final static Logger LOGGER = Logger.getLogger("AlixiaAPI.DialogCodec");
+	private final static AlixianID CENTRAL = new AlixianID("ALIXIA");
+	private final static AlixianID STATION = new AlixianID("12345");
+	private DialogHeader requestHeader;
+	private DialogHeader responseHeader;
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@BeforeEach
+	void setUp() throws Exception {
+
+		requestHeader = new DialogHeader();
+		requestHeader.setToAlixianID(CENTRAL);
+		responseHeader = new DialogHeader();
+		responseHeader.setToAlixianID(STATION);
+	}
+
+	@Test
+	@DisplayName("Test text request")
+	void testTextRequest() throws IOException {
+
+		LOGGER.info("Test text request");
+		roundTrip(requestHeader, newRequest());
+	}
+
+	@Test
+	@DisplayName("Test login request")
+	void testLoginRequest() throws IOException {
+		DialogRequest request;
+		LoginObject login;
+
+		LOGGER.info("Test login request");
+		request = newRequest();
+		login = new LoginObject();
+		login.setUserName("hulles");
+		login.setPassword("aardvark");
+		request.setClientObject(login);
+		request.setRequestAudio(new byte[] {1, 2, 3});
+		roundTrip(requestHeader, request);
+	}
+
+	@Test
+	@DisplayName("Test audio request")
+	void testAudioRequest() throws IOException {
+		DialogRequest request;
+		AudioObject audio;
+		SerialAudioFormat format;
+
+		LOGGER.info("Test audio request");
+		request = newRequest();
+		format = new SerialAudioFormat();
+		format.setEncodingString("PCM_SIGNED");
+		format.setSampleRate(16000f);
+		format.setSampleSize(16);
+		format.setChannels(1);
+		format.setFrameSize(2);
+		format.setFrameRate(16000f);
+		format.setBigEndian(false);
+		audio = new AudioObject();
+		audio.setAudioFormat(format);
+		audio.setMediaBytes(new byte[][] {new byte[70000], {9}});
+		audio.setMediaFormat(MediaFormat.WAV);
+		audio.setClientObjectType(ClientObjectType.AUDIOBYTES);
+		audio.setLengthSeconds(3);
+		request.setClientObject(audio);
+		roundTrip(requestHeader, request);
+	}
+
+	@Test
+	@DisplayName("Test text response")
+	void testTextResponse() throws IOException {
+
+		LOGGER.info("Test text response");
+		roundTrip(responseHeader, newResponse());
+	}
+
+	@Test
+	@DisplayName("Test image response")
+	void testImageResponse() throws IOException {
+		DialogResponse response;
+		MediaObject media;
+		byte[] image;
+
+		LOGGER.info("Test image response");
+		response = newResponse();
+		image = new byte[1 << 20];
+		new Random(1).nextBytes(image);
+		media = new MediaObject();
+		media.setMediaBytes(new byte[][] {image});
+		media.setMediaFormat(MediaFormat.PNG);
+		media.setClientObjectType(ClientObjectType.IMAGEBYTES);
+		media.setMediaTitle("Aardvark");
+		media.setMediaArtist("Hulles");
+		response.setClientObject(media);
+		roundTrip(responseHeader, response);
+	}
+
+	@Test
+	@DisplayName("Test login response")
+	void testLoginResponse() throws IOException {
+		DialogResponse response;
+		LoginResponseObject login;
+
+		LOGGER.info("Test login response");
+		response = newResponse();
+		login = new LoginResponseObject();
+		login.setUserName("hulles");
+		response.setClientObject(login);
+		roundTrip(responseHeader, response);
+	}
+
+	@Test
+	@DisplayName("Test change language response")
+	void testChangeLanguageResponse() throws IOException {
+		DialogResponse response;
+		ChangeLanguageObject change;
+
+		LOGGER.info("Test change language response");
+		response = newResponse();
+		change = new ChangeLanguageObject();
+		change.setNewLanguage(Language.FRENCH);
+		response.setClientObject(change);
+		roundTrip(responseHeader, response);
+	}
+
+	@Test
+	@DisplayName("Test response without request ID")
+	void testBareResponse() throws IOException {
+		DialogResponse response;
+
+		LOGGER.info("Test response without request ID");
+		response = new DialogResponse();
+		response.setFromAlixianID(CENTRAL);
+		response.setToAlixianID(STATION);
+		response.setLanguage(Language.ITALIAN);
+		response.setMessage("Ciao a tutti");
+		roundTrip(responseHeader, response);
+	}
+
+	@Test
+	@DisplayName("Test default format")
+	void testDefaultFormat() {
+		byte[] bytes;
+
+		LOGGER.info("Test default format");
+		// older Centrals can't read BINARY, so we don't send it unless asked to
+		bytes = DialogSerialization.serialize(requestHeader, newRequest());
+		assertEquals(DialogFormat.JAVA, DialogSerialization.getFormat(bytes));
+	}
+
+	private static DialogRequest newRequest() {
+		DialogRequest request;
+		Set<SerialSememe> sememes;
+		SerialSememe sememe;
+
+		request = new DialogRequest();
+		request.setFromAlixianID(STATION);
+		request.setToAlixianID(CENTRAL);
+		request.setStationUUID(new SerialUUID<SerialStation>());
+		request.setPersonUUID(new SerialUUID<SerialPerson>("123e4567-e89b-12d3-a456-426614174000"));
+		request.setLanguage(Language.GERMAN);
+		request.setSessionType(SessionType.SERIALIZED);
+		request.setIsQuiet(true);
+		sememes = new HashSet<>();
+		for (String name : new String[] {"login", "weather", "héllo"}) {
+			sememe = new SerialSememe();
+			sememe.setName(name);
+			sememe.setCanonicalForm("cf " + name);
+			sememe.setExternalUse(true);
+			sememe.setAdminOnly(false);
+			sememes.add(sememe);
+		}
+		request.setRequestActions(sememes);
+		request.setRequestMessage("Wie spät ist es? ☃");
+		return request;
+	}
+
+	private static DialogResponse newResponse() {
+		DialogResponse response;
+		SerialSememe sememe;
+
+		response = new DialogResponse(77L);
+		response.setFromAlixianID(CENTRAL);
+		response.setToAlixianID(STATION);
+		response.setLanguage(Language.AMERICAN_ENGLISH);
+		response.setMessage("Okay");
+		response.setExplanation("Because");
+		sememe = new SerialSememe();
+		sememe.setName("aardvark");
+		response.setResponseAction(sememe);
+		return response;
+	}
+
+	/**
+	 * Encode the dialog, check the frame, decode it and compare it to the original. Also make
+	 * sure somebody else's Alixian doesn't decode it.
+	 *
+	 * @param header The header
+	 * @param dialog The dialog
+	 * @throws IOException
+	 */
+	private static void roundTrip(DialogHeader header, Dialog dialog) throws IOException {
+		byte[] bytes;
+		DialogFrame frame;
+		Dialog decoded;
+
+		bytes = DialogSerialization.serialize(header, dialog, DialogFormat.BINARY);
+		assertEquals(DialogFormat.BINARY, DialogSerialization.getFormat(bytes));
+		frame = DialogSerialization.peek(bytes);
+		assertEquals(header.getToAlixianID(), frame.getToAlixianID());
+		decoded = DialogSerialization.deSerialize(header.getToAlixianID(), bytes);
+		assertEquals(dialog.getClass(), decoded.getClass());
+		assertArrayEquals(javaBytes(dialog), javaBytes(decoded), "Decoded dialog differs from original");
+		assertNull(DialogSerialization.deSerialize(new AlixianID("nobody"), bytes));
+	}
+
+	private static byte[] javaBytes(Object object) throws IOException {
+		ByteArrayOutputStream byteOutputStream;
+
+		byteOutputStream = new ByteArrayOutputStream();
+		try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteOutputStream)) {
+			objectOutputStream.writeObject(object);
+		}
+		return byteOutputStream.toByteArray();
+	}
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.benchmark;
+
+import java.util.Collections;
+import java.util.Random;
+
+import com.hulles.alixia.api.dialog.DialogRequest;
+import com.hulles.alixia.api.dialog.DialogResponse;
+import com.hulles.alixia.api.object.AlixiaClientObject.ClientObjectType;
+import com.hulles.alixia.api.object.MediaObject;
+import com.hulles.alixia.api.remote.AlixianID;
+import com.hulles.alixia.api.shared.SerialSememe;
+import com.hulles.alixia.api.shared.SerialStation;
+import com.hulles.alixia.api.shared.SerialUUID;
+import com.hulles.alixia.api.shared.SessionType;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.media.Language;
+import com.hulles.alixia.media.MediaFormat;
+
+/**
+ * BenchmarkDialogs builds the valid dialog requests and responses the street bus and 
+ * serialization benchmarks send around.
+ * 
+ * @author hulles
+ *
+ */
+final class BenchmarkDialogs {
+	private final static String REQUEST_MESSAGE = "What is the capital of Nebraska?";
+	private final static String RESPONSE_MESSAGE = "The capital of Nebraska is Lincoln.";
+	private final static long MEDIA_SEED = 8675309L;
+	
+	private BenchmarkDialogs() {
+		// need to keep this private
+	}
+	
+	/**
+	 * Create a text dialog request.
+	 * 
+	 * @param from The Alixian sending the request
+	 * @param to The Alixian receiving the request
+	 * @return The request
+	 */
+	static DialogRequest createRequest(AlixianID from, AlixianID to) {
+		DialogRequest request;
+		
+		SharedUtils.checkNotNull(from);
+		SharedUtils.checkNotNull(to);
+		request = new DialogRequest();
+		request.setFromAlixianID(from);
+		request.setToAlixianID(to);
+		request.setStationUUID(new SerialUUID<SerialStation>());
+		request.setLanguage(Language.AMERICAN_ENGLISH);
+		request.setSessionType(SessionType.TEXT);
+		request.setIsQuiet(false);
+		request.setRequestActions(Collections.<SerialSememe>emptySet());
+		request.setRequestMessage(REQUEST_MESSAGE);
+		return request;
+	}
+	
+	/**
+	 * Create a dialog response, optionally carrying an image of the given size.
+	 * 
+	 * @param requestID The ID of the request this responds to
+	 * @param from The Alixian sending the response
+	 * @param to The Alixian receiving the response
+	 * @param mediaSize The size of the image in bytes, or zero for a text-only response
+	 * @return The response
+	 */
+	static DialogResponse createResponse(Long requestID, AlixianID from, AlixianID to, int mediaSize) {
+		DialogResponse response;
+		MediaObject media;
+		byte[] bytes;
+		
+		SharedUtils.checkNotNull(requestID);
+		SharedUtils.checkNotNull(from);
+		SharedUtils.checkNotNull(to);
+		response = new DialogResponse(requestID);
+		response.setFromAlixianID(from);
+		response.setToAlixianID(to);
+		response.setLanguage(Language.AMERICAN_ENGLISH);
+		response.setMessage(RESPONSE_MESSAGE);
+		if (mediaSize > 0) {
+			bytes = new byte[mediaSize];
+			new Random(MEDIA_SEED).nextBytes(bytes);
+			media = new MediaObject();
+			media.setMediaFormat(MediaFormat.PNG);
+			media.setClientObjectType(ClientObjectType.IMAGEBYTES);
+			media.setMediaTitle("Benchmark Image");
+			media.setMediaBytes(new byte[][] {bytes});
+			response.setClientObject(media);
+		}
+		return response;
+	}
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.benchmark;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the Alixia benchmarks. With no arguments it runs them all; otherwise the first 
+ * argument is a regular expression for the benchmarks to include, e.g. "HallBus".
+ * 
+ * @author hulles
+ *
+ */
+public final class BenchmarkRunner {
+	
+	private BenchmarkRunner() {
+		// need to keep this private
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		Options options;
+		String include;
+		
+		if (args.length > 0) {
+			include = args[0];
+		} else {
+			include = BenchmarkRunner.class.getPackage().getName() + ".*";
+		}
+		options = new OptionsBuilder()
+				.include(include)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.benchmark;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.hulles.alixia.api.shared.SerialSememe;
+
+/**
+ * BenchmarkSememes stands in for the Cayenne sememe table, so the benchmarks don't need the database. 
+ * It installs "what_sememes" and a handful of "bench_N" sememes for the stub rooms to advertise.
+ * 
+ * @author hulles
+ *
+ */
+final class BenchmarkSememes {
+	final static int SEMEME_COUNT = 32;
+	private static boolean installed = false;
+	
+	private BenchmarkSememes() {
+		// need to keep this private
+	}
+	
+	/**
+	 * Install the benchmark sememes as the set of all sememes, if we haven't already.
+	 * 
+	 */
+	static synchronized void install() {
+		Set<SerialSememe> sememes;
+		
+		if (installed) {
+			return;
+		}
+		sememes = new HashSet<>(SEMEME_COUNT + 1);
+		sememes.add(createSememe("what_sememes"));
+		for (int i = 0; i < SEMEME_COUNT; i++) {
+			sememes.add(createSememe(getName(i)));
+		}
+		SerialSememe.setSememes(sememes);
+		installed = true;
+	}
+	
+	/**
+	 * Get the name of the nth benchmark sememe.
+	 * 
+	 * @param index The index of the sememe
+	 * @return The name
+	 */
+	static String getName(int index) {
+		
+		return "bench_" + index;
+	}
+	
+	private static SerialSememe createSememe(String name) {
+		SerialSememe sememe;
+		
+		sememe = new SerialSememe();
+		sememe.setName(name);
+		sememe.setCanonicalForm(name);
+		sememe.setExternalUse(false);
+		sememe.setAdminOnly(false);
+		sememe.setLoggedIn(false);
+		return sememe;
+	}
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hulles.alixia.api.AlixiaConstants;
+import com.hulles.alixia.api.dialog.Dialog;
+import com.hulles.alixia.api.dialog.DialogFormat;
+import com.hulles.alixia.api.dialog.DialogFrame;
+import com.hulles.alixia.api.dialog.DialogHeader;
+import com.hulles.alixia.api.dialog.DialogRequest;
+import com.hulles.alixia.api.dialog.DialogResponse;
+import com.hulles.alixia.api.dialog.DialogSerialization;
+import com.hulles.alixia.api.remote.AlixianID;
+
+/**
+ * DialogSerializationBenchmark measures encoding and decoding the header + dialog pairs that 
+ * go over the Jebus channels, for text requests and for responses with and without media, 
+ * in both dialog formats. 
+ * The "notOurs" case decodes a dialog addressed to some other Alixian, which is what most
+ * stations do with most of the traffic they see; now that's just a peek at the frame.
+ * 
+ * @author hulles
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DialogSerializationBenchmark {
+	@Param({"0", "65536", "1048576"})
+	private int mediaSize;
+	@Param({"JAVA", "BINARY"})
+	private DialogFormat format;
+	private AlixianID clientID;
+	private AlixianID otherID;
+	private DialogHeader requestHeader;
+	private DialogRequest request;
+	private DialogHeader responseHeader;
+	private DialogResponse response;
+	private byte[] requestBytes;
+	private byte[] responseBytes;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		AlixianID alixiaID;
+		
+		alixiaID = AlixiaConstants.getAlixiaAlixianID();
+		clientID = AlixianID.createAlixianID();
+		otherID = AlixianID.createAlixianID();
+		request = BenchmarkDialogs.createRequest(clientID, alixiaID);
+		requestHeader = new DialogHeader();
+		requestHeader.setToAlixianID(alixiaID);
+		response = BenchmarkDialogs.createResponse(request.getDocumentID(), alixiaID, clientID, mediaSize);
+		responseHeader = new DialogHeader();
+		responseHeader.setToAlixianID(clientID);
+		requestBytes = DialogSerialization.serialize(requestHeader, request, format);
+		responseBytes = DialogSerialization.serialize(responseHeader, response, format);
+	}
+	
+	@Benchmark
+	public byte[] encodeRequest() {
+		
+		return DialogSerialization.serialize(requestHeader, request, format);
+	}
+	
+	@Benchmark
+	public Dialog decodeRequest() {
+		
+		return DialogSerialization.deSerialize(AlixiaConstants.getAlixiaAlixianID(), requestBytes);
+	}
+	
+	@Benchmark
+	public byte[] encodeResponse() {
+		
+		return DialogSerialization.serialize(responseHeader, response, format);
+	}
+	
+	@Benchmark
+	public Dialog decodeResponse() {
+		
+		return DialogSerialization.deSerialize(clientID, responseBytes);
+	}
+	
+	@Benchmark
+	public Dialog decodeResponseNotOurs() {
+		
+		return DialogSerialization.deSerialize(otherID, responseBytes);
+	}
+	
+	@Benchmark
+	public DialogFrame peekResponse() {
+		
+		return DialogSerialization.peek(responseBytes);
+	}
+}
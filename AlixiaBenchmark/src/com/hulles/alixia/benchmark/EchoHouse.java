@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.benchmark;
+
+import com.hulles.alixia.api.dialog.DialogRequest;
+import com.hulles.alixia.api.dialog.DialogResponse;
+import com.hulles.alixia.api.remote.AlixianID;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.house.House;
+import com.hulles.alixia.house.UrHouse;
+
+/**
+ * EchoHouse plays the part of Alixia on the street bus: it answers every request to its 
+ * Alixian with the same canned response.
+ * 
+ * @author hulles
+ *
+ */
+final class EchoHouse extends UrHouse {
+	private final AlixianID alixianID;
+	private final DialogResponse response;
+	
+	EchoHouse(AlixianID alixianID, DialogResponse response) {
+		super(true);
+		
+		SharedUtils.checkNotNull(alixianID);
+		SharedUtils.checkNotNull(response);
+		this.alixianID = alixianID;
+		this.response = response;
+	}
+	
+	@Override
+	public boolean isOurSession(AlixianID id) {
+		
+		SharedUtils.checkNotNull(id);
+		return alixianID.equals(id);
+	}
+	
+	@Override
+	public House getThisHouse() {
+		
+		return House.ALIXIA;
+	}
+
+	@Override
+	protected void newDialogRequest(DialogRequest request) {
+		
+		getStreet().post(response);
+	}
+
+	@Override
+	protected void newDialogResponse(DialogResponse dialogResponse) {
+	}
+
+	@Override
+	protected void houseStartup() {
+	}
+
+	@Override
+	protected void houseShutdown() {
+	}
+}
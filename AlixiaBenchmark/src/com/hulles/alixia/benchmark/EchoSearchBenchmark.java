@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hulles.alixia.api.shared.AlixiaException;
+import com.hulles.alixia.api.shared.ApplicationKeys;
+import com.hulles.alixia.api.shared.ApplicationKeys.ApplicationKey;
+import com.hulles.alixia.echo.w2v.QuantizedVectors;
+import com.hulles.alixia.echo.w2v.VectorMatcher;
+import com.hulles.alixia.echo.w2v.WordDistance;
+import com.hulles.alixia.echo.w2v.WordToVecSearch;
+import com.hulles.alixia.echo.w2v.WordVectorStore;
+
+/**
+ * EchoSearchBenchmark compares the original word2vec search (a scan of the whole map 
+ * of vectors, with boxed distances and a list of words to skip) with the VectorMatcher 
+ * scan of the memory-mapped WordVectorStore and the int8 QuantizedVectors scan (with 
+ * re-ranking), for word matches and analogies. The 
+ * models come from the application keys, so Jebus needs to be running, and the 
+ * first run builds the vector stores and quantized vectors. A threads value of 0 means one slice per core.
+ * <p>
+ * The Google News map needs a lot of heap, hence the -Xmx.
+ * 
+ * @author hulles
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class EchoSearchBenchmark {
+	private final static int MATCH_COUNT = 20;
+	private final static String MATCH_WORD = "computer";
+	private final static String[] ANALOGY_WORDS = {"man", "king", "woman"};
+	@Param({"LITTLEGINA", "GOOGLENEWS"})
+	private ApplicationKey model;
+	@Param({"1", "0"})
+	private int threads;
+	private Map<String, float[]> vectorMap;
+	private WordVectorStore vectorStore;
+	private QuantizedVectors quantizedVectors;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		String modelPath;
+		WordToVecSearch mapSearch;
+		WordToVecSearch storeSearch;
+		
+		modelPath = ApplicationKeys.getInstance().getKey(model);
+		mapSearch = new WordToVecSearch();
+		mapSearch.loadFile(modelPath);
+		vectorMap = mapSearch.getVectorMap();
+		storeSearch = new WordToVecSearch();
+		storeSearch.loadStore(modelPath);
+		vectorStore = storeSearch.getVectorStore();
+		quantizedVectors = QuantizedVectors.openForModel(modelPath, vectorStore);
+		if (vectorStore.getWordId(MATCH_WORD) < 0) {
+			throw new AlixiaException("Benchmark word " + MATCH_WORD + " isn't in " + model);
+		}
+		for (String word : ANALOGY_WORDS) {
+			if (vectorStore.getWordId(word) < 0) {
+				throw new AlixiaException("Benchmark word " + word + " isn't in " + model);
+			}
+		}
+		if (threads == 0) {
+			VectorMatcher.setParallelism(Runtime.getRuntime().availableProcessors());
+		} else {
+			VectorMatcher.setParallelism(threads);
+		}
+	}
+	
+	@Benchmark
+	public List<WordDistance> mapMatches() {
+		
+		return WordToVecSearch.getWordMatches(MATCH_WORD, vectorMap, MATCH_COUNT);
+	}
+	
+	@Benchmark
+	public List<WordDistance> storeMatches() {
+		
+		return WordToVecSearch.getWordMatches(MATCH_WORD, vectorStore, MATCH_COUNT);
+	}
+	
+	@Benchmark
+	public List<WordDistance> quantizedMatches() {
+		
+		return quantizedVectors.findMatches(vectorStore.getVector(MATCH_WORD), 
+				Collections.singletonList(MATCH_WORD), MATCH_COUNT);
+	}
+	
+	@Benchmark
+	public List<WordDistance> mapAnalogy() {
+		
+		return WordToVecSearch.getAnalogy(ANALOGY_WORDS[0], ANALOGY_WORDS[1], ANALOGY_WORDS[2], 
+				vectorMap, MATCH_COUNT);
+	}
+	
+	@Benchmark
+	public List<WordDistance> storeAnalogy() {
+		
+		return WordToVecSearch.getAnalogy(ANALOGY_WORDS[0], ANALOGY_WORDS[1], ANALOGY_WORDS[2], 
+				vectorStore, MATCH_COUNT);
+	}
+}
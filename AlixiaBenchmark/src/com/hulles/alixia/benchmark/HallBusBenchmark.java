@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.benchmark;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableSet;
+import com.hulles.alixia.room.Room;
+import com.hulles.alixia.room.document.RoomResponse;
+import com.hulles.alixia.ticket.SememePackage;
+import com.hulles.alixia.tools.AlixiaExecutors.ExecutorModel;
+
+/**
+ * HallBusBenchmark measures a full room request / response round trip on the hall bus:
+ * UrRoom routes the request, the target rooms build their action packages, and the 
+ * requester gets the collected responses back. The number of rooms that advertise the 
+ * sememe is the fan-out; the rest of the stub rooms are just there to be skipped.
+ * 
+ * @author hulles
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class HallBusBenchmark {
+	private final static int STUB_ROOM_COUNT = 24;
+	@Param({"1", "4", "16"})
+	private int fanOut;
+	@Param({"CACHED", "BOUNDED"})
+	private ExecutorModel executor;
+	private HallFixture fixture;
+	private List<SememePackage> sememePackages;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Map<Room, Set<String>> layout;
+		List<Room> rooms;
+		Room room;
+		
+		BenchmarkSememes.install();
+		rooms = HallFixture.getStubRooms(STUB_ROOM_COUNT);
+		layout = new EnumMap<>(Room.class);
+		for (int ix = 0; ix < rooms.size(); ix++) {
+			room = rooms.get(ix);
+			if (ix < fanOut) {
+				layout.put(room, ImmutableSet.of(BenchmarkSememes.getName(0), BenchmarkSememes.getName(ix + 1)));
+			} else {
+				layout.put(room, ImmutableSet.of(BenchmarkSememes.getName(ix + 1)));
+			}
+		}
+		fixture = new HallFixture(layout, executor);
+		sememePackages = Collections.singletonList(SememePackage.getDefaultPackage(BenchmarkSememes.getName(0)));
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		
+		fixture.close();
+	}
+	
+	@Benchmark
+	public List<RoomResponse> roundTrip() {
+		
+		return fixture.getRequester().roundTrip(sememePackages);
+	}
+}
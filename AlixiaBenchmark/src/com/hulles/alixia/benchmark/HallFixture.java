@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.benchmark;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.SetMultimap;
+import com.google.common.eventbus.AsyncEventBus;
+import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ServiceManager;
+import com.hulles.alixia.api.shared.SerialSememe;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.room.Room;
+import com.hulles.alixia.room.UrRoom;
+import com.hulles.alixia.tools.AlixiaExecutors;
+import com.hulles.alixia.tools.AlixiaExecutors.ExecutorModel;
+
+/**
+ * HallFixture stands up a hall bus with a RequesterRoom and a set of StubRooms, and does the 
+ * Controller's job of telling UrRoom which rooms are implemented and which sememes they handle.
+ * 
+ * @author hulles
+ *
+ */
+final class HallFixture implements Closeable {
+	private final ExecutorService busPool;
+	private final ServiceManager serviceManager;
+	private final RequesterRoom requester;
+	
+	/**
+	 * Create the hall and start the rooms.
+	 * 
+	 * @param layout The stub rooms and the sememes each of them advertises
+	 * @param model The executor model for the bus and the rooms
+	 */
+	HallFixture(Map<Room, Set<String>> layout, ExecutorModel model) {
+		SetMultimap<SerialSememe, Room> sememeRooms;
+		Set<Room> implementedRooms;
+		List<UrRoom> rooms;
+		EventBus hall;
+		Room room;
+		
+		SharedUtils.checkNotNull(layout);
+		SharedUtils.checkNotNull(model);
+		BenchmarkSememes.install();
+		AlixiaExecutors.setExecutorModel(model);
+		busPool = AlixiaExecutors.newExecutor("Bus");
+		hall = new AsyncEventBus("Hall", busPool);
+		
+		rooms = new ArrayList<>(layout.size() + 1);
+		implementedRooms = EnumSet.noneOf(Room.class);
+		sememeRooms = MultimapBuilder.hashKeys().enumSetValues(Room.class).build();
+		requester = new RequesterRoom(hall);
+		rooms.add(requester);
+		implementedRooms.add(requester.getThisRoom());
+		for (Entry<Room, Set<String>> entry : layout.entrySet()) {
+			room = entry.getKey();
+			rooms.add(new StubRoom(hall, room, entry.getValue()));
+			implementedRooms.add(room);
+			for (String name : entry.getValue()) {
+				sememeRooms.put(SerialSememe.find(name), room);
+			}
+		}
+		UrRoom.setImplementedRooms(implementedRooms);
+		UrRoom.setRoomSememes(sememeRooms);
+		
+		serviceManager = new ServiceManager(rooms);
+		serviceManager.startAsync();
+		serviceManager.awaitHealthy();
+	}
+	
+	/**
+	 * Get the room that sends the benchmark requests.
+	 * 
+	 * @return The requester
+	 */
+	RequesterRoom getRequester() {
+		
+		return requester;
+	}
+	
+	/**
+	 * Get the first <i>count</i> lettered rooms (Alpha, Bravo...) to use as stub rooms.
+	 * 
+	 * @param count The number of rooms
+	 * @return The rooms
+	 */
+	static List<Room> getStubRooms(int count) {
+		List<Room> rooms;
+		
+		rooms = new ArrayList<>(EnumSet.range(Room.ALPHA, Room.ZULU));
+		if (count > rooms.size()) {
+			throw new IllegalArgumentException("There are only " + rooms.size() + " stub rooms");
+		}
+		return rooms.subList(0, count);
+	}
+
+	@Override
+	public void close() {
+		
+		serviceManager.stopAsync();
+		serviceManager.awaitStopped();
+		busPool.shutdown();
+		try {
+			busPool.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+			busPool.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+}
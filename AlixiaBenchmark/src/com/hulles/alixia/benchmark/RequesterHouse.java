@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.benchmark;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.hulles.alixia.api.dialog.DialogRequest;
+import com.hulles.alixia.api.dialog.DialogResponse;
+import com.hulles.alixia.api.remote.AlixianID;
+import com.hulles.alixia.api.shared.AlixiaException;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.house.House;
+import com.hulles.alixia.house.UrHouse;
+
+/**
+ * RequesterHouse plays the part of a station server on the street bus: it posts a dialog 
+ * request and waits for the response to come back to its Alixian. It only has one request 
+ * in flight at a time.
+ * 
+ * @author hulles
+ *
+ */
+final class RequesterHouse extends UrHouse {
+	private final AlixianID alixianID;
+	private final AtomicReference<CompletableFuture<DialogResponse>> pending;
+	
+	RequesterHouse(AlixianID alixianID) {
+		super(true);
+		
+		SharedUtils.checkNotNull(alixianID);
+		this.alixianID = alixianID;
+		pending = new AtomicReference<>();
+	}
+	
+	/**
+	 * Post the request on the street and wait for the response.
+	 * 
+	 * @param request The request
+	 * @return The response
+	 */
+	DialogResponse roundTrip(DialogRequest request) {
+		CompletableFuture<DialogResponse> future;
+		
+		SharedUtils.checkNotNull(request);
+		future = new CompletableFuture<>();
+		if (!pending.compareAndSet(null, future)) {
+			throw new AlixiaException("RequesterHouse: request already in flight");
+		}
+		getStreet().post(request);
+		return future.join();
+	}
+	
+	@Override
+	public boolean isOurSession(AlixianID id) {
+		
+		SharedUtils.checkNotNull(id);
+		return alixianID.equals(id);
+	}
+	
+	@Override
+	public House getThisHouse() {
+		
+		return House.STATIONSERVER;
+	}
+
+	@Override
+	protected void newDialogRequest(DialogRequest request) {
+		throw new AlixiaException("Request not implemented in " + getThisHouse().getDisplayName());
+	}
+
+	@Override
+	protected void newDialogResponse(DialogResponse response) {
+		CompletableFuture<DialogResponse> future;
+		
+		future = pending.getAndSet(null);
+		if (future != null) {
+			future.complete(response);
+		}
+	}
+
+	@Override
+	protected void houseStartup() {
+	}
+
+	@Override
+	protected void houseShutdown() {
+	}
+}
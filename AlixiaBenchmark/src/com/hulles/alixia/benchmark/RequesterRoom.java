@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.eventbus.EventBus;
+import com.hulles.alixia.api.AlixiaConstants;
+import com.hulles.alixia.api.shared.SerialSememe;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.room.Room;
+import com.hulles.alixia.room.UrRoom;
+import com.hulles.alixia.room.document.RoomAnnouncement;
+import com.hulles.alixia.room.document.RoomRequest;
+import com.hulles.alixia.room.document.RoomResponse;
+import com.hulles.alixia.ticket.ActionPackage;
+import com.hulles.alixia.ticket.SememePackage;
+import com.hulles.alixia.ticket.Ticket;
+
+/**
+ * RequesterRoom is the room the benchmarks send their requests from. It hands each set of
+ * responses back to the benchmark thread waiting for it.
+ * <p>
+ * It numbers its own requests, so sending a request doesn't cost a trip to Jebus. The numbers 
+ * start well above anything the Jebus document counter will reach.
+ * 
+ * @author hulles
+ *
+ */
+final class RequesterRoom extends UrRoom {
+	private final static long FIRST_DOCUMENT_ID = Long.MAX_VALUE / 2;
+	private final ConcurrentMap<Long, CompletableFuture<List<RoomResponse>>> pending;
+	private final AtomicLong documentIDs;
+	private Ticket ticket;
+	
+	RequesterRoom(EventBus hall) {
+		super(hall);
+		
+		pending = new ConcurrentHashMap<>();
+		documentIDs = new AtomicLong(FIRST_DOCUMENT_ID);
+	}
+	
+	/**
+	 * Send a request for the sememe packages and wait for all the responses.
+	 * 
+	 * @param sememePackages The sememe packages for the request
+	 * @return The responses
+	 */
+	List<RoomResponse> roundTrip(List<SememePackage> sememePackages) {
+		
+		return sendRequest(sememePackages).join();
+	}
+	
+	/**
+	 * Send a request for the sememe packages without waiting for the responses.
+	 * 
+	 * @param sememePackages The sememe packages for the request
+	 * @return A future that completes with the responses
+	 */
+	CompletableFuture<List<RoomResponse>> sendRequest(List<SememePackage> sememePackages) {
+		CompletableFuture<List<RoomResponse>> future;
+		RoomRequest request;
+		
+		SharedUtils.checkNotNull(sememePackages);
+		request = new RoomRequest(ticket, documentIDs.incrementAndGet());
+		request.setFromRoom(getThisRoom());
+		request.setSememePackages(sememePackages);
+		request.setMessage("Benchmark request");
+		future = new CompletableFuture<>();
+		pending.put(request.getDocumentID(), future);
+		sendRoomRequest(request);
+		return future;
+	}
+	
+	@Override
+	public Room getThisRoom() {
+		
+		return Room.QA;
+	}
+
+	@Override
+	protected void roomStartup() {
+		
+		ticket = Ticket.createNewTicket(getHall(), getThisRoom());
+		ticket.setFromAlixianID(AlixiaConstants.getAlixiaAlixianID());
+	}
+
+	@Override
+	protected void roomShutdown() {
+	}
+
+	@Override
+	protected ActionPackage createActionPackage(SememePackage sememe, RoomRequest request) {
+		
+		return null;
+	}
+
+	@Override
+	protected void processRoomResponses(RoomRequest request, List<RoomResponse> responses) {
+		CompletableFuture<List<RoomResponse>> future;
+		
+		future = pending.remove(request.getDocumentID());
+		if (future != null) {
+			future.complete(responses);
+		}
+	}
+
+	@Override
+	protected void processRoomAnnouncement(RoomAnnouncement announcement) {
+	}
+
+	@Override
+	protected Set<SerialSememe> loadSememes() {
+		
+		return Collections.emptySet();
+	}
+}
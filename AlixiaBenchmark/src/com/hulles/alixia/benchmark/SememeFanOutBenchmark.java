@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.benchmark;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hulles.alixia.room.Room;
+import com.hulles.alixia.room.document.RoomResponse;
+import com.hulles.alixia.ticket.ActionPackage;
+import com.hulles.alixia.ticket.SememePackage;
+import com.hulles.alixia.tools.AlixiaExecutors.ExecutorModel;
+
+/**
+ * SememeFanOutBenchmark measures the kind of request OvermindRoom sends after sememe analysis: 
+ * several sememes in one request, each handled by one or more rooms, with the responses 
+ * gathered back up sememe by sememe the way OvermindRoom does before it picks an action.
+ * 
+ * @author hulles
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class SememeFanOutBenchmark {
+	private final static int STUB_ROOM_COUNT = 24;
+	@Param({"2", "8"})
+	private int sememeCount;
+	@Param({"1", "3"})
+	private int roomsPerSememe;
+	@Param({"CACHED", "BOUNDED"})
+	private ExecutorModel executor;
+	private HallFixture fixture;
+	private List<SememePackage> sememePackages;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Map<Room, Set<String>> layout;
+		List<Room> rooms;
+		Room room;
+		
+		BenchmarkSememes.install();
+		rooms = HallFixture.getStubRooms(STUB_ROOM_COUNT);
+		layout = new EnumMap<>(Room.class);
+		for (Room stub : rooms) {
+			layout.put(stub, new HashSet<String>());
+		}
+		sememePackages = new ArrayList<>(sememeCount);
+		for (int sememeIx = 0; sememeIx < sememeCount; sememeIx++) {
+			for (int roomIx = 0; roomIx < roomsPerSememe; roomIx++) {
+				room = rooms.get((sememeIx * roomsPerSememe + roomIx) % rooms.size());
+				layout.get(room).add(BenchmarkSememes.getName(sememeIx));
+			}
+			sememePackages.add(SememePackage.getDefaultPackage(BenchmarkSememes.getName(sememeIx)));
+		}
+		fixture = new HallFixture(layout, executor);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		
+		fixture.close();
+	}
+	
+	@Benchmark
+	public int fanOut() {
+		List<RoomResponse> responses;
+		List<ActionPackage> actionPackages;
+		int actionCount;
+		
+		responses = fixture.getRequester().roundTrip(sememePackages);
+		actionPackages = new ArrayList<>();
+		for (RoomResponse response : responses) {
+			actionPackages.addAll(response.getActionPackages());
+		}
+		actionCount = 0;
+		for (SememePackage sememePackage : sememePackages) {
+			actionCount += ActionPackage.consumeActions(sememePackage.getSememe(), actionPackages).size();
+		}
+		return actionCount;
+	}
+}
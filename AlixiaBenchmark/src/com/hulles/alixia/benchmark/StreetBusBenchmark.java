@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.eventbus.AsyncEventBus;
+import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ServiceManager;
+import com.hulles.alixia.api.AlixiaConstants;
+import com.hulles.alixia.api.dialog.DialogRequest;
+import com.hulles.alixia.api.dialog.DialogResponse;
+import com.hulles.alixia.api.remote.AlixianID;
+import com.hulles.alixia.house.UrHouse;
+import com.hulles.alixia.tools.AlixiaExecutors;
+import com.hulles.alixia.tools.AlixiaExecutors.ExecutorModel;
+
+/**
+ * StreetBusBenchmark measures a dialog round trip on the street bus through UrHouse: a request 
+ * from a station's Alixian to Alixia and the response back. The bystander houses are the other 
+ * stations on the street, which see every dialog and have to decide it isn't theirs.
+ * 
+ * @author hulles
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class StreetBusBenchmark {
+	@Param({"0", "8"})
+	private int bystanders;
+	@Param({"CACHED", "BOUNDED"})
+	private ExecutorModel executor;
+	private ExecutorService busPool;
+	private ServiceManager serviceManager;
+	private RequesterHouse requester;
+	private DialogRequest request;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		List<UrHouse> houses;
+		EventBus street;
+		AlixianID clientID;
+		AlixianID alixiaID;
+		DialogResponse response;
+		
+		AlixiaExecutors.setExecutorModel(executor);
+		busPool = AlixiaExecutors.newExecutor("Street");
+		street = new AsyncEventBus("Street", busPool);
+		alixiaID = AlixiaConstants.getAlixiaAlixianID();
+		clientID = AlixianID.createAlixianID();
+		request = BenchmarkDialogs.createRequest(clientID, alixiaID);
+		response = BenchmarkDialogs.createResponse(request.getDocumentID(), alixiaID, clientID, 0);
+		
+		houses = new ArrayList<>(bystanders + 2);
+		requester = new RequesterHouse(clientID);
+		houses.add(requester);
+		houses.add(new EchoHouse(alixiaID, response));
+		for (int ix = 0; ix < bystanders; ix++) {
+			houses.add(new RequesterHouse(AlixianID.createAlixianID()));
+		}
+		for (UrHouse house : houses) {
+			house.setStreet(street);
+		}
+		serviceManager = new ServiceManager(houses);
+		serviceManager.startAsync();
+		serviceManager.awaitHealthy();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		
+		serviceManager.stopAsync();
+		serviceManager.awaitStopped();
+		busPool.shutdown();
+	}
+	
+	@Benchmark
+	public DialogResponse roundTrip() {
+		
+		return requester.roundTrip(request);
+	}
+}
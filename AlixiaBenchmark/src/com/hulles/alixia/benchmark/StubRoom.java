@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.benchmark;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.eventbus.EventBus;
+import com.hulles.alixia.api.shared.AlixiaException;
+import com.hulles.alixia.api.shared.SerialSememe;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.room.Room;
+import com.hulles.alixia.room.UrRoom;
+import com.hulles.alixia.room.document.MessageAction;
+import com.hulles.alixia.room.document.RoomAnnouncement;
+import com.hulles.alixia.room.document.RoomRequest;
+import com.hulles.alixia.room.document.RoomResponse;
+import com.hulles.alixia.ticket.ActionPackage;
+import com.hulles.alixia.ticket.SememePackage;
+
+/**
+ * StubRoom is a room that answers every sememe it advertises with a canned MessageAction, 
+ * so the benchmarks measure the hall bus and UrRoom rather than the work a real room does.
+ * 
+ * @author hulles
+ *
+ */
+final class StubRoom extends UrRoom {
+	private final Room room;
+	private final Set<String> sememeNames;
+	
+	StubRoom(EventBus hall, Room room, Set<String> sememeNames) {
+		super(hall);
+		
+		SharedUtils.checkNotNull(room);
+		SharedUtils.checkNotNull(sememeNames);
+		this.room = room;
+		this.sememeNames = new HashSet<>(sememeNames);
+	}
+
+	@Override
+	public Room getThisRoom() {
+		
+		return room;
+	}
+
+	@Override
+	protected void roomStartup() {
+	}
+
+	@Override
+	protected void roomShutdown() {
+	}
+
+	@Override
+	protected ActionPackage createActionPackage(SememePackage sememe, RoomRequest request) {
+		ActionPackage pkg;
+		MessageAction action;
+		
+		pkg = new ActionPackage(sememe);
+		action = new MessageAction();
+		action.setMessage(room.getDisplayName());
+		pkg.setActionObject(action);
+		return pkg;
+	}
+
+	@Override
+	protected void processRoomResponses(RoomRequest request, List<RoomResponse> response) {
+		throw new AlixiaException("Response not implemented in " + room.getDisplayName());
+	}
+
+	@Override
+	protected void processRoomAnnouncement(RoomAnnouncement announcement) {
+	}
+
+	@Override
+	protected Set<SerialSememe> loadSememes() {
+		Set<SerialSememe> sememes;
+		
+		sememes = new HashSet<>(sememeNames.size());
+		for (String name : sememeNames) {
+			sememes.add(SerialSememe.find(name));
+		}
+		return sememes;
+	}
+}
@@ -39,6 +39,7 @@ import com.hulles.alixia.Alixia;
 import com.hulles.alixia.alpha.AlphaRoom;
 import com.hulles.alixia.api.shared.AlixiaException;
 import com.hulles.alixia.api.tools.AlixiaUtils;
+import com.hulles.alixia.api.tools.StageTimer;
 import com.hulles.alixia.bravo.BravoRoom;
 import com.hulles.alixia.charlie.CharlieRoom;
 import com.hulles.alixia.delta.DeltaRoom;
@@ -55,6 +56,8 @@ import com.hulles.alixia.mike.MikeRoom;
 import com.hulles.alixia.nodeserver.pages.NodeWebServer;
 import com.hulles.alixia.november.NovemberRoom;
 import com.hulles.alixia.oscar.OscarRoom;
+import com.hulles.alixia.overmind.NLPAnalysisLog;
+import com.hulles.alixia.overmind.NLPAnalysisLog.OverflowPolicy;
 import com.hulles.alixia.overmind.OvermindRoom;
 import com.hulles.alixia.papa.PapaRoom;
 import com.hulles.alixia.qa.QARoom;
@@ -63,6 +66,8 @@ import com.hulles.alixia.romeo.RomeoRoom;
 import com.hulles.alixia.room.UrRoom;
 import com.hulles.alixia.sierra.SierraRoom;
 import com.hulles.alixia.stationserver.StationServer;
+import com.hulles.alixia.tools.AlixiaExecutors;
+import com.hulles.alixia.tools.AlixiaExecutors.ExecutorModel;
 import com.hulles.alixia.tracker.TrackerRoom;
 
 /**
@@ -80,6 +85,11 @@ public class AlixiaCentral {
         options = new Options();
         options.addOption("n", "noprompt", false, "do not send timed prompts to clients");
         options.addOption("o", "orphans", false, "display unimplemented sememes");
+        options.addOption("x", "executor", true, "executor model for rooms and houses: cached (default), bounded or virtual");
+        options.addOption("b", "threads", true, "maximum threads per room or house with the bounded executor model");
+        options.addOption("q", "queue", true, "maximum waiting tasks per room or house with the bounded executor model");
+        options.addOption("l", "nlplog", true, "when the NLP analysis log backs up: drop-oldest (default) or drop-newest");
+        options.addOption("t", "timing", false, "keep stage timings (NER, POS, Redis, etc.) and report them");
         options.addOption("h", "help", false, "show help");
     }
 	
@@ -93,10 +103,24 @@ public class AlixiaCentral {
 		}
 	}
 
+	private static Integer getIntegerOption(CommandLine commandLine, String option) {
+		String value;
+		
+		value = commandLine.getOptionValue(option);
+		try {
+			return Integer.valueOf(value);
+		} catch (NumberFormatException ex) {
+			throw new AlixiaException("AlixiaCentral: bad number for option " + option + ": " + value, ex);
+		}
+	}
+
 	@SuppressWarnings("null")
 	public static void main(String[] args) {
  		boolean noprompt = false;
         Boolean showOrphans = false;
+        ExecutorModel executorModel = ExecutorModel.CACHED;
+        Integer boundedThreads;
+        Integer boundedQueueDepth;
 		CommandLineParser parser;
         CommandLine commandLine;
         HelpFormatter formatter;
@@ -125,6 +149,26 @@ public class AlixiaCentral {
         if (commandLine.hasOption("o")) {
         	showOrphans = true;
         }
+        if (commandLine.hasOption("x")) {
+        	executorModel = ExecutorModel.fromName(commandLine.getOptionValue("x"));
+        }
+        if (commandLine.hasOption("b") || commandLine.hasOption("q")) {
+        	boundedThreads = AlixiaExecutors.getBoundedThreads();
+        	boundedQueueDepth = AlixiaExecutors.getBoundedQueueDepth();
+        	if (commandLine.hasOption("b")) {
+        		boundedThreads = getIntegerOption(commandLine, "b");
+        	}
+        	if (commandLine.hasOption("q")) {
+        		boundedQueueDepth = getIntegerOption(commandLine, "q");
+        	}
+        	AlixiaExecutors.setBoundedLimits(boundedThreads, boundedQueueDepth);
+        }
+        if (commandLine.hasOption("t")) {
+        	StageTimer.setEnabled(true);
+        }
+        if (commandLine.hasOption("l")) {
+        	NLPAnalysisLog.setOverflowPolicy(OverflowPolicy.fromName(commandLine.getOptionValue("l")));
+        }
 
 		// load houses
         houses = new ArrayList<>(2);
@@ -163,7 +207,7 @@ public class AlixiaCentral {
         rooms.add(new RomeoRoom());
         rooms.add(new SierraRoom());
 
-		try (Alixia alixia = new Alixia(houses, rooms, showOrphans)) {
+		try (Alixia alixia = new Alixia(houses, rooms, showOrphans, executorModel)) {
             
 			waitForKey();
 			LOGGER.debug("AlixiaCentral: received shutdown key");
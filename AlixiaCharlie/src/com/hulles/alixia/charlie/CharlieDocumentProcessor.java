@@ -21,144 +21,373 @@
  *******************************************************************************/
 package com.hulles.alixia.charlie;
 
-import com.hulles.alixia.api.shared.AlixiaException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.CacheStats;
+import com.hulles.alixia.api.shared.AlixiaException;
 import com.hulles.alixia.api.shared.SharedUtils;
-import com.hulles.alixia.api.tools.AlixiaTimer;
-import com.hulles.alixia.charlie.doccat.CharlieDocCat;
-import com.hulles.alixia.charlie.ner.CharlieNER;
-import com.hulles.alixia.charlie.parse.CharlieChunker;
-import com.hulles.alixia.charlie.parse.CharlieParser;
+import com.hulles.alixia.charlie.CharlieModels.LoadMode;
 import com.hulles.alixia.charlie.pos.CharlieLemmatizer;
-import com.hulles.alixia.charlie.pos.CharliePOS;
 import com.hulles.alixia.room.document.NLPAnalysis;
 import com.hulles.alixia.room.document.RoomRequest;
 import com.hulles.alixia.room.document.SentenceAnalysis;
+import com.hulles.alixia.tools.AlixiaExecutors;
+import com.hulles.alixia.tools.CacheReports;
 
+/**
+ * CharlieDocumentProcessor runs requests through the OpenNLP tools. The tools aren't thread-safe
+ * but the models are, so we load the models once and keep a pool of CharliePipelines built on
+ * them, one per concurrent request up to the number of cores. A request borrows a pipeline for 
+ * the length of processDocument and gives it back when it's done.
+ * <p>
+ * If a request has more than one sentence, helpers on the sentence executor grab any idle 
+ * pipelines and work through the sentences alongside the request's own pipeline. Helpers never
+ * wait for a pipeline, they just quit if there isn't one, so a busy server degrades to one 
+ * sentence after the other. Within a sentence the name finders run on the stage executor
+ * (see CharliePipeline). Each sentence's analysis goes into its own slot, so the results are
+ * in the same order no matter who did them.
+ * <p>
+ * Before any of that we check the result cache, and if we've analyzed the same input lately
+ * we just hand back a copy of that analysis without touching a pipeline.
+ * 
+ * @author hulles
+ *
+ */
 final public class CharlieDocumentProcessor {
-	private final CharlieParser parser;
-	private final CharlieNER ner;
-	private final CharliePOS pos;
-	private final CharlieDocCat docCat;
-	private final CharlieChunker chunker;
-	private final CharlieLemmatizer lemmatizer;
+	private final static Logger LOGGER = LoggerFactory.getLogger(CharlieDocumentProcessor.class);
+	private final static String OUTCOME_CACHE_NAME = "Charlie Outcomes";
+	private final static String RESULT_CACHE_NAME = "Charlie Results";
+	private final CharlieModels models;
+	private final CharlieResultCache resultCache;
+	private final BlockingQueue<CharliePipeline> idlePipelines;
+	private final AtomicInteger pipelineCount;
+	private final int maxPipelines;
+	private final ExecutorService sentenceExecutor;
+	private final ExecutorService stageExecutor;
 	
 	public CharlieDocumentProcessor() {
 		
-		parser = new CharlieParser();
-		ner = new CharlieNER();
-		pos = new CharliePOS();
-		docCat = new CharlieDocCat();
-		chunker = new CharlieChunker();
-		lemmatizer = new CharlieLemmatizer();
+		this(Runtime.getRuntime().availableProcessors(), LoadMode.EAGER);
+	}
+	
+	public CharlieDocumentProcessor(LoadMode loadMode) {
+		
+		this(Runtime.getRuntime().availableProcessors(), loadMode);
+	}
+	
+	public CharlieDocumentProcessor(int maxPipelines) {
+		
+		this(maxPipelines, LoadMode.EAGER);
+	}
+	
+	/**
+	 * Create a processor. With an EAGER load mode the models are all loaded and the first
+	 * pipeline is ready before we return; otherwise the first request builds the first 
+	 * pipeline, waiting for the models if it has to.
+	 * 
+	 * @param maxPipelines The most pipelines (i.e. concurrent requests) we'll have
+	 * @param loadMode How to load the models
+	 */
+	public CharlieDocumentProcessor(int maxPipelines, LoadMode loadMode) {
+		
+		SharedUtils.checkNotNull(loadMode);
+		if (maxPipelines < 1) {
+			throw new AlixiaException("CharlieDocumentProcessor: need at least one pipeline");
+		}
+		this.maxPipelines = maxPipelines;
+		models = new CharlieModels(loadMode);
+		resultCache = new CharlieResultCache();
+		CacheReports.register(OUTCOME_CACHE_NAME, new Supplier<CacheStats>() {
+			@Override
+			public CacheStats get() {
+				return models.getOutcomeCache().getStats();
+			}
+		});
+		CacheReports.register(RESULT_CACHE_NAME, new Supplier<CacheStats>() {
+			@Override
+			public CacheStats get() {
+				return resultCache.getStats();
+			}
+		});
+		CharlieLemmatizer.loadDictionary();
+		idlePipelines = new LinkedBlockingQueue<>();
+		pipelineCount = new AtomicInteger(0);
+		// the sentence helpers wait on stage tasks, so they can't share an executor with them
+		sentenceExecutor = AlixiaExecutors.newExecutor("Charlie Sentences");
+		stageExecutor = AlixiaExecutors.newExecutor("Charlie Stages");
+		if (loadMode == LoadMode.EAGER) {
+			// have one ready to go so the first request doesn't pay for it
+			pipelineCount.set(1);
+			idlePipelines.add(createPipeline(1));
+		}
 	}
 	
 	public NLPAnalysis processDocument(RoomRequest request) {
 		NLPAnalysis analysis = null;
 		String input;
-		String[] tokens;
 		String[] sentences;
-		String[] nerPersons;
-		String[] nerLocations;
-		String[] nerOrganizations;
-		String[] nerDates;
-		String[] nerTimes;
-		String[] nerPercentages;
-		String[] nerMoney;
-		String[] myriaCitizens;
-		String[] myriaLocations;
-		String[] myriaOrganizations;
-		String[] posTags;
-		String[] chunkTags;
-		String[] chunkSegments;
-		String[] lemmata;
-		String[] dictLemmata;
-		String docCategory;
-		String posDef;
-		List<SentenceAnalysis> sentenceAnalyses;
-		SentenceAnalysis sentenceAnalysis;
-		List<String> defs;
+		SentenceAnalysis[] sentenceAnalyses;
+		CharliePipeline pipeline;
 		
 		SharedUtils.checkNotNull(request);
 		input = request.getMessage().trim();
 		if (!input.isEmpty()) {
-			analysis = new NLPAnalysis();
-			analysis.setMessage(input);
-			sentences = parser.detectSentences(input);
-			analysis.setSentences(Arrays.asList(sentences));
-			sentenceAnalyses = new ArrayList<>(sentences.length);
-			for (String sentence : sentences) {
-				
-				// parse sentences and tokens
-				sentenceAnalysis = new SentenceAnalysis(sentence);
-				tokens =  parser.parseSentenceTokens(sentence);
-				sentenceAnalysis.setTokens(Arrays.asList(tokens));
-				
-				// NER (Named Entity Recognition)
-				nerPersons = ner.findPersons(tokens);
-				sentenceAnalysis.setNERPersons(Arrays.asList(nerPersons));
-				nerLocations = ner.findLocations(tokens);
-				sentenceAnalysis.setNERLocations(Arrays.asList(nerLocations));
-				nerOrganizations = ner.findOrganizations(tokens);
-				sentenceAnalysis.setNEROrganizations(Arrays.asList(nerOrganizations));
-				nerDates = ner.findDates(tokens);
-				sentenceAnalysis.setNERDates(Arrays.asList(nerDates));
-				nerTimes = ner.findTimes(tokens);
-				sentenceAnalysis.setNERTimes(Arrays.asList(nerTimes));
-				nerMoney = ner.findMoney(tokens);
-				sentenceAnalysis.setNERMoney(Arrays.asList(nerMoney));
-				nerPercentages = ner.findPercentages(tokens);
-				sentenceAnalysis.setNERPercentages(Arrays.asList(nerPercentages));
-				
-				// Myria NER
-				myriaCitizens = ner.findMyriaCitizens(tokens);
-				sentenceAnalysis.setMyriaCitizens(Arrays.asList(myriaCitizens));
-				myriaLocations = ner.findMyriaLocations(tokens);
-				sentenceAnalysis.setMyriaLocations(Arrays.asList(myriaLocations));
-				myriaOrganizations = ner.findMyriaOrganizations(tokens);
-				sentenceAnalysis.setMyriaOrganizations(Arrays.asList(myriaOrganizations));
-				ner.endOfDocument();
-				
-				// POS (Part of Speech) analysis
-				posTags = pos.generatePOS(tokens);
-				sentenceAnalysis.setPOSTags(Arrays.asList(posTags));
-				defs = new ArrayList<>();
-				for (String tag : sentenceAnalysis.getPOSTags()) {
-					posDef = PennTreebank.getTagDefinition(tag);
-					if (posDef == null) {
-						throw new AlixiaException("Can't find Penn Treebank tag, shouldn't happen");
+			analysis = resultCache.get(input, models.getVersion());
+			if (analysis != null) {
+				return analysis;
+			}
+			pipeline = borrowPipeline();
+			try {
+				analysis = new NLPAnalysis();
+				analysis.setMessage(input);
+				sentences = pipeline.detectSentences(input);
+				analysis.setSentences(Arrays.asList(sentences));
+				sentenceAnalyses = new SentenceAnalysis[sentences.length];
+				analyzeSentences(pipeline, sentences, sentenceAnalyses);
+				analysis.setSentenceAnalyses(new ArrayList<>(Arrays.asList(sentenceAnalyses)));
+			} finally {
+				returnPipeline(pipeline);
+			}
+			resultCache.put(input, models.getVersion(), analysis);
+		}
+		return analysis;
+	}
+	
+	/**
+	 * Analyze all the sentences, getting help from idle pipelines if there's more than one
+	 * sentence. 
+	 * 
+	 * @param pipeline The request's own pipeline
+	 * @param sentences The sentences
+	 * @param sentenceAnalyses Where the analyses go, in the same order as the sentences
+	 */
+	private void analyzeSentences(CharliePipeline pipeline, String[] sentences, 
+			SentenceAnalysis[] sentenceAnalyses) {
+		AtomicInteger nextSentence;
+		List<Future<?>> helpers;
+		
+		nextSentence = new AtomicInteger(0);
+		helpers = new ArrayList<>(sentences.length);
+		for (int ix = 1; ix < sentences.length; ix++) {
+			helpers.add(sentenceExecutor.submit(new SentenceHelper(sentences, sentenceAnalyses, nextSentence)));
+		}
+		try {
+			analyzeClaimedSentences(pipeline, sentences, sentenceAnalyses, nextSentence);
+		} finally {
+			awaitHelpers(helpers);
+		}
+	}
+	
+	/**
+	 * Keep claiming the next unanalyzed sentence and analyzing it until there aren't any left.
+	 * 
+	 * @param pipeline The pipeline to use
+	 * @param sentences The sentences
+	 * @param sentenceAnalyses Where the analyses go
+	 * @param nextSentence The index of the next unclaimed sentence
+	 */
+	private void analyzeClaimedSentences(CharliePipeline pipeline, String[] sentences, 
+			SentenceAnalysis[] sentenceAnalyses, AtomicInteger nextSentence) {
+		int ix;
+		
+		while ((ix = nextSentence.getAndIncrement()) < sentences.length) {
+			sentenceAnalyses[ix] = pipeline.analyzeSentence(sentences[ix], stageExecutor);
+		}
+	}
+	
+	/**
+	 * Wait for the sentence helpers to finish. By the time we get here every sentence has been 
+	 * claimed, so helpers that haven't started yet have nothing to do and we just cancel them.
+	 * 
+	 * @param helpers The helpers
+	 */
+	private static void awaitHelpers(List<Future<?>> helpers) {
+		AlixiaException failure = null;
+		boolean interrupted = false;
+		
+		for (Future<?> helper : helpers) {
+			if (helper.cancel(false)) {
+				continue;
+			}
+			while (true) {
+				try {
+					helper.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (CancellationException e) {
+					break;
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = new AlixiaException("CharlieDocumentProcessor: sentence analysis failed", 
+								e.getCause());
 					}
-					defs.add(posDef);
+					break;
 				}
-				sentenceAnalysis.setPOSTagDefinitions(defs);
-				
-				// Lemma analysis
-				AlixiaTimer.startTimer("lemmatizer1");
-				lemmata = lemmatizer.generateLemmata(tokens, posTags);
-				sentenceAnalysis.setLemmata(Arrays.asList(lemmata));
-				AlixiaTimer.stopTimer("lemmatizer1");
-				AlixiaTimer.startTimer("lemmatizer2");
-				dictLemmata = CharlieLemmatizer.generateDictionaryLemmata(tokens, posTags);
-				sentenceAnalysis.setDictionaryLemmata(Arrays.asList(dictLemmata));
-				AlixiaTimer.stopTimer("lemmatizer2");
-				
-				// Chunker
-				chunkTags = chunker.chunkDocument(tokens, posTags);
-				sentenceAnalysis.setChunkTags(Arrays.asList(chunkTags));
-				chunkSegments = chunker.segmentDocument(tokens, posTags);
-				sentenceAnalysis.setChunkSegments(Arrays.asList(chunkSegments));
-				
-				// Document categorizer (doesn't do much, not enough input cases)
-				docCategory = docCat.categorizeDocument(tokens);
-				sentenceAnalysis.setDocumentCategory(docCategory);
-				sentenceAnalyses.add(sentenceAnalysis);
 			}
-			analysis.setSentenceAnalyses(sentenceAnalyses);
 		}
-		return analysis;
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+	
+	/**
+	 * Get an idle pipeline, creating a new one if they're all busy and we haven't hit
+	 * the limit, else wait for one to come back.
+	 * 
+	 * @return The pipeline
+	 */
+	private CharliePipeline borrowPipeline() {
+		CharliePipeline pipeline;
+		
+		pipeline = tryBorrowPipeline();
+		if (pipeline != null) {
+			return pipeline;
+		}
+		try {
+			return idlePipelines.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AlixiaException("CharlieDocumentProcessor: interrupted waiting for a pipeline", e);
+		}
+	}
+	
+	/**
+	 * Get an idle pipeline, creating a new one if they're all busy and we haven't hit
+	 * the limit.
+	 * 
+	 * @return The pipeline, or null if there isn't one to be had right now
+	 */
+	private CharliePipeline tryBorrowPipeline() {
+		CharliePipeline pipeline;
+		int count;
+		
+		pipeline = idlePipelines.poll();
+		if (pipeline != null) {
+			return pipeline;
+		}
+		count = pipelineCount.get();
+		while (count < maxPipelines) {
+			if (pipelineCount.compareAndSet(count, count + 1)) {
+				try {
+					return createPipeline(count + 1);
+				} catch (RuntimeException ex) {
+					// e.g. a model didn't load; give the slot back
+					pipelineCount.decrementAndGet();
+					throw ex;
+				}
+			}
+			count = pipelineCount.get();
+		}
+		return null;
+	}
+	
+	/**
+	 * Give a pipeline back to the pool.
+	 * 
+	 * @param pipeline The pipeline
+	 */
+	private void returnPipeline(CharliePipeline pipeline) {
+		
+		SharedUtils.checkNotNull(pipeline);
+		idlePipelines.add(pipeline);
+	}
+	
+	/**
+	 * Create a new pipeline and report about how much heap it took. The models are shared,
+	 * so this is just the per-pipeline tool state; it's only an estimate, since the garbage
+	 * collector can run while we're at it.
+	 * 
+	 * @param number Which pipeline this is, for the log
+	 * @return The new pipeline
+	 */
+	private CharliePipeline createPipeline(int number) {
+		CharliePipeline pipeline;
+		Runtime runtime;
+		long usedBefore;
+		long usedAfter;
+		
+		runtime = Runtime.getRuntime();
+		usedBefore = runtime.totalMemory() - runtime.freeMemory();
+		pipeline = new CharliePipeline(models);
+		usedAfter = runtime.totalMemory() - runtime.freeMemory();
+		LOGGER.info("CharlieDocumentProcessor: created NLP pipeline {} of {}, about {} KB", 
+				number, maxPipelines, Math.max(0L, usedAfter - usedBefore) / 1024);
+		return pipeline;
+	}
+	
+	/**
+	 * Get the number of pipelines we've created so far.
+	 * 
+	 * @return The count
+	 */
+	public int getPipelineCount() {
+		
+		return pipelineCount.get();
+	}
+	
+	/**
+	 * Get the fraction of sentences whose chunker and doccat outcomes came out of the cache.
+	 * 
+	 * @return The hit ratio
+	 */
+	public double getOutcomeCacheHitRatio() {
+		
+		return models.getOutcomeCache().getHitRatio();
+	}
+	
+	/**
+	 * Get the hit, miss and eviction counts for the result cache.
+	 * 
+	 * @return The statistics
+	 */
+	public CacheStats getResultCacheStats() {
+		
+		return resultCache.getStats();
+	}
+	
+	/**
+	 * Reload the lemma dictionary and the Penn Treebank tags, and forget the analyses we 
+	 * made with the old ones. This is the way to pick up edits to either table without 
+	 * waiting for the cached analyses to expire.
+	 * 
+	 */
+	public void refreshDictionaries() {
+		
+		CharlieLemmatizer.refreshDictionary();
+		PennTreebank.refreshTags();
+		resultCache.invalidate();
+	}
+	
+	/**
+	 * Log the cache statistics and shut down our executors.
+	 * 
+	 */
+	public void close() {
+		
+		LOGGER.info("{}", resultCache);
+		LOGGER.info("{}", models.getOutcomeCache());
+		CacheReports.unregister(OUTCOME_CACHE_NAME);
+		CacheReports.unregister(RESULT_CACHE_NAME);
+		sentenceExecutor.shutdown();
+		stageExecutor.shutdown();
+		CharlieLemmatizer.closeDictionary();
 	}
 	
 	/**
@@ -176,4 +405,42 @@ final public class CharlieDocumentProcessor {
 					a.getTokens(), a.getPOSTags());
 		}
 	}
+	
+	/**
+	 * A SentenceHelper borrows an idle pipeline, if there is one, and helps analyze the 
+	 * sentences of a request.
+	 * 
+	 * @author hulles
+	 *
+	 */
+	private class SentenceHelper implements Runnable {
+		private final String[] sentences;
+		private final SentenceAnalysis[] sentenceAnalyses;
+		private final AtomicInteger nextSentence;
+		
+		SentenceHelper(String[] sentences, SentenceAnalysis[] sentenceAnalyses, AtomicInteger nextSentence) {
+			
+			this.sentences = sentences;
+			this.sentenceAnalyses = sentenceAnalyses;
+			this.nextSentence = nextSentence;
+		}
+		
+		@Override
+		public void run() {
+			CharliePipeline pipeline;
+			
+			if (nextSentence.get() >= sentences.length) {
+				return;
+			}
+			pipeline = tryBorrowPipeline();
+			if (pipeline == null) {
+				return;
+			}
+			try {
+				analyzeClaimedSentences(pipeline, sentences, sentenceAnalyses, nextSentence);
+			} finally {
+				returnPipeline(pipeline);
+			}
+		}
+	}
 }
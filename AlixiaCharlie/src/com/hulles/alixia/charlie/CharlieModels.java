@@ -0,0 +1,421 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.charlie;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.hulles.alixia.api.shared.AlixiaException;
+import com.hulles.alixia.api.shared.ApplicationKeys;
+import com.hulles.alixia.api.shared.ApplicationKeys.ApplicationKey;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.tools.AlixiaExecutors;
+
+import opennlp.tools.chunker.ChunkerModel;
+import opennlp.tools.doccat.DoccatModel;
+import opennlp.tools.lemmatizer.LemmatizerModel;
+import opennlp.tools.namefind.TokenNameFinderModel;
+import opennlp.tools.postag.POSModel;
+import opennlp.tools.sentdetect.SentenceModel;
+import opennlp.tools.tokenize.TokenizerModel;
+
+/**
+ * CharlieModels holds the OpenNLP models Charlie uses. The models themselves are immutable 
+ * and thread-safe, unlike the *ME classes that use them, so we load each model exactly once 
+ * and every pipeline builds its own *ME instances on top of the shared models.
+ * <p>
+ * The models are independent of each other, so unless we're told to be LAZY we load them 
+ * all at once on the "Charlie Models" executor. EAGER waits for them all before the 
+ * constructor returns; BACKGROUND returns right away and whoever asks for a model first 
+ * waits for just that one. LAZY doesn't load a model until somebody asks for it. When the
+ * last model is in we log how long each one took, see also getLoadMillis.
+ * <p>
+ * We also keep the cache of chunker and doccat outcomes here, since they're only good for
+ * as long as these models are.
+ * 
+ * @author hulles
+ *
+ */
+public final class CharlieModels {
+	private final static Logger LOGGER = LoggerFactory.getLogger(CharlieModels.class);
+	private final static AtomicInteger VERSIONS = new AtomicInteger();
+	private final int version;
+	private final LazyModel<SentenceModel> sentenceModel;
+	private final LazyModel<TokenizerModel> tokenizerModel;
+	private final LazyModel<TokenNameFinderModel> personModel;
+	private final LazyModel<TokenNameFinderModel> locationModel;
+	private final LazyModel<TokenNameFinderModel> organizationModel;
+	private final LazyModel<TokenNameFinderModel> dateModel;
+	private final LazyModel<TokenNameFinderModel> timeModel;
+	private final LazyModel<TokenNameFinderModel> moneyModel;
+	private final LazyModel<TokenNameFinderModel> percentageModel;
+	private final LazyModel<POSModel> posModel;
+	private final LazyModel<LemmatizerModel> lemmatizerModel;
+	private final LazyModel<ChunkerModel> chunkerModel;
+	private final LazyModel<DoccatModel> doccatModel;
+	private final List<LazyModel<?>> allModels;
+	private final AtomicInteger modelsLeft;
+	private final long startNanos;
+	private final CharlieOutcomeCache outcomeCache;
+	
+	public CharlieModels() {
+		
+		this(LoadMode.EAGER);
+	}
+	
+	public CharlieModels(LoadMode loadMode) {
+		ExecutorService loader;
+		
+		SharedUtils.checkNotNull(loadMode);
+		startNanos = System.nanoTime();
+		sentenceModel = new LazyModel<SentenceModel>("en-sent.bin") {
+			@Override
+			SentenceModel load(URL url) throws IOException {
+				return new SentenceModel(url);
+			}
+		};
+		tokenizerModel = new LazyModel<TokenizerModel>("en-token.bin") {
+			@Override
+			TokenizerModel load(URL url) throws IOException {
+				return new TokenizerModel(url);
+			}
+		};
+		personModel = nameFinderModel("en-ner-person.bin");
+		locationModel = nameFinderModel("en-ner-location.bin");
+		organizationModel = nameFinderModel("en-ner-organization.bin");
+		dateModel = nameFinderModel("en-ner-date.bin");
+		timeModel = nameFinderModel("en-ner-time.bin");
+		moneyModel = nameFinderModel("en-ner-money.bin");
+		percentageModel = nameFinderModel("en-ner-percentage.bin");
+		posModel = new LazyModel<POSModel>("en-pos-maxent.bin") {
+			@Override
+			POSModel load(URL url) throws IOException {
+				return new POSModel(url);
+			}
+		};
+		lemmatizerModel = new LazyModel<LemmatizerModel>("en-lemmatizer.bin") {
+			@Override
+			LemmatizerModel load(URL url) throws IOException {
+				return new LemmatizerModel(url);
+			}
+		};
+		chunkerModel = new LazyModel<ChunkerModel>("en-chunker.bin") {
+			@Override
+			ChunkerModel load(URL url) throws IOException {
+				return new ChunkerModel(url);
+			}
+		};
+		doccatModel = new LazyModel<DoccatModel>("mydoccat.bin") {
+			@Override
+			DoccatModel load(URL url) throws IOException {
+				return new DoccatModel(url);
+			}
+		};
+		allModels = ImmutableList.<LazyModel<?>>of(sentenceModel, tokenizerModel, personModel, 
+				locationModel, organizationModel, dateModel, timeModel, moneyModel, percentageModel,
+				posModel, lemmatizerModel, chunkerModel, doccatModel);
+		modelsLeft = new AtomicInteger(allModels.size());
+		for (LazyModel<?> model : allModels) {
+			model.setOnLoad(new Runnable() {
+				@Override
+				public void run() {
+					modelLoaded();
+				}
+			});
+		}
+		if (loadMode != LoadMode.LAZY) {
+			loader = AlixiaExecutors.newExecutor("Charlie Models");
+			for (LazyModel<?> model : allModels) {
+				model.startLoading(loader);
+			}
+			// the loads already submitted still run
+			loader.shutdown();
+		}
+		if (loadMode == LoadMode.EAGER) {
+			for (LazyModel<?> model : allModels) {
+				model.get();
+			}
+		}
+		outcomeCache = new CharlieOutcomeCache();
+		version = VERSIONS.incrementAndGet();
+	}
+	
+	private static LazyModel<TokenNameFinderModel> nameFinderModel(String modelFileName) {
+		
+		return new LazyModel<TokenNameFinderModel>(modelFileName) {
+			@Override
+			TokenNameFinderModel load(URL url) throws IOException {
+				return new TokenNameFinderModel(url);
+			}
+		};
+	}
+	
+	/**
+	 * Get the version of this set of models. Every CharlieModels gets a new one, so anything
+	 * remembered under one version is no good for another.
+	 * 
+	 * @return The version
+	 */
+	public int getVersion() {
+		
+		return version;
+	}
+	
+	/**
+	 * Get how long each model that has finished loading took to load.
+	 * 
+	 * @return The load times in milliseconds, by model file name
+	 */
+	public Map<String, Long> getLoadMillis() {
+		ImmutableMap.Builder<String, Long> builder;
+		long millis;
+		
+		builder = ImmutableMap.builder();
+		for (LazyModel<?> model : allModels) {
+			millis = model.getLoadMillis();
+			if (millis >= 0) {
+				builder.put(model.getFileName(), millis);
+			}
+		}
+		return builder.build();
+	}
+	
+	/**
+	 * Count off a model that has finished loading, and when it's the last one log the
+	 * load times for all of them.
+	 * 
+	 */
+	private void modelLoaded() {
+		long elapsedMillis;
+		long totalMillis;
+		Map<String, Long> loadMillis;
+		
+		if (modelsLeft.decrementAndGet() != 0) {
+			return;
+		}
+		elapsedMillis = (System.nanoTime() - startNanos) / 1000000L;
+		loadMillis = getLoadMillis();
+		totalMillis = 0L;
+		for (Long millis : loadMillis.values()) {
+			totalMillis += millis;
+		}
+		LOGGER.info("CharlieModels: loaded {} models in {} ms ({} ms of loading): {}", 
+				loadMillis.size(), elapsedMillis, totalMillis, loadMillis);
+	}
+	
+	/**
+	 * Get the URL of a model file in the OpenNLP directory.
+	 * 
+	 * @param modelFileName The name of the model file
+	 * @return The URL
+	 */
+	private static URL getModelURL(String modelFileName) {
+		ApplicationKeys appKeys;
+        String openNLPPath;
+        
+		SharedUtils.checkNotNull(modelFileName);
+        appKeys = ApplicationKeys.getInstance();
+        openNLPPath = appKeys.getKey(ApplicationKey.OPENNLPPATH);
+        try {
+            return new URL(ApplicationKeys.toURL(openNLPPath + "/" + modelFileName));
+        } catch (MalformedURLException ex) {
+            throw new AlixiaException("Can't create URL for " + modelFileName, ex);
+        }
+	}
+
+	public SentenceModel getSentenceModel() {
+		
+		return sentenceModel.get();
+	}
+
+	public TokenizerModel getTokenizerModel() {
+		
+		return tokenizerModel.get();
+	}
+
+	public TokenNameFinderModel getPersonModel() {
+		
+		return personModel.get();
+	}
+
+	public TokenNameFinderModel getLocationModel() {
+		
+		return locationModel.get();
+	}
+
+	public TokenNameFinderModel getOrganizationModel() {
+		
+		return organizationModel.get();
+	}
+
+	public TokenNameFinderModel getDateModel() {
+		
+		return dateModel.get();
+	}
+
+	public TokenNameFinderModel getTimeModel() {
+		
+		return timeModel.get();
+	}
+
+	public TokenNameFinderModel getMoneyModel() {
+		
+		return moneyModel.get();
+	}
+
+	public TokenNameFinderModel getPercentageModel() {
+		
+		return percentageModel.get();
+	}
+
+	public POSModel getPOSModel() {
+		
+		return posModel.get();
+	}
+
+	public LemmatizerModel getLemmatizerModel() {
+		
+		return lemmatizerModel.get();
+	}
+
+	public ChunkerModel getChunkerModel() {
+		
+		return chunkerModel.get();
+	}
+
+	public DoccatModel getDoccatModel() {
+		
+		return doccatModel.get();
+	}
+	
+	CharlieOutcomeCache getOutcomeCache() {
+		
+		return outcomeCache;
+	}
+	
+	/**
+	 * How CharlieModels loads its models.
+	 * 
+	 */
+	public enum LoadMode {
+		/** load them all in parallel and wait for them */
+		EAGER,
+		/** load them all in parallel but don't wait */
+		BACKGROUND,
+		/** load each one when somebody first asks for it */
+		LAZY
+	}
+	
+	/**
+	 * A LazyModel loads its model at most once, either on an executor (startLoading) or on 
+	 * the first thread that asks for it, whichever comes first. Anybody else who asks while
+	 * it's loading waits for it. If the load fails, everybody who asks gets the exception.
+	 * 
+	 * @param <T> The type of the model
+	 */
+	private abstract static class LazyModel<T> {
+		private final String fileName;
+		private final FutureTask<T> task;
+		private volatile long loadMillis = -1L;
+		private volatile Runnable onLoad = null;
+		
+		LazyModel(String fileName) {
+			
+			this.fileName = fileName;
+			this.task = new FutureTask<>(new Callable<T>() {
+				@Override
+				public T call() throws IOException {
+					return timedLoad();
+				}
+			});
+		}
+		
+		abstract T load(URL url) throws IOException;
+		
+		private T timedLoad() throws IOException {
+			long startNanos;
+			T model;
+			
+			startNanos = System.nanoTime();
+			model = load(getModelURL(fileName));
+			loadMillis = (System.nanoTime() - startNanos) / 1000000L;
+			LOGGER.debug("CharlieModels: loaded {} in {} ms", fileName, loadMillis);
+			if (onLoad != null) {
+				onLoad.run();
+			}
+			return model;
+		}
+		
+		/**
+		 * Set something to run when the model has loaded. Set it before the model 
+		 * starts loading.
+		 * 
+		 * @param onLoad What to run
+		 */
+		void setOnLoad(Runnable onLoad) {
+			
+			this.onLoad = onLoad;
+		}
+		
+		void startLoading(ExecutorService executor) {
+			
+			executor.execute(task);
+		}
+		
+		T get() {
+			
+			// this does nothing if someone else has already run it or is running it now
+			task.run();
+			try {
+				return task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new AlixiaException("CharlieModels: interrupted waiting for " + fileName, e);
+			} catch (ExecutionException e) {
+				throw new AlixiaException("Can't load OpenNLP model " + fileName, e.getCause());
+			}
+		}
+		
+		String getFileName() {
+			
+			return fileName;
+		}
+		
+		long getLoadMillis() {
+			
+			return loadMillis;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.charlie;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.hulles.alixia.api.shared.SharedUtils;
+
+/**
+ * CharlieOutcomeCache remembers the chunker and doccat outcomes for token and POS tag 
+ * sequences we've seen before. Most of what people say to Alixia is short and said over and
+ * over ("what time is it"), so a hit saves us the chunker and categorizer evaluations 
+ * altogether. 
+ * <p>
+ * The outcomes depend on the models, so the cache belongs to a CharlieModels instance and 
+ * goes away with it; new models, new (empty) cache. It's bounded at MAX_ENTRIES, least
+ * recently used out first.
+ * 
+ * @author hulles
+ *
+ */
+final class CharlieOutcomeCache {
+	private final static int MAX_ENTRIES = 4096;
+	private final Cache<String, TagOutcome> cache;
+	
+	CharlieOutcomeCache() {
+		
+		cache = CacheBuilder.newBuilder()
+				.maximumSize(MAX_ENTRIES)
+				.recordStats()
+				.build();
+	}
+	
+	/**
+	 * Make the cache key for a sentence. Tokens never contain whitespace (that's what they 
+	 * were split on) so a space and a tab are safe separators. We don't fold case, since the
+	 * models don't.
+	 * 
+	 * @param tokens The tokens of the sentence
+	 * @param posTags The POS tags of the tokens
+	 * @return The key
+	 */
+	static String makeKey(String[] tokens, String[] posTags) {
+		StringBuilder sb;
+		
+		SharedUtils.checkNotNull(tokens);
+		SharedUtils.checkNotNull(posTags);
+		sb = new StringBuilder(tokens.length * 10);
+		for (String token : tokens) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(token);
+		}
+		sb.append('\t');
+		for (int ix = 0; ix < posTags.length; ix++) {
+			if (ix > 0) {
+				sb.append(' ');
+			}
+			sb.append(posTags[ix]);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Get the outcome for a key.
+	 * 
+	 * @param key The key from makeKey
+	 * @return The outcome, or null if we don't have it
+	 */
+	TagOutcome get(String key) {
+		
+		SharedUtils.checkNotNull(key);
+		return cache.getIfPresent(key);
+	}
+	
+	void put(String key, TagOutcome outcome) {
+		
+		SharedUtils.checkNotNull(key);
+		SharedUtils.checkNotNull(outcome);
+		cache.put(key, outcome);
+	}
+	
+	/**
+	 * Get the fraction of lookups that were hits.
+	 * 
+	 * @return The hit ratio, 1.0 if there haven't been any lookups
+	 */
+	double getHitRatio() {
+		
+		return cache.stats().hitRate();
+	}
+	
+	CacheStats getStats() {
+		
+		return cache.stats();
+	}
+	
+	@Override
+	public String toString() {
+		CacheStats stats;
+		
+		stats = cache.stats();
+		return String.format("CharlieOutcomeCache: %d entries, %d hits, %d misses, hit ratio %.3f, %d evictions",
+				cache.size(), stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+	}
+	
+	/**
+	 * The chunker and doccat outcomes for one sentence. The arrays are never handed out, 
+	 * only copies of them.
+	 * 
+	 */
+	static final class TagOutcome {
+		private final String[] chunkTags;
+		private final String[] chunkSegments;
+		private final String docCategory;
+		
+		TagOutcome(String[] chunkTags, String[] chunkSegments, String docCategory) {
+			
+			SharedUtils.checkNotNull(chunkTags);
+			SharedUtils.checkNotNull(chunkSegments);
+			SharedUtils.checkNotNull(docCategory);
+			this.chunkTags = chunkTags.clone();
+			this.chunkSegments = chunkSegments.clone();
+			this.docCategory = docCategory;
+		}
+		
+		String[] getChunkTags() {
+			
+			return chunkTags.clone();
+		}
+		
+		String[] getChunkSegments() {
+			
+			return chunkSegments.clone();
+		}
+		
+		String getDocCategory() {
+			
+			return docCategory;
+		}
+	}
+}
@@ -0,0 +1,309 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.charlie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.hulles.alixia.api.shared.AlixiaException;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.api.tools.StageTimer;
+import com.hulles.alixia.charlie.CharlieOutcomeCache.TagOutcome;
+import com.hulles.alixia.charlie.doccat.CharlieDocCat;
+import com.hulles.alixia.charlie.ner.CharlieNER;
+import com.hulles.alixia.charlie.ner.CharlieNER.EntityType;
+import com.hulles.alixia.charlie.parse.CharlieChunker;
+import com.hulles.alixia.charlie.parse.CharlieParser;
+import com.hulles.alixia.charlie.pos.CharlieLemmatizer;
+import com.hulles.alixia.charlie.pos.CharliePOS;
+import com.hulles.alixia.room.document.SentenceAnalysis;
+
+/**
+ * A CharliePipeline is one complete set of the OpenNLP tools Charlie uses. The tools aren't
+ * thread-safe, so a pipeline must only be used by one thread at a time; 
+ * CharlieDocumentProcessor keeps a pool of them. They all share the models in CharlieModels,
+ * so a pipeline itself is fairly light.
+ * 
+ * @author hulles
+ *
+ */
+final class CharliePipeline {
+	// below this many tokens it's not worth handing the name finders to other threads
+	private final static int PARALLEL_TOKENS = 8;
+	private final static StageTimer NER_TIMER = StageTimer.forStage(StageTimer.NER);
+	private final static StageTimer POS_TIMER = StageTimer.forStage(StageTimer.POS);
+	private final static StageTimer LEMMATIZE_TIMER = StageTimer.forStage(StageTimer.LEMMATIZE);
+	private final static StageTimer CHUNK_TIMER = StageTimer.forStage(StageTimer.CHUNK);
+	private final static StageTimer DOCCAT_TIMER = StageTimer.forStage(StageTimer.DOCCAT);
+	private final CharlieParser parser;
+	private final CharlieNER ner;
+	private final CharliePOS pos;
+	private final CharlieDocCat docCat;
+	private final CharlieChunker chunker;
+	private final CharlieLemmatizer lemmatizer;
+	private final CharlieOutcomeCache outcomeCache;
+	
+	CharliePipeline(CharlieModels models) {
+		
+		SharedUtils.checkNotNull(models);
+		outcomeCache = models.getOutcomeCache();
+		parser = new CharlieParser(models);
+		ner = new CharlieNER(models);
+		pos = new CharliePOS(models);
+		docCat = new CharlieDocCat(models);
+		chunker = new CharlieChunker(models);
+		lemmatizer = new CharlieLemmatizer(models);
+	}
+	
+	String[] detectSentences(String input) {
+		
+		SharedUtils.checkNotNull(input);
+		return parser.detectSentences(input);
+	}
+	
+	/**
+	 * Run a sentence through the whole pipeline. The name finders only need the tokens, as do
+	 * the POS - lemma - chunk chain and the categorizer, so if we're given an executor and the
+	 * sentence is long enough to be worth it, the finders run on the executor while we do the 
+	 * rest here. Each finder is only ever used by one thread and each result lands in its own 
+	 * slot, so we get the same answer either way.
+	 * 
+	 * @param sentence The sentence to analyze
+	 * @param stageExecutor The executor for the name finders, or null to do it all here
+	 * @return The analysis
+	 */
+	SentenceAnalysis analyzeSentence(String sentence, ExecutorService stageExecutor) {
+		String[] tokens;
+		SentenceAnalysis sentenceAnalysis;
+		Map<EntityType, String[]> entities;
+		Map<EntityType, Future<String[]>> futures;
+		
+		SharedUtils.checkNotNull(sentence);
+		SharedUtils.nullsOkay(stageExecutor);
+		
+		// parse sentences and tokens
+		sentenceAnalysis = new SentenceAnalysis(sentence);
+		tokens =  parser.parseSentenceTokens(sentence);
+		sentenceAnalysis.setTokens(Arrays.asList(tokens));
+		
+		// NER (Named Entity Recognition), including Myria NER
+		if (stageExecutor == null || tokens.length < PARALLEL_TOKENS) {
+			entities = findEntities(tokens);
+			tagSentence(sentenceAnalysis, tokens);
+		} else {
+			futures = submitEntityFinders(tokens, stageExecutor);
+			try {
+				tagSentence(sentenceAnalysis, tokens);
+			} finally {
+				// we have to wait for all the finders before anyone else can use this pipeline
+				entities = collectEntities(futures);
+			}
+		}
+		ner.endOfDocument();
+		setEntities(sentenceAnalysis, entities);
+		return sentenceAnalysis;
+	}
+	
+	/**
+	 * Find all the named entities in a sentence, one finder after the other.
+	 * 
+	 * @param tokens The tokens of the sentence
+	 * @return The entities, by type
+	 */
+	private Map<EntityType, String[]> findEntities(String[] tokens) {
+		Map<EntityType, String[]> entities;
+		
+		entities = new EnumMap<>(EntityType.class);
+		for (EntityType type : EntityType.values()) {
+			entities.put(type, findEntities(type, tokens));
+		}
+		return entities;
+	}
+	
+	/**
+	 * Run one name finder, timing it as part of the NER stage.
+	 * 
+	 * @param type The entity type
+	 * @param tokens The tokens of the sentence
+	 * @return The entities
+	 */
+	private String[] findEntities(EntityType type, String[] tokens) {
+		long startNanos;
+		
+		startNanos = NER_TIMER.start();
+		try {
+			return ner.findEntities(type, tokens);
+		} finally {
+			NER_TIMER.stop(startNanos);
+		}
+	}
+	
+	/**
+	 * Start all the name finders on the executor, one task per finder.
+	 * 
+	 * @param tokens The tokens of the sentence
+	 * @param stageExecutor The executor
+	 * @return The pending results, by type
+	 */
+	private Map<EntityType, Future<String[]>> submitEntityFinders(final String[] tokens, 
+			ExecutorService stageExecutor) {
+		Map<EntityType, Future<String[]>> futures;
+		
+		futures = new EnumMap<>(EntityType.class);
+		for (final EntityType type : EntityType.values()) {
+			futures.put(type, stageExecutor.submit(new Callable<String[]>() {
+				@Override
+				public String[] call() {
+					return findEntities(type, tokens);
+				}
+			}));
+		}
+		return futures;
+	}
+	
+	/**
+	 * Wait for all the name finders to finish. If any of them failed we still wait for the
+	 * rest before we throw.
+	 * 
+	 * @param futures The pending results from submitEntityFinders
+	 * @return The entities, by type
+	 */
+	private static Map<EntityType, String[]> collectEntities(Map<EntityType, Future<String[]>> futures) {
+		Map<EntityType, String[]> entities;
+		AlixiaException failure = null;
+		boolean interrupted = false;
+		Future<String[]> future;
+		
+		entities = new EnumMap<>(EntityType.class);
+		for (Map.Entry<EntityType, Future<String[]>> entry : futures.entrySet()) {
+			future = entry.getValue();
+			while (true) {
+				try {
+					entities.put(entry.getKey(), future.get());
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = new AlixiaException("CharliePipeline: name finder failed", e.getCause());
+					}
+					break;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+		return entities;
+	}
+	
+	private static void setEntities(SentenceAnalysis sentenceAnalysis, Map<EntityType, String[]> entities) {
+		
+		sentenceAnalysis.setNERPersons(Arrays.asList(entities.get(EntityType.PERSON)));
+		sentenceAnalysis.setNERLocations(Arrays.asList(entities.get(EntityType.LOCATION)));
+		sentenceAnalysis.setNEROrganizations(Arrays.asList(entities.get(EntityType.ORGANIZATION)));
+		sentenceAnalysis.setNERDates(Arrays.asList(entities.get(EntityType.DATE)));
+		sentenceAnalysis.setNERTimes(Arrays.asList(entities.get(EntityType.TIME)));
+		sentenceAnalysis.setNERMoney(Arrays.asList(entities.get(EntityType.MONEY)));
+		sentenceAnalysis.setNERPercentages(Arrays.asList(entities.get(EntityType.PERCENTAGE)));
+		sentenceAnalysis.setMyriaCitizens(Arrays.asList(entities.get(EntityType.MYRIA_CITIZEN)));
+		sentenceAnalysis.setMyriaLocations(Arrays.asList(entities.get(EntityType.MYRIA_LOCATION)));
+		sentenceAnalysis.setMyriaOrganizations(Arrays.asList(entities.get(EntityType.MYRIA_ORGANIZATION)));
+	}
+	
+	/**
+	 * Do everything but NER: POS tags and their definitions, lemmata, chunks and the 
+	 * document category.
+	 * 
+	 * @param sentenceAnalysis The analysis to fill in
+	 * @param tokens The tokens of the sentence
+	 */
+	private void tagSentence(SentenceAnalysis sentenceAnalysis, String[] tokens) {
+		String[] posTags;
+		String[] chunkTags;
+		String[] chunkSegments;
+		String[] lemmata;
+		String[] dictLemmata;
+		String docCategory;
+		String posDef;
+		List<String> defs;
+		long startNanos;
+		String cacheKey;
+		TagOutcome outcome;
+		
+		// POS (Part of Speech) analysis
+		startNanos = POS_TIMER.start();
+		posTags = pos.generatePOS(tokens);
+		POS_TIMER.stop(startNanos);
+		sentenceAnalysis.setPOSTags(Arrays.asList(posTags));
+		defs = new ArrayList<>();
+		for (String tag : sentenceAnalysis.getPOSTags()) {
+			posDef = PennTreebank.getTagDefinition(tag);
+			if (posDef == null) {
+				throw new AlixiaException("Can't find Penn Treebank tag, shouldn't happen");
+			}
+			defs.add(posDef);
+		}
+		sentenceAnalysis.setPOSTagDefinitions(defs);
+		
+		// Lemma analysis
+		startNanos = LEMMATIZE_TIMER.start();
+		lemmata = lemmatizer.generateLemmata(tokens, posTags);
+		dictLemmata = CharlieLemmatizer.generateDictionaryLemmata(tokens, posTags);
+		LEMMATIZE_TIMER.stop(startNanos);
+		sentenceAnalysis.setLemmata(Arrays.asList(lemmata));
+		sentenceAnalysis.setDictionaryLemmata(Arrays.asList(dictLemmata));
+		
+		// Chunker and document categorizer, unless we've seen this sentence before
+		cacheKey = CharlieOutcomeCache.makeKey(tokens, posTags);
+		outcome = outcomeCache.get(cacheKey);
+		if (outcome == null) {
+			startNanos = CHUNK_TIMER.start();
+			chunkTags = chunker.chunkDocument(tokens, posTags);
+			chunkSegments = CharlieChunker.segmentDocument(tokens, posTags, chunkTags);
+			CHUNK_TIMER.stop(startNanos);
+			
+			// Document categorizer (doesn't do much, not enough input cases)
+			startNanos = DOCCAT_TIMER.start();
+			docCategory = docCat.categorizeDocument(tokens);
+			DOCCAT_TIMER.stop(startNanos);
+			outcomeCache.put(cacheKey, new TagOutcome(chunkTags, chunkSegments, docCategory));
+		} else {
+			chunkTags = outcome.getChunkTags();
+			chunkSegments = outcome.getChunkSegments();
+			docCategory = outcome.getDocCategory();
+		}
+		sentenceAnalysis.setChunkTags(Arrays.asList(chunkTags));
+		sentenceAnalysis.setChunkSegments(Arrays.asList(chunkSegments));
+		sentenceAnalysis.setDocumentCategory(docCategory);
+	}
+}
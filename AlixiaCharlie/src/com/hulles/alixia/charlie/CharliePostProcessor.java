@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.charlie;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.room.document.NLPAnalysis;
+import com.hulles.alixia.tools.AlixiaExecutors;
+
+/**
+ * CharliePostProcessor does the follow-up work on analyses (see 
+ * CharlieDocumentProcessor.postProcessAnalysis) off the request thread. Analyses wait in a 
+ * bounded queue, and a single drain task works through them in batches of up to BATCH_SIZE,
+ * so a burst of requests costs one task instead of a thread apiece. If the queue is full we
+ * drop the new analysis: the follow-up work only records words we haven't seen, and they'll
+ * come around again.
+ * <p>
+ * We keep count of what's submitted, dropped and processed and how long analyses wait and 
+ * batches take, see toString.
+ * 
+ * @author hulles
+ *
+ */
+final class CharliePostProcessor {
+	private final static Logger LOGGER = LoggerFactory.getLogger(CharliePostProcessor.class);
+	private final static int MAX_PENDING = 512;
+	private final static int BATCH_SIZE = 64;
+	private final BlockingQueue<PendingAnalysis> pending;
+	private final AtomicBoolean draining;
+	private final ExecutorService executor;
+	private final AtomicLong submittedCount;
+	private final AtomicLong droppedCount;
+	private final AtomicLong processedCount;
+	private final AtomicLong batchCount;
+	private final AtomicLong totalWaitNanos;
+	private final AtomicLong maxWaitNanos;
+	private final AtomicLong totalExecNanos;
+	private final AtomicLong maxExecNanos;
+	
+	CharliePostProcessor() {
+		
+		pending = new ArrayBlockingQueue<>(MAX_PENDING);
+		draining = new AtomicBoolean(false);
+		executor = AlixiaExecutors.newExecutor("Charlie Post-processing");
+		submittedCount = new AtomicLong();
+		droppedCount = new AtomicLong();
+		processedCount = new AtomicLong();
+		batchCount = new AtomicLong();
+		totalWaitNanos = new AtomicLong();
+		maxWaitNanos = new AtomicLong();
+		totalExecNanos = new AtomicLong();
+		maxExecNanos = new AtomicLong();
+	}
+	
+	/**
+	 * Queue an analysis for post-processing. This never blocks.
+	 * 
+	 * @param analysis The analysis
+	 * @return False if the queue was full and the analysis was dropped
+	 */
+	boolean submit(NLPAnalysis analysis) {
+		
+		SharedUtils.checkNotNull(analysis);
+		submittedCount.incrementAndGet();
+		if (!pending.offer(new PendingAnalysis(analysis))) {
+			droppedCount.incrementAndGet();
+			LOGGER.debug("CharliePostProcessor: queue full, dropping analysis");
+			return false;
+		}
+		scheduleDrain();
+		return true;
+	}
+	
+	/**
+	 * Start a drain task unless one is already running; a running one will pick up 
+	 * whatever we just queued.
+	 * 
+	 */
+	private void scheduleDrain() {
+		
+		if (draining.compareAndSet(false, true)) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					drain();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Process batches until the queue is empty. We check again after clearing the flag, 
+	 * in case something was queued after our last look but before the flag was cleared.
+	 * 
+	 */
+	private void drain() {
+		List<PendingAnalysis> batch;
+		
+		batch = new ArrayList<>(BATCH_SIZE);
+		do {
+			try {
+				while (pending.drainTo(batch, BATCH_SIZE) > 0) {
+					processBatch(batch);
+					batch.clear();
+				}
+			} finally {
+				draining.set(false);
+			}
+		} while (!pending.isEmpty() && draining.compareAndSet(false, true));
+	}
+	
+	private void processBatch(List<PendingAnalysis> batch) {
+		long startNanos;
+		long waitNanos;
+		long execNanos;
+		
+		startNanos = System.nanoTime();
+		for (PendingAnalysis item : batch) {
+			waitNanos = startNanos - item.queuedNanos;
+			totalWaitNanos.addAndGet(waitNanos);
+			maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+			try {
+				CharlieDocumentProcessor.postProcessAnalysis(item.analysis);
+			} catch (RuntimeException ex) {
+				LOGGER.error("CharliePostProcessor: unable to post-process analysis", ex);
+			}
+		}
+		execNanos = System.nanoTime() - startNanos;
+		totalExecNanos.addAndGet(execNanos);
+		maxExecNanos.accumulateAndGet(execNanos, Math::max);
+		processedCount.addAndGet(batch.size());
+		batchCount.incrementAndGet();
+	}
+	
+	/**
+	 * Get the number of analyses waiting to be processed.
+	 * 
+	 * @return The queue depth
+	 */
+	int getQueueDepth() {
+		
+		return pending.size();
+	}
+	
+	long getSubmittedCount() {
+		
+		return submittedCount.get();
+	}
+	
+	long getDroppedCount() {
+		
+		return droppedCount.get();
+	}
+	
+	long getProcessedCount() {
+		
+		return processedCount.get();
+	}
+	
+	/**
+	 * Get the average time an analysis waited in the queue.
+	 * 
+	 * @return The average wait, in milliseconds
+	 */
+	double getAverageWaitMillis() {
+		long processed;
+		
+		processed = processedCount.get();
+		if (processed == 0) {
+			return 0.0;
+		}
+		return totalWaitNanos.get() / 1.0e6 / processed;
+	}
+	
+	/**
+	 * Get the average time it took to process a batch.
+	 * 
+	 * @return The average execution time, in milliseconds
+	 */
+	double getAverageBatchMillis() {
+		long batches;
+		
+		batches = batchCount.get();
+		if (batches == 0) {
+			return 0.0;
+		}
+		return totalExecNanos.get() / 1.0e6 / batches;
+	}
+	
+	/**
+	 * Stop taking work, wait a little for the queue to empty and shut down the executor.
+	 * 
+	 */
+	void close() {
+		
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+				LOGGER.warn("CharliePostProcessor: gave up waiting for post-processing to finish");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		LOGGER.info("{}", this);
+	}
+	
+	@Override
+	public String toString() {
+		
+		return String.format("CharliePostProcessor: queued %d, submitted %d, dropped %d, processed %d " +
+				"in %d batches, wait avg %.1f ms max %.1f ms, batch avg %.1f ms max %.1f ms",
+				getQueueDepth(), getSubmittedCount(), getDroppedCount(), getProcessedCount(), 
+				batchCount.get(), getAverageWaitMillis(), maxWaitNanos.get() / 1.0e6, 
+				getAverageBatchMillis(), maxExecNanos.get() / 1.0e6);
+	}
+	
+	/**
+	 * An analysis and when it was queued.
+	 * 
+	 */
+	private static final class PendingAnalysis {
+		final NLPAnalysis analysis;
+		final long queuedNanos;
+		
+		PendingAnalysis(NLPAnalysis analysis) {
+			
+			this.analysis = analysis;
+			this.queuedNanos = System.nanoTime();
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.charlie;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.room.document.NLPAnalysis;
+import com.hulles.alixia.room.document.SentenceAnalysis;
+
+/**
+ * CharlieResultCache remembers complete analyses of what people have said to us, so when 
+ * somebody says "what time is it" for the hundredth time we can skip OpenNLP altogether.
+ * <p>
+ * The key is the input with its whitespace tidied up plus the version of the models that
+ * analyzed it. We don't fold case or strip punctuation, since the tokenizer, POS tagger and 
+ * name finders all care about both. Entries expire after TTL_MINUTES even if nobody pushes 
+ * them out, because the dictionary lemmata and the Penn Treebank definitions can change 
+ * under us without the models changing. 
+ * <p>
+ * What goes into the cache is a copy and what comes out is a copy, since downstream rooms are
+ * free to fiddle with the analyses they get.
+ * 
+ * @author hulles
+ *
+ */
+final class CharlieResultCache {
+	private final static int MAX_ENTRIES = 1024;
+	private final static long TTL_MINUTES = 10;
+	private final static Pattern WHITESPACE = Pattern.compile("\\s+");
+	private final Cache<String, CachedResult> cache;
+	
+	CharlieResultCache() {
+		
+		cache = CacheBuilder.newBuilder()
+				.maximumSize(MAX_ENTRIES)
+				.expireAfterWrite(TTL_MINUTES, TimeUnit.MINUTES)
+				.recordStats()
+				.build();
+	}
+	
+	private static String makeKey(String input, int modelVersion) {
+		
+		return modelVersion + "\t" + WHITESPACE.matcher(input.trim()).replaceAll(" ");
+	}
+	
+	/**
+	 * Get the analysis for an input, if we have it.
+	 * 
+	 * @param input The input message
+	 * @param modelVersion The version of the models we'd analyze it with
+	 * @return A new analysis of the input, or null if we don't have one
+	 */
+	NLPAnalysis get(String input, int modelVersion) {
+		CachedResult result;
+		NLPAnalysis analysis;
+		List<SentenceAnalysis> sentenceAnalyses;
+		
+		SharedUtils.checkNotNull(input);
+		result = cache.getIfPresent(makeKey(input, modelVersion));
+		if (result == null) {
+			return null;
+		}
+		sentenceAnalyses = new ArrayList<>(result.sentenceAnalyses.size());
+		for (SentenceAnalysis sentenceAnalysis : result.sentenceAnalyses) {
+			sentenceAnalyses.add(sentenceAnalysis.copy());
+		}
+		analysis = new NLPAnalysis();
+		analysis.setMessage(input);
+		analysis.setSentences(new ArrayList<>(result.sentences));
+		analysis.setSentenceAnalyses(sentenceAnalyses);
+		return analysis;
+	}
+	
+	/**
+	 * Remember the analysis of an input.
+	 * 
+	 * @param input The input message
+	 * @param modelVersion The version of the models that analyzed it
+	 * @param analysis The analysis
+	 */
+	void put(String input, int modelVersion, NLPAnalysis analysis) {
+		ImmutableList.Builder<SentenceAnalysis> builder;
+		
+		SharedUtils.checkNotNull(input);
+		SharedUtils.checkNotNull(analysis);
+		builder = ImmutableList.builder();
+		for (SentenceAnalysis sentenceAnalysis : analysis.getSentenceAnalyses()) {
+			builder.add(sentenceAnalysis.copy());
+		}
+		cache.put(makeKey(input, modelVersion), 
+				new CachedResult(ImmutableList.copyOf(analysis.getSentences()), builder.build()));
+	}
+	
+	/**
+	 * Throw away everything, e.g. after refreshing the lemma dictionary.
+	 * 
+	 */
+	void invalidate() {
+		
+		cache.invalidateAll();
+	}
+	
+	CacheStats getStats() {
+		
+		return cache.stats();
+	}
+	
+	@Override
+	public String toString() {
+		CacheStats stats;
+		
+		stats = cache.stats();
+		return String.format("CharlieResultCache: %d entries, %d hits, %d misses, hit ratio %.3f, %d evictions",
+				cache.size(), stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+	}
+	
+	private static final class CachedResult {
+		final List<String> sentences;
+		final List<SentenceAnalysis> sentenceAnalyses;
+		
+		CachedResult(List<String> sentences, List<SentenceAnalysis> sentenceAnalyses) {
+			
+			this.sentences = sentences;
+			this.sentenceAnalyses = sentenceAnalyses;
+		}
+	}
+}
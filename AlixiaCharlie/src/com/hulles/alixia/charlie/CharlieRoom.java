@@ -28,6 +28,7 @@ import java.util.Set;
 
 import com.hulles.alixia.api.shared.SerialSememe;
 import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.charlie.CharlieModels.LoadMode;
 import com.hulles.alixia.room.Room;
 import com.hulles.alixia.room.UrRoom;
 import com.hulles.alixia.room.document.NLPAnalysis;
@@ -46,6 +47,7 @@ import com.hulles.alixia.ticket.SememePackage;
  */
 public final class CharlieRoom extends UrRoom {
 	CharlieDocumentProcessor processor;
+	CharliePostProcessor postProcessor;
 
 	public CharlieRoom() {
 		super();
@@ -71,22 +73,10 @@ public final class CharlieRoom extends UrRoom {
 		pkg = new ActionPackage(sememePkg);
 		analysis = processor.processDocument(request);
 		pkg.setActionObject(analysis);
-		postProcessAnalysis(analysis);
+		postProcessor.submit(analysis);
 		return pkg;
 	}
 	
-	private static void postProcessAnalysis(NLPAnalysis analysis) {
-		Thread postProc;
-		
-		postProc = new Thread() {
-			@Override
-			public void run() {
-				CharlieDocumentProcessor.postProcessAnalysis(analysis);
-			}
-		};
-		postProc.start();
-	}
-	
 	@Override
 	public Room getThisRoom() {
 
@@ -106,7 +96,10 @@ public final class CharlieRoom extends UrRoom {
 //		loader = new Thread() {
 //			@Override
 //			public void run() {
-				processor = new CharlieDocumentProcessor();
+				// we wait for the models (they load in parallel) rather than say we're running 
+				//    and then sit on the first requests past their deadlines
+				processor = new CharlieDocumentProcessor(LoadMode.EAGER);
+				postProcessor = new CharliePostProcessor();
 //			}
 //		};
 //		loader.start();
@@ -115,6 +108,12 @@ public final class CharlieRoom extends UrRoom {
 	@Override
 	protected void roomShutdown() {
 		
+		if (postProcessor != null) {
+			postProcessor.close();
+		}
+		if (processor != null) {
+			processor.close();
+		}
 	}
 
 	@Override
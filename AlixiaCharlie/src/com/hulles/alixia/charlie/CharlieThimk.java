@@ -24,8 +24,6 @@ package com.hulles.alixia.charlie;
 import java.util.List;
 import java.util.Random;
 
-import com.hulles.alixia.cayenne.Lemma;
-
 /**
  * CharlieThimk is Charlie's version of the Thimk class in Alixia Overmind; that is, it
  * implements decision-making methods for various choice points in the processing. Also
@@ -39,7 +37,7 @@ import com.hulles.alixia.cayenne.Lemma;
 public class CharlieThimk {
 	private final static Random RANDOM = new Random();
 	
-	public static Lemma chooseLemma(List<Lemma> lemmata, String token, String posTag, 
+	public static String chooseLemma(List<String> lemmata, String token, String posTag, 
 			String[] tokens, String[] posTags) {
 		int ix;
 		
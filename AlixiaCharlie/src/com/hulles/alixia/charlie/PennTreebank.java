@@ -21,95 +21,172 @@
  *******************************************************************************/
 package com.hulles.alixia.charlie;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableMap;
 import com.hulles.alixia.api.jebus.JebusBible;
 import com.hulles.alixia.api.jebus.JebusBible.JebusKey;
 import com.hulles.alixia.api.jebus.JebusHub;
 import com.hulles.alixia.api.jebus.JebusPool;
-import java.util.Set;
-
 import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.api.tools.StageTimer;
 
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 
 /**
  * The Penn Treebank, as implemented by Apache OpenNLP
  *     (The map also contains arbitrary symbols for the CUP parser)
+ * <p>
+ * We look up a tag for every token Charlie analyzes, so rather than going to Jebus each time
+ * we load the whole treebank (there are only a few dozen tags) into an immutable table the 
+ * first time it's needed, in one pipelined round trip. Lookups are then a plain map get. If 
+ * the treebank in Jebus changes, CharlieDocumentProcessor.refreshDictionaries loads it again
+ * (and forgets the analyses made with the old one).
  *     
  * @author hulles
  *
  */
 public final class PennTreebank {
-	private static JebusPool jebusPool = null;
+	private final static Logger LOGGER = LoggerFactory.getLogger(PennTreebank.class);
+	private final static StageTimer REDIS_TIMER = StageTimer.forStage(StageTimer.REDIS);
+	private static volatile Map<String, TagEntry> tagTable = null;
+	
+	private PennTreebank() {
+		// only static methods, no need to instantiate it
+	}
 	
 	public static String getTagDefinition(String tag) {
-		String result;
-		String hashKey;
+		TagEntry entry;
 		
 		SharedUtils.checkNotNull(tag);
-		if (jebusPool == null) {
-			jebusPool = JebusHub.getJebusCentral();
-		}
-    	try (Jedis jebus = jebusPool.getResource()){
-    		hashKey = JebusBible.getPennTreebankHashKey(jebusPool, tag);
-    		result = jebus.hget(hashKey, JebusBible.getStringKey(JebusKey.PTTAGDESCRIPTION, jebusPool));
+		entry = getTagTable().get(tag);
+		if (entry == null) {
+			return null;
 		}
-		return result;
+		return entry.description;
 	}
 	
 	public static String getCUPSymbol(String tag) {
-		String result;
-		String hashKey;
+		TagEntry entry;
 		
 		SharedUtils.checkNotNull(tag);
-		if (jebusPool == null) {
-			jebusPool = JebusHub.getJebusLocal();
+		entry = getTagTable().get(tag);
+		if (entry == null) {
+			return null;
 		}
-    	try (Jedis jebus = jebusPool.getResource()){
-    		hashKey = JebusBible.getPennTreebankHashKey(jebusPool, tag);
-     		result = jebus.hget(hashKey, JebusBible.getStringKey(JebusKey.PTCUPSYMBOL, jebusPool));
-		}
-		return result;
+		return entry.cupSymbol;
 	}
 	
 	public static boolean isValidTag(String tag) {
-		boolean result = false;
-		String hashKey;
 		
 		SharedUtils.checkNotNull(tag);
-		if (jebusPool == null) {
-			jebusPool = JebusHub.getJebusLocal();
-		}
-    	try (Jedis jebus = jebusPool.getResource()){
-    		hashKey = JebusBible.getPennTreebankHashKey(jebusPool, tag);
-    		result = jebus.exists(hashKey);
-		}
-		return result;
+		return getTagTable().containsKey(tag);
 	}
 
-	public static void dumpPennTreebank() {
+	/**
+	 * Reload the tag table from Jebus. Lookups in progress keep using the old table, 
+	 * which stays intact.
+	 * 
+	 */
+	static void refreshTags() {
+		
+		tagTable = loadTagTable();
+	}
+	
+	private static Map<String, TagEntry> getTagTable() {
+		Map<String, TagEntry> table;
+		
+		table = tagTable;
+		if (table == null) {
+			synchronized (PennTreebank.class) {
+				table = tagTable;
+				if (table == null) {
+					table = loadTagTable();
+					tagTable = table;
+				}
+			}
+		}
+		return table;
+	}
+	
+	/**
+	 * Load all the tags and their fields from Jebus.
+	 * 
+	 * @return The new tag table
+	 */
+	private static Map<String, TagEntry> loadTagTable() {
+		JebusPool jebusPool;
     	String setKey;
-    	Set<String> tags;
-    	String hashKey;
     	String descFld;
     	String cupFld;
+    	Set<String> tags;
+    	List<Response<Map<String, String>>> responses;
+    	ImmutableMap.Builder<String, TagEntry> builder;
+    	Map<String, String> fields;
+    	Pipeline pipeline;
+    	int ix;
+    	long startNanos;
     	
+		jebusPool = JebusHub.getJebusCentral();
     	setKey = JebusBible.getStringKey(JebusKey.PENNTREEBANKSETKEY, jebusPool);
     	descFld = JebusBible.getStringKey(JebusKey.PTTAGDESCRIPTION, jebusPool);
     	cupFld = JebusBible.getStringKey(JebusKey.PTCUPSYMBOL, jebusPool);
-		if (jebusPool == null) {
-			jebusPool = JebusHub.getJebusLocal();
-		}
+    	builder = ImmutableMap.builder();
+    	startNanos = REDIS_TIMER.start();
     	try (Jedis jebus = jebusPool.getResource()){
     		tags = jebus.zrange(setKey, 0, -1);
+    		responses = new ArrayList<>(tags.size());
+    		pipeline = jebus.pipelined();
     		for (String tag : tags) {
-    			System.out.print(tag);
-        		hashKey = JebusBible.getPennTreebankHashKey(jebusPool, tag);
-        		System.out.print(": ");
-        		System.out.print(jebus.hget(hashKey, descFld));
-        		System.out.print(": ");
-        		System.out.println(jebus.hget(hashKey, cupFld));
+    			responses.add(pipeline.hgetAll(JebusBible.getPennTreebankHashKey(jebusPool, tag)));
     		}
-    	    System.out.println("There are " + jebus.zcard(setKey) + " tags.");
+    		pipeline.sync();
+		} finally {
+			REDIS_TIMER.stop(startNanos);
+		}
+    	ix = 0;
+    	for (String tag : tags) {
+    		fields = responses.get(ix++).get();
+    		builder.put(tag, new TagEntry(fields.get(descFld), fields.get(cupFld)));
+    	}
+    	LOGGER.info("PennTreebank: loaded {} tags", tags.size());
+    	return builder.build();
+	}
+
+	public static void dumpPennTreebank() {
+		Map<String, TagEntry> table;
+		
+		table = getTagTable();
+		for (Map.Entry<String, TagEntry> entry : table.entrySet()) {
+			System.out.print(entry.getKey());
+    		System.out.print(": ");
+    		System.out.print(entry.getValue().description);
+    		System.out.print(": ");
+    		System.out.println(entry.getValue().cupSymbol);
+		}
+	    System.out.println("There are " + table.size() + " tags.");
+	}
+	
+	/**
+	 * The fields for one tag.
+	 * 
+	 */
+	private static final class TagEntry {
+		final String description;
+		final String cupSymbol;
+		
+		TagEntry(String description, String cupSymbol) {
+			
+			this.description = description;
+			this.cupSymbol = cupSymbol;
 		}
 	}
 }
@@ -25,17 +25,14 @@ import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.hulles.alixia.api.shared.AlixiaException;
-import com.hulles.alixia.api.shared.ApplicationKeys;
-import com.hulles.alixia.api.shared.ApplicationKeys.ApplicationKey;
 import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.charlie.CharlieModels;
 
 import opennlp.tools.doccat.DoccatFactory;
 import opennlp.tools.doccat.DoccatModel;
@@ -49,26 +46,10 @@ final public class CharlieDocCat {
 	private final static Logger LOGGER = LoggerFactory.getLogger(CharlieDocCat.class);
 	private final DocumentCategorizerME categorizer;
 	
-	public CharlieDocCat() {
-		URL catModelURL;
-		DoccatModel catModel;
-		ApplicationKeys appKeys;
-        String openNLPPath;
-        
-        appKeys = ApplicationKeys.getInstance();
-        openNLPPath = appKeys.getKey(ApplicationKey.OPENNLPPATH);
-        try {
-            catModelURL = new URL(ApplicationKeys.toURL(openNLPPath + "/mydoccat.bin"));
-        } catch (MalformedURLException ex) {
-            throw new AlixiaException("Can't create Document Categorizer URL", ex);
-        }
-		try {
-			catModel = new DoccatModel(catModelURL);
-		}
-		catch (IOException e) {
-			throw new AlixiaException("Can't load Document Categorizer model(s)", e);
-		}
-		categorizer = new DocumentCategorizerME(catModel);
+	public CharlieDocCat(CharlieModels models) {
+		
+		SharedUtils.checkNotNull(models);
+		categorizer = new DocumentCategorizerME(models.getDoccatModel());
 	}
 	
 	public String categorizeDocument(String[] tokenizedInput) {
@@ -21,25 +21,18 @@
  *******************************************************************************/
 package com.hulles.alixia.charlie.ner;
 
-import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.hulles.alixia.api.shared.AlixiaException;
-import com.hulles.alixia.api.shared.ApplicationKeys;
-import com.hulles.alixia.api.shared.ApplicationKeys.ApplicationKey;
 import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.charlie.CharlieModels;
 import com.hulles.alixia.charlie.ner.CharlieDictionary.DictionaryType;
 
 import opennlp.tools.dictionary.Dictionary;
 import opennlp.tools.namefind.DictionaryNameFinder;
 import opennlp.tools.namefind.NameFinderME;
-import opennlp.tools.namefind.TokenNameFinderModel;
 import opennlp.tools.tokenize.TokenizerME;
-import opennlp.tools.tokenize.TokenizerModel;
 import opennlp.tools.util.Span;
 
 final public class CharlieNER {
@@ -56,69 +49,21 @@ final public class CharlieNER {
 	private final NameFinderME percentageFinder;
 	private final TokenizerME tokenizer;
 	
-	public CharlieNER() {
-		URL personModelURL;
-		URL locationModelURL;
-		URL organizationModelURL;
-		URL dateModelURL;
-		URL timeModelURL;
-		URL moneyModelURL;
-		URL percentageModelURL;
-		URL tokenModelURL;
-		
-		TokenizerModel tokenizerModel;
-		
-		TokenNameFinderModel personModel;
-		TokenNameFinderModel locationModel;
-		TokenNameFinderModel organizationModel;
-		TokenNameFinderModel timeModel;
-		TokenNameFinderModel dateModel;
-		TokenNameFinderModel moneyModel;
-		TokenNameFinderModel percentageModel;
-		
+	public CharlieNER(CharlieModels models) {
 		Dictionary citizenDictionary;
 		Dictionary organizationDictionary;
 		Dictionary locationDictionary;
 		
-		ApplicationKeys appKeys;
-        String openNLPPath;
-        
-        appKeys = ApplicationKeys.getInstance();
-        openNLPPath = appKeys.getKey(ApplicationKey.OPENNLPPATH);
-        try {
-            personModelURL = new URL(ApplicationKeys.toURL(openNLPPath + "/en-ner-person.bin"));
-            locationModelURL = new URL(ApplicationKeys.toURL(openNLPPath + "/en-ner-location.bin"));
-            organizationModelURL = new URL(ApplicationKeys.toURL(openNLPPath + "/en-ner-organization.bin"));
-            dateModelURL = new URL(ApplicationKeys.toURL(openNLPPath + "/en-ner-date.bin"));
-            timeModelURL = new URL(ApplicationKeys.toURL(openNLPPath + "/en-ner-time.bin"));
-            moneyModelURL = new URL(ApplicationKeys.toURL(openNLPPath + "/en-ner-money.bin"));
-            percentageModelURL = new URL(ApplicationKeys.toURL(openNLPPath + "/en-ner-percentage.bin"));
-            tokenModelURL = new URL(ApplicationKeys.toURL(openNLPPath + "/en-token.bin"));
-        } catch (MalformedURLException ex) {
-            throw new AlixiaException("Can't create NER URL", ex);
-        }
-		try {
-			personModel = new TokenNameFinderModel(personModelURL);
-			locationModel = new TokenNameFinderModel(locationModelURL);
-			organizationModel = new TokenNameFinderModel(organizationModelURL);
-			dateModel = new TokenNameFinderModel(dateModelURL);
-			timeModel = new TokenNameFinderModel(timeModelURL);
-			moneyModel = new TokenNameFinderModel(moneyModelURL);
-			percentageModel = new TokenNameFinderModel(percentageModelURL);
-			tokenizerModel = new TokenizerModel(tokenModelURL);
-		}
-		catch (IOException e) {
-			throw new AlixiaException("Can't load NER model(s)", e);
-		}
-		personFinder = new NameFinderME(personModel);
-		locationFinder = new NameFinderME(locationModel);
-		organizationFinder = new NameFinderME(organizationModel);
-		dateFinder = new NameFinderME(dateModel);
-		timeFinder = new NameFinderME(timeModel);
-		moneyFinder = new NameFinderME(moneyModel);
-		percentageFinder = new NameFinderME(percentageModel);
+		SharedUtils.checkNotNull(models);
+		personFinder = new NameFinderME(models.getPersonModel());
+		locationFinder = new NameFinderME(models.getLocationModel());
+		organizationFinder = new NameFinderME(models.getOrganizationModel());
+		dateFinder = new NameFinderME(models.getDateModel());
+		timeFinder = new NameFinderME(models.getTimeModel());
+		moneyFinder = new NameFinderME(models.getMoneyModel());
+		percentageFinder = new NameFinderME(models.getPercentageModel());
 		
-		tokenizer = new TokenizerME(tokenizerModel);
+		tokenizer = new TokenizerME(models.getTokenizerModel());
 		
 		citizenDictionary = new CharlieDictionary(DictionaryType.PERSON, tokenizer);
 		myriaCitizenFinder = new DictionaryNameFinder(citizenDictionary);
@@ -258,6 +203,45 @@ final public class CharlieNER {
 		return outputStrings;
 	}
 	
+	/**
+	 * Find the entities of one type. Each type has its own finder, so different types can be
+	 * looked for at the same time on different threads, as long as no two threads use the same
+	 * type at once.
+	 * 
+	 * @param type The type of entity to find
+	 * @param tokenizedInput The tokens of the sentence
+	 * @return The entities found
+	 */
+	public String[] findEntities(EntityType type, String[] tokenizedInput) {
+		
+		SharedUtils.checkNotNull(type);
+		SharedUtils.checkNotNull(tokenizedInput);
+		switch (type) {
+			case PERSON:
+				return findPersons(tokenizedInput);
+			case LOCATION:
+				return findLocations(tokenizedInput);
+			case ORGANIZATION:
+				return findOrganizations(tokenizedInput);
+			case DATE:
+				return findDates(tokenizedInput);
+			case TIME:
+				return findTimes(tokenizedInput);
+			case MONEY:
+				return findMoney(tokenizedInput);
+			case PERCENTAGE:
+				return findPercentages(tokenizedInput);
+			case MYRIA_CITIZEN:
+				return findMyriaCitizens(tokenizedInput);
+			case MYRIA_LOCATION:
+				return findMyriaLocations(tokenizedInput);
+			case MYRIA_ORGANIZATION:
+				return findMyriaOrganizations(tokenizedInput);
+			default:
+				throw new AlixiaException("CharlieNER: unsupported entity type = " + type.name());
+		}
+	}
+	
 	public void endOfDocument() {
 		
 		personFinder.clearAdaptiveData();
@@ -276,4 +260,17 @@ final public class CharlieNER {
 		
 		return tokenizer;
 	}
+	
+	public enum EntityType {
+		PERSON,
+		LOCATION,
+		ORGANIZATION,
+		DATE,
+		TIME,
+		MONEY,
+		PERCENTAGE,
+		MYRIA_CITIZEN,
+		MYRIA_LOCATION,
+		MYRIA_ORGANIZATION
+	}
 }
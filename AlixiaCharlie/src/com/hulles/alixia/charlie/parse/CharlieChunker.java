@@ -21,20 +21,14 @@
  *******************************************************************************/
 package com.hulles.alixia.charlie.parse;
 
-import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.hulles.alixia.api.shared.AlixiaException;
-import com.hulles.alixia.api.shared.ApplicationKeys;
-import com.hulles.alixia.api.shared.ApplicationKeys.ApplicationKey;
 import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.charlie.CharlieModels;
 
+import opennlp.tools.chunker.ChunkSample;
 import opennlp.tools.chunker.ChunkerME;
-import opennlp.tools.chunker.ChunkerModel;
 import opennlp.tools.util.Sequence;
 import opennlp.tools.util.Span;
 
@@ -42,27 +36,10 @@ final public class CharlieChunker {
 	private final static Logger LOGGER = LoggerFactory.getLogger(CharlieChunker.class);
 	private final ChunkerME chunker;
 
-	public CharlieChunker() {
-		URL chunkerModelURL;
-		ChunkerModel chunkerModel;
-		ApplicationKeys appKeys;
-        String openNLPPath;
-        
-        appKeys = ApplicationKeys.getInstance();
-        openNLPPath = appKeys.getKey(ApplicationKey.OPENNLPPATH);
-        try {
-            chunkerModelURL = new URL(ApplicationKeys.toURL(openNLPPath + "/en-chunker.bin"));
-        } catch (MalformedURLException ex) {
-            throw new AlixiaException("Can't create Chunker URL", ex);
-        }
+	public CharlieChunker(CharlieModels models) {
 		
-		try {
-			chunkerModel = new ChunkerModel(chunkerModelURL);
-		}
-		catch (IOException e) {
-			throw new AlixiaException("Can't load Chunker model(s)", e);
-		}
-		chunker = new ChunkerME(chunkerModel);
+		SharedUtils.checkNotNull(models);
+		chunker = new ChunkerME(models.getChunkerModel());
 	}
 	
 	public String[] chunkDocument(String[] tokenizedInput, String[] posTags) {
@@ -91,6 +68,30 @@ final public class CharlieChunker {
 		return spanStrings;
 	}
 	
+	/**
+	 * Segment the input using chunk tags we already have from chunkDocument, so we don't
+	 * run the chunker a second time.
+	 * 
+	 * @param tokenizedInput The tokens
+	 * @param posTags The POS tags of the tokens
+	 * @param chunkTags The chunk tags from chunkDocument
+	 * @return The chunks
+	 */
+	public static String[] segmentDocument(String[] tokenizedInput, String[] posTags, String[] chunkTags) {
+		Span[] chunkSpans;
+		String[] spanStrings;
+		
+		SharedUtils.checkNotNull(tokenizedInput);
+		SharedUtils.checkNotNull(posTags);
+		SharedUtils.checkNotNull(chunkTags);
+		chunkSpans = ChunkSample.phrasesAsSpanList(tokenizedInput, posTags, chunkTags);
+		spanStrings = Span.spansToStrings(chunkSpans, tokenizedInput);
+		for (String s : spanStrings) {
+			LOGGER.debug("CHUNK SPAN: {}", s);
+		}
+		return spanStrings;
+	}
+	
 	public Sequence[] getChunkSequences(String[] tokenizedInput, String[] posTags) {
 		Sequence[] chunkSeqs;
 		
@@ -21,54 +21,25 @@
  *******************************************************************************/
 package com.hulles.alixia.charlie.parse;
 
-import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.hulles.alixia.api.shared.AlixiaException;
-import com.hulles.alixia.api.shared.ApplicationKeys;
-import com.hulles.alixia.api.shared.ApplicationKeys.ApplicationKey;
 import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.charlie.CharlieModels;
 
 import opennlp.tools.sentdetect.SentenceDetectorME;
-import opennlp.tools.sentdetect.SentenceModel;
 import opennlp.tools.tokenize.TokenizerME;
-import opennlp.tools.tokenize.TokenizerModel;
 
 final public class CharlieParser {
 	private final static Logger LOGGER = LoggerFactory.getLogger(CharlieParser.class);
 	private final SentenceDetectorME sentenceParser;
 	private final TokenizerME tokenizer;
 
-	public CharlieParser() {
-		URL sentenceModelURL = null;
-		URL tokenModelURL = null;
-		SentenceModel sentenceModel;
-		TokenizerModel tokenizerModel;
-		ApplicationKeys appKeys;
-        String openNLPPath;
-        
-        appKeys = ApplicationKeys.getInstance();
-        openNLPPath = appKeys.getKey(ApplicationKey.OPENNLPPATH);
-        try {
-            sentenceModelURL = new URL(ApplicationKeys.toURL(openNLPPath + "/en-sent.bin"));
-            tokenModelURL = new URL(ApplicationKeys.toURL(openNLPPath + "/en-token.bin"));
-        } catch (MalformedURLException ex) {
-            throw new AlixiaException("Can't create Parser URL(s)", ex);
-        }
+	public CharlieParser(CharlieModels models) {
 		
-		try {
-			sentenceModel = new SentenceModel(sentenceModelURL);
-			tokenizerModel = new TokenizerModel(tokenModelURL);
-		}
-		catch (IOException e) {
-			throw new AlixiaException("Can't load sentence/tokenizer model(s)", e);
-		}
-		sentenceParser = new SentenceDetectorME(sentenceModel);
-		tokenizer = new TokenizerME(tokenizerModel);
+		SharedUtils.checkNotNull(models);
+		sentenceParser = new SentenceDetectorME(models.getSentenceModel());
+		tokenizer = new TokenizerME(models.getTokenizerModel());
 	}
 	
 	public String[] detectSentences(String input) {
@@ -21,30 +21,19 @@
  *******************************************************************************/
 package com.hulles.alixia.charlie.pos;
 
-import com.hulles.alixia.api.shared.AlixiaException;
-import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.List;
 
-import com.hulles.alixia.api.shared.ApplicationKeys;
-import com.hulles.alixia.api.shared.ApplicationKeys.ApplicationKey;
 import com.hulles.alixia.api.shared.SharedUtils;
-import com.hulles.alixia.cayenne.AlixiaApplication;
-import com.hulles.alixia.cayenne.Lemma;
+import com.hulles.alixia.charlie.CharlieModels;
 import com.hulles.alixia.charlie.CharlieThimk;
 
 import opennlp.tools.lemmatizer.LemmatizerME;
-import opennlp.tools.lemmatizer.LemmatizerModel;
-import opennlp.tools.util.InvalidFormatException;
 
 public class CharlieLemmatizer {
 	private final LemmatizerME lemmatizer;
 //	private final DictionaryLemmatizer dictLemmatizer;	
 
-	public CharlieLemmatizer() {
-		URL lemmatizerModelURL;
-		LemmatizerModel lemmatizerModel;
+	public CharlieLemmatizer(CharlieModels models) {
 //		List<Lemma> dictLemmata;
 //		String dictString;
 //		StringBuilder sb;
@@ -52,25 +41,9 @@ public class CharlieLemmatizer {
 //		String word = null;
 //		String pos = null;
 //		String lemma = null;
-		ApplicationKeys appKeys;
-        String openNLPPath;
         
-        appKeys = ApplicationKeys.getInstance();
-        openNLPPath = appKeys.getKey(ApplicationKey.OPENNLPPATH);
-        try {
-            lemmatizerModelURL = new URL(ApplicationKeys.toURL(openNLPPath + "/en-lemmatizer.bin"));
-        } catch (MalformedURLException ex) {
-            throw new AlixiaException("Can't create Lemmatizer URL", ex);
-        }
-		
-		try {
-			lemmatizerModel = new LemmatizerModel(lemmatizerModelURL);
-		} catch (InvalidFormatException e) {
-			throw new AlixiaException("Can't load lemmatizer model format", e);
-		} catch (IOException e) {
-			throw new AlixiaException("Can't load lemmatizer model", e);
-		}
-		lemmatizer = new LemmatizerME(lemmatizerModel);
+		SharedUtils.checkNotNull(models);
+		lemmatizer = new LemmatizerME(models.getLemmatizerModel());
 /*		
 		dictLemmata = Lemma.getAllLemmas();
 		// As it stands, the Lemma database dictionary contains duplicate word-pos keys; 
@@ -121,52 +94,84 @@ public class CharlieLemmatizer {
 		return lemmata;
 	}
 	
+	/**
+	 * Look up the dictionary lemma for each token. This only uses the in-memory LemmaIndex, 
+	 * so it never waits on the database.
+	 * 
+	 * @param tokens The tokens
+	 * @param posTags Their POS tags
+	 * @return The lemmata, "O" for tokens we don't have a lemma for
+	 */
 	public static String[] generateDictionaryLemmata(String[] tokens, String[] posTags) {
 		String[] lemmata;
-		List<Lemma> result;
-		Lemma lemma;
+		List<String> result;
 		
 		SharedUtils.checkNotNull(tokens);
 		SharedUtils.checkNotNull(posTags);
 		lemmata = new String[tokens.length];
 		for (int ix=0; ix<tokens.length; ix++) {
-			result = Lemma.getLemmas(tokens[ix], posTags[ix]);
-			if (result == null || result.isEmpty()) {
+			result = LemmaIndex.getLemmata(tokens[ix], posTags[ix]);
+			if (result.isEmpty()) {
 				lemmata[ix] = "O"; // like the original
 			} else if (result.size() == 1){
-				lemma = result.get(0);
-				lemmata[ix] = lemma.getLemma();
+				lemmata[ix] = result.get(0);
 			} else {
-				lemma = CharlieThimk.chooseLemma(result, tokens[ix], posTags[ix], tokens, posTags);
-				lemmata[ix] = lemma.getLemma();
+				lemmata[ix] = CharlieThimk.chooseLemma(result, tokens[ix], posTags[ix], tokens, posTags);
 			}
 		}
 		return lemmata;
 	}
 	
-	public static synchronized void updateDictionaryLemmata(List<String> lemmata, 
+	/**
+	 * Queue dummy lemmata for the tokens we didn't find in the dictionary. They're written
+	 * to the database in the background by LemmaIndex.
+	 * 
+	 * @param lemmata The dictionary lemmata from generateDictionaryLemmata
+	 * @param tokens The tokens
+	 * @param posTags Their POS tags
+	 */
+	public static void updateDictionaryLemmata(List<String> lemmata, 
 			List<String> tokens, List<String> posTags) {
-		Lemma lemma;
 		String word;
-		String dummy;
-		boolean oldValue;
 		
-		dummy = Lemma.getDummyLemmaTag();
-		oldValue = AlixiaApplication.setErrorOnUncommittedObjects(false);
+		SharedUtils.checkNotNull(lemmata);
+		SharedUtils.checkNotNull(tokens);
+		SharedUtils.checkNotNull(posTags);
 		for (int i=0; i<lemmata.size(); i++) {
 			word = lemmata.get(i);
 			if (word.isEmpty() || word.equals("O")) {
-				if (!Lemma.lemmaExists(tokens.get(i), posTags.get(i), dummy)) {
-					lemma = Lemma.createNew();
-					lemma.setWord(tokens.get(i));
-					lemma.setPos(posTags.get(i));
-					// we just create a dummy entry for the new lemma,
-					//  it needs to be manually edited later by someone, possibly YOU
-					lemma.setLemma(dummy);
-				}
+				LemmaIndex.addDummyLemma(tokens.get(i), posTags.get(i));
 			}
 		}
-		AlixiaApplication.commitAll();
-		AlixiaApplication.setErrorOnUncommittedObjects(oldValue);
+	}
+	
+	/**
+	 * Load the lemma dictionary into memory, if it isn't already.
+	 * 
+	 */
+	public static void loadDictionary() {
+		
+		LemmaIndex.load();
+	}
+	
+	/**
+	 * Reload the lemma dictionary, e.g. after someone has edited the dummy lemmata. Use
+	 * CharlieDocumentProcessor.refreshDictionaries rather than calling this directly, so the 
+	 * analyses made with the old lemmata get thrown away too.
+	 * 
+	 */
+	public static void refreshDictionary() {
+		
+		LemmaIndex.refresh();
+	}
+	
+	/**
+	 * Write any new dummy lemmata to the database and stop the writer. Call this when
+	 * shutting down, before the database goes away.
+	 * 
+	 */
+	public static void closeDictionary() {
+		
+		LemmaIndex.close();
 	}
 }
@@ -21,46 +21,22 @@
  *******************************************************************************/
 package com.hulles.alixia.charlie.pos;
 
-import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.hulles.alixia.api.shared.AlixiaException;
-import com.hulles.alixia.api.shared.ApplicationKeys;
-import com.hulles.alixia.api.shared.ApplicationKeys.ApplicationKey;
 import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.charlie.CharlieModels;
 
-import opennlp.tools.postag.POSModel;
 import opennlp.tools.postag.POSTaggerME;
 
 final public class CharliePOS {
 	private final static Logger LOGGER = LoggerFactory.getLogger(CharliePOS.class);
 	private final POSTaggerME posTagger;
 
-	public CharliePOS() {
-		URL posModelURL;
-		POSModel posModel;
-		ApplicationKeys appKeys;
-        String openNLPPath;
-        
-        appKeys = ApplicationKeys.getInstance();
-        openNLPPath = appKeys.getKey(ApplicationKey.OPENNLPPATH);
-        try {
-            posModelURL = new URL(ApplicationKeys.toURL(openNLPPath + "/en-pos-maxent.bin"));
-        } catch (MalformedURLException ex) {
-            throw new AlixiaException("Can't create POS URL", ex);
-        }
+	public CharliePOS(CharlieModels models) {
 		
-		try {
-			posModel = new POSModel(posModelURL);
-		}
-		catch (IOException e) {
-			throw new AlixiaException("Can't load POS model(s)", e);
-		}
-		posTagger = new POSTaggerME(posModel);
+		SharedUtils.checkNotNull(models);
+		posTagger = new POSTaggerME(models.getPOSModel());
 	}
 	
 	public String[] generatePOS(String[] tokenizedInput) {
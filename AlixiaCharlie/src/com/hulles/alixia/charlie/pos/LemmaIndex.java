@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.charlie.pos;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.api.tools.StageTimer;
+import com.hulles.alixia.cayenne.AlixiaApplication;
+import com.hulles.alixia.cayenne.Lemma;
+
+/**
+ * LemmaIndex keeps the Lemma dictionary in memory, keyed by word and POS tag, so the
+ * dictionary lemmatizer doesn't have to query the database for every token. We load the
+ * whole dictionary (minus the dummy entries) in one query, so a word that isn't in the 
+ * index isn't in the database either and we can answer "no lemma" without asking.
+ * <p>
+ * New words get a dummy lemma in the database so someone can edit them later. Those are 
+ * queued and written in batches by the writer thread every WRITE_INTERVAL milliseconds, so 
+ * nobody waits on JDBC for them. Since the edited lemmata only show up after someone edits 
+ * the database, call refresh to pick them up.
+ * 
+ * @author hulles
+ *
+ */
+final class LemmaIndex {
+	private final static Logger LOGGER = LoggerFactory.getLogger(LemmaIndex.class);
+	final static long WRITE_INTERVAL = 2000; // milliseconds
+	private final static Queue<WordPOS> PENDING = new ConcurrentLinkedQueue<>();
+	private final static Set<WordPOS> QUEUED = ConcurrentHashMap.newKeySet();
+	private final static StageTimer DB_TIMER = StageTimer.forStage(StageTimer.DB);
+	private static volatile Map<WordPOS, List<String>> index = null;
+	private static ScheduledExecutorService writer = null;
+	private static boolean closed = false;
+	
+	private LemmaIndex() {
+		// need to keep this private
+	}
+	
+	/**
+	 * Get the lemmata for a word and POS tag.
+	 * 
+	 * @param word The word
+	 * @param posTag The POS tag
+	 * @return The lemmata, an empty list if there aren't any
+	 */
+	static List<String> getLemmata(String word, String posTag) {
+		List<String> lemmata;
+		
+		SharedUtils.checkNotNull(word);
+		SharedUtils.checkNotNull(posTag);
+		lemmata = getIndex().get(new WordPOS(word, posTag));
+		if (lemmata == null) {
+			return Collections.emptyList();
+		}
+		return lemmata;
+	}
+	
+	/**
+	 * Load the index if it isn't loaded yet, e.g. at startup so the first request doesn't 
+	 * have to wait for it.
+	 * 
+	 */
+	static void load() {
+		
+		getIndex();
+	}
+	
+	/**
+	 * Reload the index from the database.
+	 * 
+	 */
+	static void refresh() {
+		
+		index = loadIndex();
+	}
+	
+	private static Map<WordPOS, List<String>> getIndex() {
+		Map<WordPOS, List<String>> idx;
+		
+		idx = index;
+		if (idx == null) {
+			synchronized (LemmaIndex.class) {
+				idx = index;
+				if (idx == null) {
+					idx = loadIndex();
+					index = idx;
+				}
+			}
+		}
+		return idx;
+	}
+	
+	private static Map<WordPOS, List<String>> loadIndex() {
+		Map<WordPOS, List<String>> lemmaLists;
+		Map<WordPOS, List<String>> idx;
+		List<Lemma> dbLemmata;
+		List<String> lemmata;
+		WordPOS key;
+		long startNanos;
+		
+		startNanos = DB_TIMER.start();
+		dbLemmata = Lemma.getAllLemmas();
+		DB_TIMER.stop(startNanos);
+		lemmaLists = new HashMap<>(dbLemmata.size());
+		for (Lemma dbLemma : dbLemmata) {
+			key = new WordPOS(dbLemma.getWord(), dbLemma.getPos());
+			lemmata = lemmaLists.get(key);
+			if (lemmata == null) {
+				lemmata = new ArrayList<>(1);
+				lemmaLists.put(key, lemmata);
+			}
+			lemmata.add(dbLemma.getLemma());
+		}
+		idx = new HashMap<>(lemmaLists.size());
+		for (Map.Entry<WordPOS, List<String>> entry : lemmaLists.entrySet()) {
+			idx.put(entry.getKey(), ImmutableList.copyOf(entry.getValue()));
+		}
+		LOGGER.info("LemmaIndex: loaded {} lemmata for {} words", dbLemmata.size(), idx.size());
+		return Collections.unmodifiableMap(idx);
+	}
+	
+	/**
+	 * Queue a dummy lemma to be written for a word we don't know. Each word only gets queued
+	 * once per run.
+	 * 
+	 * @param word The word
+	 * @param posTag The POS tag
+	 */
+	static void addDummyLemma(String word, String posTag) {
+		WordPOS key;
+		
+		SharedUtils.checkNotNull(word);
+		SharedUtils.checkNotNull(posTag);
+		key = new WordPOS(word, posTag);
+		if (QUEUED.add(key)) {
+			PENDING.add(key);
+			ensureWriter();
+		}
+	}
+	
+	/**
+	 * Start the writer the first time somebody needs it.
+	 * 
+	 */
+	private static synchronized void ensureWriter() {
+		ThreadFactory factory;
+		
+		if (writer != null || closed) {
+			return;
+		}
+		factory = new ThreadFactoryBuilder()
+				.setNameFormat("Lemma-writer-%d")
+				.setDaemon(true)
+				.build();
+		writer = Executors.newSingleThreadScheduledExecutor(factory);
+		writer.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					writePending();
+				} catch (RuntimeException ex) {
+					LOGGER.error("LemmaIndex: unable to write new lemmata", ex);
+				}
+			}
+		}, WRITE_INTERVAL, WRITE_INTERVAL, TimeUnit.MILLISECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				
+				if (isClosed()) {
+					return;
+				}
+				writePending();
+			}
+		}));
+	}
+	
+	/**
+	 * Stop the writer and write whatever is still pending, while Cayenne is still around
+	 * to write it to. Anything queued after this waits for the next run.
+	 * 
+	 */
+	static void close() {
+		ScheduledExecutorService oldWriter;
+		
+		synchronized (LemmaIndex.class) {
+			closed = true;
+			oldWriter = writer;
+			writer = null;
+		}
+		if (oldWriter != null) {
+			oldWriter.shutdown();
+			try {
+				oldWriter.awaitTermination(5, TimeUnit.SECONDS);
+			} catch (InterruptedException ex) {
+				oldWriter.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+		}
+		writePending();
+	}
+	
+	/**
+	 * Has the index been closed?
+	 * 
+	 * @return True if the index is closed
+	 */
+	static synchronized boolean isClosed() {
+		
+		return closed;
+	}
+	
+	/**
+	 * Write all the pending dummy lemmata and commit them in one go. If the commit fails we
+	 * forget about them, so they get queued again the next time somebody uses the word.
+	 * 
+	 */
+	static synchronized void writePending() {
+		List<WordPOS> batch;
+		WordPOS key;
+		Lemma lemma;
+		String dummy;
+		boolean oldValue;
+		long startNanos;
+		
+		batch = new ArrayList<>();
+		while ((key = PENDING.poll()) != null) {
+			batch.add(key);
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		dummy = Lemma.getDummyLemmaTag();
+		oldValue = AlixiaApplication.setErrorOnUncommittedObjects(false);
+		startNanos = DB_TIMER.start();
+		try {
+			for (WordPOS wordPOS : batch) {
+				if (!Lemma.lemmaExists(wordPOS.getWord(), wordPOS.getPosTag(), dummy)) {
+					lemma = Lemma.createNew();
+					lemma.setWord(wordPOS.getWord());
+					lemma.setPos(wordPOS.getPosTag());
+					// we just create a dummy entry for the new lemma,
+					//  it needs to be manually edited later by someone, possibly YOU
+					lemma.setLemma(dummy);
+				}
+			}
+			AlixiaApplication.commitAll();
+			LOGGER.debug("LemmaIndex: wrote {} new lemmata", batch.size());
+		} catch (RuntimeException ex) {
+			AlixiaApplication.rollBack();
+			QUEUED.removeAll(batch);
+			throw ex;
+		} finally {
+			DB_TIMER.stop(startNanos);
+			AlixiaApplication.setErrorOnUncommittedObjects(oldValue);
+		}
+	}
+}
@@ -34,8 +34,10 @@ import com.hulles.alixia.api.shared.ApplicationKeys.ApplicationKey;
 import com.hulles.alixia.api.shared.SerialSememe;
 import com.hulles.alixia.api.shared.SharedUtils;
 import com.hulles.alixia.echo.EchoAnalysis.VectorLoad;
+import com.hulles.alixia.echo.w2v.QuantizedVectors;
 import com.hulles.alixia.echo.w2v.WordDistance;
 import com.hulles.alixia.echo.w2v.WordToVecSearch;
+import com.hulles.alixia.echo.w2v.WordVectorIndex;
 import com.hulles.alixia.room.Room;
 import com.hulles.alixia.room.UrRoom;
 import com.hulles.alixia.room.document.RoomAnnouncement;
@@ -54,6 +56,10 @@ public final class EchoRoom extends UrRoom {
 	final static Logger LOGGER = LoggerFactory.getLogger(EchoRoom.class);
 	private final static String DISTANCE_FORMAT = "(%.4f)";
 	final static VectorLoad WHICHLOAD = VectorLoad.LITTLEGINA;
+	// index lists to search per query; see the BuildVectorIndex recall report to pick one
+	final static Integer INDEX_PROBES = WordVectorIndex.DEFAULT_PROBES;
+	// candidates per match to re-rank with the full vectors when we scan the quantized ones
+	final static Integer RERANK_FACTOR = QuantizedVectors.DEFAULT_RERANK_FACTOR;
 	final WordToVecSearch searcher;
 	volatile boolean ready = false;
 
@@ -157,7 +163,16 @@ public final class EchoRoom extends UrRoom {
 					default:
 						throw new AlixiaException("Bad word2vec path");
 				}
-				searcher.loadFile(w2vPath);
+				// map the pre-normalized vector store rather than loading the BIN file onto the heap;
+				//   the first start builds the store next to the model
+				searcher.loadStore(w2vPath);
+				// the approximate index is optional and built offline with BuildVectorIndex
+				if (searcher.loadIndex(w2vPath, INDEX_PROBES)) {
+					LOGGER.debug("Using w2v index: {}", searcher.getVectorIndex());
+				} else {
+					// no index, so scan the int8 vectors and re-rank the best with the floats
+					searcher.loadQuantized(w2vPath, RERANK_FACTOR);
+				}
 				LOGGER.debug("Finished w2v load");
 				ready = true;
 			}
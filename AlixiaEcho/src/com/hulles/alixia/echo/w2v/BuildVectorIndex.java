@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.echo.w2v;
+
+import java.util.List;
+
+import com.hulles.alixia.api.shared.AlixiaException;
+
+/**
+ * BuildVectorIndex is the offline tool that builds the WordVectorIndex for a word2vec model 
+ * (building the WordVectorStore first if need be) and prints a recall report for a range of 
+ * probe settings, so you can pick one for EchoRoom. It also builds the QuantizedVectors if 
+ * they aren't there yet and prints their accuracy drift report for a range of rerank factors. Usage:
+ * <pre>
+ *   BuildVectorIndex &lt;word2vec BIN file&gt; [number of lists]
+ * </pre>
+ * 
+ * @author hulles
+ *
+ */
+public final class BuildVectorIndex {
+	private final static int REPORT_QUERIES = 200;
+	private final static int REPORT_K = 20;
+	private final static int[] REPORT_PROBES = {1, 2, 4, 8, 16, 32, 64, 128};
+	private final static int[] REPORT_RERANK_FACTORS = {1, 2, 4, 8, 16};
+	
+	private BuildVectorIndex() {
+		// need to keep this private
+	}
+	
+	public static void main(String[] args) {
+		String binFileName;
+		WordVectorStore store;
+		WordVectorIndex index;
+		QuantizedVectors quantized;
+		int listCount;
+		List<String> report;
+		
+		if (args.length < 1) {
+			System.out.println("Usage: BuildVectorIndex <word2vec BIN file> [number of lists]");
+			return;
+		}
+		binFileName = args[0];
+		store = WordVectorStore.openForModel(binFileName);
+		if (args.length > 1) {
+			try {
+				listCount = Integer.parseInt(args[1]);
+			} catch (NumberFormatException e) {
+				throw new AlixiaException("Bad number of lists: " + args[1], e);
+			}
+		} else {
+			listCount = WordVectorIndex.defaultListCount(store.getVocabSize());
+		}
+		WordVectorIndex.build(store, binFileName + WordVectorIndex.FILE_SUFFIX, listCount);
+		index = WordVectorIndex.open(binFileName + WordVectorIndex.FILE_SUFFIX, store);
+		report = index.getRecallReport(REPORT_QUERIES, REPORT_K, REPORT_PROBES);
+		System.out.println(index);
+		for (String line : report) {
+			System.out.println(line);
+		}
+		quantized = QuantizedVectors.openForModel(binFileName, store);
+		report = quantized.getDriftReport(REPORT_QUERIES, REPORT_K, REPORT_RERANK_FACTORS);
+		System.out.println(quantized);
+		for (String line : report) {
+			System.out.println(line);
+		}
+		System.exit(0);
+	}
+}
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.echo.w2v;
+
+/**
+ * MatchHeap is a fixed-size min-heap of word ids and scores, kept in primitive arrays so 
+ * the scan doesn't box anything. The root is the worst of the best matches so far, so 
+ * a new score only has to beat getMinScore to get in.
+ * 
+ * @author hulles
+ *
+ */
+final class MatchHeap {
+	private final int[] wordIds;
+	private final float[] scores;
+	private int size;
+	
+	MatchHeap(int capacity) {
+		
+		if (capacity < 1) {
+			throw new IllegalArgumentException("MatchHeap capacity must be positive");
+		}
+		wordIds = new int[capacity];
+		scores = new float[capacity];
+		size = 0;
+	}
+	
+	int size() {
+		
+		return size;
+	}
+	
+	boolean isFull() {
+		
+		return size == scores.length;
+	}
+	
+	/**
+	 * The lowest score in the heap; only meaningful if the heap isn't empty
+	 * 
+	 * @return The lowest score
+	 */
+	float getMinScore() {
+		
+		return scores[0];
+	}
+	
+	/**
+	 * Add a match if there's room, or if it beats the worst one we have
+	 * 
+	 * @param wordId The word id
+	 * @param score Its score
+	 */
+	void offer(int wordId, float score) {
+		
+		if (size < scores.length) {
+			wordIds[size] = wordId;
+			scores[size] = score;
+			siftUp(size);
+			size++;
+		} else if (score > scores[0]) {
+			wordIds[0] = wordId;
+			scores[0] = score;
+			siftDown(0);
+		}
+	}
+	
+	/**
+	 * Add all the matches from another heap, e.g. to merge the results of a split scan
+	 * 
+	 * @param other The other heap
+	 */
+	void offerAll(MatchHeap other) {
+		
+		for (int ix = 0; ix < other.size; ix++) {
+			offer(other.wordIds[ix], other.scores[ix]);
+		}
+	}
+	
+	/**
+	 * Empty the heap into arrays, best score first
+	 * 
+	 * @param ids The word ids, at least size() long
+	 * @param bestScores The scores, at least size() long
+	 * @return The number of matches
+	 */
+	int drainDescending(int[] ids, float[] bestScores) {
+		int count;
+		
+		count = size;
+		for (int ix = count - 1; ix >= 0; ix--) {
+			ids[ix] = wordIds[0];
+			bestScores[ix] = scores[0];
+			size--;
+			wordIds[0] = wordIds[size];
+			scores[0] = scores[size];
+			siftDown(0);
+		}
+		return count;
+	}
+	
+	private void siftUp(int index) {
+		int child;
+		int parent;
+		
+		child = index;
+		while (child > 0) {
+			parent = (child - 1) >>> 1;
+			if (scores[parent] <= scores[child]) {
+				break;
+			}
+			swap(parent, child);
+			child = parent;
+		}
+	}
+	
+	private void siftDown(int index) {
+		int parent;
+		int child;
+		
+		parent = index;
+		child = 2 * parent + 1;
+		while (child < size) {
+			if (child + 1 < size && scores[child + 1] < scores[child]) {
+				child++;
+			}
+			if (scores[parent] <= scores[child]) {
+				break;
+			}
+			swap(parent, child);
+			parent = child;
+			child = 2 * parent + 1;
+		}
+	}
+	
+	private void swap(int ix1, int ix2) {
+		int id;
+		float score;
+		
+		id = wordIds[ix1];
+		wordIds[ix1] = wordIds[ix2];
+		wordIds[ix2] = id;
+		score = scores[ix1];
+		scores[ix1] = scores[ix2];
+		scores[ix2] = score;
+	}
+}
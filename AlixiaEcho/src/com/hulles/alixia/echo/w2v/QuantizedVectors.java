@@ -0,0 +1,585 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.echo.w2v;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hulles.alixia.api.shared.AlixiaException;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.api.tools.AlixiaUtils;
+
+/**
+ * QuantizedVectors is an int8 copy of a WordVectorStore: each vector is a byte per 
+ * dimension plus one float scale (the largest absolute value / 127). That's a quarter of 
+ * the memory traffic of the floats, and memory traffic is most of what a scan costs. The 
+ * scan scores everything with the bytes, keeps the best k * rerank factor candidates, and 
+ * re-ranks those with the full-precision vectors from the store, so the distances we hand 
+ * back are exact and a bigger rerank factor gets as close to the exact results as you like. 
+ * getDriftReport measures how close against the exact VectorMatcher scan.
+ * <p>
+ * The codes live next to the model in a ".q8" file, all little-endian:
+ * <pre>
+ *   header        64 bytes (magic, version, sizes, the store it was built from, offsets, 
+ *                 the modified time of the store's BIN file)
+ *   scales        vocabSize floats
+ *   codes         vocabSize * vectorSize bytes, in word id order
+ * </pre>
+ * 
+ * @author hulles
+ *
+ */
+public final class QuantizedVectors {
+	final static Logger LOGGER = LoggerFactory.getLogger(QuantizedVectors.class);
+	public final static String FILE_SUFFIX = ".q8";
+	public final static int DEFAULT_RERANK_FACTOR = 4;
+	private final static int MAGIC = 0x31385157; // "WQ81"
+	private final static int FORMAT_VERSION = 2;
+	private final static int HEADER_SIZE = 64;
+	private final static int MAX_CHUNK_BYTES = 1 << 30;
+	private final static long RANDOM_SEED = 20181017L;
+	private final static ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+	private final WordVectorStore store;
+	private final int vocabSize;
+	private final int vectorSize;
+	private final int vectorsPerChunk;
+	private final float[] scales;
+	private final ByteBuffer[] codeChunks;
+	private volatile int rerankFactor = DEFAULT_RERANK_FACTOR;
+	
+	private QuantizedVectors(WordVectorStore store, FileChannel channel, String fileName) throws IOException {
+		MappedByteBuffer header;
+		long storeLength;
+		long modelModified;
+		long scalesOffset;
+		long codesOffset;
+		int chunkCount;
+		int chunkVectors;
+		
+		SharedUtils.checkNotNull(store);
+		SharedUtils.checkNotNull(channel);
+		SharedUtils.checkNotNull(fileName);
+		this.store = store;
+		if (channel.size() < HEADER_SIZE) {
+			throw new AlixiaException("Quantized vectors " + fileName + " is too short");
+		}
+		header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+		header.order(BYTE_ORDER);
+		if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+			throw new AlixiaException("Quantized vectors " + fileName + " has a bad magic number or version");
+		}
+		vocabSize = header.getInt(8);
+		vectorSize = header.getInt(12);
+		storeLength = header.getLong(16);
+		scalesOffset = header.getLong(24);
+		codesOffset = header.getLong(32);
+		modelModified = header.getLong(40);
+		if (vocabSize != store.getVocabSize() || vectorSize != store.getVectorSize() || 
+				storeLength != store.getFileLength() || modelModified != store.getModelModified()) {
+			throw new AlixiaException("Quantized vectors " + fileName + " weren't built from " + store.getFileName());
+		}
+		if (codesOffset + ((long) vocabSize * vectorSize) > channel.size()) {
+			throw new AlixiaException("Quantized vectors " + fileName + " has a bad header");
+		}
+		// one float per word is small enough to keep on the heap, where the scan reads it fastest
+		scales = new float[vocabSize];
+		channel.map(FileChannel.MapMode.READ_ONLY, scalesOffset, 
+				(long) vocabSize * Float.BYTES).order(BYTE_ORDER).asFloatBuffer().get(scales);
+		vectorsPerChunk = Math.max(1, MAX_CHUNK_BYTES / vectorSize);
+		chunkCount = (vocabSize + vectorsPerChunk - 1) / vectorsPerChunk;
+		codeChunks = new ByteBuffer[chunkCount];
+		for (int chunkIx = 0; chunkIx < chunkCount; chunkIx++) {
+			chunkVectors = Math.min(vectorsPerChunk, vocabSize - (chunkIx * vectorsPerChunk));
+			codeChunks[chunkIx] = channel.map(FileChannel.MapMode.READ_ONLY, 
+					codesOffset + ((long) chunkIx * vectorsPerChunk * vectorSize), (long) chunkVectors * vectorSize);
+		}
+	}
+	
+	/**
+	 * Open (map) a quantized vector file for a store
+	 * 
+	 * @param fileName The .q8 file
+	 * @param store The store it was built from
+	 * @return The quantized vectors
+	 */
+	public static QuantizedVectors open(String fileName, WordVectorStore store) {
+		QuantizedVectors vectors;
+		
+		SharedUtils.checkNotNull(fileName);
+		SharedUtils.checkNotNull(store);
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+			vectors = new QuantizedVectors(store, channel, fileName);
+		} catch (IOException e) {
+			throw new AlixiaException("Unable to open quantized vectors " + fileName, e);
+		}
+		LOGGER.info("QuantizedVectors: mapped {}", fileName);
+		return vectors;
+	}
+	
+	/**
+	 * Open the quantized vectors that go with a word2vec BIN file, building them from the 
+	 * store first if they aren't there yet. It's one pass over the store, so it doesn't 
+	 * take long.
+	 * 
+	 * @param binFileName The word2vec BIN format file
+	 * @param store The store for the same file
+	 * @return The quantized vectors
+	 */
+	public static QuantizedVectors openForModel(String binFileName, WordVectorStore store) {
+		String fileName;
+		
+		SharedUtils.checkNotNull(binFileName);
+		SharedUtils.checkNotNull(store);
+		fileName = binFileName + FILE_SUFFIX;
+		if (!Files.isRegularFile(Paths.get(fileName))) {
+			LOGGER.info("QuantizedVectors: no quantized vectors for {}, building them", binFileName);
+			build(store, fileName);
+		} else if (!isBuiltFrom(fileName, store)) {
+			LOGGER.info("QuantizedVectors: quantized vectors for {} are out of date, building new ones", binFileName);
+			build(store, fileName);
+		}
+		return open(fileName, store);
+	}
+	
+	/**
+	 * See if the quantized vectors were built from this store
+	 * 
+	 * @param fileName The .q8 file
+	 * @param store The store
+	 * @return True if they were
+	 */
+	private static boolean isBuiltFrom(String fileName, WordVectorStore store) {
+		ByteBuffer header;
+		
+		SharedUtils.checkNotNull(fileName);
+		SharedUtils.checkNotNull(store);
+		header = WordVectorStore.readHeader(fileName, HEADER_SIZE);
+		return header != null && header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_VERSION &&
+				header.getInt(8) == store.getVocabSize() && header.getInt(12) == store.getVectorSize() &&
+				header.getLong(16) == store.getFileLength() && header.getLong(40) == store.getModelModified();
+	}
+	
+	/**
+	 * Quantize a store and write the codes out
+	 * 
+	 * @param store The vector store
+	 * @param fileName The .q8 file to write
+	 */
+	public static void build(WordVectorStore store, String fileName) {
+		Path path;
+		Path tempPath;
+		int vocabSize;
+		int vectorSize;
+		float[] vector;
+		float scale;
+		ByteBuffer buffer;
+		long scalesOffset;
+		long codesOffset;
+		long position;
+		long startMillis;
+		
+		SharedUtils.checkNotNull(store);
+		SharedUtils.checkNotNull(fileName);
+		startMillis = System.currentTimeMillis();
+		vocabSize = store.getVocabSize();
+		vectorSize = store.getVectorSize();
+		path = Paths.get(fileName);
+		tempPath = Paths.get(fileName + ".tmp");
+		scalesOffset = HEADER_SIZE;
+		codesOffset = scalesOffset + ((long) vocabSize * Float.BYTES);
+		vector = new float[vectorSize];
+		try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, 
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			buffer = ByteBuffer.allocate(Math.max(1 << 20, vectorSize)).order(BYTE_ORDER);
+			// scales first, then codes, so that's two passes over the store
+			position = scalesOffset;
+			for (int wordId = 0; wordId < vocabSize; wordId++) {
+				store.readVector(wordId, vector);
+				if (buffer.remaining() < Float.BYTES) {
+					position += WordVectorStore.flushBuffer(channel, buffer, position);
+				}
+				buffer.putFloat(getScale(vector));
+			}
+			position += WordVectorStore.flushBuffer(channel, buffer, position);
+			for (int wordId = 0; wordId < vocabSize; wordId++) {
+				store.readVector(wordId, vector);
+				scale = getScale(vector);
+				if (buffer.remaining() < vectorSize) {
+					position += WordVectorStore.flushBuffer(channel, buffer, position);
+				}
+				for (int ix = 0; ix < vectorSize; ix++) {
+					buffer.put((byte) Math.round(vector[ix] / scale));
+				}
+			}
+			WordVectorStore.flushBuffer(channel, buffer, position);
+			buffer.putInt(MAGIC);
+			buffer.putInt(FORMAT_VERSION);
+			buffer.putInt(vocabSize);
+			buffer.putInt(vectorSize);
+			buffer.putLong(store.getFileLength());
+			buffer.putLong(scalesOffset);
+			buffer.putLong(codesOffset);
+			buffer.putLong(store.getModelModified());
+			WordVectorStore.flushBuffer(channel, buffer, 0);
+			channel.force(true);
+		} catch (IOException e) {
+			throw new AlixiaException("Unable to write quantized vectors " + fileName, e);
+		}
+		try {
+			try {
+				Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			throw new AlixiaException("Unable to move quantized vectors into place at " + fileName, e);
+		}
+		LOGGER.info("QuantizedVectors: built {} in {}", fileName, 
+				AlixiaUtils.formatElapsedMillis(System.currentTimeMillis() - startMillis));
+	}
+	
+	/**
+	 * The scale that maps the largest absolute value in the vector to 127
+	 * 
+	 * @param vector The vector
+	 * @return The scale
+	 */
+	private static float getScale(float[] vector) {
+		float maxValue = 0.0f;
+		
+		for (float value : vector) {
+			maxValue = Math.max(maxValue, Math.abs(value));
+		}
+		if (maxValue == 0.0f) {
+			// an all-zero vector; any scale will do
+			return 1.0f;
+		}
+		return maxValue / 127.0f;
+	}
+	
+	public WordVectorStore getStore() {
+		
+		return store;
+	}
+	
+	public int getRerankFactor() {
+		
+		return rerankFactor;
+	}
+	
+	/**
+	 * Set how many candidates (times the number of matches wanted) get re-ranked with the 
+	 * full-precision vectors. More is closer to exact and a little slower.
+	 * 
+	 * @param factor The rerank factor
+	 */
+	public void setRerankFactor(int factor) {
+		
+		if (factor < 1) {
+			throw new AlixiaException("QuantizedVectors: rerank factor must be positive");
+		}
+		rerankFactor = factor;
+	}
+	
+	/**
+	 * Find the best matches for a normalized vector. Same rules as VectorMatcher: positive 
+	 * distances only, and the list is padded with "init" entries.
+	 * 
+	 * @param vector The vector to match
+	 * @param ignores Words to leave out (the search words themselves)
+	 * @param maxNumberOfMatches Self-explanatory
+	 * @return A list of "matching" WordDistances, best first
+	 */
+	public List<WordDistance> findMatches(float[] vector, Collection<String> ignores, int maxNumberOfMatches) {
+		
+		return findMatches(vector, ignores, maxNumberOfMatches, rerankFactor);
+	}
+	
+	private List<WordDistance> findMatches(float[] vector, Collection<String> ignores, int maxNumberOfMatches, 
+			int factor) {
+		Set<Integer> ignoreIds;
+		int candidateCount;
+		int sliceCount;
+		int sliceSize;
+		MatchHeap candidates;
+		List<Future<MatchHeap>> futures;
+		int[] ids;
+		float[] approximateScores;
+		int count;
+		MatchHeap heap;
+		float[] scratch;
+		float score;
+		
+		SharedUtils.checkNotNull(vector);
+		SharedUtils.checkNotNull(ignores);
+		if (maxNumberOfMatches < 1) {
+			throw new AlixiaException("QuantizedVectors: need to ask for at least one match");
+		}
+		if (vector.length != vectorSize) {
+			throw new AlixiaException("QuantizedVectors: vector size doesn't match store");
+		}
+		ignoreIds = VectorMatcher.getIgnoreIds(store, ignores);
+		candidateCount = (int) Math.max(1, Math.min(vocabSize, (long) maxNumberOfMatches * factor));
+		sliceCount = VectorMatcher.getSliceCount(vocabSize);
+		sliceSize = (vocabSize + sliceCount - 1) / sliceCount;
+		if (sliceCount == 1) {
+			candidates = scanSlice(vector, ignoreIds, candidateCount, 0, vocabSize);
+		} else {
+			futures = new ArrayList<>(sliceCount - 1);
+			for (int sliceIx = 1; sliceIx < sliceCount; sliceIx++) {
+				futures.add(VectorMatcher.getExecutor().submit(new SliceScan(this, vector, ignoreIds, 
+						candidateCount, sliceIx * sliceSize, Math.min(vocabSize, (sliceIx + 1) * sliceSize))));
+			}
+			candidates = scanSlice(vector, ignoreIds, candidateCount, 0, Math.min(vocabSize, sliceSize));
+			try {
+				for (Future<MatchHeap> future : futures) {
+					candidates.offerAll(future.get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new AlixiaException("QuantizedVectors: interrupted during search", e);
+			} catch (ExecutionException e) {
+				throw new AlixiaException("QuantizedVectors: search failed", e.getCause());
+			}
+		}
+		
+		// re-rank the candidates with the real vectors
+		ids = new int[candidates.size()];
+		approximateScores = new float[candidates.size()];
+		count = candidates.drainDescending(ids, approximateScores);
+		heap = new MatchHeap(maxNumberOfMatches);
+		scratch = new float[vectorSize];
+		for (int ix = 0; ix < count; ix++) {
+			store.readVector(ids[ix], scratch);
+			score = VectorMatcher.dot(vector, scratch, vectorSize);
+			if (score > 0.0f) {
+				heap.offer(ids[ix], score);
+			}
+		}
+		return VectorMatcher.toMatches(store, heap, maxNumberOfMatches);
+	}
+	
+	/**
+	 * Score the word ids from start up to (not including) end with the int8 codes. The 
+	 * threshold is a bit under zero rather than zero, so quantization error doesn't knock 
+	 * out a word whose real distance is just positive.
+	 * 
+	 * @return The best candidates in the slice
+	 */
+	MatchHeap scanSlice(float[] vector, Set<Integer> ignoreIds, int candidateCount, int start, int end) {
+		MatchHeap heap;
+		byte[] query;
+		float queryScale;
+		byte[] scratch;
+		int chunkIx;
+		ByteBuffer view = null;
+		int viewChunkIx = -1;
+		float threshold;
+		float score;
+		
+		heap = new MatchHeap(candidateCount);
+		// the query gets quantized too, so the inner loop is all integer arithmetic
+		queryScale = getScale(vector);
+		query = new byte[vectorSize];
+		for (int ix = 0; ix < vectorSize; ix++) {
+			query[ix] = (byte) Math.round(vector[ix] / queryScale);
+		}
+		scratch = new byte[vectorSize];
+		threshold = -0.01f;
+		for (int wordId = start; wordId < end; wordId++) {
+			chunkIx = wordId / vectorsPerChunk;
+			if (chunkIx != viewChunkIx) {
+				view = codeChunks[chunkIx].duplicate();
+				view.position((wordId % vectorsPerChunk) * vectorSize);
+				viewChunkIx = chunkIx;
+			}
+			view.get(scratch);
+			score = dot(query, scratch, vectorSize) * queryScale * scales[wordId];
+			if (score > threshold && !ignoreIds.contains(wordId)) {
+				heap.offer(wordId, score);
+				if (heap.isFull()) {
+					threshold = heap.getMinScore();
+				}
+			}
+		}
+		return heap;
+	}
+	
+	/**
+	 * The dot product of two vectors of codes. Integer adds don't care what order they're 
+	 * done in, so unlike the float version the JIT is free to vectorize this one as it is.
+	 * 
+	 * @param a One vector of codes
+	 * @param b The other
+	 * @param length The number of elements to use
+	 * @return The dot product, before scaling
+	 */
+	static int dot(byte[] a, byte[] b, int length) {
+		int sum = 0;
+		
+		for (int ix = 0; ix < length; ix++) {
+			sum += a[ix] * b[ix];
+		}
+		return sum;
+	}
+	
+	/**
+	 * Measure the accuracy drift of the quantized search against the exact VectorMatcher scan 
+	 * (what getVectorMatches returns) for some rerank factors. The queries are the vectors of 
+	 * randomly-picked words, left out of their own results. We report recall@k (the fraction 
+	 * of the exact top k we found), how often the best match agrees, and the worst difference 
+	 * between a reported distance and the exact distance at the same rank.
+	 * 
+	 * @param queryCount The number of queries to run
+	 * @param k The number of matches per query
+	 * @param factors The rerank factors to try
+	 * @return One line per factor, plus one for the exact search
+	 */
+	public List<String> getDriftReport(int queryCount, int k, int[] factors) {
+		Random random;
+		float[][] queries;
+		List<String> queryWords;
+		List<List<WordDistance>> exactResults;
+		List<WordDistance> exactMatches;
+		List<WordDistance> matches;
+		Set<String> exactWords;
+		long startNanos;
+		long exactNanos;
+		long quantizedNanos;
+		long found;
+		long possible;
+		int topAgree;
+		double maxDrift;
+		List<String> report;
+		int wordId;
+		
+		SharedUtils.checkNotNull(factors);
+		if (queryCount < 1 || k < 1) {
+			throw new AlixiaException("QuantizedVectors: need at least one query and one match");
+		}
+		random = new Random(RANDOM_SEED);
+		queries = new float[queryCount][];
+		queryWords = new ArrayList<>(queryCount);
+		for (int queryIx = 0; queryIx < queryCount; queryIx++) {
+			wordId = random.nextInt(vocabSize);
+			queries[queryIx] = store.getVector(wordId);
+			queryWords.add(store.getWord(wordId));
+		}
+		exactResults = new ArrayList<>(queryCount);
+		startNanos = System.nanoTime();
+		for (int queryIx = 0; queryIx < queryCount; queryIx++) {
+			exactResults.add(VectorMatcher.findMatches(store, queries[queryIx], 
+					Collections.singletonList(queryWords.get(queryIx)), k));
+		}
+		exactNanos = System.nanoTime() - startNanos;
+		report = new ArrayList<>(factors.length + 1);
+		report.add(String.format("exact: %.3f ms/query", exactNanos / 1.0e6 / queryCount));
+		for (int factor : factors) {
+			found = 0;
+			possible = 0;
+			topAgree = 0;
+			maxDrift = 0.0;
+			startNanos = System.nanoTime();
+			for (int queryIx = 0; queryIx < queryCount; queryIx++) {
+				matches = findMatches(queries[queryIx], Collections.singletonList(queryWords.get(queryIx)), 
+						k, Math.max(1, factor));
+				exactMatches = exactResults.get(queryIx);
+				exactWords = new HashSet<>(k * 2);
+				for (WordDistance match : exactMatches) {
+					if (!match.getToWord().equals("init")) {
+						exactWords.add(match.getToWord());
+					}
+				}
+				possible += exactWords.size();
+				for (int ix = 0; ix < k; ix++) {
+					if (exactWords.contains(matches.get(ix).getToWord())) {
+						found++;
+					}
+					maxDrift = Math.max(maxDrift, 
+							Math.abs(matches.get(ix).getDistance() - exactMatches.get(ix).getDistance()));
+				}
+				if (matches.get(0).getToWord().equals(exactMatches.get(0).getToWord())) {
+					topAgree++;
+				}
+			}
+			quantizedNanos = System.nanoTime() - startNanos;
+			report.add(String.format("rerank x%d: recall@%d %.3f, top-1 agreement %.3f, max distance drift %.4f, %.3f ms/query", 
+					factor, k, possible == 0 ? 1.0 : (double) found / possible, (double) topAgree / queryCount, 
+					maxDrift, quantizedNanos / 1.0e6 / queryCount));
+		}
+		return report;
+	}
+	
+	@Override
+	public String toString() {
+		
+		return "QuantizedVectors for " + store.getFileName() + ": rerank x" + rerankFactor;
+	}
+	
+	private static class SliceScan implements Callable<MatchHeap> {
+		private final QuantizedVectors vectors;
+		private final float[] vector;
+		private final Set<Integer> ignoreIds;
+		private final int candidateCount;
+		private final int start;
+		private final int end;
+		
+		SliceScan(QuantizedVectors vectors, float[] vector, Set<Integer> ignoreIds, 
+				int candidateCount, int start, int end) {
+			
+			this.vectors = vectors;
+			this.vector = vector;
+			this.ignoreIds = ignoreIds;
+			this.candidateCount = candidateCount;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		public MatchHeap call() {
+			
+			return vectors.scanSlice(vector, ignoreIds, candidateCount, start, end);
+		}
+	}
+}
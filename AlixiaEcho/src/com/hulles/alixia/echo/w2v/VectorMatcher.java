@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.echo.w2v;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.hulles.alixia.api.shared.AlixiaException;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.tools.AlixiaExecutors;
+
+/**
+ * VectorMatcher is the top-k search over a WordVectorStore. It splits the vocabulary into 
+ * slices and scans them on separate cores, each slice keeping its best matches in its own 
+ * primitive MatchHeap, then merges the heaps. The words to ignore are turned into word ids 
+ * up front and kept in a hash set, and we only look at the set (or decode a word) when a 
+ * score is good enough to make the list, which isn't very often.
+ * <p>
+ * The dot product is an unrolled scalar loop with four accumulators. The JDK Vector API 
+ * would be faster still but it's an incubator module, and I didn't want to hang 
+ * --add-modules on everything that uses Echo.
+ * 
+ * @author hulles
+ *
+ */
+public final class VectorMatcher {
+	private final static int MIN_SLICE_WORDS = 1 << 15;
+	private static volatile int parallelism = Runtime.getRuntime().availableProcessors();
+	private static ExecutorService executor = null;
+	
+	private VectorMatcher() {
+		// only static methods, no need to instantiate it
+	}
+	
+	/**
+	 * Set the most slices (threads) a search is split into; 1 scans on the calling thread.
+	 * 
+	 * @param threads The number of slices
+	 */
+	public static void setParallelism(int threads) {
+		
+		if (threads < 1) {
+			throw new AlixiaException("VectorMatcher: parallelism must be positive");
+		}
+		parallelism = threads;
+	}
+	
+	public static int getParallelism() {
+		
+		return parallelism;
+	}
+	
+	static synchronized ExecutorService getExecutor() {
+		
+		if (executor == null) {
+			executor = AlixiaExecutors.newExecutor("Echo Search");
+		}
+		return executor;
+	}
+	
+	/**
+	 * Find the best matches for a (normalized) vector in the store. Like the original search 
+	 * the list is always maxNumberOfMatches long, padded out with "init" entries if there 
+	 * aren't enough words with a positive distance.
+	 * 
+	 * @param store The vector store
+	 * @param vector The vector to match
+	 * @param ignores Words to leave out (the search words themselves)
+	 * @param maxNumberOfMatches Self-explanatory
+	 * @return A list of "matching" WordDistances, best first
+	 */
+	public static List<WordDistance> findMatches(WordVectorStore store, float[] vector, 
+			Collection<String> ignores, int maxNumberOfMatches) {
+		Set<Integer> ignoreIds;
+		int vocabSize;
+		int sliceCount;
+		int sliceSize;
+		MatchHeap heap;
+		List<Future<MatchHeap>> futures;
+		
+		SharedUtils.checkNotNull(store);
+		SharedUtils.checkNotNull(vector);
+		SharedUtils.checkNotNull(ignores);
+		if (maxNumberOfMatches < 1) {
+			throw new AlixiaException("VectorMatcher: need to ask for at least one match");
+		}
+		if (vector.length != store.getVectorSize()) {
+			throw new AlixiaException("VectorMatcher: vector size doesn't match store");
+		}
+		ignoreIds = getIgnoreIds(store, ignores);
+		vocabSize = store.getVocabSize();
+		sliceCount = getSliceCount(vocabSize);
+		sliceSize = (vocabSize + sliceCount - 1) / sliceCount;
+		if (sliceCount == 1) {
+			heap = scanSlice(store, vector, ignoreIds, maxNumberOfMatches, 0, vocabSize);
+		} else {
+			futures = new ArrayList<>(sliceCount - 1);
+			for (int sliceIx = 1; sliceIx < sliceCount; sliceIx++) {
+				futures.add(getExecutor().submit(new SliceScan(store, vector, ignoreIds, maxNumberOfMatches, 
+						sliceIx * sliceSize, Math.min(vocabSize, (sliceIx + 1) * sliceSize))));
+			}
+			// we do the first slice ourselves rather than just sit there
+			heap = scanSlice(store, vector, ignoreIds, maxNumberOfMatches, 0, Math.min(vocabSize, sliceSize));
+			try {
+				for (Future<MatchHeap> future : futures) {
+					heap.offerAll(future.get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new AlixiaException("VectorMatcher: interrupted during search", e);
+			} catch (ExecutionException e) {
+				throw new AlixiaException("VectorMatcher: search failed", e.getCause());
+			}
+		}
+		return toMatches(store, heap, maxNumberOfMatches);
+	}
+	
+	/**
+	 * How many slices to split a scan of this many words into
+	 * 
+	 * @param wordCount The number of words to scan
+	 * @return The number of slices, at least one
+	 */
+	static int getSliceCount(int wordCount) {
+		
+		return Math.max(1, Math.min(parallelism, wordCount / MIN_SLICE_WORDS));
+	}
+	
+	/**
+	 * Turn the words to ignore into a set of word ids
+	 * 
+	 * @param store The vector store
+	 * @param ignores The words to ignore
+	 * @return Their word ids (the ones that are in the store, anyway)
+	 */
+	static Set<Integer> getIgnoreIds(WordVectorStore store, Collection<String> ignores) {
+		Set<Integer> ignoreIds;
+		int wordId;
+		
+		ignoreIds = new HashSet<>(ignores.size() * 2);
+		for (String word : ignores) {
+			wordId = store.getWordId(word);
+			if (wordId >= 0) {
+				ignoreIds.add(wordId);
+			}
+		}
+		return ignoreIds;
+	}
+	
+	/**
+	 * Empty a heap of matches into the WordDistance list the searches return, best first 
+	 * and padded out with "init" entries
+	 * 
+	 * @param store The vector store, for the words
+	 * @param heap The matches
+	 * @param maxNumberOfMatches The length of the list
+	 * @return The list
+	 */
+	static List<WordDistance> toMatches(WordVectorStore store, MatchHeap heap, int maxNumberOfMatches) {
+		int[] ids;
+		float[] scores;
+		int count;
+		List<WordDistance> matches;
+		WordDistance initDistance;
+		
+		ids = new int[heap.size()];
+		scores = new float[heap.size()];
+		count = heap.drainDescending(ids, scores);
+		matches = new ArrayList<>(maxNumberOfMatches);
+		for (int ix = 0; ix < count && ix < maxNumberOfMatches; ix++) {
+			matches.add(new WordDistance(store.getWord(ids[ix]), (double) scores[ix]));
+		}
+		initDistance = new WordDistance("init", 0.0);
+		while (matches.size() < maxNumberOfMatches) {
+			matches.add(initDistance);
+		}
+		return matches;
+	}
+	
+	/**
+	 * Scan the word ids from start up to (not including) end. We bulk-copy each vector out of 
+	 * the mapped chunk into a scratch array, which is quicker than getting the floats one at a time.
+	 * 
+	 * @return The best matches in the slice
+	 */
+	static MatchHeap scanSlice(WordVectorStore store, float[] vector, Set<Integer> ignoreIds, 
+			int maxNumberOfMatches, int start, int end) {
+		MatchHeap heap;
+		float[] scratch;
+		int vectorSize;
+		int vectorsPerChunk;
+		int chunkIx;
+		FloatBuffer view = null;
+		int viewChunkIx = -1;
+		float threshold;
+		float score;
+		
+		heap = new MatchHeap(maxNumberOfMatches);
+		vectorSize = store.getVectorSize();
+		vectorsPerChunk = store.getVectorsPerChunk();
+		scratch = new float[vectorSize];
+		// the original only takes positive distances
+		threshold = 0.0f;
+		for (int wordId = start; wordId < end; wordId++) {
+			chunkIx = wordId / vectorsPerChunk;
+			if (chunkIx != viewChunkIx) {
+				view = store.getChunkView(chunkIx);
+				view.position((wordId % vectorsPerChunk) * vectorSize);
+				viewChunkIx = chunkIx;
+			}
+			view.get(scratch);
+			score = dot(vector, scratch, vectorSize);
+			if (score > threshold && !ignoreIds.contains(wordId)) {
+				heap.offer(wordId, score);
+				if (heap.isFull()) {
+					threshold = heap.getMinScore();
+				}
+			}
+		}
+		return heap;
+	}
+	
+	/**
+	 * The dot product, unrolled by four with separate accumulators so the adds don't all 
+	 * wait on each other
+	 * 
+	 * @param a One vector
+	 * @param b The other vector
+	 * @param length The number of elements to use
+	 * @return The dot product
+	 */
+	static float dot(float[] a, float[] b, int length) {
+		float sum0 = 0.0f;
+		float sum1 = 0.0f;
+		float sum2 = 0.0f;
+		float sum3 = 0.0f;
+		int limit;
+		int ix;
+		
+		limit = length & ~3;
+		for (ix = 0; ix < limit; ix += 4) {
+			sum0 += a[ix] * b[ix];
+			sum1 += a[ix + 1] * b[ix + 1];
+			sum2 += a[ix + 2] * b[ix + 2];
+			sum3 += a[ix + 3] * b[ix + 3];
+		}
+		for (; ix < length; ix++) {
+			sum0 += a[ix] * b[ix];
+		}
+		return (sum0 + sum1) + (sum2 + sum3);
+	}
+	
+	private static class SliceScan implements Callable<MatchHeap> {
+		private final WordVectorStore store;
+		private final float[] vector;
+		private final Set<Integer> ignoreIds;
+		private final int maxNumberOfMatches;
+		private final int start;
+		private final int end;
+		
+		SliceScan(WordVectorStore store, float[] vector, Set<Integer> ignoreIds, 
+				int maxNumberOfMatches, int start, int end) {
+			
+			this.store = store;
+			this.vector = vector;
+			this.ignoreIds = ignoreIds;
+			this.maxNumberOfMatches = maxNumberOfMatches;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		public MatchHeap call() {
+			
+			return scanSlice(store, vector, ignoreIds, maxNumberOfMatches, start, end);
+		}
+	}
+}
@@ -37,7 +37,7 @@ import org.slf4j.LoggerFactory;
 
 import com.hulles.alixia.api.shared.AlixiaException;
 import com.hulles.alixia.api.shared.SharedUtils;
-import com.hulles.alixia.api.tools.AlixiaTimer;
+import com.hulles.alixia.api.tools.AlixiaUtils;
 
 final class WordToVecLoader {
 	final static Logger LOGGER = LoggerFactory.getLogger(WordToVecLoader.class);
@@ -88,9 +88,10 @@ final class WordToVecLoader {
 		long fileSize;
 		int bufferSize;
 		ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+		long startMillis;
 		
 		SharedUtils.checkNotNull(fileName);
-		AlixiaTimer.startTimer("LOADER");
+		startMillis = System.currentTimeMillis();
 		try {
 			fileStream = new FileInputStream(fileName);
 		} catch (SecurityException e) {
@@ -131,7 +132,8 @@ final class WordToVecLoader {
 		
 		// load it!
 		loadMap(fileStream, channel, buffer);
-		AlixiaTimer.stopTimer("LOADER");
+		LOGGER.debug("WordToVecLoader: loaded in {}", 
+				AlixiaUtils.formatElapsedMillis(System.currentTimeMillis() - startMillis));
 	}
 	
 	/**
@@ -236,7 +238,7 @@ final class WordToVecLoader {
 	 * @param word The word to validate
 	 * @return True if the word is valid, false otherwise
 	 */
-	private static boolean goodWord(String word) {
+	static boolean goodWord(String word) {
 		
 		SharedUtils.checkNotNull(word);
 		return (word.length() > 1);
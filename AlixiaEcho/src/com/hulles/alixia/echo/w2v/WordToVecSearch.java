@@ -21,7 +21,10 @@
  *******************************************************************************/
 package com.hulles.alixia.echo.w2v;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -35,11 +38,14 @@ import org.slf4j.LoggerFactory;
 
 import com.hulles.alixia.api.shared.AlixiaException;
 import com.hulles.alixia.api.shared.SharedUtils;
-import com.hulles.alixia.api.tools.AlixiaTimer;
+import com.hulles.alixia.api.tools.StageTimer;
 
 /**
  * WordToVecSearch is the class that uses the loaded word2vec BIN file for word matches 
- *   (aka distance in the original C version) and analogies
+ *   (aka distance in the original C version) and analogies. It can either load the whole 
+ *   BIN file into a map (loadFile) or map a WordVectorStore (loadStore); the instance 
+ *   methods use whichever one got loaded, plus the WordVectorIndex (loadIndex) or the 
+ *   QuantizedVectors (loadQuantized) if they're there.
  *   
  * @author hulles
  *
@@ -47,7 +53,12 @@ import com.hulles.alixia.api.tools.AlixiaTimer;
 final public class WordToVecSearch {
 	final static Logger LOGGER = LoggerFactory.getLogger(WordToVecSearch.class);
 	private final static String DISTANCE_FORMAT = "(%.4f)";
+	private final static StageTimer MATCHES_TIMER = StageTimer.forStage("w2v matches");
+	private final static StageTimer ANALOGY_TIMER = StageTimer.forStage("w2v analogy");
 	private Map<String, float[]> wordVectors = null;
+	private WordVectorStore vectorStore = null;
+	private WordVectorIndex vectorIndex = null;
+	private QuantizedVectors quantizedVectors = null;
 	
 	public WordToVecSearch() {
 		// that's a big map; we only want one of these laying around...
@@ -55,7 +66,7 @@ final public class WordToVecSearch {
 	
 	public boolean fileIsLoaded() {
 		
-		return (wordVectors != null);
+		return (wordVectors != null || vectorStore != null);
 	}
 	
 	/**
@@ -74,6 +85,107 @@ final public class WordToVecSearch {
 		LOGGER.debug("WordToVecSearch: finished loading w2v file");
 	}
 	
+	/**
+	 * Map the vector store for a word2vec BIN file, building it first if need be
+	 * (see WordVectorStore). This is the fast way to "load" a big model.
+	 * 
+	 * @param binFileName The name of the BIN file (e.g. vectors.bin)
+	 */
+	public void loadStore(String binFileName) {
+		
+		SharedUtils.checkNotNull(binFileName);
+		vectorStore = WordVectorStore.openForModel(binFileName);
+	}
+	
+	/**
+	 * Open the approximate nearest-neighbour index for the model, if someone has built one 
+	 * with BuildVectorIndex. Once it's open the instance searches use it instead of 
+	 * scanning the whole store.
+	 * 
+	 * @param binFileName The name of the BIN file (e.g. vectors.bin)
+	 * @param probes The number of index lists to search, or null for the default
+	 * @return True if there was a current index to open
+	 */
+	public boolean loadIndex(String binFileName, Integer probes) {
+		String indexFileName;
+		
+		SharedUtils.checkNotNull(binFileName);
+		SharedUtils.nullsOkay(probes);
+		if (vectorStore == null) {
+			LOGGER.error("You need to call the loadStore method before loading the index");
+			return false;
+		}
+		indexFileName = binFileName + WordVectorIndex.FILE_SUFFIX;
+		if (!Files.isRegularFile(Paths.get(indexFileName))) {
+			return false;
+		}
+		if (!WordVectorIndex.isBuiltFrom(indexFileName, vectorStore)) {
+			LOGGER.warn("Index {} is out of date, run BuildVectorIndex again", indexFileName);
+			return false;
+		}
+		vectorIndex = WordVectorIndex.open(indexFileName, vectorStore);
+		if (probes != null) {
+			vectorIndex.setProbes(probes);
+		}
+		return true;
+	}
+	
+	/**
+	 * Map the int8 quantized vectors for the model, building them from the store first if 
+	 * need be. Once they're loaded the instance searches scan them (and re-rank with the 
+	 * store) instead of scanning the floats, unless there's an index.
+	 * 
+	 * @param binFileName The name of the BIN file (e.g. vectors.bin)
+	 * @param rerankFactor The number of candidates to re-rank per match wanted, or null for the default
+	 */
+	public void loadQuantized(String binFileName, Integer rerankFactor) {
+		
+		SharedUtils.checkNotNull(binFileName);
+		SharedUtils.nullsOkay(rerankFactor);
+		if (vectorStore == null) {
+			LOGGER.error("You need to call the loadStore method before loading the quantized vectors");
+			return;
+		}
+		quantizedVectors = QuantizedVectors.openForModel(binFileName, vectorStore);
+		if (rerankFactor != null) {
+			quantizedVectors.setRerankFactor(rerankFactor);
+		}
+	}
+	
+	/**
+	 * Return the quantized vectors, if they were loaded
+	 * 
+	 * @return The quantized vectors, or null
+	 */
+	public QuantizedVectors getQuantizedVectors() {
+		
+		return quantizedVectors;
+	}
+	
+	/**
+	 * Return the index, if one was loaded (e.g. to tune the probes)
+	 * 
+	 * @return The index, or null
+	 */
+	public WordVectorIndex getVectorIndex() {
+		
+		return vectorIndex;
+	}
+	
+	/**
+	 * Return the vector store that has already been mapped
+	 * 
+	 * @return The vector store
+	 */
+	public WordVectorStore getVectorStore() {
+		
+		if (vectorStore == null) {
+			LOGGER.error("You need to call the loadStore method before accessing the store");
+			return null;
+		}
+		return vectorStore;
+	}
+	
 	/**
 	 * Return the map that has already been loaded
 	 * 
@@ -99,22 +211,57 @@ final public class WordToVecSearch {
 	public static List<WordDistance> getWordMatches(String word, Map<String, float[]> vectorMap, Integer maxNumberOfMatches) {
 		float[] result;
 		List<WordDistance> matches;
+		long startNanos;
 
 		SharedUtils.checkNotNull(word);
 		SharedUtils.checkNotNull(vectorMap);
 		SharedUtils.checkNotNull(maxNumberOfMatches);
-		AlixiaTimer.startTimer("MATCHES");
+		startNanos = MATCHES_TIMER.start();
 		result = vectorMap.get(word);
 		if (result == null) {
 			return Collections.emptyList();
 		}
 		matches = getVectorMatches(Collections.singletonList(word), result, vectorMap, maxNumberOfMatches);
-		AlixiaTimer.stopTimer("MATCHES");
+		MATCHES_TIMER.stop(startNanos);
+		return matches;
+	}
+
+	public static List<WordDistance> getWordMatches(String word, WordVectorStore store, Integer maxNumberOfMatches) {
+		float[] result;
+		List<WordDistance> matches;
+		long startNanos;
+
+		SharedUtils.checkNotNull(word);
+		SharedUtils.checkNotNull(store);
+		SharedUtils.checkNotNull(maxNumberOfMatches);
+		startNanos = MATCHES_TIMER.start();
+		result = store.getVector(word);
+		if (result == null) {
+			return Collections.emptyList();
+		}
+		matches = getVectorMatches(Collections.singletonList(word), result, store, maxNumberOfMatches);
+		MATCHES_TIMER.stop(startNanos);
 		return matches;
 	}
 
 	public List<WordDistance> getWordMatches(String word, Integer maxNumberOfMatches) {
-		return getWordMatches(word, wordVectors, maxNumberOfMatches);
+		float[] result;
+		List<WordDistance> matches;
+		long startNanos;
+		
+		if (vectorStore == null) {
+			return getWordMatches(word, wordVectors, maxNumberOfMatches);
+		}
+		SharedUtils.checkNotNull(word);
+		SharedUtils.checkNotNull(maxNumberOfMatches);
+		startNanos = MATCHES_TIMER.start();
+		result = vectorStore.getVector(word);
+		if (result == null) {
+			return Collections.emptyList();
+		}
+		matches = searchStore(Collections.singletonList(word), result, maxNumberOfMatches);
+		MATCHES_TIMER.stop(startNanos);
+		return matches;
 	}
 	
 	
@@ -137,13 +284,14 @@ final public class WordToVecSearch {
 		float[] searchVector;
 		List<String> ignores;
 		List<WordDistance> matches;
+		long startNanos;
 
 		SharedUtils.checkNotNull(word1);
 		SharedUtils.checkNotNull(word2);
 		SharedUtils.checkNotNull(word3);
 		SharedUtils.checkNotNull(vectorMap);
 		SharedUtils.checkNotNull(maxNumberOfMatches);
-		AlixiaTimer.startTimer("ANALOGY");
+		startNanos = ANALOGY_TIMER.start();
 		result1 = vectorMap.get(word1);
 		if (result1 == null) {
 			throw new AlixiaException(word1);
@@ -166,12 +314,80 @@ final public class WordToVecSearch {
 		}
 		searchVector = WordToVecLoader.normalize(searchFor);
 		matches = getVectorMatches(ignores, searchVector, vectorMap, maxNumberOfMatches);
-		AlixiaTimer.stopTimer("ANALOGY");
+		ANALOGY_TIMER.stop(startNanos);
 		return matches;
 	}
 
+	public static List<WordDistance> getAnalogy(String word1, String word2, String word3, WordVectorStore store, Integer maxNumberOfMatches) throws AlixiaException {
+		float[] searchVector;
+		List<String> ignores;
+		List<WordDistance> matches;
+		long startNanos;
+
+		SharedUtils.checkNotNull(word1);
+		SharedUtils.checkNotNull(word2);
+		SharedUtils.checkNotNull(word3);
+		SharedUtils.checkNotNull(store);
+		SharedUtils.checkNotNull(maxNumberOfMatches);
+		startNanos = ANALOGY_TIMER.start();
+		searchVector = getAnalogyVector(word1, word2, word3, store);
+		ignores = new ArrayList<>(3);
+		ignores.add(word1);
+		ignores.add(word2);
+		ignores.add(word3);
+		matches = getVectorMatches(ignores, searchVector, store, maxNumberOfMatches);
+		ANALOGY_TIMER.stop(startNanos);
+		return matches;
+	}
+	
+	/**
+	 * The normalized word2 - word1 + word3 vector that an analogy search looks for
+	 * 
+	 * @return The vector to search for
+	 * @throws AlixiaException If one of the words isn't in the store
+	 */
+	private static float[] getAnalogyVector(String word1, String word2, String word3, WordVectorStore store) throws AlixiaException {
+		float[] result1;
+		float[] result2;
+		float[] result3;
+		float[] searchFor;
+		
+		result1 = store.getVector(word1);
+		if (result1 == null) {
+			throw new AlixiaException(word1);
+		}
+		result2 = store.getVector(word2);
+		if (result2 == null) {
+			throw new AlixiaException(word2);
+		}
+		result3 = store.getVector(word3);
+		if (result3 == null) {
+			throw new AlixiaException(word3);
+		}
+		searchFor = new float[result1.length];
+		for (int ix = 0; ix < searchFor.length; ix++) {
+			searchFor[ix] = result2[ix] - result1[ix] + result3[ix];
+		}
+		return WordToVecLoader.normalize(searchFor);
+	}
+
 	public List<WordDistance> getAnalogy(String word1, String word2, String word3, Integer maxNumberOfMatches)  throws AlixiaException {
-		return getAnalogy(word1, word2, word3, wordVectors, maxNumberOfMatches);
+		float[] searchVector;
+		List<WordDistance> matches;
+		long startNanos;
+		
+		if (vectorStore == null) {
+			return getAnalogy(word1, word2, word3, wordVectors, maxNumberOfMatches);
+		}
+		SharedUtils.checkNotNull(word1);
+		SharedUtils.checkNotNull(word2);
+		SharedUtils.checkNotNull(word3);
+		SharedUtils.checkNotNull(maxNumberOfMatches);
+		startNanos = ANALOGY_TIMER.start();
+		searchVector = getAnalogyVector(word1, word2, word3, vectorStore);
+		matches = searchStore(Arrays.asList(word1, word2, word3), searchVector, maxNumberOfMatches);
+		ANALOGY_TIMER.stop(startNanos);
+		return matches;
 	}
 	
 	/**
@@ -201,10 +417,49 @@ final public class WordToVecSearch {
 		return WordToVecLoader.normalize(vectorSum);
 	}
 	
+	public static float[] getMashUp(List<String> words, WordVectorStore store) {
+		double[] vectorSum;
+		float[] result;
+		int vectorSize;
+		
+		SharedUtils.checkNotNull(words);
+		SharedUtils.checkNotNull(store);
+		vectorSize = store.getVectorSize();
+		vectorSum = new double[vectorSize];
+		for (String word : words) {
+			result = store.getVector(word);
+			if (result != null) {
+				for (int ix = 0; ix < vectorSize; ix++) {
+					vectorSum[ix] += result[ix];
+				}
+			}
+		}
+		return WordToVecLoader.normalize(vectorSum);
+	}
+	
 	public float[] getMashUp(List<String> words) {
+		if (vectorStore != null) {
+			return getMashUp(words, vectorStore);
+		}
 		return getMashUp(words, wordVectors);
 	}
 	
+	/**
+	 * Get the closest matches to the mash-up of some words, leaving out the words themselves
+	 * 
+	 * @param words Words to mash up
+	 * @param maxNumberOfMatches Self-explanatory
+	 * @return A list of "matching" WordDistances
+	 */
+	public List<WordDistance> getMashUpMatches(List<String> words, Integer maxNumberOfMatches) {
+		float[] mashUp;
+		
+		SharedUtils.checkNotNull(words);
+		SharedUtils.checkNotNull(maxNumberOfMatches);
+		mashUp = getMashUp(words);
+		return getVectorMatches(words, mashUp, maxNumberOfMatches);
+	}
+	
 	/**
 	 * Simple lookup of word in vector map
 	 * 
@@ -222,6 +477,10 @@ final public class WordToVecSearch {
 	}
 	
 	public float[] getVector(String word) {
+		if (vectorStore != null) {
+			SharedUtils.checkNotNull(word);
+			return vectorStore.getVector(word);
+		}
 		return getVector(word, wordVectors);
 	}
 	
@@ -268,8 +527,53 @@ final public class WordToVecSearch {
 		return bestMatches;
 	}
 
+	/**
+	 * The vector store version of the above. The scan is done by VectorMatcher, which splits 
+	 *   it across cores and keeps the best matches in a primitive heap.
+	 *   
+	 * @param ignores Words to ignore in the file (the search word(s) themselves)
+	 * @param thisVector The vector of the word we're matching
+	 * @param store The vector store
+	 * @param maxNumberOfMatches Self-explanatory
+	 * @return A list of "matching" WordDistances
+	 */
+	public static List<WordDistance> getVectorMatches(List<String> ignores, float[] thisVector, WordVectorStore store, Integer maxNumberOfMatches) {
+		
+		SharedUtils.checkNotNull(ignores);
+		SharedUtils.checkNotNull(thisVector);
+		SharedUtils.checkNotNull(store);
+		SharedUtils.checkNotNull(maxNumberOfMatches);
+		return VectorMatcher.findMatches(store, thisVector, ignores, maxNumberOfMatches);
+	}
+
 	public List<WordDistance> getVectorMatches(List<String> ignores, float[] thisVector, Integer maxNumberOfMatches) {
-		return getVectorMatches(ignores, thisVector, wordVectors, maxNumberOfMatches);
+		if (vectorStore == null) {
+			return getVectorMatches(ignores, thisVector, wordVectors, maxNumberOfMatches);
+		}
+		SharedUtils.checkNotNull(ignores);
+		SharedUtils.checkNotNull(thisVector);
+		SharedUtils.checkNotNull(maxNumberOfMatches);
+		return searchStore(ignores, thisVector, maxNumberOfMatches);
+	}
+	
+	/**
+	 * Search the vector store the fastest way we've got: the index if there is one, then 
+	 *   the quantized vectors, then the exact scan
+	 *   
+	 * @param ignores Words to leave out (the search word(s) themselves)
+	 * @param thisVector The vector to match
+	 * @param maxNumberOfMatches Self-explanatory
+	 * @return A list of "matching" WordDistances
+	 */
+	private List<WordDistance> searchStore(List<String> ignores, float[] thisVector, Integer maxNumberOfMatches) {
+		
+		if (vectorIndex != null) {
+			return vectorIndex.findMatches(thisVector, ignores, maxNumberOfMatches);
+		}
+		if (quantizedVectors != null) {
+			return quantizedVectors.findMatches(thisVector, ignores, maxNumberOfMatches);
+		}
+		return VectorMatcher.findMatches(vectorStore, thisVector, ignores, maxNumberOfMatches);
 	}
 	
 	/**
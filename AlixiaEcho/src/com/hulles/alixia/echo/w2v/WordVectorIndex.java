@@ -0,0 +1,633 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.echo.w2v;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hulles.alixia.api.shared.AlixiaException;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.api.tools.AlixiaUtils;
+import com.hulles.alixia.tools.AlixiaExecutors;
+
+/**
+ * WordVectorIndex is an approximate nearest-neighbour index for a WordVectorStore, the IVF 
+ * ("inverted file") kind: we run k-means over the (normalized) vectors to get a few 
+ * thousand centroids, and file every word under its closest centroid. A search compares 
+ * the query with the centroids, then scores only the words in the closest few lists 
+ * (the "probes"). More probes is better recall and slower; getRecallReport measures 
+ * the trade-off against the exact VectorMatcher scan.
+ * <p>
+ * The index is built offline (see BuildVectorIndex) and saved next to the model as 
+ * a ".ivf" file, all little-endian:
+ * <pre>
+ *   header        64 bytes (magic, version, sizes, the store it was built from, offsets, 
+ *                 the modified time of the store's BIN file)
+ *   centroids     listCount * vectorSize floats, normalized
+ *   list offsets  listCount + 1 ints, the start of each list in the list word ids
+ *   list word ids vocabSize ints, grouped by list
+ * </pre>
+ * The vectors themselves stay in the store; the index is just the lists.
+ * 
+ * @author hulles
+ *
+ */
+public final class WordVectorIndex {
+	final static Logger LOGGER = LoggerFactory.getLogger(WordVectorIndex.class);
+	public final static String FILE_SUFFIX = ".ivf";
+	public final static int DEFAULT_PROBES = 16;
+	private final static int MAGIC = 0x31495657; // "WVI1"
+	private final static int FORMAT_VERSION = 2;
+	private final static int HEADER_SIZE = 64;
+	private final static int TRAINING_POINTS_PER_LIST = 40;
+	private final static int TRAINING_ITERATIONS = 8;
+	private final static int MIN_SLICE_WORDS = 1 << 12;
+	private final static long RANDOM_SEED = 20181017L;
+	private final static ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+	private final WordVectorStore store;
+	private final int listCount;
+	private final float[][] centroids;
+	private final IntBuffer listOffsets;
+	private final IntBuffer listWordIds;
+	private volatile int probes = DEFAULT_PROBES;
+	
+	private WordVectorIndex(WordVectorStore store, FileChannel channel, String fileName) throws IOException {
+		MappedByteBuffer header;
+		int vocabSize;
+		int vectorSize;
+		long storeLength;
+		long modelModified;
+		long centroidsOffset;
+		long offsetsOffset;
+		long idsOffset;
+		FloatBuffer centroidBuffer;
+		
+		SharedUtils.checkNotNull(store);
+		SharedUtils.checkNotNull(channel);
+		SharedUtils.checkNotNull(fileName);
+		this.store = store;
+		if (channel.size() < HEADER_SIZE) {
+			throw new AlixiaException("Word vector index " + fileName + " is too short");
+		}
+		header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+		header.order(BYTE_ORDER);
+		if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+			throw new AlixiaException("Word vector index " + fileName + " has a bad magic number or version");
+		}
+		vocabSize = header.getInt(8);
+		vectorSize = header.getInt(12);
+		listCount = header.getInt(16);
+		storeLength = header.getLong(24);
+		centroidsOffset = header.getLong(32);
+		offsetsOffset = header.getLong(40);
+		idsOffset = header.getLong(48);
+		modelModified = header.getLong(56);
+		if (vocabSize != store.getVocabSize() || vectorSize != store.getVectorSize() || 
+				storeLength != store.getFileLength() || modelModified != store.getModelModified()) {
+			throw new AlixiaException("Word vector index " + fileName + " wasn't built from " + store.getFileName());
+		}
+		if (!(listCount > 0) || idsOffset + ((long) vocabSize * Integer.BYTES) > channel.size()) {
+			throw new AlixiaException("Word vector index " + fileName + " has a bad header");
+		}
+		centroidBuffer = channel.map(FileChannel.MapMode.READ_ONLY, centroidsOffset, 
+				(long) listCount * vectorSize * Float.BYTES).order(BYTE_ORDER).asFloatBuffer();
+		// the centroids get read for every query, so they live on the heap
+		centroids = new float[listCount][vectorSize];
+		for (int listIx = 0; listIx < listCount; listIx++) {
+			centroidBuffer.get(centroids[listIx]);
+		}
+		listOffsets = channel.map(FileChannel.MapMode.READ_ONLY, offsetsOffset, 
+				(listCount + 1L) * Integer.BYTES).order(BYTE_ORDER).asIntBuffer();
+		listWordIds = channel.map(FileChannel.MapMode.READ_ONLY, idsOffset, 
+				(long) vocabSize * Integer.BYTES).order(BYTE_ORDER).asIntBuffer();
+	}
+	
+	/**
+	 * Open (map) an index file for a store
+	 * 
+	 * @param fileName The .ivf file
+	 * @param store The store it was built from
+	 * @return The index
+	 */
+	public static WordVectorIndex open(String fileName, WordVectorStore store) {
+		WordVectorIndex index;
+		
+		SharedUtils.checkNotNull(fileName);
+		SharedUtils.checkNotNull(store);
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+			index = new WordVectorIndex(store, channel, fileName);
+		} catch (IOException e) {
+			throw new AlixiaException("Unable to open word vector index " + fileName, e);
+		}
+		LOGGER.info("WordVectorIndex: opened {} with {} lists", fileName, index.listCount);
+		return index;
+	}
+	
+	/**
+	 * See if an index file was built from this store, so a stale index can be skipped 
+	 * rather than blowing up in open
+	 * 
+	 * @param fileName The .ivf file
+	 * @param store The store
+	 * @return True if it was
+	 */
+	public static boolean isBuiltFrom(String fileName, WordVectorStore store) {
+		ByteBuffer header;
+		
+		SharedUtils.checkNotNull(fileName);
+		SharedUtils.checkNotNull(store);
+		header = WordVectorStore.readHeader(fileName, HEADER_SIZE);
+		return header != null && header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_VERSION &&
+				header.getInt(8) == store.getVocabSize() && header.getInt(12) == store.getVectorSize() &&
+				header.getLong(24) == store.getFileLength() && header.getLong(56) == store.getModelModified();
+	}
+	
+	/**
+	 * The default number of lists, about the square root of the vocabulary size, 
+	 * which keeps the centroid comparisons and the list scans roughly in balance
+	 * 
+	 * @param vocabSize The vocabulary size
+	 * @return The number of lists
+	 */
+	public static int defaultListCount(int vocabSize) {
+		
+		return Math.max(1, (int) Math.sqrt(vocabSize));
+	}
+	
+	/**
+	 * Build an index for a store and write it out. This is spherical k-means (the vectors 
+	 * are normalized, so we use the dot product and normalize the centroids) trained on a 
+	 * sample of the vocabulary, followed by a pass that files every word under its closest 
+	 * centroid. It's slow for the big models, which is why it's done offline.
+	 * 
+	 * @param store The vector store
+	 * @param indexFileName The index file to write
+	 * @param listCount The number of lists (centroids)
+	 */
+	public static void build(WordVectorStore store, String indexFileName, int listCount) {
+		int vocabSize;
+		int vectorSize;
+		int trainingCount;
+		int[] trainingIds;
+		float[][] trainingVectors;
+		float[][] centroids;
+		int[] assignments;
+		double[][] sums;
+		int[] counts;
+		Random random;
+		int[] allIds;
+		int[] listStarts;
+		int[] listIds;
+		int[] fill;
+		long startMillis;
+		ExecutorService executor;
+		
+		SharedUtils.checkNotNull(store);
+		SharedUtils.checkNotNull(indexFileName);
+		vocabSize = store.getVocabSize();
+		vectorSize = store.getVectorSize();
+		if (listCount < 1 || listCount > vocabSize) {
+			throw new AlixiaException("WordVectorIndex: list count must be between 1 and the vocabulary size");
+		}
+		startMillis = System.currentTimeMillis();
+		random = new Random(RANDOM_SEED);
+		executor = AlixiaExecutors.newExecutor("Echo Index Build");
+		try {
+			// word2vec files are sorted by frequency, so we sample across the whole range
+			trainingCount = (int) Math.min(vocabSize, (long) listCount * TRAINING_POINTS_PER_LIST);
+			trainingIds = new int[trainingCount];
+			trainingVectors = new float[trainingCount][];
+			for (int ix = 0; ix < trainingCount; ix++) {
+				trainingIds[ix] = (int) ((long) ix * vocabSize / trainingCount);
+				trainingVectors[ix] = store.getVector(trainingIds[ix]);
+			}
+			centroids = new float[listCount][];
+			for (int listIx = 0; listIx < listCount; listIx++) {
+				centroids[listIx] = trainingVectors[(int) ((long) listIx * trainingCount / listCount)].clone();
+			}
+			LOGGER.info("WordVectorIndex: training {} lists on {} words", listCount, trainingCount);
+			for (int iteration = 0; iteration < TRAINING_ITERATIONS; iteration++) {
+				assignments = assign(executor, store, trainingIds, centroids);
+				sums = new double[listCount][vectorSize];
+				counts = new int[listCount];
+				for (int ix = 0; ix < trainingCount; ix++) {
+					counts[assignments[ix]]++;
+					for (int vIx = 0; vIx < vectorSize; vIx++) {
+						sums[assignments[ix]][vIx] += trainingVectors[ix][vIx];
+					}
+				}
+				for (int listIx = 0; listIx < listCount; listIx++) {
+					if (counts[listIx] == 0) {
+						// an empty list gets a fresh start somewhere random
+						centroids[listIx] = trainingVectors[random.nextInt(trainingCount)].clone();
+					} else {
+						centroids[listIx] = WordToVecLoader.normalize(sums[listIx]);
+					}
+				}
+				LOGGER.debug("WordVectorIndex: finished training iteration {}", iteration + 1);
+			}
+			trainingVectors = null;
+			
+			// now file every word under its closest centroid, a counting sort by list
+			allIds = new int[vocabSize];
+			for (int ix = 0; ix < vocabSize; ix++) {
+				allIds[ix] = ix;
+			}
+			assignments = assign(executor, store, allIds, centroids);
+			listStarts = new int[listCount + 1];
+			for (int ix = 0; ix < vocabSize; ix++) {
+				listStarts[assignments[ix] + 1]++;
+			}
+			for (int listIx = 0; listIx < listCount; listIx++) {
+				listStarts[listIx + 1] += listStarts[listIx];
+			}
+			fill = listStarts.clone();
+			listIds = allIds;
+			for (int ix = 0; ix < vocabSize; ix++) {
+				listIds[fill[assignments[ix]]++] = ix;
+			}
+		} finally {
+			executor.shutdown();
+		}
+		write(store, indexFileName, centroids, listStarts, listIds);
+		LOGGER.info("WordVectorIndex: built {} in {}", indexFileName, 
+				AlixiaUtils.formatElapsedMillis(System.currentTimeMillis() - startMillis));
+	}
+	
+	/**
+	 * Find the closest centroid for each word, split across the executor
+	 * 
+	 * @return The list index for each word, in the same order as wordIds
+	 */
+	private static int[] assign(ExecutorService executor, WordVectorStore store, int[] wordIds, float[][] centroids) {
+		int[] assignments;
+		int sliceCount;
+		int sliceSize;
+		List<Future<?>> futures;
+		
+		assignments = new int[wordIds.length];
+		sliceCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), wordIds.length / MIN_SLICE_WORDS));
+		sliceSize = (wordIds.length + sliceCount - 1) / sliceCount;
+		futures = new ArrayList<>(sliceCount);
+		for (int sliceIx = 0; sliceIx < sliceCount; sliceIx++) {
+			futures.add(executor.submit(new AssignSlice(store, wordIds, centroids, assignments, 
+					sliceIx * sliceSize, Math.min(wordIds.length, (sliceIx + 1) * sliceSize))));
+		}
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AlixiaException("WordVectorIndex: interrupted during build", e);
+		} catch (ExecutionException e) {
+			throw new AlixiaException("WordVectorIndex: build failed", e.getCause());
+		}
+		return assignments;
+	}
+	
+	private static int closestCentroid(float[] vector, float[][] centroids) {
+		int best = 0;
+		float bestScore = Float.NEGATIVE_INFINITY;
+		float score;
+		
+		for (int listIx = 0; listIx < centroids.length; listIx++) {
+			score = VectorMatcher.dot(vector, centroids[listIx], vector.length);
+			if (score > bestScore) {
+				bestScore = score;
+				best = listIx;
+			}
+		}
+		return best;
+	}
+	
+	private static void write(WordVectorStore store, String indexFileName, float[][] centroids, 
+			int[] listStarts, int[] listIds) {
+		Path indexPath;
+		Path tempPath;
+		ByteBuffer buffer;
+		long centroidsOffset;
+		long offsetsOffset;
+		long idsOffset;
+		long position;
+		int vectorSize;
+		
+		vectorSize = store.getVectorSize();
+		indexPath = Paths.get(indexFileName);
+		tempPath = Paths.get(indexFileName + ".tmp");
+		centroidsOffset = HEADER_SIZE;
+		offsetsOffset = centroidsOffset + ((long) centroids.length * vectorSize * Float.BYTES);
+		idsOffset = offsetsOffset + ((long) listStarts.length * Integer.BYTES);
+		try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, 
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			buffer = ByteBuffer.allocate(1 << 20).order(BYTE_ORDER);
+			position = centroidsOffset;
+			for (float[] centroid : centroids) {
+				for (float value : centroid) {
+					if (buffer.remaining() < Float.BYTES) {
+						position += WordVectorStore.flushBuffer(channel, buffer, position);
+					}
+					buffer.putFloat(value);
+				}
+			}
+			for (int value : listStarts) {
+				if (buffer.remaining() < Integer.BYTES) {
+					position += WordVectorStore.flushBuffer(channel, buffer, position);
+				}
+				buffer.putInt(value);
+			}
+			for (int value : listIds) {
+				if (buffer.remaining() < Integer.BYTES) {
+					position += WordVectorStore.flushBuffer(channel, buffer, position);
+				}
+				buffer.putInt(value);
+			}
+			WordVectorStore.flushBuffer(channel, buffer, position);
+			buffer.putInt(MAGIC);
+			buffer.putInt(FORMAT_VERSION);
+			buffer.putInt(store.getVocabSize());
+			buffer.putInt(vectorSize);
+			buffer.putInt(centroids.length);
+			buffer.putInt(0);
+			buffer.putLong(store.getFileLength());
+			buffer.putLong(centroidsOffset);
+			buffer.putLong(offsetsOffset);
+			buffer.putLong(idsOffset);
+			buffer.putLong(store.getModelModified());
+			WordVectorStore.flushBuffer(channel, buffer, 0);
+			channel.force(true);
+		} catch (IOException e) {
+			throw new AlixiaException("Unable to write word vector index " + indexFileName, e);
+		}
+		try {
+			try {
+				Files.move(tempPath, indexPath, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			throw new AlixiaException("Unable to move word vector index into place at " + indexFileName, e);
+		}
+	}
+	
+	public WordVectorStore getStore() {
+		
+		return store;
+	}
+	
+	public int getListCount() {
+		
+		return listCount;
+	}
+	
+	public int getProbes() {
+		
+		return probes;
+	}
+	
+	/**
+	 * Set how many lists a search looks at; more is better recall and slower. All the lists 
+	 * is an exact search, only slower than VectorMatcher.
+	 * 
+	 * @param probes The number of lists to search
+	 */
+	public void setProbes(int probes) {
+		
+		if (probes < 1) {
+			throw new AlixiaException("WordVectorIndex: probes must be positive");
+		}
+		this.probes = Math.min(probes, listCount);
+	}
+	
+	/**
+	 * Find the (probably) best matches for a normalized vector. Same rules as VectorMatcher: 
+	 * positive distances only, and the list is padded with "init" entries.
+	 * 
+	 * @param vector The vector to match
+	 * @param ignores Words to leave out (the search words themselves)
+	 * @param maxNumberOfMatches Self-explanatory
+	 * @return A list of "matching" WordDistances, best first
+	 */
+	public List<WordDistance> findMatches(float[] vector, Collection<String> ignores, int maxNumberOfMatches) {
+		
+		return findMatches(vector, ignores, maxNumberOfMatches, probes);
+	}
+	
+	private List<WordDistance> findMatches(float[] vector, Collection<String> ignores, int maxNumberOfMatches, 
+			int probeCount) {
+		Set<Integer> ignoreIds;
+		int wordId;
+		int vectorSize;
+		MatchHeap listHeap;
+		int[] lists;
+		float[] listScores;
+		int probed;
+		MatchHeap heap;
+		float[] scratch;
+		float threshold;
+		float score;
+		int end;
+		
+		SharedUtils.checkNotNull(vector);
+		SharedUtils.checkNotNull(ignores);
+		if (maxNumberOfMatches < 1) {
+			throw new AlixiaException("WordVectorIndex: need to ask for at least one match");
+		}
+		vectorSize = store.getVectorSize();
+		if (vector.length != vectorSize) {
+			throw new AlixiaException("WordVectorIndex: vector size doesn't match store");
+		}
+		ignoreIds = VectorMatcher.getIgnoreIds(store, ignores);
+		listHeap = new MatchHeap(probeCount);
+		for (int listIx = 0; listIx < listCount; listIx++) {
+			listHeap.offer(listIx, VectorMatcher.dot(vector, centroids[listIx], vectorSize));
+		}
+		lists = new int[probeCount];
+		listScores = new float[probeCount];
+		probed = listHeap.drainDescending(lists, listScores);
+		
+		heap = new MatchHeap(maxNumberOfMatches);
+		scratch = new float[vectorSize];
+		threshold = 0.0f;
+		for (int probeIx = 0; probeIx < probed; probeIx++) {
+			end = listOffsets.get(lists[probeIx] + 1);
+			for (int ix = listOffsets.get(lists[probeIx]); ix < end; ix++) {
+				wordId = listWordIds.get(ix);
+				store.readVector(wordId, scratch);
+				score = VectorMatcher.dot(vector, scratch, vectorSize);
+				if (score > threshold && !ignoreIds.contains(wordId)) {
+					heap.offer(wordId, score);
+					if (heap.isFull()) {
+						threshold = heap.getMinScore();
+					}
+				}
+			}
+		}
+		return VectorMatcher.toMatches(store, heap, maxNumberOfMatches);
+	}
+	
+	/**
+	 * Measure recall@k against the exact VectorMatcher search for some probe settings. The 
+	 * queries are the vectors of randomly-picked words (the word itself is left out of the 
+	 * results, as in a word match). Recall is the fraction of the exact top k that the index 
+	 * found too.
+	 * 
+	 * @param queryCount The number of queries to run
+	 * @param k The number of matches per query
+	 * @param probeSettings The probe settings to try
+	 * @return One line per setting, plus one for the exact search
+	 */
+	public List<String> getRecallReport(int queryCount, int k, int[] probeSettings) {
+		Random random;
+		float[][] queries;
+		List<String> queryWords;
+		List<Set<String>> exactResults;
+		Set<String> exactWords;
+		List<WordDistance> matches;
+		long startNanos;
+		long exactNanos;
+		long indexNanos;
+		long found;
+		long possible;
+		List<String> report;
+		int wordId;
+		int probeCount;
+		
+		SharedUtils.checkNotNull(probeSettings);
+		if (queryCount < 1 || k < 1) {
+			throw new AlixiaException("WordVectorIndex: need at least one query and one match");
+		}
+		random = new Random(RANDOM_SEED);
+		queries = new float[queryCount][];
+		queryWords = new ArrayList<>(queryCount);
+		for (int queryIx = 0; queryIx < queryCount; queryIx++) {
+			wordId = random.nextInt(store.getVocabSize());
+			queries[queryIx] = store.getVector(wordId);
+			queryWords.add(store.getWord(wordId));
+		}
+		exactResults = new ArrayList<>(queryCount);
+		startNanos = System.nanoTime();
+		for (int queryIx = 0; queryIx < queryCount; queryIx++) {
+			matches = VectorMatcher.findMatches(store, queries[queryIx], 
+					Collections.singletonList(queryWords.get(queryIx)), k);
+			exactResults.add(matchedWords(matches));
+		}
+		exactNanos = System.nanoTime() - startNanos;
+		report = new ArrayList<>(probeSettings.length + 1);
+		report.add(String.format("exact: %.3f ms/query", exactNanos / 1.0e6 / queryCount));
+		for (int setting : probeSettings) {
+			probeCount = Math.max(1, Math.min(setting, listCount));
+			found = 0;
+			possible = 0;
+			startNanos = System.nanoTime();
+			for (int queryIx = 0; queryIx < queryCount; queryIx++) {
+				matches = findMatches(queries[queryIx], Collections.singletonList(queryWords.get(queryIx)), 
+						k, probeCount);
+				exactWords = exactResults.get(queryIx);
+				possible += exactWords.size();
+				for (String word : matchedWords(matches)) {
+					if (exactWords.contains(word)) {
+						found++;
+					}
+				}
+			}
+			indexNanos = System.nanoTime() - startNanos;
+			report.add(String.format("probes %d of %d: recall@%d %.3f, %.3f ms/query", probeCount, listCount, 
+					k, possible == 0 ? 1.0 : (double) found / possible, indexNanos / 1.0e6 / queryCount));
+		}
+		return report;
+	}
+	
+	private static Set<String> matchedWords(List<WordDistance> matches) {
+		Set<String> words;
+		
+		words = new HashSet<>(matches.size() * 2);
+		for (WordDistance match : matches) {
+			if (!match.getToWord().equals("init")) {
+				words.add(match.getToWord());
+			}
+		}
+		return words;
+	}
+	
+	@Override
+	public String toString() {
+		
+		return "WordVectorIndex for " + store.getFileName() + ": " + listCount + " lists, " + probes + " probes";
+	}
+	
+	private static class AssignSlice implements Runnable {
+		private final WordVectorStore store;
+		private final int[] wordIds;
+		private final float[][] centroids;
+		private final int[] assignments;
+		private final int start;
+		private final int end;
+		
+		AssignSlice(WordVectorStore store, int[] wordIds, float[][] centroids, int[] assignments, 
+				int start, int end) {
+			
+			this.store = store;
+			this.wordIds = wordIds;
+			this.centroids = centroids;
+			this.assignments = assignments;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		public void run() {
+			float[] vector;
+			
+			vector = new float[store.getVectorSize()];
+			for (int ix = start; ix < end; ix++) {
+				store.readVector(wordIds[ix], vector);
+				assignments[ix] = closestCentroid(vector, centroids);
+			}
+		}
+	}
+}
@@ -0,0 +1,727 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.echo.w2v;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hulles.alixia.api.shared.AlixiaException;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.api.tools.AlixiaUtils;
+
+/**
+ * WordVectorStore is a memory-mapped, read-only word2vec model. We convert the word2vec BIN file 
+ * once into our own file format (".wvs", next to the original) with the vectors already normalized, 
+ * then every start after that just maps the file. Nothing big goes on the heap, the OS shares the 
+ * pages between processes, and since we map the vectors in chunks we aren't stuck with the 2GB 
+ * ByteBuffer limit, so GoogleNews and Freebase work too.
+ * <p>
+ * The file layout, all little-endian:
+ * <pre>
+ *   header        80 bytes (magic, version, sizes, section offsets, and the length and 
+ *                 modified time of the BIN file it was built from)
+ *   vectors       vocabSize * vectorSize floats, normalized, in word id order
+ *   word offsets  vocabSize + 1 ints, the start of each word in the word bytes
+ *   hash table    tableSize ints, open addressing, word id + 1 (0 is empty)
+ *   word bytes    the words, UTF-8, back to back
+ * </pre>
+ * Lookups hash the word and compare its UTF-8 bytes against the mapped word bytes, so finding a 
+ * word doesn't cost anything but a probe or two.
+ * <p>
+ * If the BIN file's length or modified time doesn't match what's in the header, openForModel 
+ * builds the store again, so swapping in a new model doesn't leave us with the old vectors.
+ * 
+ * @author hulles
+ *
+ */
+public final class WordVectorStore {
+	final static Logger LOGGER = LoggerFactory.getLogger(WordVectorStore.class);
+	public final static String FILE_SUFFIX = ".wvs";
+	private final static int MAGIC = 0x31535657; // "WVS1"
+	private final static int FORMAT_VERSION = 2;
+	private final static int HEADER_SIZE = 80;
+	private final static int MAX_CHUNK_BYTES = 1 << 30;
+	private final static int WRITE_BUFFER_SIZE = 1 << 20;
+	private final static ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+	private final String fileName;
+	private final int vocabSize;
+	private final int vectorSize;
+	private final int vectorsPerChunk;
+	private final FloatBuffer[] vectorChunks;
+	private final IntBuffer wordOffsets;
+	private final IntBuffer hashTable;
+	private final int tableMask;
+	private final ByteBuffer wordBytes;
+	private final long fileLength;
+	private final long modelModified;
+	
+	private WordVectorStore(String fileName, FileChannel channel) throws IOException {
+		MappedByteBuffer header;
+		int magic;
+		int version;
+		int tableSize;
+		long vectorsOffset;
+		long offsetsOffset;
+		long tableOffset;
+		long wordsOffset;
+		long wordsLength;
+		int chunkCount;
+		long vectorBytes;
+		int chunkVectors;
+		MappedByteBuffer chunk;
+		
+		SharedUtils.checkNotNull(fileName);
+		SharedUtils.checkNotNull(channel);
+		this.fileName = fileName;
+		fileLength = channel.size();
+		if (fileLength < HEADER_SIZE) {
+			throw new AlixiaException("Word vector store " + fileName + " is too short");
+		}
+		header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+		header.order(BYTE_ORDER);
+		magic = header.getInt(0);
+		version = header.getInt(4);
+		if (magic != MAGIC || version != FORMAT_VERSION) {
+			throw new AlixiaException("Word vector store " + fileName + " has a bad magic number or version");
+		}
+		vocabSize = header.getInt(8);
+		vectorSize = header.getInt(12);
+		tableSize = header.getInt(16);
+		vectorsOffset = header.getLong(24);
+		offsetsOffset = header.getLong(32);
+		tableOffset = header.getLong(40);
+		wordsOffset = header.getLong(48);
+		wordsLength = header.getLong(56);
+		modelModified = header.getLong(72);
+		if (!(vectorSize > 0) || vocabSize < 0 || Integer.bitCount(tableSize) != 1 ||
+				wordsOffset + wordsLength > channel.size()) {
+			throw new AlixiaException("Word vector store " + fileName + " has a bad header");
+		}
+		
+		// map the vectors in chunks of whole vectors so a vector never straddles two chunks
+		vectorBytes = (long) vectorSize * Float.BYTES;
+		vectorsPerChunk = (int) Math.max(1, MAX_CHUNK_BYTES / vectorBytes);
+		chunkCount = (vocabSize + vectorsPerChunk - 1) / vectorsPerChunk;
+		vectorChunks = new FloatBuffer[chunkCount];
+		for (int chunkIx = 0; chunkIx < chunkCount; chunkIx++) {
+			chunkVectors = Math.min(vectorsPerChunk, vocabSize - (chunkIx * vectorsPerChunk));
+			chunk = channel.map(FileChannel.MapMode.READ_ONLY, 
+					vectorsOffset + (chunkIx * vectorsPerChunk * vectorBytes), chunkVectors * vectorBytes);
+			chunk.order(BYTE_ORDER);
+			vectorChunks[chunkIx] = chunk.asFloatBuffer();
+		}
+		wordOffsets = channel.map(FileChannel.MapMode.READ_ONLY, offsetsOffset, 
+				(vocabSize + 1L) * Integer.BYTES).order(BYTE_ORDER).asIntBuffer();
+		hashTable = channel.map(FileChannel.MapMode.READ_ONLY, tableOffset, 
+				(long) tableSize * Integer.BYTES).order(BYTE_ORDER).asIntBuffer();
+		tableMask = tableSize - 1;
+		wordBytes = channel.map(FileChannel.MapMode.READ_ONLY, wordsOffset, wordsLength);
+	}
+	
+	/**
+	 * Open (map) an existing word vector store. The mappings outlive the channel, so we 
+	 * don't hang on to it.
+	 * 
+	 * @param fileName The .wvs file
+	 * @return The store
+	 */
+	public static WordVectorStore open(String fileName) {
+		WordVectorStore store;
+		long startMillis;
+		
+		SharedUtils.checkNotNull(fileName);
+		startMillis = System.currentTimeMillis();
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+			store = new WordVectorStore(fileName, channel);
+		} catch (IOException e) {
+			throw new AlixiaException("Unable to open word vector store " + fileName, e);
+		}
+		LOGGER.info("WordVectorStore: mapped {} word vectors, dimension {}, in {}", store.vocabSize, 
+				store.vectorSize, AlixiaUtils.formatElapsedMillis(System.currentTimeMillis() - startMillis));
+		return store;
+	}
+	
+	/**
+	 * Open the store that goes with a word2vec BIN file, building it first if it isn't there yet.
+	 * The first time through takes as long as the old load did (longer, actually, since we write 
+	 * the file); after that it's milliseconds.
+	 * 
+	 * @param binFileName The word2vec BIN format file
+	 * @return The store
+	 */
+	public static WordVectorStore openForModel(String binFileName) {
+		String storeFileName;
+		
+		SharedUtils.checkNotNull(binFileName);
+		storeFileName = binFileName + FILE_SUFFIX;
+		if (!Files.isRegularFile(Paths.get(storeFileName))) {
+			LOGGER.info("WordVectorStore: no vector store for {}, building one", binFileName);
+			build(binFileName, storeFileName);
+		} else if (!isBuiltFrom(storeFileName, binFileName)) {
+			LOGGER.info("WordVectorStore: vector store for {} is out of date, building a new one", binFileName);
+			build(binFileName, storeFileName);
+		}
+		return open(storeFileName);
+	}
+	
+	/**
+	 * See if a store was built from the BIN file as it is now, i.e. the length and modified 
+	 * time in the store header match the file's
+	 * 
+	 * @param storeFileName The .wvs file
+	 * @param binFileName The word2vec BIN format file
+	 * @return True if the store is current
+	 */
+	private static boolean isBuiltFrom(String storeFileName, String binFileName) {
+		ByteBuffer header;
+		Path binPath;
+		
+		SharedUtils.checkNotNull(storeFileName);
+		SharedUtils.checkNotNull(binFileName);
+		header = readHeader(storeFileName, HEADER_SIZE);
+		if (header == null || header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+			return false;
+		}
+		binPath = Paths.get(binFileName);
+		try {
+			return header.getLong(64) == Files.size(binPath) && 
+					header.getLong(72) == Files.getLastModifiedTime(binPath).toMillis();
+		} catch (IOException e) {
+			throw new AlixiaException("Unable to read the attributes of " + binFileName, e);
+		}
+	}
+	
+	/**
+	 * Read the header of one of our files without mapping the rest of it
+	 * 
+	 * @param fileName The file
+	 * @param headerSize The size of the header
+	 * @return The header, or null if the file is too short or can't be read
+	 */
+	static ByteBuffer readHeader(String fileName, int headerSize) {
+		ByteBuffer header;
+		
+		SharedUtils.checkNotNull(fileName);
+		header = ByteBuffer.allocate(headerSize).order(BYTE_ORDER);
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+			while (header.hasRemaining()) {
+				if (channel.read(header, header.position()) < 0) {
+					return null;
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.warn("WordVectorStore: unable to read header of {}", fileName);
+			return null;
+		}
+		return header;
+	}
+	
+	/**
+	 * Convert a word2vec BIN format file into a word vector store. We stream the BIN file 
+	 * so there's no size limit on it, and write to a temporary file that gets moved into 
+	 * place at the end, so a half-built store never gets opened. Short words are skipped 
+	 * and the last of any duplicates wins, same as WordToVecLoader.
+	 * 
+	 * @param binFileName The word2vec BIN format file
+	 * @param storeFileName The word vector store file to create
+	 */
+	public static void build(String binFileName, String storeFileName) {
+		Path storePath;
+		Path tempPath;
+		long startMillis;
+		int fileVocabSize;
+		int vectorSize;
+		String[] tokens;
+		Map<String, Integer> wordIds;
+		List<String> words;
+		byte[] rawVector;
+		float[] vector;
+		ByteBuffer vectorBuffer;
+		long vectorBytes;
+		String word;
+		Integer wordId;
+		int dupeCount;
+		long modelLength;
+		long modelModified;
+		
+		SharedUtils.checkNotNull(binFileName);
+		SharedUtils.checkNotNull(storeFileName);
+		startMillis = System.currentTimeMillis();
+		storePath = Paths.get(storeFileName);
+		tempPath = Paths.get(storeFileName + ".tmp");
+		try {
+			// get these before we read it, so a BIN file that changes under us gets converted again
+			modelLength = Files.size(Paths.get(binFileName));
+			modelModified = Files.getLastModifiedTime(Paths.get(binFileName)).toMillis();
+		} catch (IOException e) {
+			throw new AlixiaException("Unable to read the attributes of " + binFileName, e);
+		}
+		try (InputStream fileStream = new FileInputStream(binFileName);
+				DataInputStream input = new DataInputStream(new BufferedInputStream(fileStream, WRITE_BUFFER_SIZE));
+				FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, 
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			tokens = readToken(input, '\n').trim().split(" ");
+			fileVocabSize = Integer.parseInt(tokens[0]);
+			vectorSize = Integer.parseInt(tokens[1]);
+			if (!(fileVocabSize > 0) || !(vectorSize > 0)) {
+				throw new AlixiaException("Invalid vocab size and/or vector size in " + binFileName);
+			}
+			LOGGER.info("WordVectorStore: converting {} word vectors, dimension {}", fileVocabSize, vectorSize);
+			vectorBytes = (long) vectorSize * Float.BYTES;
+			rawVector = new byte[vectorSize * Float.BYTES];
+			vector = new float[vectorSize];
+			vectorBuffer = ByteBuffer.allocate(rawVector.length).order(BYTE_ORDER);
+			wordIds = new HashMap<>(fileVocabSize);
+			words = new ArrayList<>(fileVocabSize);
+			dupeCount = 0;
+			for (int lineIx = 0; lineIx < fileVocabSize; lineIx++) {
+				word = readToken(input, ' ').trim();
+				input.readFully(rawVector);
+				if (!WordToVecLoader.goodWord(word)) {
+					continue;
+				}
+				ByteBuffer.wrap(rawVector).order(BYTE_ORDER).asFloatBuffer().get(vector);
+				wordId = wordIds.get(word);
+				if (wordId == null) {
+					wordId = words.size();
+					wordIds.put(word, wordId);
+					words.add(word);
+				} else {
+					dupeCount++;
+				}
+				vectorBuffer.clear();
+				vectorBuffer.asFloatBuffer().put(WordToVecLoader.normalize(vector));
+				writeFully(channel, vectorBuffer, HEADER_SIZE + (wordId * vectorBytes));
+			}
+			// let the collector have the word map before we build the index
+			wordIds = null;
+			writeIndex(channel, words, vectorSize, modelLength, modelModified);
+			channel.force(true);
+			LOGGER.info("WordVectorStore: converted {} words with {} duplicates ignored", words.size(), dupeCount);
+		} catch (IOException e) {
+			try {
+				Files.deleteIfExists(tempPath);
+			} catch (IOException e1) {
+				LOGGER.warn("WordVectorStore: unable to delete {}", tempPath);
+			}
+			throw new AlixiaException("Unable to build word vector store from " + binFileName, e);
+		}
+		try {
+			try {
+				Files.move(tempPath, storePath, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempPath, storePath, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			throw new AlixiaException("Unable to move word vector store into place at " + storeFileName, e);
+		}
+		LOGGER.info("WordVectorStore: built {} in {}", storeFileName, 
+				AlixiaUtils.formatElapsedMillis(System.currentTimeMillis() - startMillis));
+	}
+	
+	/**
+	 * Write the vocabulary sections (offsets, hash table and word bytes) after the vectors, 
+	 * then go back and write the header.
+	 * 
+	 * @param channel The temporary store file
+	 * @param words The words, in word id order
+	 * @param vectorSize The vector dimension
+	 * @param modelLength The length of the BIN file
+	 * @param modelModified The modified time of the BIN file, in milliseconds
+	 * @throws IOException
+	 */
+	private static void writeIndex(FileChannel channel, List<String> words, int vectorSize, 
+			long modelLength, long modelModified) throws IOException {
+		int vocabSize;
+		int tableSize;
+		int tableMask;
+		int[] table;
+		int slot;
+		byte[][] encoded;
+		long wordsLength;
+		long vectorsOffset;
+		long offsetsOffset;
+		long tableOffset;
+		long wordsOffset;
+		long position;
+		ByteBuffer buffer;
+		int offset;
+		
+		SharedUtils.checkNotNull(channel);
+		SharedUtils.checkNotNull(words);
+		vocabSize = words.size();
+		encoded = new byte[vocabSize][];
+		wordsLength = 0;
+		for (int wordIx = 0; wordIx < vocabSize; wordIx++) {
+			encoded[wordIx] = words.get(wordIx).getBytes(StandardCharsets.UTF_8);
+			wordsLength += encoded[wordIx].length;
+		}
+		if (wordsLength > Integer.MAX_VALUE) {
+			throw new AlixiaException("Word vector store vocabulary is too large");
+		}
+		tableSize = Integer.highestOneBit(Math.max(2, vocabSize * 2 - 1)) << 1;
+		tableMask = tableSize - 1;
+		table = new int[tableSize];
+		for (int wordIx = 0; wordIx < vocabSize; wordIx++) {
+			slot = spread(words.get(wordIx).hashCode()) & tableMask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & tableMask;
+			}
+			table[slot] = wordIx + 1;
+		}
+		
+		vectorsOffset = HEADER_SIZE;
+		offsetsOffset = vectorsOffset + ((long) vocabSize * vectorSize * Float.BYTES);
+		tableOffset = offsetsOffset + ((vocabSize + 1L) * Integer.BYTES);
+		wordsOffset = tableOffset + ((long) tableSize * Integer.BYTES);
+		
+		buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(BYTE_ORDER);
+		position = offsetsOffset;
+		offset = 0;
+		for (int wordIx = 0; wordIx <= vocabSize; wordIx++) {
+			if (buffer.remaining() < Integer.BYTES) {
+				position += flushBuffer(channel, buffer, position);
+			}
+			buffer.putInt(offset);
+			if (wordIx < vocabSize) {
+				offset += encoded[wordIx].length;
+			}
+		}
+		for (int tableIx = 0; tableIx < tableSize; tableIx++) {
+			if (buffer.remaining() < Integer.BYTES) {
+				position += flushBuffer(channel, buffer, position);
+			}
+			buffer.putInt(table[tableIx]);
+		}
+		for (int wordIx = 0; wordIx < vocabSize; wordIx++) {
+			if (buffer.remaining() < encoded[wordIx].length) {
+				position += flushBuffer(channel, buffer, position);
+			}
+			if (encoded[wordIx].length > buffer.remaining()) {
+				// a ridiculously long "word"; write it straight out
+				writeFully(channel, ByteBuffer.wrap(encoded[wordIx]), position);
+				position += encoded[wordIx].length;
+			} else {
+				buffer.put(encoded[wordIx]);
+			}
+		}
+		flushBuffer(channel, buffer, position);
+		
+		buffer.clear();
+		buffer.putInt(MAGIC);
+		buffer.putInt(FORMAT_VERSION);
+		buffer.putInt(vocabSize);
+		buffer.putInt(vectorSize);
+		buffer.putInt(tableSize);
+		buffer.putInt(0);
+		buffer.putLong(vectorsOffset);
+		buffer.putLong(offsetsOffset);
+		buffer.putLong(tableOffset);
+		buffer.putLong(wordsOffset);
+		buffer.putLong(wordsLength);
+		buffer.putLong(modelLength);
+		buffer.putLong(modelModified);
+		flushBuffer(channel, buffer, 0);
+	}
+	
+	static int flushBuffer(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		int length;
+		
+		buffer.flip();
+		length = buffer.remaining();
+		writeFully(channel, buffer, position);
+		buffer.clear();
+		return length;
+	}
+	
+	static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		long writePosition = position;
+		
+		while (buffer.hasRemaining()) {
+			writePosition += channel.write(buffer, writePosition);
+		}
+	}
+	
+	/**
+	 * Read bytes up to the delimiter and decode them as UTF-8. Like WordToVecLoader we skip 
+	 * newlines in front of the words. Unlike WordToVecLoader we really do decode UTF-8, so 
+	 * words with accents can be found.
+	 * 
+	 * @param input The BIN file stream
+	 * @param delimiter The byte that ends the token
+	 * @return The token
+	 * @throws IOException
+	 */
+	private static String readToken(DataInputStream input, char delimiter) throws IOException {
+		byte[] bytes;
+		int length;
+		int b;
+		
+		bytes = new byte[64];
+		length = 0;
+		b = input.read();
+		while (b != delimiter) {
+			if (b < 0) {
+				throw new EOFException("Unexpected end of word2vec file");
+			}
+			if (b != '\n') {
+				if (length == bytes.length) {
+					bytes = Arrays.copyOf(bytes, length * 2);
+				}
+				bytes[length++] = (byte) b;
+			}
+			b = input.read();
+		}
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+	
+	private static int spread(int hash) {
+		int h;
+		
+		h = (hash ^ (hash >>> 16)) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	public String getFileName() {
+		
+		return fileName;
+	}
+	
+	public int getVocabSize() {
+		
+		return vocabSize;
+	}
+	
+	public int getVectorSize() {
+		
+		return vectorSize;
+	}
+	
+	/**
+	 * The length of the store file, which an index uses (with the sizes) to make sure 
+	 * it was built from this store
+	 * 
+	 * @return The file length
+	 */
+	public long getFileLength() {
+		
+		return fileLength;
+	}
+	
+	/**
+	 * The modified time of the BIN file the store was built from. The length alone won't tell 
+	 * an index that the store was rebuilt from a retrained model with the same vocabulary, so 
+	 * the index checks this too.
+	 * 
+	 * @return The modified time, in milliseconds
+	 */
+	public long getModelModified() {
+		
+		return modelModified;
+	}
+	
+	int getVectorsPerChunk() {
+		
+		return vectorsPerChunk;
+	}
+	
+	/**
+	 * Get a view of one chunk of vectors for a scan. It has its own position, so each 
+	 * thread gets its own view.
+	 * 
+	 * @param chunkIx The chunk index, i.e. word id / vectors per chunk
+	 * @return The view
+	 */
+	FloatBuffer getChunkView(int chunkIx) {
+		
+		return vectorChunks[chunkIx].duplicate();
+	}
+	
+	/**
+	 * Look up a word's id
+	 * 
+	 * @param word The word
+	 * @return The word id, or -1 if it's not in the vocabulary
+	 */
+	public int getWordId(String word) {
+		byte[] bytes;
+		int slot;
+		int entry;
+		
+		SharedUtils.checkNotNull(word);
+		bytes = word.getBytes(StandardCharsets.UTF_8);
+		slot = spread(word.hashCode()) & tableMask;
+		entry = hashTable.get(slot);
+		while (entry != 0) {
+			if (wordEquals(entry - 1, bytes)) {
+				return entry - 1;
+			}
+			slot = (slot + 1) & tableMask;
+			entry = hashTable.get(slot);
+		}
+		return -1;
+	}
+	
+	private boolean wordEquals(int wordId, byte[] bytes) {
+		int start;
+		int end;
+		
+		start = wordOffsets.get(wordId);
+		end = wordOffsets.get(wordId + 1);
+		if (end - start != bytes.length) {
+			return false;
+		}
+		for (int ix = 0; ix < bytes.length; ix++) {
+			if (wordBytes.get(start + ix) != bytes[ix]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Get the word for a word id
+	 * 
+	 * @param wordId The id
+	 * @return The word
+	 */
+	public String getWord(int wordId) {
+		int start;
+		byte[] bytes;
+		ByteBuffer view;
+		
+		if (wordId < 0 || wordId >= vocabSize) {
+			throw new IndexOutOfBoundsException("Bad word id " + wordId);
+		}
+		start = wordOffsets.get(wordId);
+		bytes = new byte[wordOffsets.get(wordId + 1) - start];
+		// absolute gets are safe to share between threads, positions are not, hence the duplicate
+		view = wordBytes.duplicate();
+		view.position(start);
+		view.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Copy a word's (normalized) vector out of the store
+	 * 
+	 * @param wordId The word id
+	 * @return A new float[] with the vector
+	 */
+	public float[] getVector(int wordId) {
+		float[] vector;
+		FloatBuffer view;
+		
+		if (wordId < 0 || wordId >= vocabSize) {
+			throw new IndexOutOfBoundsException("Bad word id " + wordId);
+		}
+		vector = new float[vectorSize];
+		view = vectorChunks[wordId / vectorsPerChunk].duplicate();
+		view.position((wordId % vectorsPerChunk) * vectorSize);
+		view.get(vector);
+		return vector;
+	}
+	
+	/**
+	 * Copy a word's vector into an existing array, to save allocating one per vector 
+	 * in a scan
+	 * 
+	 * @param wordId The word id
+	 * @param vector The array to fill, at least vectorSize long
+	 */
+	void readVector(int wordId, float[] vector) {
+		FloatBuffer view;
+		
+		view = vectorChunks[wordId / vectorsPerChunk].duplicate();
+		view.position((wordId % vectorsPerChunk) * vectorSize);
+		view.get(vector, 0, vectorSize);
+	}
+	
+	/**
+	 * Copy a word's (normalized) vector out of the store
+	 * 
+	 * @param word The word
+	 * @return A new float[] with the vector, or null if the word isn't there
+	 */
+	public float[] getVector(String word) {
+		int wordId;
+		
+		SharedUtils.checkNotNull(word);
+		wordId = getWordId(word);
+		if (wordId < 0) {
+			return null;
+		}
+		return getVector(wordId);
+	}
+	
+	/**
+	 * The dot product of a vector with a stored vector, read in place. Since both are 
+	 * normalized it's the cosine distance.
+	 * 
+	 * @param vector The vector to compare
+	 * @param wordId The word id of the stored vector
+	 * @return The cosine distance
+	 */
+	public double dot(float[] vector, int wordId) {
+		FloatBuffer chunk;
+		int base;
+		double sum = 0.0;
+		
+		chunk = vectorChunks[wordId / vectorsPerChunk];
+		base = (wordId % vectorsPerChunk) * vectorSize;
+		for (int ix = 0; ix < vectorSize; ix++) {
+			sum += vector[ix] * chunk.get(base + ix);
+		}
+		return sum;
+	}
+	
+	@Override
+	public String toString() {
+		
+		return "WordVectorStore " + fileName + ": " + vocabSize + " words, dimension " + vectorSize;
+	}
+}
@@ -129,6 +129,20 @@ public class FoxtrotAction extends RoomActionObject {
 				sb.append("For Linux systems, check \"man sensors.conf\".\n");
 			}
 		}
+		if (state.getStageTimings() != null && !state.getStageTimings().isEmpty()) {
+			sb.append("Here's where my time has been going:\n");
+			for (String timing : state.getStageTimings()) {
+				sb.append(timing);
+				sb.append("\n");
+			}
+		}
+		if (state.getCacheReport() != null && !state.getCacheReport().isEmpty()) {
+			sb.append("And here's how my caches are doing:\n");
+			for (String cache : state.getCacheReport()) {
+				sb.append(cache);
+				sb.append("\n");
+			}
+		}
 		sb.append("I scored ");
 		sb.append(score);
 		sb.append(" points out of ");
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Set;
 
 import com.hulles.alixia.api.shared.SerialSememe;
+import com.hulles.alixia.api.tools.StageTimer;
 import com.hulles.alixia.crypto.PurdahKeys;
 import com.hulles.alixia.crypto.PurdahKeys.PurdahKey;
 import com.hulles.alixia.foxtrot.monitor.FoxtrotPhysicalState;
@@ -38,6 +39,7 @@ import com.hulles.alixia.room.document.RoomRequest;
 import com.hulles.alixia.room.document.RoomResponse;
 import com.hulles.alixia.ticket.ActionPackage;
 import com.hulles.alixia.ticket.SememePackage;
+import com.hulles.alixia.tools.CacheReports;
 
 /**
  * Foxtrot Room is where Alixia can query herself about her own status and health. 
@@ -85,6 +87,8 @@ public final class FoxtrotRoom extends UrRoom {
 		pkg = new ActionPackage(sparkPkg);
 		action = new FoxtrotAction();
 		state = sysMonitor.getFoxtrotPhysicalState();
+		state.setStageTimings(StageTimer.getStageReport());
+		state.setCacheReport(CacheReports.getCacheReport());
 		action.setState(state);
 		pkg.setActionObject(action);
 		return pkg;
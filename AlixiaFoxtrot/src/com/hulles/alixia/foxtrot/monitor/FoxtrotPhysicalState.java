@@ -81,6 +81,8 @@ final public class FoxtrotPhysicalState {
 	private Map<String, SensorValue> sensorValues;
 	private List<FoxtrotFS> fileSystems;
 	private List<NetworkDevice> networkDevices;
+	private List<String> stageTimings;
+	private List<String> cacheReport;
 	
 	public Map<String, SensorValue> getSensorValues() {
 		
@@ -455,6 +457,28 @@ final public class FoxtrotPhysicalState {
 		this.lanHosts = lanHosts;
 	}
 
+	public List<String> getStageTimings() {
+		
+		return stageTimings;
+	}
+
+	public void setStageTimings(List<String> stageTimings) {
+		
+		SharedUtils.checkNotNull(stageTimings);
+		this.stageTimings = stageTimings;
+	}
+
+	public List<String> getCacheReport() {
+		
+		return cacheReport;
+	}
+
+	public void setCacheReport(List<String> cacheReport) {
+		
+		SharedUtils.checkNotNull(cacheReport);
+		this.cacheReport = cacheReport;
+	}
+
 	public List<NetworkDevice> getNetworkDevices() {
 		
 		return networkDevices;
@@ -756,6 +780,22 @@ final public class FoxtrotPhysicalState {
 		sb.append("<dd>");
         sb.append(this.haveDatabase());
         sb.append("</dd>\n");
+		if (stageTimings != null && !stageTimings.isEmpty()) {
+			sb.append("<dt>Stage Timings</dt>\n");
+			for (String timing : stageTimings) {
+				sb.append("<dd>");
+				sb.append(timing);
+				sb.append("</dd>\n");
+			}
+		}
+		if (cacheReport != null && !cacheReport.isEmpty()) {
+			sb.append("<dt>Caches</dt>\n");
+			for (String cache : cacheReport) {
+				sb.append("<dd>");
+				sb.append(cache);
+				sb.append("</dd>\n");
+			}
+		}
 		sb.append("</dl>\n");
 		return sb.toString();
 	}
@@ -38,7 +38,7 @@ import org.slf4j.LoggerFactory;
 
 import com.hulles.alixia.api.shared.AlixiaException;
 import com.hulles.alixia.api.shared.SharedUtils;
-import com.hulles.alixia.api.tools.AlixiaTimer;
+import com.hulles.alixia.api.tools.AlixiaUtils;
 
 /**
  * Class that scans ip local network. Any address in the range 192.168.xxx.xxx is
@@ -169,11 +169,13 @@ public final class LanScanner {
 	private static Set<String> scanLan(String ip) {
 		LanScanner lanScanner;
 		Set<String> upHosts;
+		long startMillis;
 		
-		AlixiaTimer.startTimer(ip);
+		startMillis = System.currentTimeMillis();
 		lanScanner = new LanScanner(ip);
 		upHosts = lanScanner.getLiveHosts();
-		AlixiaTimer.stopTimer(ip);
+		LOGGER.debug("Scan of {} took {}", ip, 
+				AlixiaUtils.formatElapsedMillis(System.currentTimeMillis() - startMillis));
 		
 		for (String host : upHosts) {
 			LOGGER.info("Host {} is up", host);
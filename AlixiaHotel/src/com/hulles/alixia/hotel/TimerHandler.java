@@ -35,10 +35,8 @@ import org.slf4j.LoggerFactory;
 
 import com.hulles.alixia.api.AlixiaConstants;
 import com.hulles.alixia.api.dialog.DialogResponse;
-import com.hulles.alixia.api.jebus.JebusBible;
 import com.hulles.alixia.api.jebus.JebusBible.JebusKey;
-import com.hulles.alixia.api.jebus.JebusHub;
-import com.hulles.alixia.api.jebus.JebusPool;
+import com.hulles.alixia.api.jebus.JebusCounter;
 import com.hulles.alixia.api.object.MediaObject;
 import com.hulles.alixia.api.remote.AlixianID;
 import com.hulles.alixia.api.shared.SerialSememe;
@@ -47,8 +45,6 @@ import com.hulles.alixia.house.ClientDialogResponse;
 import com.hulles.alixia.media.Language;
 import com.hulles.alixia.room.document.ClientObjectWrapper;
 
-import redis.clients.jedis.Jedis;
-
 final class TimerHandler implements Closeable {
     private final static Logger LOGGER = LoggerFactory.getLogger(TimerHandler.class);
 	private final static int LED_ON_MINUTES = 2;
@@ -322,13 +318,7 @@ final class TimerHandler implements Closeable {
 	}
 	
 	static long getNewTimerID() {
-		JebusPool jebusPool;
-        String key;
-        
-		jebusPool = JebusHub.getJebusLocal();
-		try (Jedis jebus = jebusPool.getResource()) {
-			 key = JebusBible.getStringKey(JebusKey.ALIXIATIMERCOUNTERKEY, jebusPool);
-			return jebus.incr(key);
-		}		
+		
+		return JebusCounter.getCounter(JebusKey.ALIXIATIMERCOUNTERKEY).next();
 	}
 }
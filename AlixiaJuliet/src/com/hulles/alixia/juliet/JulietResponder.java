@@ -22,23 +22,109 @@
 package com.hulles.alixia.juliet;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.hulles.alixia.api.shared.SharedUtils;
-import com.hulles.alixia.api.tools.AlixiaTimer;
+import com.hulles.alixia.api.tools.AlixiaUtils;
+import com.hulles.alixia.api.tools.StageTimer;
 import com.hulles.alixia.cayenne.NbestAnswer;
 import com.hulles.alixia.cayenne.Nfl6Question;
 import com.hulles.alixia.juliet.fuzzywuzzy.FuzzySearch;
 import com.hulles.alixia.juliet.fuzzywuzzy.model.ExtractedResult;
 import com.hulles.alixia.tools.FuzzyMatch;
 
+/**
+ * JulietResponder matches the user's question against the NFL6 questions with FuzzyWuzzy 
+ * and with FuzzyMatch. Rather than score all 90,000-odd questions for every query, we use 
+ * a QuestionIndex to shortlist a few hundred likely ones and score those. Every so often 
+ * a query also gets the full scan, in the background, so ShortlistAudit can measure the 
+ * shortlist's recall and grow the shortlist if it isn't good enough.
+ * 
+ * @author hulles
+ *
+ */
 public final class JulietResponder {
+	private final static Logger LOGGER = LoggerFactory.getLogger(JulietResponder.class);
+	private final static StageTimer FW_TIMER = StageTimer.forStage("Juliet FuzzyWuzzy");
+	private final static StageTimer FM_TIMER = StageTimer.forStage("Juliet FuzzyMatch");
+	private final static int AUDIT_QUEUE_DEPTH = 4;
 	private final List<String> nfl6Questions;
+	private final QuestionIndex questionIndex;
+	private final ShortlistAudit fwAudit;
+	private final ShortlistAudit fmAudit;
+	private final ExecutorService auditExecutor;
+	private final AtomicLong droppedAudits;
 	
 	public JulietResponder() {
+		long startMillis;
 		
 		nfl6Questions = new ArrayList<>(90000);
 		prepQAs();
+		startMillis = System.currentTimeMillis();
+		questionIndex = new QuestionIndex(nfl6Questions);
+		LOGGER.info("JulietResponder: indexed {} questions, {} trigrams, in {}", questionIndex.size(), 
+				questionIndex.getTrigramCount(), AlixiaUtils.formatElapsedMillis(System.currentTimeMillis() - startMillis));
+		fwAudit = new ShortlistAudit("FuzzyWuzzy");
+		fmAudit = new ShortlistAudit("FuzzyMatch");
+		droppedAudits = new AtomicLong();
+		auditExecutor = newAuditExecutor();
+	}
+	
+	/**
+	 * The audits are full scans, so they get their own thread and a short queue. If the 
+	 * audits can't keep up we drop them and count it; we don't want them running on the 
+	 * request thread, which is what a shared bounded executor would do.
+	 * 
+	 * @return The audit executor
+	 */
+	private ExecutorService newAuditExecutor() {
+		ThreadFactory factory;
+		
+		factory = new ThreadFactoryBuilder()
+				.setNameFormat("Juliet-audit-%d")
+				.setDaemon(true)
+				.build();
+		return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, 
+				new ArrayBlockingQueue<Runnable>(AUDIT_QUEUE_DEPTH), factory, 
+				new RejectedExecutionHandler() {
+					@Override
+					public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+						
+						if (!executor.isShutdown()) {
+							droppedAudits.incrementAndGet();
+						}
+					}
+				});
+	}
+	
+	/**
+	 * Get the questions worth scoring for the input: the shortlist, or all of them if the 
+	 * input doesn't share a single trigram with any question
+	 * 
+	 * @param input The user's question
+	 * @param audit The audit with the current shortlist size
+	 * @return The candidate questions
+	 */
+	private List<String> getCandidates(String input, ShortlistAudit audit) {
+		List<String> candidates;
+		
+		candidates = questionIndex.getShortlist(input, audit.getShortlistSize());
+		if (candidates.isEmpty()) {
+			return nfl6Questions;
+		}
+		return candidates;
 	}
 	
 	public void getFWMatchingQuestions(String input, int bestNAnswers,
@@ -49,12 +135,16 @@ public final class JulietResponder {
 		List<NbestAnswer> dbNBestAnswers;
 		List<String> serialAnswers;
 		List<Nfl6Question> dbQuestions;
-		Long et;
+		long startNanos;
+		long elapsedNanos;
 		
 		SharedUtils.checkNotNull(input);
 		SharedUtils.checkNotNull(bestNAnswers);
-		AlixiaTimer.startTimer("JulietFW");
-		results = FuzzySearch.extractTop(input, nfl6Questions, bestNAnswers);
+		startNanos = System.nanoTime();
+		results = FuzzySearch.extractTop(input, getCandidates(input, fwAudit), bestNAnswers);
+		if (fwAudit.countQuery()) {
+			auditFW(input, bestNAnswers, results);
+		}
 		serialQuestions = new ArrayList<>(results.size());
 		for (ExtractedResult result : results) {
 			// getNfl6Question might return multiple iterations of the same question
@@ -78,8 +168,9 @@ public final class JulietResponder {
 				serialQuestions.add(serialQuestion);
 			}
 		}
-		et = AlixiaTimer.stopTimer("JulietFW");
-		queryResponse.setFWElapsed(et);
+		elapsedNanos = System.nanoTime() - startNanos;
+		FW_TIMER.record(elapsedNanos);
+		queryResponse.setFWElapsed(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
 		queryResponse.setFWQuestionList(serialQuestions);
 	}
 	
@@ -90,15 +181,61 @@ public final class JulietResponder {
 		List<NbestAnswer> dbNBestAnswers;
 		List<String> serialAnswers;
 		List<Nfl6Question> dbQuestions;
-		Long et;
+		long startNanos;
+		long elapsedNanos;
+		List<ExtractedResult> results;
+		
+		SharedUtils.checkNotNull(input);
+		SharedUtils.checkNotNull(bestNAnswers);
+		startNanos = System.nanoTime();
+		results = getFMTopQuestions(input, getCandidates(input, fmAudit), bestNAnswers);
+		if (fmAudit.countQuery()) {
+			auditFM(input, bestNAnswers, results);
+		}
+		serialQuestions = new ArrayList<>(bestNAnswers);
+		for (int i=0; i<bestNAnswers; i++) {
+			// getNfl6Question might return multiple iterations of the same question
+			//    with, presumably, different answers; as a result, you might ask for 3 bestNAnswers
+			//    and receive 196 serial question objects back from this method.... TODO find a way
+			//    to winnow the set of questions resulting from e.g. "What is the meaning of life?" 
+			//    to the n best, n being a small integer....
+			dbQuestions = Nfl6Question.getNfl6Question(results.get(i).getString());
+			for (Nfl6Question dbQuestion : dbQuestions) {
+				serialQuestion = new ScratchNfl6Question();
+				serialQuestion.setQuestion(dbQuestion.getQuestion());
+				serialQuestion.setBestAnswer(dbQuestion.getBestAnswer());
+				serialQuestion.setMainCategory(dbQuestion.getNfl6Category().getCategoryName());
+				serialQuestion.setScore(results.get(i).getScore());
+				dbNBestAnswers = dbQuestion.getNbestAnswers();
+				serialAnswers = new ArrayList<>(dbNBestAnswers.size());
+				for (NbestAnswer dbAnswer : dbNBestAnswers) {
+					serialAnswers.add(dbAnswer.getAnswer());
+				}
+				serialQuestion.setnBestAnswers(serialAnswers);
+				serialQuestions.add(serialQuestion);
+			}
+		}
+		elapsedNanos = System.nanoTime() - startNanos;
+		FM_TIMER.record(elapsedNanos);
+		queryResponse.setFMElapsed(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+		queryResponse.setFMQuestionList(serialQuestions);
+	}
+	
+	/**
+	 * The FuzzyMatch scan, for whichever questions we're given
+	 * 
+	 * @param input The user's question
+	 * @param questions The questions to score
+	 * @param bestNAnswers The number of results
+	 * @return The top questions and their ratios
+	 */
+	private static List<ExtractedResult> getFMTopQuestions(String input, Collection<String> questions, int bestNAnswers) {
 		List<String> topQuestions;
 		List<Integer> topRatios;
+		List<ExtractedResult> results;
 		int ratio;
 		int lastRatioIx;
 		
-		SharedUtils.checkNotNull(input);
-		SharedUtils.checkNotNull(bestNAnswers);
-		AlixiaTimer.startTimer("JulietFM");		
 		lastRatioIx = bestNAnswers - 1;
 		topQuestions = new ArrayList<>(bestNAnswers);
 		topRatios = new ArrayList<>(bestNAnswers);
@@ -106,7 +243,7 @@ public final class JulietResponder {
 			topQuestions.add("");
 			topRatios.add(0);
 		}
-		for (String question : nfl6Questions) {
+		for (String question : questions) {
 			ratio = FuzzyMatch.getRatio(input, question, false);
 			for (int i=0; i<bestNAnswers; i++) {
 				if (ratio > topRatios.get(i)) {
@@ -120,32 +257,65 @@ public final class JulietResponder {
 				}
 			}
 		}
-		serialQuestions = new ArrayList<>(bestNAnswers);
+		results = new ArrayList<>(bestNAnswers);
 		for (int i=0; i<bestNAnswers; i++) {
-			// getNfl6Question might return multiple iterations of the same question
-			//    with, presumably, different answers; as a result, you might ask for 3 bestNAnswers
-			//    and receive 196 serial question objects back from this method.... TODO find a way
-			//    to winnow the set of questions resulting from e.g. "What is the meaning of life?" 
-			//    to the n best, n being a small integer....
-			dbQuestions = Nfl6Question.getNfl6Question(topQuestions.get(i));
-			for (Nfl6Question dbQuestion : dbQuestions) {
-				serialQuestion = new ScratchNfl6Question();
-				serialQuestion.setQuestion(dbQuestion.getQuestion());
-				serialQuestion.setBestAnswer(dbQuestion.getBestAnswer());
-				serialQuestion.setMainCategory(dbQuestion.getNfl6Category().getCategoryName());
-				serialQuestion.setScore(topRatios.get(i));
-				dbNBestAnswers = dbQuestion.getNbestAnswers();
-				serialAnswers = new ArrayList<>(dbNBestAnswers.size());
-				for (NbestAnswer dbAnswer : dbNBestAnswers) {
-					serialAnswers.add(dbAnswer.getAnswer());
-				}
-				serialQuestion.setnBestAnswers(serialAnswers);
-				serialQuestions.add(serialQuestion);
+			results.add(new ExtractedResult(topQuestions.get(i), topRatios.get(i)));
+		}
+		return results;
+	}
+	
+	/**
+	 * Run the full FuzzyWuzzy scan in the background and let the audit compare it with 
+	 * what the shortlist got us
+	 */
+	private void auditFW(final String input, final int bestNAnswers, final List<ExtractedResult> shortlistResults) {
+		
+		auditExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				fwAudit.record(shortlistResults, FuzzySearch.extractTop(input, nfl6Questions, bestNAnswers));
+			}
+		});
+	}
+	
+	/**
+	 * Run the full FuzzyMatch scan in the background and let the audit compare it with 
+	 * what the shortlist got us
+	 */
+	private void auditFM(final String input, final int bestNAnswers, final List<ExtractedResult> shortlistResults) {
+		
+		auditExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				fmAudit.record(shortlistResults, getFMTopQuestions(input, nfl6Questions, bestNAnswers));
 			}
+		});
+	}
+	
+	/**
+	 * Report how the shortlists are doing
+	 * 
+	 * @return One line per matcher, plus how many audits we dropped
+	 */
+	public List<String> getShortlistReport() {
+		List<String> report;
+		
+		report = new ArrayList<>(3);
+		report.add(fwAudit.toString());
+		report.add(fmAudit.toString());
+		report.add("Dropped audits: " + droppedAudits.get());
+		return report;
+	}
+	
+	/**
+	 * Shut down the audit executor and log the shortlist report
+	 */
+	public void close() {
+		
+		auditExecutor.shutdownNow();
+		for (String line : getShortlistReport()) {
+			LOGGER.info("JulietResponder: {}", line);
 		}
-		et = AlixiaTimer.stopTimer("JulietFM");
-		queryResponse.setFMElapsed(et);
-		queryResponse.setFMQuestionList(serialQuestions);
 	}
 	
 	private void prepQAs() {
@@ -81,6 +81,9 @@ public final class JulietRoom extends UrRoom {
 	@Override
 	protected void roomShutdown() {
 		
+		if (responder != null) {
+			responder.close();
+		}
 	}
 	
 	@Override
@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.juliet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.hulles.alixia.api.shared.SharedUtils;
+
+/**
+ * QuestionIndex is a character trigram inverted index over the NFL6 questions, so we can 
+ * pick out a shortlist of likely questions for the fuzzy scorers instead of running them 
+ * over all 90,000-odd. For each trigram we keep the (sorted) indexes of the questions that 
+ * have it; a query adds up its trigrams' lists to get the overlap with every question that 
+ * shares any trigram at all.
+ * <p>
+ * The shortlist is half the best questions by Dice coefficient (good for questions about 
+ * the same length as the query) and half by containment, i.e. overlap over the smaller 
+ * trigram count (good for the partial and token set ratios, where one is mostly inside 
+ * the other).
+ * 
+ * @author hulles
+ *
+ */
+final class QuestionIndex {
+	private final List<String> questions;
+	private final Map<String, int[]> postings;
+	private final int[] gramCounts;
+	
+	QuestionIndex(List<String> questions) {
+		Map<String, int[]> fill;
+		Set<String> grams;
+		int[] posting;
+		
+		SharedUtils.checkNotNull(questions);
+		this.questions = Collections.unmodifiableList(new ArrayList<>(questions));
+		gramCounts = new int[questions.size()];
+		
+		// first pass counts the questions per trigram, second pass fills in the lists
+		fill = new HashMap<>();
+		for (int questionIx = 0; questionIx < questions.size(); questionIx++) {
+			grams = getTrigrams(questions.get(questionIx));
+			gramCounts[questionIx] = grams.size();
+			for (String gram : grams) {
+				posting = fill.get(gram);
+				if (posting == null) {
+					posting = new int[1];
+					fill.put(gram, posting);
+				}
+				posting[0]++;
+			}
+		}
+		postings = new HashMap<>(fill.size() * 2);
+		for (Map.Entry<String, int[]> entry : fill.entrySet()) {
+			postings.put(entry.getKey(), new int[entry.getValue()[0]]);
+			entry.getValue()[0] = 0;
+		}
+		for (int questionIx = 0; questionIx < questions.size(); questionIx++) {
+			for (String gram : getTrigrams(questions.get(questionIx))) {
+				posting = fill.get(gram);
+				postings.get(gram)[posting[0]++] = questionIx;
+			}
+		}
+	}
+	
+	int size() {
+		
+		return questions.size();
+	}
+	
+	int getTrigramCount() {
+		
+		return postings.size();
+	}
+	
+	/**
+	 * Get the shortlist of questions most likely to score well against the query
+	 * 
+	 * @param query The user's question
+	 * @param shortlistSize The most questions to return
+	 * @return The shortlist, empty if the query has no trigrams in common with any question
+	 */
+	List<String> getShortlist(String query, int shortlistSize) {
+		Set<String> queryGrams;
+		int queryCount;
+		int[] overlaps;
+		int[] touched;
+		int touchedCount;
+		int[] posting;
+		long[] diceHeap;
+		long[] containHeap;
+		int diceSize;
+		int containSize;
+		int diceCount;
+		int containCount;
+		int questionIx;
+		float dice;
+		float contain;
+		List<String> shortlist;
+		
+		SharedUtils.checkNotNull(query);
+		queryGrams = getTrigrams(query);
+		queryCount = queryGrams.size();
+		if (queryCount == 0 || shortlistSize < 1) {
+			return Collections.emptyList();
+		}
+		overlaps = new int[questions.size()];
+		touched = new int[questions.size()];
+		touchedCount = 0;
+		for (String gram : queryGrams) {
+			posting = postings.get(gram);
+			if (posting == null) {
+				continue;
+			}
+			for (int ix : posting) {
+				if (overlaps[ix] == 0) {
+					touched[touchedCount++] = ix;
+				}
+				overlaps[ix]++;
+			}
+		}
+		
+		diceSize = Math.max(1, (shortlistSize + 1) / 2);
+		containSize = Math.max(1, shortlistSize - diceSize);
+		diceHeap = new long[diceSize];
+		containHeap = new long[containSize];
+		diceCount = 0;
+		containCount = 0;
+		for (int ix = 0; ix < touchedCount; ix++) {
+			questionIx = touched[ix];
+			dice = (2.0f * overlaps[questionIx]) / (queryCount + gramCounts[questionIx]);
+			contain = (float) overlaps[questionIx] / Math.min(queryCount, gramCounts[questionIx]);
+			diceCount = offer(diceHeap, diceCount, makeKey(dice, questionIx));
+			containCount = offer(containHeap, containCount, makeKey(contain, questionIx));
+		}
+		
+		// merge the two, dropping duplicates; we reuse overlaps to mark the ones we've taken
+		shortlist = new ArrayList<>(diceCount + containCount);
+		for (int ix = 0; ix < diceCount; ix++) {
+			questionIx = (int) diceHeap[ix];
+			overlaps[questionIx] = -1;
+			shortlist.add(questions.get(questionIx));
+		}
+		for (int ix = 0; ix < containCount; ix++) {
+			questionIx = (int) containHeap[ix];
+			if (overlaps[questionIx] != -1) {
+				shortlist.add(questions.get(questionIx));
+			}
+		}
+		return shortlist;
+	}
+	
+	/**
+	 * Pack a (non-negative) score and a question index into a long that sorts by score. 
+	 * The bits of a non-negative float sort the same way the float does.
+	 * 
+	 * @return The key
+	 */
+	private static long makeKey(float score, int questionIx) {
+		
+		return ((long) Float.floatToIntBits(score) << 32) | questionIx;
+	}
+	
+	/**
+	 * Add a key to a bounded min-heap of keys, replacing the smallest if it's full
+	 * 
+	 * @param heap The heap
+	 * @param count The number of keys in it now
+	 * @return The new number of keys
+	 */
+	private static int offer(long[] heap, int count, long key) {
+		int child;
+		int parent;
+		long temp;
+		
+		if (count < heap.length) {
+			heap[count] = key;
+			child = count;
+			while (child > 0) {
+				parent = (child - 1) >>> 1;
+				if (heap[parent] <= heap[child]) {
+					break;
+				}
+				temp = heap[parent];
+				heap[parent] = heap[child];
+				heap[child] = temp;
+				child = parent;
+			}
+			return count + 1;
+		}
+		if (key <= heap[0]) {
+			return count;
+		}
+		heap[0] = key;
+		parent = 0;
+		child = 1;
+		while (child < count) {
+			if (child + 1 < count && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (heap[parent] <= heap[child]) {
+				break;
+			}
+			temp = heap[parent];
+			heap[parent] = heap[child];
+			heap[child] = temp;
+			parent = child;
+			child = 2 * parent + 1;
+		}
+		return count;
+	}
+	
+	/**
+	 * Get the distinct trigrams of a string after lower-casing it, turning anything that 
+	 * isn't a letter or digit into a space, and squeezing the spaces; we pad the ends with 
+	 * a space so short words and word boundaries count too.
+	 * 
+	 * @param text The string
+	 * @return Its trigrams
+	 */
+	static Set<String> getTrigrams(String text) {
+		StringBuilder sb;
+		char c;
+		boolean lastSpace;
+		Set<String> grams;
+		
+		SharedUtils.checkNotNull(text);
+		sb = new StringBuilder(text.length() + 2);
+		sb.append(' ');
+		lastSpace = true;
+		for (int ix = 0; ix < text.length(); ix++) {
+			c = text.charAt(ix);
+			if (Character.isLetterOrDigit(c)) {
+				sb.append(Character.toLowerCase(c));
+				lastSpace = false;
+			} else if (!lastSpace) {
+				sb.append(' ');
+				lastSpace = true;
+			}
+		}
+		if (!lastSpace) {
+			sb.append(' ');
+		}
+		grams = new HashSet<>(sb.length() * 2);
+		for (int ix = 0; ix + 3 <= sb.length(); ix++) {
+			grams.add(sb.substring(ix, ix + 3));
+		}
+		return grams;
+	}
+}
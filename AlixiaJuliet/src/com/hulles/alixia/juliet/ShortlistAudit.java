@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.juliet;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.juliet.fuzzywuzzy.model.ExtractedResult;
+
+/**
+ * ShortlistAudit keeps score on how well the QuestionIndex shortlist is doing. Every so often 
+ * a query gets run against all the questions as well as the shortlist, and we count the ranks 
+ * where the shortlist result scored at least as well as the full scan did. If the recall over 
+ * the latest audits falls below the target, the shortlist doubles in size (up to a limit), so 
+ * the recall we promise is one we've actually measured.
+ * 
+ * @author hulles
+ *
+ */
+final class ShortlistAudit {
+	private final static Logger LOGGER = LoggerFactory.getLogger(ShortlistAudit.class);
+	private final static int AUDIT_INTERVAL = 50;
+	private final static int WINDOW_RESULTS = 100;
+	private final static double TARGET_RECALL = 0.99;
+	private final static int INITIAL_SHORTLIST = 400;
+	private final static int MAX_SHORTLIST = 6400;
+	private final String name;
+	private final AtomicLong queryCount = new AtomicLong();
+	private final AtomicLong auditCount = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong possible = new AtomicLong();
+	private volatile int shortlistSize = INITIAL_SHORTLIST;
+	private int windowHits = 0;
+	private int windowPossible = 0;
+	
+	ShortlistAudit(String name) {
+		
+		SharedUtils.checkNotNull(name);
+		this.name = name;
+	}
+	
+	int getShortlistSize() {
+		
+		return shortlistSize;
+	}
+	
+	/**
+	 * Count a query, and say whether it should be audited
+	 * 
+	 * @return True if this query should also get a full scan
+	 */
+	boolean countQuery() {
+		
+		return queryCount.incrementAndGet() % AUDIT_INTERVAL == 0;
+	}
+	
+	/**
+	 * Compare the shortlist results with the full scan results for the same query and adjust 
+	 * the shortlist size if need be
+	 * 
+	 * @param shortlistResults The results from the shortlist, best first
+	 * @param fullResults The results from all the questions, best first
+	 */
+	synchronized void record(List<ExtractedResult> shortlistResults, List<ExtractedResult> fullResults) {
+		int auditHits = 0;
+		int newSize;
+		
+		SharedUtils.checkNotNull(shortlistResults);
+		SharedUtils.checkNotNull(fullResults);
+		for (int ix = 0; ix < fullResults.size(); ix++) {
+			if (ix < shortlistResults.size() && 
+					shortlistResults.get(ix).getScore() >= fullResults.get(ix).getScore()) {
+				auditHits++;
+			}
+		}
+		auditCount.incrementAndGet();
+		hits.addAndGet(auditHits);
+		possible.addAndGet(fullResults.size());
+		windowHits += auditHits;
+		windowPossible += fullResults.size();
+		if (windowPossible >= WINDOW_RESULTS) {
+			if ((double) windowHits / windowPossible < TARGET_RECALL && shortlistSize < MAX_SHORTLIST) {
+				newSize = Math.min(MAX_SHORTLIST, shortlistSize * 2);
+				LOGGER.info("ShortlistAudit {}: recall {} is under {}, shortlist going from {} to {}", name, 
+						String.format("%.3f", (double) windowHits / windowPossible), TARGET_RECALL, shortlistSize, newSize);
+				shortlistSize = newSize;
+			}
+			windowHits = 0;
+			windowPossible = 0;
+		}
+	}
+	
+	/**
+	 * The recall over all the audits so far
+	 * 
+	 * @return The recall, or 1 if there haven't been any audits
+	 */
+	double getRecall() {
+		long possibleCount;
+		
+		possibleCount = possible.get();
+		if (possibleCount == 0) {
+			return 1.0;
+		}
+		return (double) hits.get() / possibleCount;
+	}
+	
+	@Override
+	public String toString() {
+		
+		return String.format("%s shortlist: size %d, %d queries, %d audited, recall %.3f", name, 
+				shortlistSize, queryCount.get(), auditCount.get(), getRecall());
+	}
+}
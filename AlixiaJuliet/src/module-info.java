@@ -13,5 +13,6 @@ module com.hulles.alixia.juliet {
 	requires transitive com.hulles.alixia;
 	requires com.hulles.alixia.api;
 	requires com.hulles.alixia.cayenne;
+	requires org.slf4j;
 	// to here
 }
\ No newline at end of file
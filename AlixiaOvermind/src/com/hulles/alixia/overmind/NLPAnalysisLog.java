@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Copyright © 2017, 2018 Hulles Industries LLC
+ * All rights reserved
+ *  
+ * This file is part of Alixia.
+ *  
+ * Alixia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *    
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifer: GPL-3.0-or-later
+ *******************************************************************************/
+package com.hulles.alixia.overmind;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.hulles.alixia.api.jebus.JebusBible;
+import com.hulles.alixia.api.jebus.JebusBible.JebusKey;
+import com.hulles.alixia.api.jebus.JebusHub;
+import com.hulles.alixia.api.jebus.JebusPool;
+import com.hulles.alixia.api.shared.AlixiaException;
+import com.hulles.alixia.api.shared.SharedUtils;
+import com.hulles.alixia.api.tools.StageTimer;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+/**
+ * NLPAnalysisLog keeps the last MAXNLPITEMS analysis explanations in Jebus for us to pore
+ * over later. Explanations are buffered here and the writer thread pushes them to Jebus in
+ * one pipeline every FLUSH_INTERVAL milliseconds, trimming the list once per batch, so 
+ * nobody waits on Jebus to get their answer.
+ * <p>
+ * The buffer is bounded. If it fills up (i.e. Jebus is slow or gone) the OverflowPolicy 
+ * decides which explanation gets thrown away; either way the caller never waits.
+ * 
+ * @author hulles
+ *
+ */
+public final class NLPAnalysisLog {
+	private final static Logger LOGGER = LoggerFactory.getLogger(NLPAnalysisLog.class);
+	final static long MAXNLPITEMS = 20L;
+	final static long FLUSH_INTERVAL = 500; // milliseconds
+	private final static int MAX_PENDING = 64;
+	private final static BlockingQueue<String> PENDING = new ArrayBlockingQueue<>(MAX_PENDING);
+	private final static AtomicLong DROPPED = new AtomicLong();
+	private final static StageTimer REDIS_TIMER = StageTimer.forStage(StageTimer.REDIS);
+	private static volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+	private static ScheduledExecutorService writer = null;
+	private static boolean closed = false;
+	
+	private NLPAnalysisLog() {
+		// need to keep this private
+	}
+	
+	/**
+	 * Set what happens when the buffer is full.
+	 * 
+	 * @param policy The overflow policy
+	 */
+	public static void setOverflowPolicy(OverflowPolicy policy) {
+		
+		SharedUtils.checkNotNull(policy);
+		LOGGER.info("NLPAnalysisLog: overflow policy is {}", policy);
+		overflowPolicy = policy;
+	}
+	
+	/**
+	 * Get the current overflow policy.
+	 * 
+	 * @return The overflow policy
+	 */
+	public static OverflowPolicy getOverflowPolicy() {
+		
+		return overflowPolicy;
+	}
+	
+	/**
+	 * Get the number of explanations thrown away because the buffer was full.
+	 * 
+	 * @return The dropped count
+	 */
+	public static long getDroppedCount() {
+		
+		return DROPPED.get();
+	}
+	
+	/**
+	 * Queue an explanation to be written to Jebus. This never blocks.
+	 * 
+	 * @param explanation The analysis explanation
+	 */
+	static void log(String explanation) {
+		
+		SharedUtils.checkNotNull(explanation);
+		if (isClosed()) {
+			// Jebus is on its way out, so we just lose it
+			return;
+		}
+		ensureWriter();
+		while (!PENDING.offer(explanation)) {
+			DROPPED.incrementAndGet();
+			if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+				LOGGER.debug("NLPAnalysisLog: buffer full, dropping new explanation");
+				return;
+			}
+			// DROP_OLDEST: make room and try again; the writer may have beaten us to it
+			PENDING.poll();
+		}
+	}
+	
+	/**
+	 * Start the writer the first time somebody needs it.
+	 * 
+	 */
+	private static synchronized void ensureWriter() {
+		ThreadFactory factory;
+		
+		if (writer != null || closed) {
+			return;
+		}
+		factory = new ThreadFactoryBuilder()
+				.setNameFormat("NLPLog-writer-%d")
+				.setDaemon(true)
+				.build();
+		writer = Executors.newSingleThreadScheduledExecutor(factory);
+		writer.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					flush();
+				} catch (RuntimeException ex) {
+					LOGGER.error("NLPAnalysisLog: unable to write analyses", ex);
+				}
+			}
+		}, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				
+				if (isClosed()) {
+					return;
+				}
+				flush();
+			}
+		}));
+	}
+	
+	/**
+	 * Stop the writer and write what's left in the buffer. This needs to happen before the
+	 * Jebus pools are destroyed, so Overmind calls it when its room shuts down.
+	 * 
+	 */
+	static void close() {
+		ScheduledExecutorService oldWriter;
+		
+		synchronized (NLPAnalysisLog.class) {
+			closed = true;
+			oldWriter = writer;
+			writer = null;
+		}
+		if (oldWriter != null) {
+			oldWriter.shutdown();
+			try {
+				oldWriter.awaitTermination(5, TimeUnit.SECONDS);
+			} catch (InterruptedException ex) {
+				oldWriter.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+		}
+		flush();
+	}
+	
+	/**
+	 * Has the log been closed?
+	 * 
+	 * @return True if the log is closed
+	 */
+	static synchronized boolean isClosed() {
+		
+		return closed;
+	}
+	
+	/**
+	 * Push everything in the buffer to Jebus in one pipeline, oldest first so the newest
+	 * ends up at the head of the list, then trim the list once. If Jebus fails we just lose 
+	 * the batch; it's only the log.
+	 * 
+	 */
+	@SuppressWarnings("resource")
+	static synchronized void flush() {
+		List<String> batch;
+		JebusPool jebusPool;
+		Pipeline pipeline;
+		String listKey;
+		long startNanos;
+		
+		batch = new ArrayList<>(MAX_PENDING);
+		PENDING.drainTo(batch);
+		if (batch.isEmpty()) {
+			return;
+		}
+		jebusPool = JebusHub.getJebusCentral();
+		listKey = JebusBible.getStringKey(JebusKey.ALIXIANLPKEY, jebusPool);
+		startNanos = REDIS_TIMER.start();
+		try (Jedis jebus = jebusPool.getResource()) {
+			pipeline = jebus.pipelined();
+			for (String explanation : batch) {
+				pipeline.lpush(listKey, explanation);
+			}
+			pipeline.ltrim(listKey, 0, MAXNLPITEMS);
+			pipeline.sync();
+		} finally {
+			REDIS_TIMER.stop(startNanos);
+		}
+		LOGGER.debug("NLPAnalysisLog: wrote {} analyses", batch.size());
+	}
+	
+	/**
+	 * What to do with a new explanation when the buffer is full.
+	 * 
+	 */
+	public enum OverflowPolicy {
+		/** throw away the oldest buffered explanation to make room (the default) */
+		DROP_OLDEST,
+		/** throw away the new explanation */
+		DROP_NEWEST;
+		
+		/**
+		 * Find the policy by name, ignoring case; "drop-oldest" works as well as "DROP_OLDEST".
+		 * 
+		 * @param name The name of the policy
+		 * @return The policy
+		 */
+		public static OverflowPolicy fromName(String name) {
+			String fixedName;
+			
+			SharedUtils.checkNotNull(name);
+			fixedName = name.replace('-', '_');
+			for (OverflowPolicy policy : values()) {
+				if (policy.name().equalsIgnoreCase(fixedName)) {
+					return policy;
+				}
+			}
+			throw new AlixiaException("NLPAnalysisLog: unknown overflow policy " + name);
+		}
+	}
+}
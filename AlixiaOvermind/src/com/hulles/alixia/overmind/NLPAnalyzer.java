@@ -43,29 +43,20 @@ import redis.clients.jedis.Jedis;
 
 public final class NLPAnalyzer {
 	private final static Logger LOGGER = LoggerFactory.getLogger(NLPAnalyzer.class);
-	private final static long MAXNLPITEMS = 20L;
 	
-	@SuppressWarnings("resource")
 	static void processAnalysis(Ticket ticket, NLPAnalysis analysis) {
 		List<String> sentences;
 		List<SentenceAnalysis> sentenceAnalyses;
 		List<SentencePackage> sentencePackages;
 		SentencePackage sentencePackage;
-		String listKey;
 		TicketJournal journal;
-		JebusPool jebusPool;
 		
 		SharedUtils.checkNotNull(analysis);
 		LOGGER.debug("In NLPAnalyzer processAnalysis");
-		jebusPool = JebusHub.getJebusCentral();
 		
 		// First, we save the analysis explanation to Jebus so we can pore over it 
 		//    later wearing green eyeshades in a dimly-lit room late at night....
-		try (Jedis jebus = jebusPool.getResource()) {
-			listKey = JebusBible.getStringKey(JebusKey.ALIXIANLPKEY, jebusPool);
-			jebus.lpush(listKey, analysis.getExplanation());
-			jebus.ltrim(listKey, 0, MAXNLPITEMS);
-		}
+		NLPAnalysisLog.log(analysis.getExplanation());
 		
 		sentences = analysis.getSentences();
 		sentenceAnalyses = analysis.getSentenceAnalyses();
@@ -440,6 +440,8 @@ public class OvermindRoom extends UrRoom {
 
 	@Override
 	protected void roomShutdown() {
+		
+		NLPAnalysisLog.close();
 	}
 
 	@Override
@@ -61,6 +61,10 @@ import com.hulles.alixia.ticket.TicketJournal;
 final class Thimk {
 	private final static Logger LOGGER = LoggerFactory.getLogger(Thimk.class);
 	private final static Random RANDOM = new Random();
+	// everything after this depends on Charlie's analysis, so we give a long input time to parse
+	private final static long NLP_ANALYSIS_TIMEOUT = 60 * 1000; // 60 seconds
+	// any rooms that have answered by now are enough to go on with, and somebody's waiting
+	private final static long SEMEME_ANALYSIS_TIMEOUT = 10 * 1000; // 10 seconds
 	private final OvermindRoom overmind;
 	
 	Thimk(OvermindRoom overmind) {
@@ -251,6 +255,7 @@ final class Thimk {
 		newRequest.setSememePackages(sememePackages);
 		newRequest.setMessage(msg);
 		newRequest.setRoomObject(null);
+		newRequest.setResponseTimeout(NLP_ANALYSIS_TIMEOUT);
 		overmind.sendRoomRequest(newRequest);
 	}
 	
@@ -273,6 +278,7 @@ final class Thimk {
 		sememePackages = SememePackage.getSingletonDefault("sememe_analysis");
 		newRequest.setSememePackages(sememePackages);
 		newRequest.setMessage("Asking for sememe analysis");
+		newRequest.setResponseTimeout(SEMEME_ANALYSIS_TIMEOUT);
 		overmind.sendRoomRequest(newRequest);		
 	}
 	
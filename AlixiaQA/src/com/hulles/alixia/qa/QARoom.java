@@ -56,6 +56,7 @@ import com.hulles.alixia.ticket.Ticket;
  */
 public final class QARoom extends UrRoom {
 	final static Logger LOGGER = LoggerFactory.getLogger(QARoom.class);
+	private final static long QA_RESPONSE_TIMEOUT = 2 * 60 * 1000; // 2 minutes
     List<SerialSememe> allSememes;
     int sememeIx;
     ScheduledExecutorService scheduler;
@@ -119,6 +120,19 @@ public final class QARoom extends UrRoom {
 
 		return Room.QA;
 	}
+	
+	/**
+	 * Pilates runs every sememe, including the slow ones like Echo's word2vec matches, and 
+	 * nobody is waiting on the answers, so we give the rooms plenty of time rather than 
+	 * count them as timeouts.
+	 * 
+	 * @return The timeout in milliseconds
+	 */
+	@Override
+	protected long getResponseTimeout() {
+		
+		return QA_RESPONSE_TIMEOUT;
+	}
 
 
 	/**
@@ -25,8 +25,9 @@ import static com.hulles.alixia.house.Translator.translateResponse;
 
 import java.io.UnsupportedEncodingException;
 import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -35,6 +36,9 @@ import org.slf4j.LoggerFactory;
 import com.google.common.eventbus.EventBus;
 import com.hulles.alixia.api.AlixiaConstants;
 import com.hulles.alixia.api.dialog.Dialog;
+import com.hulles.alixia.api.dialog.DialogFormat;
+import com.hulles.alixia.api.dialog.DialogFrame;
+import com.hulles.alixia.api.dialog.DialogFrame.DialogType;
 import com.hulles.alixia.api.dialog.DialogHeader;
 import com.hulles.alixia.api.dialog.DialogRequest;
 import com.hulles.alixia.api.dialog.DialogResponse;
@@ -54,6 +58,7 @@ import com.hulles.alixia.house.House;
 import com.hulles.alixia.house.Session;
 import com.hulles.alixia.house.UrHouse;
 import com.hulles.alixia.media.Language;
+import com.hulles.alixia.tools.AlixiaExecutors;
 
 import redis.clients.jedis.BinaryJedisPubSub;
 import redis.clients.jedis.Jedis;
@@ -76,6 +81,7 @@ public final class StationServer extends UrHouse {
 	final JebusPool jebusPool;
 	private final AlixianID alixiaAlixianID;
 	private final AlixianID broadcastID;
+	private final ConcurrentMap<AlixianID, DialogFormat> stationFormats;
 	private static boolean alreadyRunning = false;
 	
     public StationServer() {
@@ -91,6 +97,7 @@ public final class StationServer extends UrHouse {
 		LOGGER.info("Station Server Jebus is {}", JebusHub.getCentralServerName());
 		alixiaAlixianID = AlixiaConstants.getAlixiaAlixianID();
 		broadcastID = AlixiaConstants.getBroadcastAlixianID();
+		stationFormats = new ConcurrentHashMap<>();
     }
 	public StationServer(EventBus street) {
         this();
@@ -173,7 +180,7 @@ public final class StationServer extends UrHouse {
 		byte[] channel;
         String channelStr;
 		
-		executor = Executors.newCachedThreadPool();
+		executor = AlixiaExecutors.newExecutor(getThisHouse().getDisplayName());
         
         listener = new JebusListener();
         channel = JebusBible.getBytesKey(JebusKey.TOCHANNEL, jebusPool);
@@ -251,28 +258,36 @@ public final class StationServer extends UrHouse {
 	 * @param requestBytes The request
 	 */
 	void stationReceive(byte[] requestBytes) {
+		DialogFrame frame;
 		Dialog dialog;
 		DialogRequest dialogRequest;
 		
 		SharedUtils.checkNotNull(requestBytes);
 		LOGGER.debug("StationServer: got station input...");
 		try { // TODO make me better :)
-			dialog = DialogSerialization.deSerialize(alixiaAlixianID, requestBytes);
+			frame = DialogSerialization.peek(requestBytes);
+			if (!frame.isFor(alixiaAlixianID)) {
+				// dialog not sent to us for some reason... what the heck? This is OUR channel...
+				LOGGER.error("StationServer: evil not-to-us traffic on our channel!");
+				return;
+			}
+			if (frame.getDialogType() == DialogType.RESPONSE) {
+				LOGGER.error("StationServer: cannot yet receive DialogResponses");
+				return;
+			}
+			dialog = DialogSerialization.deSerialize(frame, requestBytes);
 		} catch (Exception e) {
 			LOGGER.error("StationServer: can't deserialize bytes", e);
 			return;
 		}
-		if (dialog == null) {
-			// dialog not sent to us for some reason... what the heck? This is OUR channel...
-			LOGGER.error("StationServer: evil not-to-us traffic on our channel!");
-			return;
-		}
 		if (dialog instanceof DialogRequest) {
 			dialogRequest = (DialogRequest) dialog;
 		} else {
 			LOGGER.error("StationServer: cannot yet receive DialogResponses");
 			return;
 		}
+		// answer the station in whatever format it spoke to us
+		stationFormats.put(dialogRequest.getFromAlixianID(), frame.getFormat());
         receiveRequestFromClient(dialogRequest);
 	}
 		
@@ -371,9 +386,43 @@ public final class StationServer extends UrHouse {
 		}
 		stationSend(alixianID, response);
 	}
+	/**
+	 * Get the dialog format to use with an Alixian: the format it last used with us, or JAVA
+	 * if we haven't heard from it, since every station can read that.
+	 * 
+	 * @param alixianID The AlixianID of the recipient
+	 * @return The format
+	 */
+	private DialogFormat getStationFormat(AlixianID alixianID) {
+		DialogFormat format;
+		
+		SharedUtils.checkNotNull(alixianID);
+		format = stationFormats.get(alixianID);
+		if (format == null) {
+			return DialogFormat.JAVA;
+		}
+		return format;
+	}
+	
+	/**
+	 * Forget the station's dialog format along with its session.
+	 * 
+	 * @param session The session to remove
+	 */
+	@Override
+	protected void removeSession(Session session) {
+		
+		SharedUtils.checkNotNull(session);
+		super.removeSession(session);
+		stationFormats.remove(session.getAlixianID());
+	}
+	
 	/**
 	 * Send a DialogResponse to a station, probably but not necessarily in response to an
-	 * earlier request from the station.
+	 * earlier request from the station. Newer stations listen on their own Alixian channel
+	 * plus the broadcast channel, so they don't have to wade through everybody else's 
+	 * traffic. If nobody is listening on the Alixian channel we assume it's a legacy 
+	 * station and fall back to FROMCHANNEL, which is also where broadcasts go for them.
 	 * 
 	 * @param alixianID The AlixianID of the intended recipient
 	 * @param response The DialogResponse to send
@@ -382,7 +431,7 @@ public final class StationServer extends UrHouse {
 		DialogHeader header;
 		byte[] responseBytes;
 		Session session;
-		byte[] key;
+		Long receivers;
         
 		SharedUtils.checkNotNull(alixianID);
 		SharedUtils.checkNotNull(response);
@@ -399,15 +448,31 @@ public final class StationServer extends UrHouse {
 		header = new DialogHeader();
 		header.setToAlixianID(alixianID);
         LOGGER.debug("StationServer: in stationSend");
-		responseBytes = DialogSerialization.serialize(header, response);
-        if (responseBytes != null) {
-            LOGGER.debug("StationServer:stationSend: bytes not null, going to jebus them");
-			try (Jedis jebus = jebusPool.getResource()) {
-				key = JebusBible.getBytesKey(JebusKey.FROMCHANNEL, jebusPool);
-				jebus.publish(key, responseBytes);
-	            LOGGER.debug("StationServer:stationSend: bytes were jebussed");
-			}        	
-        }
+		try (Jedis jebus = jebusPool.getResource()) {
+			if (alixianID.equals(broadcastID)) {
+				// stations on the broadcast channel all read BINARY
+				responseBytes = DialogSerialization.serialize(header, response, DialogFormat.BINARY);
+				if (responseBytes != null) {
+					jebus.publish(JebusBible.getBytesKey(JebusKey.BROADCASTCHANNEL, jebusPool), responseBytes);
+				}
+				// only legacy stations are left on FROMCHANNEL, and one that hasn't spoken
+				//    since we restarted isn't in stationFormats, so they always get JAVA
+				responseBytes = DialogSerialization.serialize(header, response, DialogFormat.JAVA);
+			} else {
+				responseBytes = DialogSerialization.serialize(header, response, getStationFormat(alixianID));
+				if (responseBytes != null) {
+					receivers = jebus.publish(JebusBible.getAlixianChannelKey(jebusPool, alixianID), responseBytes);
+					if (receivers != null && receivers > 0) {
+						LOGGER.debug("StationServer:stationSend: bytes were jebussed to Alixian channel");
+						return;
+					}
+				}
+			}
+			if (responseBytes != null) {
+				jebus.publish(JebusBible.getBytesKey(JebusKey.FROMCHANNEL, jebusPool), responseBytes);
+				LOGGER.debug("StationServer:stationSend: bytes were jebussed");
+			}
+		}
         LOGGER.debug("StationServer:stationSend: done");
 	}
     